@@ -80,6 +80,24 @@ public class Benchmark implements Serializable {
       this.version = randomUUID().toString();
    }
 
+   private Benchmark(Benchmark other, Map<String, byte[]> files) {
+      this.name = other.name;
+      this.version = other.version;
+      this.originalSource = other.originalSource;
+      this.files = files;
+      this.agents = other.agents;
+      this.defaultThreads = other.defaultThreads;
+      this.totalThreads = other.totalThreads;
+      this.plugins = other.plugins;
+      this.phases = other.phases;
+      this.tags = other.tags;
+      this.statisticsCollectionPeriod = other.statisticsCollectionPeriod;
+      this.triggerUrl = other.triggerUrl;
+      this.preHooks = other.preHooks;
+      this.postHooks = other.postHooks;
+      this.failurePolicy = other.failurePolicy;
+   }
+
    private static UUID randomUUID() {
       ThreadLocalRandom random = ThreadLocalRandom.current();
       return new UUID(random.nextLong(), random.nextLong());
@@ -117,6 +135,15 @@ public class Benchmark implements Serializable {
       return files;
    }
 
+   /**
+    * Data files are used only when the benchmark is built; agents receive the benchmark without these.
+    *
+    * @return Copy of this benchmark with the same version and no data files.
+    */
+   public Benchmark withoutFiles() {
+      return files.isEmpty() ? this : new Benchmark(this, Collections.emptyMap());
+   }
+
    public int defaultThreads() {
       return defaultThreads;
    }
@@ -84,7 +84,7 @@ public class BenchmarkBuilder {
       return this;
    }
 
-   int numAgents() {
+   public int numAgents() {
       return agents.size();
    }
 
@@ -19,6 +19,7 @@
 package io.hyperfoil.api.config;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -32,6 +33,7 @@ import io.hyperfoil.api.session.AccessVisitor;
 import io.hyperfoil.api.session.ReadAccess;
 import io.hyperfoil.api.session.Session;
 import io.hyperfoil.api.session.WriteAccess;
+import io.hyperfoil.impl.CollectingVisitor;
 
 public class Scenario implements Serializable {
    private final Sequence[] initialSequences;
@@ -42,6 +44,8 @@ public class Scenario implements Serializable {
    private final int sumConcurrency;
    private final WriteAccess[] writes;
    private final int uniqueVars;
+   @Visitor.Ignore
+   private final Session.ResourceKey<?>[] resourceKeys;
 
    public Scenario(Sequence[] initialSequences, Sequence[] sequences, int maxRequests, int maxSequences) {
       this.initialSequences = initialSequences;
@@ -72,6 +76,26 @@ public class Scenario implements Serializable {
             access.setIndex(keyIndexMap.get(access.key()));
          }
       }
+      resourceKeys = assignResourceSlots(sequences);
+   }
+
+   @SuppressWarnings("rawtypes")
+   private static Session.ResourceKey<?>[] assignResourceSlots(Sequence[] sequences) {
+      ArrayList<Session.ResourceKey<?>> keys = new ArrayList<>();
+      new CollectingVisitor<>(Session.ResourceKey.class) {
+         @Override
+         protected boolean process(Session.ResourceKey key) {
+            // Keys shared with another scenario (e.g. static ones) keep their slot and are looked up in a map here.
+            if (key.slot() < 0) {
+               key.setSlot(keys.size());
+               if (key.slot() == keys.size()) {
+                  keys.add(key);
+               }
+            }
+            return true;
+         }
+      }.visit(sequences);
+      return keys.toArray(new Session.ResourceKey<?>[0]);
    }
 
    public Sequence[] initialSequences() {
@@ -102,6 +126,10 @@ public class Scenario implements Serializable {
       return sequence;
    }
 
+   public Session.ResourceKey<?>[] resourceKeys() {
+      return resourceKeys;
+   }
+
    public Session.Var[] createVars(Session session) {
       Session.Var[] vars = new Session.Var[uniqueVars];
       for (WriteAccess access : writes) {
@@ -15,7 +15,12 @@ public interface PhaseInstance {
 
    long absoluteStartTime();
 
-   void start(EventExecutorGroup executorGroup);
+   /**
+    * @param executorGroup Executors running the sessions.
+    * @param absoluteStartTime Wall-clock time when the phase should be considered started; this can be
+    *                          slightly in the past when the start was scheduled ahead.
+    */
+   void start(EventExecutorGroup executorGroup, long absoluteStartTime);
 
    void finish();
 
@@ -18,6 +18,10 @@ public class SequenceInstance {
    private Step[] steps;
    private int currentStep = 0;
    private int refCnt = 0;
+   // What is the sequence blocked on; set by the blocked step through Session.await* methods
+   private Wait wait = Wait.NOTHING;
+   private long waitValue;
+   private Object waitKey;
 
    public boolean progress(Session session) {
       boolean progressed = false;
@@ -27,6 +31,7 @@ public class SequenceInstance {
             log.trace("#{} {}[{}] invoking step {}", session.uniqueId(), sequence.name(), index, step);
          }
          session.currentSequence(this);
+         clearWait();
          try {
             if (!step.invoke(session)) {
                if (trace) {
@@ -66,9 +71,34 @@ public class SequenceInstance {
       this.steps = steps;
       this.currentStep = 0;
       this.refCnt = 1;
+      clearWait();
       return this;
    }
 
+   public void await(Wait wait, long value, Object key) {
+      this.wait = wait;
+      this.waitValue = value;
+      this.waitKey = key;
+   }
+
+   public void clearWait() {
+      wait = Wait.NOTHING;
+      waitValue = 0;
+      waitKey = null;
+   }
+
+   public Wait waitFor() {
+      return wait;
+   }
+
+   public long waitValue() {
+      return waitValue;
+   }
+
+   public Object waitKey() {
+      return waitKey;
+   }
+
    public boolean isCompleted() {
       return currentStep >= steps.length;
    }
@@ -93,7 +123,8 @@ public class SequenceInstance {
    public StringBuilder appendTo(StringBuilder sb) {
       return sb.append(sequence != null ? sequence.name() : "<none>")
             .append('(').append(index).append(")(")
-            .append(currentStep + 1).append('/').append(steps == null ? 0 : steps.length).append(')');
+            .append(currentStep + 1).append('/').append(steps == null ? 0 : steps.length).append(')')
+            .append(wait == Wait.NOTHING ? "" : "[" + wait + "]");
    }
 
    public void breakSequence(Session session) {
@@ -131,4 +162,27 @@ public class SequenceInstance {
                session == null ? 0 : session.uniqueId(), sequence == null ? "<noseq>" : sequence.name(), index, refCnt);
       }
    }
+
+   /**
+    * Reason why the sequence is blocked; sequences that are not waiting for {@link #NOTHING}
+    * are not polled until the respective event happens.
+    */
+   public enum Wait {
+      /**
+       * The sequence is polled on every session execution.
+       */
+      NOTHING,
+      /**
+       * Wait until any session variable changes.
+       */
+      VARIABLES,
+      /**
+       * Wait until {@link #waitValue()} timestamp (in epoch milliseconds).
+       */
+      TIMESTAMP,
+      /**
+       * Wait until {@link Session#signal(Object)} is called with {@link #waitKey()}.
+       */
+      SIGNAL,
+   }
 }
@@ -5,6 +5,7 @@ import java.util.concurrent.Callable;
 import java.util.function.Supplier;
 
 import io.hyperfoil.api.config.Scenario;
+import io.hyperfoil.api.config.Visitor;
 import io.hyperfoil.api.connection.Request;
 import io.hyperfoil.api.statistics.SessionStatistics;
 import io.netty.util.concurrent.EventExecutor;
@@ -91,6 +92,36 @@ public interface Session extends Callable<Void> {
 
    void reset();
 
+   // Sequence readiness; a step that is blocked can declare what the current sequence waits for
+   // before returning false. The sequence is then not invoked again until this happens.
+
+   /**
+    * The current sequence cannot progress until a session variable changes.
+    */
+   void awaitVariables();
+
+   /**
+    * The current sequence cannot progress before given timestamp. The caller is responsible for scheduling
+    * session execution at that time.
+    *
+    * @param timestampMillis Epoch time in milliseconds.
+    */
+   void awaitTimestamp(long timestampMillis);
+
+   /**
+    * The current sequence cannot progress until {@link #signal(Object)} is invoked with the same key.
+    *
+    * @param key Identity of the awaited event.
+    */
+   void awaitSignal(Object key);
+
+   /**
+    * Make sequences waiting for this key ready and schedule session execution.
+    *
+    * @param key Identity of the event.
+    */
+   void signal(Object key);
+
    SequenceInstance startSequence(String name, boolean forceSameIndex, ConcurrencyPolicy policy);
 
    void stop();
@@ -133,7 +164,40 @@ public interface Session extends Callable<Void> {
       default void onSessionReset(Session session) {}
    }
 
-   interface ResourceKey<R extends Resource> extends Serializable {}
+   interface ResourceKey<R extends Resource> extends Serializable {
+      /**
+       * Keys reachable from the scenario are assigned a dense slot when the {@link Scenario} is built.
+       * Keys that store the slot make {@link Session#getResource(ResourceKey)} a simple array access;
+       * other keys are looked up in a map.
+       *
+       * @return Slot assigned through {@link #setSlot(int)} or -1 if the key does not store it.
+       */
+      default int slot() {
+         return -1;
+      }
+
+      default void setSlot(int slot) {
+      }
+   }
+
+   /**
+    * Key that stores the slot assigned by the scenario. Classes that already extend another class
+    * can hold an instance of this key in a field rather than implementing {@link ResourceKey} themselves.
+    */
+   class BaseResourceKey<R extends Resource> implements ResourceKey<R> {
+      @Visitor.Ignore
+      private int slot = -1;
+
+      @Override
+      public int slot() {
+         return slot;
+      }
+
+      @Override
+      public void setSlot(int slot) {
+         this.slot = slot;
+      }
+   }
 
    /**
     * Behaviour when a new sequence start is requested but the concurrency factor is exceeded.
@@ -3,6 +3,8 @@ package io.hyperfoil.internal;
 import java.util.function.Function;
 
 public interface Properties {
+   String AGENT_CACHE_DIR = "io.hyperfoil.agent.cache.dir";
+   String AGENT_CACHE_MAX_SIZE = "io.hyperfoil.agent.cache.max.size";
    String AGENT_DEBUG_PORT = "io.hyperfoil.agent.debug.port";
    String AGENT_DEBUG_SUSPEND = "io.hyperfoil.agent.debug.suspend";
    String AGENT_JAVA_EXECUTABLE = "io.hyperfoil.agent.java.executable";
@@ -10,6 +12,7 @@ public interface Properties {
    String BENCHMARK_DIR = "io.hyperfoil.benchmarkdir";
    String CONTROLLER_CLUSTER_IP = "io.hyperfoil.controller.cluster.ip";
    String CONTROLLER_CLUSTER_PORT = "io.hyperfoil.controller.cluster.port";
+   String CONTROLLER_COMPARE_CONCURRENCY = "io.hyperfoil.controller.compare.concurrency";
    String CONTROLLER_EXTERNAL_URI = "io.hyperfoil.controller.external.uri";
    String CONTROLLER_HOST = "io.hyperfoil.controller.host";
    String CONTROLLER_KEYSTORE_PATH = "io.hyperfoil.controller.keystore.path";
@@ -21,8 +24,12 @@ public interface Properties {
    String CONTROLLER_LOG = "io.hyperfoil.controller.log.file";
    String CONTROLLER_LOG_LEVEL = "io.hyperfoil.controller.log.level";
    String CONTROLLER_PORT = "io.hyperfoil.controller.port";
+   String CONTROLLER_PHASE_START_DELAY = "io.hyperfoil.controller.phase.start.delay";
+   String CONTROLLER_STATS_RELAY_AGENT_SUMMARIES = "io.hyperfoil.controller.stats.relay.agent.summaries";
+   String CONTROLLER_STATS_RELAY_GROUP_SIZE = "io.hyperfoil.controller.stats.relay.group.size";
    String CPU_WATCHDOG_PERIOD = "io.hyperfoil.cpu.watchdog.period";
    String CPU_WATCHDOG_IDLE_THRESHOLD = "io.hyperfoil.cpu.watchdog.idle.threshold";
+   String DATASET_DIR = "io.hyperfoil.datasetdir";
    String DEPLOYER = "io.hyperfoil.deployer";
    String DEPLOY_TIMEOUT = "io.hyperfoil.deploy.timeout";
    String DIST_DIR = "io.hyperfoil.distdir";
@@ -31,6 +38,7 @@ public interface Properties {
    String LOG4J2_CONFIGURATION_FILE = "log4j.configurationFile";
    String LOAD_DIR = "io.hyperfoil.loaddir";
    String MAX_IN_MEMORY_RUNS = "io.hyperfoil.max.in.memory.runs";
+   String MAX_IN_MEMORY_STATS_SIZE = "io.hyperfoil.max.in.memory.stats.size";
    String NETTY_TRANSPORT = "io.hyperfoil.netty.transport";
    String ROOT_DIR = "io.hyperfoil.rootdir";
    String RUN_DIR = "io.hyperfoil.rundir";
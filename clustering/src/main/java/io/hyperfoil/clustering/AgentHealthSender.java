@@ -0,0 +1,27 @@
+package io.hyperfoil.clustering;
+
+import java.util.concurrent.TimeUnit;
+
+import io.hyperfoil.clustering.messages.AgentHealthMessage;
+import io.hyperfoil.core.impl.SimulationRunner;
+import io.vertx.core.eventbus.EventBus;
+
+public class AgentHealthSender {
+   private final String address;
+   private final String runId;
+   private final EventBus eb;
+
+   public AgentHealthSender(EventBus eb, String address, String runId) {
+      this.address = address;
+      this.runId = runId;
+      this.eb = eb;
+   }
+
+   public void send(SimulationRunner runner, RequestStatsSender requestStatsSender) {
+      long[] jitterCounts = new long[SimulationRunner.JITTER_BUCKETS.length + 1];
+      long jitterSum = runner.getJitterHistogram(jitterCounts);
+      eb.send(Feeds.STATS, new AgentHealthMessage(address, runId, System.currentTimeMillis(), jitterCounts, jitterSum,
+            runner.resetJitterMax(), runner.getCpuIdleRatio(), requestStatsSender.pending(),
+            TimeUnit.NANOSECONDS.toMicros(requestStatsSender.resetMaxRoundTrip())));
+   }
+}
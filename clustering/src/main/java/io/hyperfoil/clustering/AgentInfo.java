@@ -14,6 +14,12 @@ class AgentInfo {
    Status status = Status.STARTING;
    Map<String, PhaseInstance.Status> phases = new HashMap<>();
    DeployedAgent deployedAgent;
+   // Milliseconds to add to agent's clock to get the controller's clock
+   long clockOffset;
+   long clockRtt;
+   // Relay address for request statistics; null when these are sent directly to the controller
+   String statsAddress;
+   boolean statsRelay;
 
    public AgentInfo(String name, int id) {
       this.name = name;
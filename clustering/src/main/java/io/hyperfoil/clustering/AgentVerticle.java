@@ -2,6 +2,7 @@ package io.hyperfoil.clustering;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 
 import io.hyperfoil.Hyperfoil;
@@ -11,6 +12,7 @@ import io.hyperfoil.clustering.messages.AgentControlMessage;
 import io.hyperfoil.clustering.messages.AgentHello;
 import io.hyperfoil.clustering.messages.AgentReadyMessage;
 import io.hyperfoil.clustering.messages.ErrorMessage;
+import io.hyperfoil.core.data.MappedDataset;
 import io.hyperfoil.core.util.CountDown;
 import io.hyperfoil.core.impl.SimulationRunner;
 import io.hyperfoil.clustering.messages.PhaseChangeMessage;
@@ -19,6 +21,7 @@ import io.hyperfoil.core.util.Util;
 import io.hyperfoil.internal.Properties;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Context;
+import io.vertx.core.Future;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.eventbus.MessageConsumer;
@@ -38,13 +41,18 @@ public class AgentVerticle extends AbstractVerticle {
    private String runId;
    private EventBus eb;
 
+   private Benchmark benchmark;
    private SimulationRunner runner;
    private MessageConsumer<Object> controlFeedConsumer;
    private long statsTimerId = -1;
    private RequestStatsSender requestStatsSender;
+   private StatsRelay statsRelay;
    private CountDown statisticsCountDown;
    private SessionStatsSender sessionStatsSender;
    private ConnectionStatsSender connectionStatsSender;
+   private AgentHealthSender agentHealthSender;
+   private ClockSync clockSync;
+   private BlobCache blobCache;
 
    @Override
    public void start() {
@@ -69,6 +77,10 @@ public class AgentVerticle extends AbstractVerticle {
          }
       }
       eb = vertx.eventBus();
+      clockSync = new ClockSync(eb, deploymentId);
+      blobCache = new BlobCache(vertx,
+            Properties.get(Properties.AGENT_CACHE_DIR, Paths::get, Paths.get(System.getProperty("java.io.tmpdir"), "hyperfoil-agent-cache")),
+            Properties.getLong(Properties.AGENT_CACHE_MAX_SIZE, 4L << 30));
 
       eb.consumer(deploymentId, message -> {
          try {
@@ -95,6 +107,7 @@ public class AgentVerticle extends AbstractVerticle {
             if (reply.succeeded()) {
                log.info("{} Got reply from controller.", deploymentId);
                vertx.cancelTimer(timerId);
+               clockSync.start();
             } else {
                if (reply.cause() instanceof ReplyException) {
                   ReplyFailure replyFailure = ((ReplyException) reply.cause()).failureType();
@@ -113,8 +126,24 @@ public class AgentVerticle extends AbstractVerticle {
       switch (controlMessage.command()) {
          case INITIALIZE:
             log.info("Initializing agent");
+            if (controlMessage.manifest() != null) {
+               // The benchmark can be large; the controller learns about failures through the response feed
+               message.reply("OK");
+               blobCache.load(controlMessage.manifest()).onComplete(result -> {
+                  try {
+                     if (result.failed()) {
+                        throw result.cause();
+                     }
+                     initBenchmark(result.result(), controlMessage);
+                  } catch (Throwable e) {
+                     log.error("Failed to initialize agent", e);
+                     eb.send(Feeds.RESPONSE, new ErrorMessage(deploymentId, runId, e, true));
+                  }
+               });
+               break;
+            }
             try {
-               initBenchmark(controlMessage.benchmark(), controlMessage.agentId());
+               initBenchmark(controlMessage.benchmark(), controlMessage);
                message.reply("OK");
             } catch (Throwable e) {
                log.error("Failed to initialize agent", e);
@@ -129,15 +158,25 @@ public class AgentVerticle extends AbstractVerticle {
                   vertx.cancelTimer(statsTimerId);
                }
                CountDown completion = new CountDown(result -> {
-                  message.reply(result.succeeded() ? "OK" : result.cause());
-                  if (vertx.isClustered()) {
-                     // Give the message some time to be sent
-                     vertx.setTimer(1000, id -> Hyperfoil.shutdownVertx(vertx));
-                  } else {
-                     vertx.undeploy(deploymentID());
+                  Future<Void> relayStopped = Future.succeededFuture();
+                  if (statsRelay != null) {
+                     // Forward what other agents sent before; their final statistics bypass the relay
+                     relayStopped = statsRelay.stop();
+                     statsRelay = null;
                   }
+                  relayStopped.onComplete(nil -> {
+                     message.reply(result.succeeded() ? "OK" : result.cause());
+                     if (vertx.isClustered()) {
+                        // Give the message some time to be sent
+                        vertx.setTimer(1000, id -> Hyperfoil.shutdownVertx(vertx));
+                     } else {
+                        vertx.undeploy(deploymentID());
+                     }
+                  });
                }, 1);
                if (runner != null) {
+                  // The relay might be stopped before us; send the final statistics directly to the controller
+                  requestStatsSender.bypassRelay();
                   // TODO: why do we have to visit&send stats here?
                   runner.visitStatistics(requestStatsSender);
                   requestStatsSender.send(completion);
@@ -149,6 +188,7 @@ public class AgentVerticle extends AbstractVerticle {
                }
                controlFeedConsumer = null;
                runner = null;
+               deleteDatasets();
                requestStatsSender = null;
                if (statisticsCountDown != null) {
                   statisticsCountDown.setHandler(result -> completion.countDown());
@@ -194,7 +234,7 @@ public class AgentVerticle extends AbstractVerticle {
          PhaseControlMessage controlMessage = (PhaseControlMessage) message.body();
          switch (controlMessage.command()) {
             case RUN:
-               runner.startPhase(controlMessage.phase());
+               startPhase(controlMessage.phase(), controlMessage.startTime());
                break;
             case FINISH:
                runner.finishPhase(controlMessage.phase());
@@ -205,31 +245,81 @@ public class AgentVerticle extends AbstractVerticle {
             case TERMINATE:
                runner.terminatePhase(controlMessage.phase());
                break;
+            case SET_RATE:
+               // All agents apply the change at the same instant, translated to their clock
+               long changeTime = controlMessage.startTime() - clockSync.offset();
+               if (!runner.setRateMultiplier(controlMessage.phase(), controlMessage.rateMultiplier(), changeTime)) {
+                  log.warn("{} Cannot change rate of phase {}", deploymentId, controlMessage.phase());
+               }
+               break;
          }
       });
    }
 
+   private void startPhase(String phase, long startTime) {
+      if (startTime <= 0) {
+         runner.startPhase(phase);
+         return;
+      }
+      // The controller schedules the start ahead in its own clock so that all agents start at the same moment
+      long localStartTime = startTime - clockSync.offset();
+      long delay = localStartTime - System.currentTimeMillis();
+      SimulationRunner runner = this.runner;
+      if (delay > 0) {
+         log.debug("{} Starting phase {} in {} ms", deploymentId, phase, delay);
+         vertx.setTimer(delay, id -> {
+            if (this.runner == runner) {
+               // Timers are not driven by wall-clock time and could fire slightly early
+               runner.startPhase(phase, Math.min(localStartTime, System.currentTimeMillis()));
+            }
+         });
+      } else {
+         log.warn("{} Command to start phase {} arrived {} ms late", deploymentId, phase, -delay);
+         runner.startPhase(phase, localStartTime);
+      }
+   }
+
    @Override
    public void stop() {
       if (runner != null) {
          runner.shutdown();
       }
+      if (statsRelay != null) {
+         statsRelay.stop();
+      }
+      deleteDatasets();
    }
 
-   private void initBenchmark(Benchmark benchmark, int agentId) {
+   private void deleteDatasets() {
+      if (benchmark != null) {
+         // Datasets materialized on this agent are not reused by other runs
+         MappedDataset.deleteMaterialized(benchmark);
+         benchmark = null;
+      }
+   }
+
+   private void initBenchmark(Benchmark benchmark, AgentControlMessage controlMessage) {
       if (runner != null) {
          throw new IllegalStateException("Another simulation is running!");
       }
+      this.benchmark = benchmark;
+      int agentId = controlMessage.agentId();
+      String statsAddress = controlMessage.statsAddress() == null ? Feeds.STATS : controlMessage.statsAddress();
+      if (controlMessage.statsRelay()) {
+         log.info("{} Relaying statistics from agents sending to {}", deploymentId, statsAddress);
+         statsRelay = new StatsRelay(vertx, statsAddress, runId, benchmark.statisticsCollectionPeriod(), controlMessage.relayAgentSummaries());
+      }
 
       Context context = vertx.getOrCreateContext();
 
       runner = new SimulationRunner(benchmark, runId, agentId,
             error -> eb.send(Feeds.RESPONSE, new ErrorMessage(deploymentId, runId, error, false)));
       controlFeedConsumer = listenOnControl();
-      requestStatsSender = new RequestStatsSender(benchmark, eb, deploymentId, runId);
+      requestStatsSender = new RequestStatsSender(benchmark, eb, deploymentId, runId, statsAddress);
       statisticsCountDown = new CountDown(1);
       sessionStatsSender = new SessionStatsSender(eb, deploymentId, runId);
       connectionStatsSender = new ConnectionStatsSender(eb, deploymentId, runId);
+      agentHealthSender = new AgentHealthSender(eb, deploymentId, runId);
 
       runner.setPhaseChangeHandler((phase, status, sessionLimitExceeded, error) -> {
          log.debug("{} changed phase {} to {}", deploymentId, phase, status);
@@ -256,11 +346,14 @@ public class AgentVerticle extends AbstractVerticle {
          sessionStatsSender.send();
          runner.visitConnectionStats(connectionStatsSender);
          connectionStatsSender.send();
+         agentHealthSender.send(runner, requestStatsSender);
       });
 
       runner.openConnections(result -> {
          if (result.succeeded()) {
-            eb.send(Feeds.RESPONSE, new AgentReadyMessage(deploymentID(), runId));
+            // Phases are scheduled in controller's clock so we must not report readiness before we know the offset
+            clockSync.future().onComplete(nil ->
+                  eb.send(Feeds.RESPONSE, new AgentReadyMessage(deploymentID(), runId, clockSync.offset(), clockSync.rttMillis())));
          } else {
             eb.send(Feeds.RESPONSE, new ErrorMessage(deploymentID(), runId, result.cause(), true));
          }
@@ -0,0 +1,248 @@
+package io.hyperfoil.clustering;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import io.hyperfoil.api.config.Benchmark;
+import io.hyperfoil.clustering.messages.BenchmarkManifest;
+import io.hyperfoil.clustering.util.ContentChunks;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Agent-side cache of content-addressed chunks. Chunks missing in the cache are fetched from the controller,
+ * several at once, verified and stored on disk so that subsequent runs of the same (or slightly modified)
+ * benchmark don't need to transfer them again.
+ * <p>
+ * The cache directory can be shared by several agents on the same machine. Agents touch the chunks they use
+ * and pruning leaves recently used chunks (and temporary files) alone; should a chunk disappear anyway before
+ * the benchmark is read the agent checks the cache and downloads the missing chunks again.
+ */
+class BlobCache {
+   private static final Logger log = LogManager.getLogger(BlobCache.class);
+   private static final int MAX_CONCURRENT_FETCHES = 4;
+   private static final int MAX_ATTEMPTS = 3;
+   private static final long PRUNE_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+   private static final DeliveryOptions FETCH_OPTIONS = new DeliveryOptions().setSendTimeout(60_000);
+
+   private final Vertx vertx;
+   private final Path dir;
+   private final long maxSize;
+
+   BlobCache(Vertx vertx, Path dir, long maxSize) {
+      this.vertx = vertx;
+      this.dir = dir;
+      this.maxSize = maxSize;
+   }
+
+   Future<Benchmark> load(BenchmarkManifest manifest) {
+      return load(manifest, MAX_ATTEMPTS);
+   }
+
+   private Future<Benchmark> load(BenchmarkManifest manifest, int attempts) {
+      Promise<Benchmark> promise = Promise.promise();
+      vertx.<List<Integer>>executeBlocking(p -> p.complete(findMissing(manifest)), false, missing -> {
+         if (missing.failed()) {
+            promise.fail(missing.cause());
+            return;
+         }
+         log.info("Benchmark {} has {} chunks ({} bytes), {} are not cached", manifest.benchmark(),
+               manifest.chunks().length, manifest.totalSize(), missing.result().size());
+         new Download(manifest, missing.result()).start().compose(nil -> vertx.<Benchmark>executeBlocking(p -> {
+            Benchmark benchmark;
+            try {
+               // Null result means that some chunk has been pruned by another agent in the meantime
+               benchmark = deserialize(manifest);
+            } catch (IOException | ClassNotFoundException e) {
+               p.fail(e);
+               return;
+            }
+            if (benchmark != null) {
+               prune(manifest);
+            }
+            p.complete(benchmark);
+         }, false)).onComplete(result -> {
+            if (result.failed() || result.result() != null) {
+               promise.handle(result);
+            } else if (attempts > 1) {
+               log.warn("Chunks of benchmark {} have been removed from the cache, retrying", manifest.benchmark());
+               load(manifest, attempts - 1).onComplete(promise);
+            } else {
+               promise.fail(new IOException("Chunks of benchmark " + manifest.benchmark() + " keep being removed from cache " + dir));
+            }
+         });
+      });
+      return promise.future();
+   }
+
+   private Path chunkPath(String digest) {
+      return dir.resolve(digest.substring(0, 2)).resolve(digest);
+   }
+
+   private List<Integer> findMissing(BenchmarkManifest manifest) {
+      List<Integer> missing = new ArrayList<>();
+      FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+      for (int i = 0; i < manifest.chunks().length; ++i) {
+         Path path = chunkPath(manifest.chunks()[i]);
+         try {
+            if (Files.size(path) == manifest.sizes()[i] && ContentChunks.digest(path).equals(manifest.chunks()[i])) {
+               // Mark as recently used
+               Files.setLastModifiedTime(path, now);
+               continue;
+            }
+         } catch (IOException e) {
+            // missing
+         }
+         missing.add(i);
+      }
+      return missing;
+   }
+
+   private void store(String digest, byte[] bytes) throws IOException {
+      String actual = ContentChunks.digest(bytes, 0, bytes.length);
+      if (!actual.equals(digest)) {
+         throw new IOException("Chunk " + digest + " is corrupted, received content has digest " + actual);
+      }
+      Path path = chunkPath(digest);
+      Files.createDirectories(path.getParent());
+      Path tmp = Files.createTempFile(path.getParent(), digest, ".tmp");
+      Files.write(tmp, bytes);
+      Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+   }
+
+   /**
+    * @return Deserialized benchmark or null if some of the chunks is missing.
+    */
+   private Benchmark deserialize(BenchmarkManifest manifest) throws IOException, ClassNotFoundException {
+      List<InputStream> streams = new ArrayList<>(manifest.chunks().length);
+      try {
+         // Once all files are open these can be read even if another agent deletes them
+         for (String digest : manifest.chunks()) {
+            try {
+               streams.add(Files.newInputStream(chunkPath(digest)));
+            } catch (NoSuchFileException e) {
+               return null;
+            }
+         }
+         try (ObjectInputStream input = new ObjectInputStream(new SequenceInputStream(Collections.enumeration(streams)))) {
+            return (Benchmark) input.readObject();
+         }
+      } finally {
+         for (InputStream stream : streams) {
+            stream.close();
+         }
+      }
+   }
+
+   private void prune(BenchmarkManifest manifest) {
+      Set<Path> used = Stream.of(manifest.chunks()).map(this::chunkPath).collect(Collectors.toCollection(HashSet::new));
+      List<Path> files;
+      try (Stream<Path> stream = Files.walk(dir, 2)) {
+         files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+      } catch (IOException e) {
+         log.warn("Cannot list cache directory {}", dir, e);
+         return;
+      }
+      long size = 0;
+      for (Path file : files) {
+         size += file.toFile().length();
+      }
+      if (size <= maxSize) {
+         return;
+      }
+      files.sort(Comparator.comparingLong(file -> file.toFile().lastModified()));
+      // Chunks used by other agents sharing the directory have been touched recently
+      long recent = System.currentTimeMillis() - PRUNE_GRACE_MILLIS;
+      for (Path file : files) {
+         if (size <= maxSize || file.toFile().lastModified() > recent) {
+            break;
+         } else if (used.contains(file)) {
+            continue;
+         }
+         long length = file.toFile().length();
+         try {
+            Files.delete(file);
+            size -= length;
+         } catch (IOException e) {
+            log.warn("Cannot delete cached chunk {}", file, e);
+         }
+      }
+   }
+
+   private class Download {
+      private final BenchmarkManifest manifest;
+      private final ArrayDeque<Integer> pending;
+      private final Promise<Void> promise = Promise.promise();
+      private int active;
+
+      Download(BenchmarkManifest manifest, List<Integer> missing) {
+         this.manifest = manifest;
+         this.pending = new ArrayDeque<>(missing);
+      }
+
+      Future<Void> start() {
+         if (pending.isEmpty()) {
+            promise.complete();
+         } else {
+            while (active < MAX_CONCURRENT_FETCHES && !pending.isEmpty()) {
+               fetch(pending.poll());
+            }
+         }
+         return promise.future();
+      }
+
+      private void fetch(int index) {
+         String digest = manifest.chunks()[index];
+         ++active;
+         vertx.eventBus().<Buffer>request(Feeds.BLOBS, digest, FETCH_OPTIONS, reply -> {
+            if (reply.failed()) {
+               promise.tryFail(reply.cause());
+               return;
+            }
+            byte[] bytes = reply.result().body().getBytes();
+            vertx.<Void>executeBlocking(p -> {
+               try {
+                  store(digest, bytes);
+                  p.complete();
+               } catch (IOException e) {
+                  p.fail(e);
+               }
+            }, false, stored -> {
+               --active;
+               if (stored.failed()) {
+                  promise.tryFail(stored.cause());
+               } else if (promise.future().isComplete()) {
+                  log.debug("Not fetching remaining chunks as the download has failed");
+               } else if (!pending.isEmpty()) {
+                  fetch(pending.poll());
+               } else if (active == 0) {
+                  promise.tryComplete();
+               }
+            });
+         });
+      }
+   }
+}
@@ -0,0 +1,113 @@
+package io.hyperfoil.clustering;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import io.hyperfoil.clustering.messages.BenchmarkManifest;
+import io.hyperfoil.clustering.util.ContentChunks;
+
+/**
+ * Keeps the content distributed to agents split into content-addressed chunks. Chunks are shared between runs
+ * and dropped when the last run referencing them releases its content.
+ * <p>
+ * Content is streamed through the chunk splitter and the chunks are spilled into files named by their digest,
+ * so neither the whole serialized content nor the chunks are held in memory; only chunks that are not present
+ * yet are written. Agents are served from these files.
+ * <p>
+ * Content is published from worker threads while the chunks are looked up from the event loop, hence the locking.
+ */
+class BlobStore {
+   private final Path dir;
+   private final Map<String, Integer> references = new HashMap<>();
+   private final Map<String, List<String>> owners = new HashMap<>();
+   // Digests of chunks that are completely written; these can be looked up without locking
+   private final Set<String> available = ConcurrentHashMap.newKeySet();
+
+   BlobStore(Path dir) {
+      this.dir = dir;
+   }
+
+   /**
+    * Removes chunks left from previous controller instance.
+    */
+   synchronized void init() throws IOException {
+      if (Files.exists(dir)) {
+         try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Collections.reverseOrder()).filter(file -> !file.equals(dir)).forEach(file -> file.toFile().delete());
+         }
+      }
+      Files.createDirectories(dir);
+   }
+
+   /**
+    * Chunks referenced by the owner are kept until {@link #release(String)} is called, even if the writer fails.
+    */
+   BenchmarkManifest publish(String owner, String name, ContentWriter writer) throws IOException {
+      List<String> digests = new ArrayList<>();
+      List<Integer> sizes = new ArrayList<>();
+      try (OutputStream output = new ContentChunks.Splitter((digest, buffer, length) -> {
+         add(owner, digest, buffer, length);
+         digests.add(digest);
+         sizes.add(length);
+      })) {
+         writer.write(output);
+      }
+      return new BenchmarkManifest(name, digests.toArray(new String[0]), sizes.stream().mapToInt(Integer::intValue).toArray());
+   }
+
+   private synchronized void add(String owner, String digest, byte[] buffer, int length) throws IOException {
+      if (!references.containsKey(digest)) {
+         Files.createDirectories(dir);
+         Path temp = dir.resolve(digest + ".tmp");
+         try (OutputStream output = Files.newOutputStream(temp)) {
+            output.write(buffer, 0, length);
+         }
+         Files.move(temp, dir.resolve(digest), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+         available.add(digest);
+      }
+      references.merge(digest, 1, Integer::sum);
+      owners.computeIfAbsent(owner, o -> new ArrayList<>()).add(digest);
+   }
+
+   synchronized void release(String owner) {
+      List<String> owned = owners.remove(owner);
+      if (owned == null) {
+         return;
+      }
+      for (String digest : owned) {
+         if (references.merge(digest, -1, Integer::sum) <= 0) {
+            references.remove(digest);
+            available.remove(digest);
+            //noinspection ResultOfMethodCallIgnored
+            dir.resolve(digest).toFile().delete();
+         }
+      }
+   }
+
+   /**
+    * @return File with the chunk or <code>null</code> if no run references this chunk.
+    */
+   Path get(String digest) {
+      return available.contains(digest) ? dir.resolve(digest) : null;
+   }
+
+   int size() {
+      return available.size();
+   }
+
+   @FunctionalInterface
+   interface ContentWriter {
+      void write(OutputStream output) throws IOException;
+   }
+}
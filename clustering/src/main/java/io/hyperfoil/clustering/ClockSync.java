@@ -0,0 +1,93 @@
+package io.hyperfoil.clustering;
+
+import java.util.concurrent.TimeUnit;
+
+import io.hyperfoil.clustering.messages.ClockSyncMessage;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.eventbus.EventBus;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Estimates the offset of controller's wall-clock relative to this agent, NTP-style. We send several requests
+ * to the controller which replies with its current time; assuming that the reply was created in the middle
+ * of the round-trip the sample with the shortest round-trip gives the most precise estimate.
+ */
+class ClockSync {
+   private static final Logger log = LogManager.getLogger(ClockSync.class);
+   private static final int SAMPLES = 8;
+
+   private final EventBus eb;
+   private final String deploymentId;
+   private final Promise<Void> promise = Promise.promise();
+   private boolean started;
+   private int samples;
+   private long offset;
+   private long rttNanos = Long.MAX_VALUE;
+
+   ClockSync(EventBus eb, String deploymentId) {
+      this.eb = eb;
+      this.deploymentId = deploymentId;
+   }
+
+   void start() {
+      // Registration might be acknowledged more than once
+      if (!started) {
+         started = true;
+         sample();
+      }
+   }
+
+   private void sample() {
+      long startNanos = System.nanoTime();
+      long startMillis = System.currentTimeMillis();
+      eb.request(Feeds.DISCOVERY, new ClockSyncMessage(deploymentId), reply -> {
+         long rtt = System.nanoTime() - startNanos;
+         if (reply.failed() || !(reply.result().body() instanceof Long)) {
+            log.warn("{} Failed to synchronize clock with controller, assuming offset {} ms", deploymentId, offset, reply.cause());
+            promise.tryComplete();
+            return;
+         }
+         if (addSample(startMillis, rtt, (Long) reply.result().body()) < SAMPLES) {
+            sample();
+         } else {
+            log.info("{} Controller clock offset is {} ms (round-trip {} us)", deploymentId, offset, TimeUnit.NANOSECONDS.toMicros(rttNanos));
+            promise.tryComplete();
+         }
+      });
+   }
+
+   /**
+    * @param startMillis Local wall-clock time when the request was sent.
+    * @param rtt Round-trip time in nanoseconds.
+    * @param controllerMillis Controller's wall-clock time in the reply.
+    * @return Number of samples so far.
+    */
+   int addSample(long startMillis, long rtt, long controllerMillis) {
+      if (rtt < rttNanos) {
+         rttNanos = rtt;
+         offset = controllerMillis - (startMillis + TimeUnit.NANOSECONDS.toMillis(rtt / 2));
+      }
+      return ++samples;
+   }
+
+   Future<Void> future() {
+      return promise.future();
+   }
+
+   /**
+    * @return Milliseconds to add to local wall-clock time to get controller's time.
+    */
+   long offset() {
+      return offset;
+   }
+
+   /**
+    * @return Round-trip time of the best sample, rounded up to milliseconds.
+    */
+   long rttMillis() {
+      return rttNanos == Long.MAX_VALUE ? 0 : TimeUnit.NANOSECONDS.toMillis(rttNanos + 999_999);
+   }
+}
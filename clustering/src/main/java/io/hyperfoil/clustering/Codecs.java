@@ -3,9 +3,12 @@ package io.hyperfoil.clustering;
 import java.util.ArrayList;
 
 import io.hyperfoil.clustering.messages.AgentControlMessage;
+import io.hyperfoil.clustering.messages.AgentHealthMessage;
 import io.hyperfoil.clustering.messages.AgentHello;
 import io.hyperfoil.clustering.messages.AgentReadyMessage;
+import io.hyperfoil.clustering.messages.AgentSummaryMessage;
 import io.hyperfoil.clustering.messages.AuxiliaryHello;
+import io.hyperfoil.clustering.messages.ClockSyncMessage;
 import io.hyperfoil.clustering.messages.ConnectionStatsMessage;
 import io.hyperfoil.clustering.messages.DelayStatsCompletionMessage;
 import io.hyperfoil.clustering.messages.ErrorMessage;
@@ -25,9 +28,12 @@ public final class Codecs {
 
       eb.registerDefaultCodec(AgentHello.class, new AgentHello.Codec());
       eb.registerDefaultCodec(AgentControlMessage.class, new AgentControlMessage.Codec());
+      eb.registerDefaultCodec(AgentHealthMessage.class, new AgentHealthMessage.Codec());
       eb.registerDefaultCodec(AgentReadyMessage.class, new AgentReadyMessage.Codec());
+      eb.registerDefaultCodec(AgentSummaryMessage.class, new AgentSummaryMessage.Codec());
       eb.registerDefaultCodec(ArrayList.class, new ObjectCodec.ArrayList());
       eb.registerDefaultCodec(AuxiliaryHello.class, new AuxiliaryHello.Codec());
+      eb.registerDefaultCodec(ClockSyncMessage.class, new ClockSyncMessage.Codec());
       eb.registerDefaultCodec(ConnectionStatsMessage.class, new ConnectionStatsMessage.Codec());
       eb.registerDefaultCodec(DelayStatsCompletionMessage.class, new DelayStatsCompletionMessage.Codec());
       eb.registerDefaultCodec(ErrorMessage.class, new ErrorMessage.Codec());
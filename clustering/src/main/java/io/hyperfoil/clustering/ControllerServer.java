@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -28,6 +29,7 @@ import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 import io.hyperfoil.api.Version;
@@ -38,12 +40,16 @@ import io.hyperfoil.api.config.BenchmarkDefinitionException;
 import io.hyperfoil.api.config.Model;
 import io.hyperfoil.clustering.util.PersistedBenchmarkData;
 import io.hyperfoil.clustering.webcli.WebCLI;
+import io.hyperfoil.clustering.messages.AgentHealthMessage;
 import io.hyperfoil.controller.ApiService;
+import io.hyperfoil.controller.PrometheusWriter;
 import io.hyperfoil.controller.StatisticsStore;
 import io.hyperfoil.controller.model.Histogram;
+import io.hyperfoil.controller.model.RateChange;
 import io.hyperfoil.controller.model.RequestStats;
 import io.hyperfoil.controller.router.ApiRouter;
 import io.hyperfoil.core.impl.LocalBenchmarkData;
+import io.hyperfoil.core.impl.SimulationRunner;
 import io.hyperfoil.core.parser.BenchmarkParser;
 import io.hyperfoil.core.parser.ParserException;
 import io.hyperfoil.core.print.YamlVisitor;
@@ -100,6 +106,8 @@ class ControllerServer implements ApiService {
          Comparator.<ControllerPhase, Long>comparing(ControllerPhase::absoluteStartTime).thenComparing(p -> p.definition().name);
    private static final BinaryOperator<Run> LAST_RUN_OPERATOR = (r1, r2) -> r1.id.compareTo(r2.id) > 0 ? r1 : r2;
    private static final String DATAKEY = "[/**DATAKEY**/]";
+   private static final String[] JITTER_BUCKET_LABELS = LongStream.of(SimulationRunner.JITTER_BUCKETS)
+         .mapToObj(ms -> String.valueOf(ms / 1000d)).toArray(String[]::new);
 
    static {
       byte[] token = new byte[48];
@@ -110,6 +118,9 @@ class ControllerServer implements ApiService {
    final ControllerVerticle controller;
    HttpServer httpServer;
    String baseURL;
+   // Reused between scrapes
+   private final PrometheusWriter metricsWriter = new PrometheusWriter();
+   private final Map<String, StatisticsStore> activeStores = new LinkedHashMap<>();
 
    ControllerServer(ControllerVerticle controller, CountDown countDown) {
       this.controller = controller;
@@ -797,6 +808,21 @@ class ControllerServer implements ApiService {
       });
    }
 
+   @Override
+   public void getStatsStream(RoutingContext ctx, String runId, String phase, String metric) {
+      withStats(ctx, runId, run -> {
+         if (run.terminateTime.future().isComplete()) {
+            ctx.response().putHeader(HttpHeaders.CONTENT_TYPE, "text/event-stream")
+                  .end("event: terminated\ndata: {}\n\n");
+            return;
+         }
+         if (run.statsStream == null) {
+            run.statsStream = new StatsStream(run);
+         }
+         run.statsStream.subscribe(ctx.response(), phase, metric);
+      });
+   }
+
    @Override
    public void getTotalStats(RoutingContext ctx, String runId) {
       withStats(ctx, runId, run -> {
@@ -813,6 +839,86 @@ class ControllerServer implements ApiService {
       });
    }
 
+   @Override
+   public void setRate(RoutingContext ctx, String runId, String phase, double multiplier, double usersPerSec) {
+      withRun(ctx, runId, run -> {
+         if ((multiplier > 0) == (usersPerSec > 0)) {
+            ctx.response().setStatusCode(HttpResponseStatus.BAD_REQUEST.code())
+                  .end("Set either positive multiplier or usersPerSec.");
+            return;
+         }
+         // Iterations and forks have the phase name as prefix
+         List<ControllerPhase> phases = run.phases.values().stream()
+               .filter(p -> p.definition().name.equals(phase) || p.definition().name.startsWith(phase + "/"))
+               .collect(Collectors.toList());
+         if (phases.isEmpty()) {
+            ctx.response().setStatusCode(HttpResponseStatus.NOT_FOUND.code()).end("No phase " + phase);
+            return;
+         } else if (!phases.stream().allMatch(p -> p.definition().model instanceof Model.OpenModel)) {
+            ctx.response().setStatusCode(HttpResponseStatus.BAD_REQUEST.code())
+                  .end("Rate can be changed only in phases with open model (constantRate, increasingRate or decreasingRate).");
+            return;
+         }
+         phases.removeIf(p -> p.status() != ControllerPhase.Status.RUNNING);
+         if (phases.isEmpty()) {
+            ctx.response().setStatusCode(HttpResponseStatus.CONFLICT.code()).end("Phase " + phase + " is not running.");
+            return;
+         }
+         double rateMultiplier = multiplier;
+         if (usersPerSec > 0) {
+            if (!phases.stream().allMatch(p -> p.definition().model instanceof Model.ConstantRate)) {
+               ctx.response().setStatusCode(HttpResponseStatus.BAD_REQUEST.code())
+                     .end("Setting usersPerSec is supported only in constantRate phases; use multiplier.");
+               return;
+            }
+            // Forks split the rate; the multiplier is the same for all of them
+            double definedRate = phases.stream().mapToDouble(p -> ((Model.ConstantRate) p.definition().model).usersPerSec).sum();
+            if (definedRate <= 0) {
+               ctx.response().setStatusCode(HttpResponseStatus.BAD_REQUEST.code())
+                     .end("Phase " + phase + " has zero rate and cannot be multiplied.");
+               return;
+            }
+            rateMultiplier = usersPerSec / definedRate;
+         }
+         List<RateChange> changes = controller.setRateMultiplier(run, phases, rateMultiplier);
+         ctx.response().putHeader(HttpHeaders.CONTENT_TYPE, "application/json").end(Json.encodePrettily(changes));
+      });
+   }
+
+   @Override
+   public void compareRuns(RoutingContext ctx, String runId, String baseline, int count) {
+      withTerminatedRun(ctx, runId, run -> {
+         List<Run> baselineRuns = new ArrayList<>();
+         if (baseline != null && !baseline.isBlank()) {
+            for (String id : baseline.split(",")) {
+               Run baselineRun = controller.run(id.trim());
+               if (baselineRun == null) {
+                  ctx.response().setStatusCode(HttpResponseStatus.NOT_FOUND.code()).end("Run " + id.trim() + " was not found.");
+                  return;
+               }
+               baselineRuns.add(baselineRun);
+            }
+         } else {
+            // Previous runs of the same benchmark, from the oldest one
+            controller.runs.values().stream()
+                  .filter(r -> r.persisted && !r.cancelled && r.id.compareTo(run.id) < 0)
+                  .filter(r -> r.benchmark.name().equals(run.benchmark.name()))
+                  .sorted(Comparator.comparing((Run r) -> r.id).reversed())
+                  .limit(count)
+                  .sorted(Comparator.comparing(r -> r.id))
+                  .forEach(baselineRuns::add);
+         }
+         controller.compareRuns(run, baselineRuns).onComplete(result -> {
+            if (result.succeeded()) {
+               ctx.response().putHeader(HttpHeaders.CONTENT_TYPE, MIME_TYPE_JSON).end(Json.encodePrettily(result.result()));
+            } else {
+               log.error("Failed to compare run {}", run.id, result.cause());
+               ctx.response().setStatusCode(HttpResponseStatus.INTERNAL_SERVER_ERROR.code()).end(result.cause().getMessage());
+            }
+         });
+      });
+   }
+
    @Override
    public void getRunFile(RoutingContext ctx, String runId, String file) {
       withRun(ctx, runId, run -> {
@@ -999,6 +1105,70 @@ class ControllerServer implements ApiService {
       ctx.response().putHeader(HttpHeaders.CONTENT_TYPE, "text/plain; charset=utf-8").end(BEARER_TOKEN);
    }
 
+   @Override
+   public void getMetrics(RoutingContext ctx) {
+      activeStores.clear();
+      for (Run run : controller.runs.values()) {
+         if (!run.terminateTime.future().isComplete() && run.isLoaded()) {
+            activeStores.put(run.id, run.statisticsStore());
+         }
+      }
+      metricsWriter.reset();
+      metricsWriter.requestStats(activeStores);
+      metricsWriter.sessionPools(activeStores);
+      metricsWriter.connectionPools(activeStores);
+      writeAgentHealth();
+      ctx.response().putHeader(HttpHeaders.CONTENT_TYPE, PrometheusWriter.CONTENT_TYPE)
+            .end(Buffer.buffer(metricsWriter.result().toString()));
+   }
+
+   private void writeAgentHealth() {
+      PrometheusWriter w = metricsWriter;
+      w.family("hyperfoil_agent_jitter_seconds", "histogram", "Delays of the jitter watchdog thread beyond its period.");
+      for (String runId : activeStores.keySet()) {
+         for (var entry : controller.runs.get(runId).agentHealth.entrySet()) {
+            AgentHealthMessage health = entry.getValue();
+            long cumulative = 0;
+            for (int i = 0; i < health.jitterCounts.length; ++i) {
+               cumulative += health.jitterCounts[i];
+               w.sample("hyperfoil_agent_jitter_seconds_bucket").label("run", runId).label("agent", entry.getKey())
+                     .label("le", i < SimulationRunner.JITTER_BUCKETS.length ? JITTER_BUCKET_LABELS[i] : "+Inf").value(cumulative);
+            }
+            w.sample("hyperfoil_agent_jitter_seconds_sum").label("run", runId).label("agent", entry.getKey()).value(health.jitterSum / 1000d);
+            w.sample("hyperfoil_agent_jitter_seconds_count").label("run", runId).label("agent", entry.getKey()).value(cumulative);
+         }
+      }
+      w.family("hyperfoil_agent_jitter_max_seconds", "gauge", "Maximum delay of the jitter watchdog during the last period.");
+      for (String runId : activeStores.keySet()) {
+         for (var entry : controller.runs.get(runId).agentHealth.entrySet()) {
+            w.sample("hyperfoil_agent_jitter_max_seconds").label("run", runId).label("agent", entry.getKey())
+                  .value(entry.getValue().jitterMax / 1000d);
+         }
+      }
+      w.family("hyperfoil_agent_cpu_idle_ratio", "gauge", "Average idle ratio of CPUs on the agent's machine.");
+      for (String runId : activeStores.keySet()) {
+         for (var entry : controller.runs.get(runId).agentHealth.entrySet()) {
+            w.sample("hyperfoil_agent_cpu_idle_ratio").label("run", runId).label("agent", entry.getKey())
+                  .value(entry.getValue().cpuIdleRatio);
+         }
+      }
+      w.family("hyperfoil_agent_stats_backlog", "gauge", "Statistics messages sent by the agent and not acknowledged yet.");
+      for (String runId : activeStores.keySet()) {
+         for (var entry : controller.runs.get(runId).agentHealth.entrySet()) {
+            w.sample("hyperfoil_agent_stats_backlog").label("run", runId).label("agent", entry.getKey())
+                  .value(entry.getValue().statsBacklog);
+         }
+      }
+      w.family("hyperfoil_agent_stats_round_trip_max_seconds", "gauge",
+            "Longest time between sending statistics and acknowledgement during the last period.");
+      for (String runId : activeStores.keySet()) {
+         for (var entry : controller.runs.get(runId).agentHealth.entrySet()) {
+            w.sample("hyperfoil_agent_stats_round_trip_max_seconds").label("run", runId).label("agent", entry.getKey())
+                  .value(entry.getValue().statsRoundTripMax / 1e6);
+         }
+      }
+   }
+
    @Override
    public void getVersion(RoutingContext ctx) {
       ctx.response().end(Json.encodePrettily(new io.hyperfoil.controller.model.Version(Version.VERSION, Version.COMMIT_ID, controller.deploymentID(), new Date())));
@@ -15,11 +15,16 @@ import io.hyperfoil.api.config.SessionLimitPolicy;
 import io.hyperfoil.api.deployment.DeployedAgent;
 import io.hyperfoil.api.deployment.Deployer;
 import io.hyperfoil.api.session.PhaseInstance;
+import io.hyperfoil.api.statistics.StatisticsSnapshot;
 import io.hyperfoil.clustering.messages.AgentControlMessage;
+import io.hyperfoil.clustering.messages.AgentHealthMessage;
 import io.hyperfoil.clustering.messages.AgentHello;
 import io.hyperfoil.clustering.messages.AgentReadyMessage;
 import io.hyperfoil.clustering.messages.AgentStatusMessage;
+import io.hyperfoil.clustering.messages.AgentSummaryMessage;
 import io.hyperfoil.clustering.messages.AuxiliaryHello;
+import io.hyperfoil.clustering.messages.BenchmarkManifest;
+import io.hyperfoil.clustering.messages.ClockSyncMessage;
 import io.hyperfoil.clustering.messages.ConnectionStatsMessage;
 import io.hyperfoil.clustering.messages.DelayStatsCompletionMessage;
 import io.hyperfoil.clustering.messages.ErrorMessage;
@@ -32,14 +37,20 @@ import io.hyperfoil.clustering.util.PersistenceUtil;
 import io.hyperfoil.controller.JsonLoader;
 import io.hyperfoil.core.hooks.ExecRunHook;
 import io.hyperfoil.controller.CsvWriter;
+import io.hyperfoil.controller.HistogramComparison;
 import io.hyperfoil.controller.JsonWriter;
+import io.hyperfoil.controller.SeriesLog;
 import io.hyperfoil.controller.StatisticsStore;
+import io.hyperfoil.controller.model.RateChange;
+import io.hyperfoil.controller.model.RunComparison;
 import io.hyperfoil.core.util.CountDown;
 import io.hyperfoil.core.util.LowHigh;
+import io.hyperfoil.core.util.Util;
 import io.hyperfoil.internal.Controller;
 import io.hyperfoil.internal.Properties;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
@@ -57,6 +68,7 @@ import io.vertx.core.spi.cluster.ClusterManager;
 import io.vertx.core.spi.cluster.NodeListener;
 import io.vertx.ext.cluster.infinispan.InfinispanClusterManager;
 
+import org.HdrHistogram.Histogram;
 import org.infinispan.commons.api.BasicCacheContainer;
 
 import java.io.File;
@@ -65,6 +77,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -82,13 +95,24 @@ import java.util.stream.Collectors;
 public class ControllerVerticle extends AbstractVerticle implements NodeListener {
    private static final Logger log = LogManager.getLogger(ControllerVerticle.class);
    private static final int MAX_IN_MEMORY_RUNS = Properties.getInt(Properties.MAX_IN_MEMORY_RUNS, 20);
+   private static final long MAX_IN_MEMORY_STATS_SIZE = Properties.getLong(Properties.MAX_IN_MEMORY_STATS_SIZE, Runtime.getRuntime().maxMemory() / 4);
+   // Minimum time between publishing the command to start a phase and the actual start on agents
+   private static final long PHASE_START_DELAY = Properties.getLong(Properties.CONTROLLER_PHASE_START_DELAY, 10);
+   private static final String RELAY_PREFIX = "relay-";
+   private static final int STATS_RELAY_GROUP_SIZE = Properties.getInt(Properties.CONTROLLER_STATS_RELAY_GROUP_SIZE, 0);
+   private static final boolean STATS_RELAY_AGENT_SUMMARIES = Properties.getBoolean(Properties.CONTROLLER_STATS_RELAY_AGENT_SUMMARIES);
+   // Number of baseline runs loaded at once when comparing runs
+   private static final int COMPARE_CONCURRENCY = Math.max(1, Properties.getInt(Properties.CONTROLLER_COMPARE_CONCURRENCY, 4));
    static final String DEFAULT_STATS_JSON = "all.json";
+   static final String SERIES_DIR = "series";
 
    private EventBus eb;
    private ControllerServer server;
    private Deployer deployer;
    private final AtomicInteger runIds = new AtomicInteger();
    private final Map<String, Benchmark> benchmarks = new HashMap<>();
+   private final BlobStore blobStore = new BlobStore(Controller.ROOT_DIR.resolve("blobs"));
+   private final RunIndex runIndex = new RunIndex(Controller.RUN_DIR);
    private long timerId = -1;
 
    Map<String, Run> runs = new HashMap<>();
@@ -101,7 +125,8 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
       vertx.exceptionHandler(throwable -> log.error("Uncaught error: ", throwable));
       if (Files.exists(Controller.RUN_DIR)) {
          try {
-            Files.list(Controller.RUN_DIR).forEach(this::updateRuns);
+            Map<String, JsonObject> index = runIndex.read();
+            Files.list(Controller.RUN_DIR).forEach(runDir -> updateRuns(runDir, index));
          } catch (IOException e) {
             log.error("Could not list run dir contents", e);
          } catch (Exception e) {
@@ -112,6 +137,11 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
       Controller.HOOKS_DIR.resolve("pre").toFile().mkdirs();
       //noinspection ResultOfMethodCallIgnored
       Controller.HOOKS_DIR.resolve("post").toFile().mkdirs();
+      try {
+         blobStore.init();
+      } catch (IOException e) {
+         log.error("Cannot clean up benchmark chunks from previous runs", e);
+      }
 
       eb = vertx.eventBus();
 
@@ -123,6 +153,8 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
             log.info("Noticed auxiliary {} (node {}, {})", hello.name(), hello.nodeId(), hello.deploymentId());
             String nodeId = ((VertxInternal) vertx).getClusterManager().getNodeId();
             message.reply(nodeId);
+         } else if (message.body() instanceof ClockSyncMessage) {
+            message.reply(System.currentTimeMillis());
          } else {
             log.error("Unknown message on discovery feed! {}", message.body());
          }
@@ -150,8 +182,14 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
                stopSimulation(run);
             }
          } else if (msg instanceof AgentReadyMessage) {
+            AgentReadyMessage ready = (AgentReadyMessage) msg;
             agent.status = AgentInfo.Status.READY;
+            agent.clockOffset = ready.clockOffset();
+            agent.clockRtt = ready.clockRtt();
+            log.debug("{} Agent {} is ready, clock offset {} ms (round-trip {} ms)", run.id, agent.name, agent.clockOffset, agent.clockRtt);
             if (run.agents.stream().allMatch(a -> a.status == AgentInfo.Status.READY)) {
+               // All agents have loaded the benchmark, the chunks are not needed anymore
+               blobStore.release(run.id);
                startSimulation(run);
             }
          } else {
@@ -159,6 +197,23 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
          }
       });
 
+      // Chunks are read from disk asynchronously; agents fetch them concurrently
+      eb.<String>consumer(Feeds.BLOBS, message -> {
+         Path chunk = blobStore.get(message.body());
+         if (chunk == null) {
+            message.fail(404, "No chunk " + message.body());
+         } else {
+            vertx.fileSystem().readFile(chunk.toString(), result -> {
+               if (result.succeeded()) {
+                  message.reply(result.result());
+               } else {
+                  log.error("Cannot read chunk {}", chunk, result.cause());
+                  message.fail(404, "No chunk " + message.body());
+               }
+            });
+         }
+      });
+
       eb.consumer(Feeds.STATS, message -> {
          if (!(message.body() instanceof StatsMessage)) {
             log.error("Unknown message type: " + message.body());
@@ -169,7 +224,11 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
          if (run != null) {
             String agentName = run.agents.stream()
                   .filter(ai -> ai.deploymentId.equals(statsMessage.address))
-                  .map(ai -> ai.name).findFirst().orElse("<unknown>");
+                  .map(ai -> ai.name).findFirst()
+                  .or(() -> run.agents.stream()
+                        .filter(ai -> ai.statsRelay && statsMessage.address.equals(ai.statsAddress))
+                        .map(ai -> RELAY_PREFIX + ai.name).findFirst())
+                  .orElse("<unknown>");
             if (statsMessage instanceof RequestStatsMessage) {
                RequestStatsMessage requestStatsMessage = (RequestStatsMessage) statsMessage;
                String phase = run.phase(requestStatsMessage.phaseId);
@@ -204,6 +263,13 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
                      }
                   }
                }
+            } else if (statsMessage instanceof AgentSummaryMessage) {
+               AgentSummaryMessage summary = (AgentSummaryMessage) statsMessage;
+               log.trace("Run {}: Received summary of {} from {}: {}/{}/{} ({} requests)", summary.runId, agentName,
+                     summary.address, run.phase(summary.phaseId), summary.stepId, summary.metric, summary.requestCount);
+               StatisticsSnapshot snapshot = new StatisticsSnapshot();
+               summary.addTo(snapshot);
+               run.statisticsStore().recordAgentSummary(agentName, summary.phaseId, summary.stepId, summary.metric, snapshot);
             } else if (statsMessage instanceof SessionStatsMessage) {
                SessionStatsMessage sessionStatsMessage = (SessionStatsMessage) statsMessage;
                log.trace("Run {}: Received session pool stats from {}", sessionStatsMessage.runId, sessionStatsMessage.address);
@@ -211,6 +277,9 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
                   run.statisticsStore().recordSessionStats(agentName, sessionStatsMessage.timestamp,
                         entry.getKey(), entry.getValue().low, entry.getValue().high);
                }
+            } else if (statsMessage instanceof AgentHealthMessage) {
+               log.trace("Run {}: Received health report from {}", statsMessage.runId, statsMessage.address);
+               run.agentHealth.put(agentName, (AgentHealthMessage) statsMessage);
             } else if (statsMessage instanceof ConnectionStatsMessage) {
                ConnectionStatsMessage connectionStatsMessage = (ConnectionStatsMessage) statsMessage;
                log.trace("Run {}: Received connection stats from {}", connectionStatsMessage.runId, connectionStatsMessage.address);
@@ -358,7 +427,7 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
       }
    }
 
-   private void updateRuns(Path runDir) {
+   private void updateRuns(Path runDir, Map<String, JsonObject> index) {
       File file = runDir.toFile();
       if (!file.getName().matches("[0-9A-F][0-9A-F][0-9A-F][0-9A-F]")) {
          return;
@@ -368,20 +437,26 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
       if (id >= runIds.get()) {
          runIds.set(id + 1);
       }
-      Path infoFile = runDir.resolve("info.json");
-      JsonObject info = new JsonObject();
-      if (infoFile.toFile().exists() && infoFile.toFile().isFile()) {
-         try {
-            info = new JsonObject(Files.readString(infoFile));
-         } catch (Exception e) {
-            log.error("Cannot read info for run {}", runId);
-            return;
+      JsonObject info = index.get(runId);
+      if (info == null) {
+         // Runs persisted before the index was introduced
+         info = new JsonObject();
+         Path infoFile = runDir.resolve("info.json");
+         if (infoFile.toFile().exists() && infoFile.toFile().isFile()) {
+            try {
+               info = new JsonObject(Files.readString(infoFile));
+            } catch (Exception e) {
+               log.error("Cannot read info for run {}", runId);
+               return;
+            }
+            runIndex.append(info.put("id", runId));
          }
       }
       Benchmark benchmark = Benchmark.empty(info.getString("benchmark", "<unknown>"));
       Run run = new Run(runId, runDir, benchmark);
-      run.statsSupplier = () -> loadStats(runDir.resolve(DEFAULT_STATS_JSON), benchmark);
+      setLazyStats(run);
       run.completed = true;
+      run.persisted = true;
       run.startTime = info.getLong("startTime", 0L);
       run.terminateTime.complete(info.getLong("terminateTime", 0L));
       run.description = info.getString("description");
@@ -396,6 +471,15 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
       runs.put(runId, run);
    }
 
+   private void setLazyStats(Run run) {
+      run.statsSupplier = () -> {
+         StatisticsStore store = loadStats(run.dir.resolve(DEFAULT_STATS_JSON), run.benchmark);
+         // The loaded run is the most recently used, so this will unload some other
+         context.runOnContext(nil -> ensureMaxInMemoryRuns(0));
+         return store;
+      };
+   }
+
    private StatisticsStore loadStats(Path jsonPath, Benchmark benchmark) {
       File statsJson = jsonPath.toFile();
       if (!statsJson.exists() || !statsJson.isFile() || !statsJson.canRead()) {
@@ -405,7 +489,10 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
       log.info("Loading stats from {}", jsonPath);
       StatisticsStore store = new StatisticsStore(benchmark, f -> { });
       try {
-         JsonLoader.read(Files.readString(jsonPath, StandardCharsets.UTF_8), store);
+         // When the series were persisted in the log we'll read them from there only when needed
+         SeriesLog seriesLog = SeriesLog.open(jsonPath.resolveSibling(SERIES_DIR));
+         store.setSeriesLog(seriesLog);
+         JsonLoader.read(jsonPath, store, seriesLog != null);
       } catch (Exception e) {
          log.error("Cannot load stats from " + jsonPath, e);
          return null;
@@ -413,6 +500,68 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
       return store;
    }
 
+   /**
+    * Loads histograms of all runs, up to {@link #COMPARE_CONCURRENCY} runs in parallel, and compares the run
+    * against the baseline.
+    */
+   Future<RunComparison> compareRuns(Run run, List<Run> baseline) {
+      Future<Map<String, Map<String, Histogram>>> target = totalHistograms(run);
+      List<Map<String, Map<String, Histogram>>> baselines = new ArrayList<>(Collections.nCopies(baseline.size(), null));
+      int[] next = { 0 };
+      @SuppressWarnings("rawtypes")
+      List<Future> workers = new ArrayList<>();
+      workers.add(target);
+      for (int i = 0; i < Math.min(COMPARE_CONCURRENCY, baseline.size()); ++i) {
+         workers.add(totalHistograms(baseline, baselines, next));
+      }
+      List<String> baselineIds = baseline.stream().map(r -> r.id).collect(Collectors.toList());
+      return CompositeFuture.all(workers).compose(nil -> vertx.executeBlocking(
+            promise -> promise.complete(HistogramComparison.compare(run.id, target.result(), baselineIds, baselines)), false));
+   }
+
+   /**
+    * Computes histograms of the runs one by one, starting with <code>runs[next]</code>. All workers run on the event loop
+    * so these can share the index.
+    */
+   private Future<Void> totalHistograms(List<Run> runs, List<Map<String, Map<String, Histogram>>> results, int[] next) {
+      if (next[0] >= runs.size()) {
+         return Future.succeededFuture();
+      }
+      int index = next[0]++;
+      return totalHistograms(runs.get(index)).compose(histograms -> {
+         results.set(index, histograms);
+         return totalHistograms(runs, results, next);
+      });
+   }
+
+   /**
+    * Statistics of runs that are not loaded yet are reduced to the histograms and dropped right away; these are not
+    * kept in the run, so comparing against many runs does not unload the recently used ones.
+    */
+   private Future<Map<String, Map<String, Histogram>>> totalHistograms(Run run) {
+      if (run.isLoaded()) {
+         StatisticsStore loaded = run.statisticsStore();
+         return vertx.executeBlocking(promise -> totalHistograms(loaded, promise), false);
+      }
+      Path statsJson = run.dir.resolve(DEFAULT_STATS_JSON);
+      return vertx.executeBlocking(promise -> {
+         StatisticsStore store = loadStats(statsJson, run.benchmark);
+         if (store == null) {
+            promise.fail("Cannot load statistics for run " + run.id);
+         } else {
+            totalHistograms(store, promise);
+         }
+      }, false);
+   }
+
+   private static void totalHistograms(StatisticsStore store, Promise<Map<String, Map<String, Histogram>>> promise) {
+      try {
+         promise.complete(HistogramComparison.totalHistograms(store));
+      } catch (IOException e) {
+         promise.fail(e);
+      }
+   }
+
    @Override
    public void stop(Promise<Void> stopFuture) throws Exception {
       if (deployer != null) {
@@ -464,35 +613,63 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
    }
 
    Run createRun(Benchmark benchmark, String description) {
-      ensureMaxInMemoryRuns();
+      ensureMaxInMemoryRuns(1);
       String runId = String.format("%04X", runIds.getAndIncrement());
       Path runDir = Controller.RUN_DIR.resolve(runId);
       //noinspection ResultOfMethodCallIgnored
       runDir.toFile().mkdirs();
       Run run = new Run(runId, runDir, benchmark);
-      run.initStore(new StatisticsStore(benchmark, failure -> log.warn("Failed verify SLA(s) for {}/{}: {}",
-            failure.phase(), failure.metric(), failure.message())));
+      StatisticsStore store = new StatisticsStore(benchmark, failure -> log.warn("Failed verify SLA(s) for {}/{}: {}",
+            failure.phase(), failure.metric(), failure.message()));
+      store.setSeriesLog(SeriesLog.create(runDir.resolve(SERIES_DIR)));
+      run.initStore(store);
       run.description = description;
       runs.put(run.id, run);
       PersistenceUtil.store(run.benchmark, run.dir);
       return run;
    }
 
-   private void ensureMaxInMemoryRuns() {
-      List<Run> loadedRuns = runs.values().stream().filter(Run::isLoaded)
-            .sorted(Comparator.comparing(r -> r.id)).collect(Collectors.toList());
-      if (loadedRuns.size() + 1 > MAX_IN_MEMORY_RUNS) {
-         loadedRuns.stream().limit(loadedRuns.size() + 1 - MAX_IN_MEMORY_RUNS).forEach(r -> {
-            log.info("Unloading run {}", r.id);
-            r.unload();
-            r.statsSupplier = () -> {
-               Path statsPath = Controller.RUN_DIR.resolve(r.id).resolve(DEFAULT_STATS_JSON);
-               return loadStats(statsPath, r.benchmark);
-            };
-         });
+   /**
+    * Unloads statistics of the least recently used runs to keep both the number of loaded runs
+    * and their estimated size within limits. Only runs that have been persisted can be unloaded.
+    *
+    * @param reserve Number of runs that are about to be loaded.
+    */
+   private void ensureMaxInMemoryRuns(int reserve) {
+      for (Run run : runsToUnload(runs.values(), reserve, MAX_IN_MEMORY_RUNS, MAX_IN_MEMORY_STATS_SIZE)) {
+         log.info("Unloading run {} (estimated size {} kB)", run.id, run.estimatedSize() / 1024);
+         run.unload();
+         setLazyStats(run);
       }
    }
 
+   /**
+    * @return Persisted runs that should be unloaded, least recently used first.
+    */
+   static List<Run> runsToUnload(Collection<Run> runs, int reserve, int maxRuns, long maxSize) {
+      List<Run> loadedRuns = runs.stream().filter(Run::isLoaded).collect(Collectors.toList());
+      int count = loadedRuns.size();
+      long size = 0;
+      for (Run run : loadedRuns) {
+         size += run.estimatedSize();
+      }
+      List<Run> unload = new ArrayList<>();
+      if (count + reserve <= maxRuns && size <= maxSize) {
+         return unload;
+      }
+      List<Run> candidates = loadedRuns.stream().filter(r -> r.persisted)
+            .sorted(Comparator.comparingLong(Run::lastAccess)).collect(Collectors.toList());
+      for (Run run : candidates) {
+         if (count + reserve <= maxRuns && size <= maxSize) {
+            break;
+         }
+         unload.add(run);
+         --count;
+         size -= run.estimatedSize();
+      }
+      return unload;
+   }
+
    String startBenchmark(Run run) {
       Set<String> activeAgents = new HashSet<>();
       for (Run r : runs.values()) {
@@ -563,33 +740,83 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
       vertx.cancelTimer(run.deployTimerId);
 
       log.info("Starting benchmark {} - run {}", run.benchmark.name(), run.id);
+      assignStatsRelays(run);
 
       for (AgentInfo agent : run.agents) {
          if (agent.status != AgentInfo.Status.REGISTERED) {
             log.error("{} Agent {}({}) already initializing, status is {}!", run.id, agent.name, agent.deploymentId, agent.status);
          } else {
-            eb.request(agent.deploymentId, new AgentControlMessage(AgentControlMessage.Command.INITIALIZE, agent.id, run.benchmark), reply -> {
-               Throwable cause;
-               if (reply.failed()) {
-                  cause = reply.cause();
-                  log.error("{} Agent {}({}) failed to initialize", run.id, agent.name, agent.deploymentId);
-                  log.error("Failure thrown on the controller (this node): ", cause);
-               } else if (reply.result() instanceof Throwable) {
-                  cause = (Throwable) reply.result();
-                  log.error("{} Agent {}({}) failed to initialize", run.id, agent.name, agent.deploymentId);
-                  log.error("Failure thrown on the agent node (see agent log for details): ", cause);
-               } else {
-                  log.debug("{} Agent {}({}) was initialized.", run.id, agent.name, agent.deploymentId);
-                  return;
-               }
-               agent.status = AgentInfo.Status.FAILED;
-               run.errors.add(new Run.Error(agent, cause));
-               stopSimulation(run);
-            });
+            if (vertx.isClustered()) {
+               // Agents fetch the benchmark in chunks, skipping those they have cached from previous runs
+               vertx.<BenchmarkManifest>executeBlocking(future -> {
+                  try {
+                     future.complete(blobStore.publish(run.id, run.benchmark.name(),
+                           output -> Util.serializeForAgent(run.benchmark, agent.id, output)));
+                  } catch (IOException e) {
+                     future.fail(e);
+                  }
+               }, false, result -> {
+                  if (run.completed) {
+                     blobStore.release(run.id);
+                  } else if (result.succeeded()) {
+                     initializeAgent(run, agent, result.result());
+                  } else {
+                     log.error("{} Failed to serialize benchmark for agent {}", run.id, agent.name, result.cause());
+                     agent.status = AgentInfo.Status.FAILED;
+                     run.errors.add(new Run.Error(agent, result.cause()));
+                     stopSimulation(run);
+                  }
+               });
+            } else {
+               initializeAgent(run, agent, run.benchmark);
+            }
          }
       }
    }
 
+   /**
+    * With many agents the controller could not keep up with request statistics from each of them. Agents are
+    * split into groups and the first agent in each group merges statistics from the others before sending
+    * them to the controller; these are then recorded with the relay name instead of individual agents.
+    * With {@link Properties#CONTROLLER_STATS_RELAY_AGENT_SUMMARIES} the relays forward also counters
+    * of the individual agents (without histograms).
+    */
+   private void assignStatsRelays(Run run) {
+      if (STATS_RELAY_GROUP_SIZE <= 1 || run.agents.size() <= STATS_RELAY_GROUP_SIZE) {
+         return;
+      }
+      for (int i = 0; i < run.agents.size(); ++i) {
+         AgentInfo agent = run.agents.get(i);
+         agent.statsAddress = Feeds.STATS + "/" + run.id + "/" + (i / STATS_RELAY_GROUP_SIZE);
+         agent.statsRelay = i % STATS_RELAY_GROUP_SIZE == 0;
+      }
+      log.info("{} Request statistics from {} agents are aggregated by {} relays", run.id, run.agents.size(),
+            run.agents.stream().filter(a -> a.statsRelay).count());
+   }
+
+   private void initializeAgent(Run run, AgentInfo agent, Object benchmarkOrManifest) {
+      AgentControlMessage message = new AgentControlMessage(AgentControlMessage.Command.INITIALIZE, agent.id,
+            benchmarkOrManifest, agent.statsAddress, agent.statsRelay, agent.statsRelay && STATS_RELAY_AGENT_SUMMARIES);
+      eb.request(agent.deploymentId, message, reply -> {
+         Throwable cause;
+         if (reply.failed()) {
+            cause = reply.cause();
+            log.error("{} Agent {}({}) failed to initialize", run.id, agent.name, agent.deploymentId);
+            log.error("Failure thrown on the controller (this node): ", cause);
+         } else if (reply.result() instanceof Throwable) {
+            cause = (Throwable) reply.result();
+            log.error("{} Agent {}({}) failed to initialize", run.id, agent.name, agent.deploymentId);
+            log.error("Failure thrown on the agent node (see agent log for details): ", cause);
+         } else {
+            log.debug("{} Agent {}({}) was initialized.", run.id, agent.name, agent.deploymentId);
+            return;
+         }
+         agent.status = AgentInfo.Status.FAILED;
+         run.errors.add(new Run.Error(agent, cause));
+         stopSimulation(run);
+      });
+   }
+
    private void startSimulation(Run run) {
       vertx.executeBlocking(future -> {
          // combine shared and benchmark-private hooks
@@ -646,10 +873,15 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
          }
       }
       ControllerPhase[] availablePhases = run.getAvailablePhases();
-      for (ControllerPhase phase : availablePhases) {
-         eb.publish(Feeds.CONTROL, new PhaseControlMessage(PhaseControlMessage.Command.RUN, phase.definition().name));
-         phase.absoluteStartTime(now);
-         phase.status(run.id, ControllerPhase.Status.STARTING);
+      if (availablePhases.length > 0) {
+         // All agents start the phase at the same instant, translated to their clock; the delay should cover
+         // the time the message needs to reach the agents.
+         long startTime = now + Math.max(PHASE_START_DELAY, 2 * run.agents.stream().mapToLong(a -> a.clockRtt).max().orElse(0));
+         for (ControllerPhase phase : availablePhases) {
+            eb.publish(Feeds.CONTROL, new PhaseControlMessage(PhaseControlMessage.Command.RUN, phase.definition().name, startTime));
+            phase.absoluteStartTime(startTime);
+            phase.status(run.id, ControllerPhase.Status.STARTING);
+         }
       }
 
       if (run.phases.values().stream().allMatch(phase -> phase.status().isTerminated())) {
@@ -680,6 +912,7 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
       }
       run.terminateTime.complete(System.currentTimeMillis());
       run.completed = true;
+      blobStore.release(run.id);
       for (AgentInfo agent : run.agents) {
          if (agent.deploymentId == null) {
             assert agent.status == AgentInfo.Status.STARTING;
@@ -717,6 +950,10 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
          for (var phase : run.phases.values()) {
             run.statisticsStore().adjustPhaseTimestamps(phase.definition().name(), phase.absoluteStartTime(), phase.absoluteCompletionTime());
          }
+         if (run.statsStream != null) {
+            run.statsStream.complete();
+            run.statsStream = null;
+         }
          persistRun(run);
          log.info("Run {} completed", run.id);
       }
@@ -724,6 +961,8 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
 
    private void persistRun(Run run) {
       vertx.executeBlocking(future -> {
+         // Wait until all series are written so that these can be read back
+         run.statisticsStore().seriesLog().close();
          try {
             CsvWriter.writeCsv(run.dir.resolve("stats"), run.statisticsStore());
          } catch (IOException e) {
@@ -750,6 +989,7 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
 
          try {
             Files.write(run.dir.resolve("info.json"), info.encodePrettily().getBytes(StandardCharsets.UTF_8));
+            runIndex.append(info);
          } catch (IOException e) {
             log.error("Cannot write info file", e);
             future.fail(e);
@@ -798,7 +1038,9 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
          if (result.failed()) {
             log.error("Failed to persist run " + run.id, result.cause());
          } else {
+            run.persisted = true;
             log.info("Successfully persisted run {}", run.id);
+            ensureMaxInMemoryRuns(0);
          }
       });
    }
@@ -826,6 +1068,27 @@ public class ControllerVerticle extends AbstractVerticle implements NodeListener
       return runs.values();
    }
 
+   /**
+    * Changes the rate of running open-model phases. As with starting phases, agents apply the change
+    * at the same moment, translated to their clock.
+    *
+    * @param multiplier Multiplier of the rate from phase definition.
+    * @return Changes as recorded in statistics.
+    */
+   List<RateChange> setRateMultiplier(Run run, List<ControllerPhase> phases, double multiplier) {
+      long timestamp = System.currentTimeMillis() + Math.max(PHASE_START_DELAY, 2 * run.agents.stream().mapToLong(a -> a.clockRtt).max().orElse(0));
+      List<RateChange> changes = new ArrayList<>();
+      for (ControllerPhase phase : phases) {
+         String name = phase.definition().name;
+         log.info("{} Changing rate multiplier of phase {} to {}", run.id, name, multiplier);
+         eb.publish(Feeds.CONTROL, new PhaseControlMessage(PhaseControlMessage.Command.SET_RATE, name, timestamp, multiplier));
+         RateChange change = new RateChange(name, timestamp, multiplier);
+         run.statisticsStore().recordRateChange(change);
+         changes.add(change);
+      }
+      return changes;
+   }
+
    public void kill(Run run, Handler<AsyncResult<Void>> handler) {
       log.info("{} Killing run", run.id);
       try {
@@ -7,6 +7,8 @@ import io.hyperfoil.core.util.CountDown;
 import io.hyperfoil.core.impl.statistics.StatisticsCollector;
 import io.hyperfoil.clustering.messages.RequestStatsMessage;
 import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
@@ -17,13 +19,27 @@ public class RequestStatsSender extends StatisticsCollector {
    private final String address;
    private final String runId;
    private final EventBus eb;
+   // Either the controller's stats feed or a relay aggregating statistics from several agents
+   private String target;
    private final StatisticsConsumer sendStats = this::sendStats;
+   // Messages that were not acknowledged by the controller yet
+   private int pending;
+   private long maxRoundTrip;
 
-   public RequestStatsSender(Benchmark benchmark, EventBus eb, String address, String runId) {
+   public RequestStatsSender(Benchmark benchmark, EventBus eb, String address, String runId, String target) {
       super(benchmark);
       this.eb = eb;
       this.address = address;
       this.runId = runId;
+      this.target = target;
+   }
+
+   /**
+    * Sends all further statistics directly to the controller, e.g. the final ones when the relay might be
+    * stopped already.
+    */
+   public void bypassRelay() {
+      target = Feeds.STATS;
    }
 
    public void send(CountDown completion) {
@@ -38,8 +54,13 @@ public class RequestStatsSender extends StatisticsCollector {
          // (on a local eventbus we'd have to do a copy in transform() anyway)
          StatisticsSnapshot copy = statistics.clone();
          countDown.increment();
-         eb.request(Feeds.STATS, new RequestStatsMessage(address, runId, phase.id(), false, stepId, metric, copy),
-               reply -> countDown.countDown());
+         ++pending;
+         long sent = System.nanoTime();
+         request(new RequestStatsMessage(address, runId, phase.id(), false, stepId, metric, copy), () -> {
+            --pending;
+            maxRoundTrip = Math.max(maxRoundTrip, System.nanoTime() - sent);
+            countDown.countDown();
+         });
       }
    }
 
@@ -50,8 +71,42 @@ public class RequestStatsSender extends StatisticsCollector {
          }
 
          countDown.increment();
-         eb.request(Feeds.STATS, new RequestStatsMessage(address, runId, phaseAndStepId >> 16, true, -1, null, null),
-               reply -> countDown.countDown());
+         ++pending;
+         request(new RequestStatsMessage(address, runId, phaseAndStepId >> 16, true, -1, null, null), () -> {
+            --pending;
+            countDown.countDown();
+         });
       }
    }
+
+   private void request(RequestStatsMessage message, Runnable onReply) {
+      String target = this.target;
+      eb.request(target, message, reply -> {
+         if (reply.failed() && !Feeds.STATS.equals(target) && reply.cause() instanceof ReplyException
+               && ((ReplyException) reply.cause()).failureType() == ReplyFailure.NO_HANDLERS) {
+            // The relay is gone, so it has not merged these statistics. On a timeout the relay might have
+            // received these and we cannot tell, so we don't retry those to avoid counting the requests twice.
+            if (this.target.equals(target)) {
+               log.warn("{} Statistics relay {} is not available, sending statistics directly", address, target);
+               this.target = Feeds.STATS;
+            }
+            eb.request(Feeds.STATS, message, direct -> onReply.run());
+         } else {
+            onReply.run();
+         }
+      });
+   }
+
+   public int pending() {
+      return pending;
+   }
+
+   /**
+    * @return Longest time between sending statistics and the acknowledgement, since previous invocation.
+    */
+   public long resetMaxRoundTrip() {
+      long value = maxRoundTrip;
+      maxRoundTrip = 0;
+      return value;
+   }
 }
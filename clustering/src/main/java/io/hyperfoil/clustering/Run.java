@@ -5,15 +5,20 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
 import io.hyperfoil.api.config.Benchmark;
 import io.hyperfoil.api.config.Phase;
+import io.hyperfoil.clustering.messages.AgentHealthMessage;
 import io.hyperfoil.controller.StatisticsStore;
 import io.hyperfoil.core.util.Util;
 import io.vertx.core.Promise;
 
 class Run {
+   // Logical clock ordering accesses to statistics; unlike wall-clock time it never has ties
+   private static final AtomicLong ACCESS_ORDER = new AtomicLong();
+
    final String id;
    final Path dir;
    Benchmark benchmark;
@@ -29,8 +34,14 @@ class Run {
    Promise<Long> terminateTime = Promise.promise();
    boolean cancelled;
    boolean completed;
+   // Statistics are available on disk and can be unloaded
+   boolean persisted;
    Supplier<StatisticsStore> statsSupplier;
    private StatisticsStore statisticsStore;
+   private long lastAccess;
+   StatsStream statsStream;
+   // Latest report from each agent, by agent name
+   final Map<String, AgentHealthMessage> agentHealth = new HashMap<>();
 
    Run(String id, Path dir, Benchmark benchmark) {
       this.id = id;
@@ -41,6 +52,7 @@ class Run {
 
    void initStore(StatisticsStore store) {
       this.statisticsStore = store;
+      this.lastAccess = ACCESS_ORDER.incrementAndGet();
    }
 
    long nextTimestamp() {
@@ -74,14 +86,28 @@ class Run {
 
    public StatisticsStore statisticsStore() {
       if (statisticsStore != null) {
+         lastAccess = ACCESS_ORDER.incrementAndGet();
          return statisticsStore;
       } else if (statsSupplier != null) {
+         lastAccess = ACCESS_ORDER.incrementAndGet();
          return statisticsStore = statsSupplier.get();
       } else {
          return null;
       }
    }
 
+   long lastAccess() {
+      return lastAccess;
+   }
+
+   /**
+    * @return Estimated size of loaded statistics; this does not count as an access.
+    */
+   long estimatedSize() {
+      StatisticsStore store = statisticsStore;
+      return store == null ? 0 : store.estimatedSize();
+   }
+
    public boolean isLoaded() {
       return statisticsStore != null;
    }
@@ -0,0 +1,73 @@
+package io.hyperfoil.clustering;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Index of persisted runs: a file with the info of one run per line, appended whenever a run is persisted.
+ * Reading this single file on start-up is much faster than parsing <code>info.json</code> in each run directory.
+ * When a run is persisted more than once the last line wins.
+ */
+class RunIndex {
+   private static final Logger log = LogManager.getLogger(RunIndex.class);
+   static final String FILE = "index.jsonl";
+
+   private final Path path;
+
+   RunIndex(Path runDir) {
+      this.path = runDir.resolve(FILE);
+   }
+
+   /**
+    * @return Run info by run ID.
+    */
+   Map<String, JsonObject> read() {
+      Map<String, JsonObject> runs = new HashMap<>();
+      if (!Files.exists(path)) {
+         return runs;
+      }
+      try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+         String line;
+         while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+               continue;
+            }
+            try {
+               JsonObject info = new JsonObject(line);
+               String id = info.getString("id");
+               if (id != null) {
+                  runs.put(id, info);
+               }
+            } catch (DecodeException e) {
+               // Probably a partially written line; the run will be read from its directory
+               log.warn("Ignoring invalid line in {}: {}", path, line);
+            }
+         }
+      } catch (IOException e) {
+         log.error("Cannot read run index {}", path, e);
+      }
+      return runs;
+   }
+
+   synchronized void append(JsonObject info) {
+      try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+         writer.write(info.encode());
+         writer.write('\n');
+      } catch (IOException e) {
+         log.error("Cannot update run index {}", path, e);
+      }
+   }
+}
@@ -0,0 +1,195 @@
+package io.hyperfoil.clustering;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import io.hyperfoil.api.statistics.StatisticsSnapshot;
+import io.hyperfoil.clustering.messages.AgentSummaryMessage;
+import io.hyperfoil.clustering.messages.RequestStatsMessage;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Aggregates request statistics from a group of agents (including the one it runs on) before these are sent
+ * to the controller. Snapshots with the same phase, step, metric and sequence ID are merged and forwarded
+ * once per statistics period, so the controller receives one message per group rather than one per agent.
+ * <p>
+ * The merged statistics are recorded on the controller under the relay address; if a bucket is split between
+ * two flushes the controller merges the parts as it does with late statistics. Phase completion is forwarded
+ * with the address of the original agent after flushing the buckets of that phase.
+ * <p>
+ * Optionally the relay forwards also summaries of the individual agents: counters accumulated since the last
+ * flush, without the histograms.
+ */
+class StatsRelay {
+   private static final Logger log = LogManager.getLogger(StatsRelay.class);
+
+   private final Vertx vertx;
+   private final EventBus eb;
+   private final String address;
+   private final String runId;
+   private final Map<Bucket, StatisticsSnapshot> buckets = new HashMap<>();
+   // Null when agent summaries are not forwarded
+   private final Map<AgentBucket, AgentSummaryMessage> agentSummaries;
+   private final MessageConsumer<Object> consumer;
+   private final long timerId;
+
+   StatsRelay(Vertx vertx, String address, String runId, long period, boolean forwardAgentSummaries) {
+      this.vertx = vertx;
+      this.eb = vertx.eventBus();
+      this.address = address;
+      this.runId = runId;
+      this.agentSummaries = forwardAgentSummaries ? new HashMap<>() : null;
+      this.consumer = eb.consumer(address, this::handleMessage);
+      this.timerId = vertx.setPeriodic(period, id -> flush(-1));
+   }
+
+   private void handleMessage(Message<Object> message) {
+      if (!(message.body() instanceof RequestStatsMessage)) {
+         log.error("Unexpected message for relay {}: {}", address, message.body());
+         return;
+      }
+      RequestStatsMessage stats = (RequestStatsMessage) message.body();
+      if (stats.statistics != null) {
+         if (agentSummaries != null) {
+            agentSummaries.computeIfAbsent(new AgentBucket(stats.address, stats.phaseId, stats.stepId, stats.metric),
+                  b -> new AgentSummaryMessage(b.agent, runId, b.phaseId, b.stepId, b.metric)).add(stats.statistics);
+         }
+         // The sender does not touch the snapshot after sending it so we can merge into it
+         StatisticsSnapshot snapshot = buckets.putIfAbsent(
+               new Bucket(stats.phaseId, stats.stepId, stats.metric, stats.statistics.sequenceId), stats.statistics);
+         if (snapshot != null) {
+            snapshot.add(stats.statistics);
+         }
+      }
+      if (stats.isPhaseComplete) {
+         flush(stats.phaseId);
+         eb.request(Feeds.STATS, new RequestStatsMessage(stats.address, runId, stats.phaseId, true, -1, null, null),
+               reply -> message.reply("OK"));
+      } else {
+         // Acknowledge right away, sender uses the round-trip to detect a congested bus
+         message.reply("OK");
+      }
+   }
+
+   /**
+    * @param phaseId Flush only buckets of given phase, or all buckets if negative.
+    * @return Acknowledgements of the forwarded statistics.
+    */
+   private List<Future> flush(int phaseId) {
+      List<Future> forwarded = new ArrayList<>();
+      for (Iterator<Map.Entry<Bucket, StatisticsSnapshot>> it = buckets.entrySet().iterator(); it.hasNext(); ) {
+         Map.Entry<Bucket, StatisticsSnapshot> entry = it.next();
+         Bucket bucket = entry.getKey();
+         if (phaseId >= 0 && bucket.phaseId != phaseId) {
+            continue;
+         }
+         it.remove();
+         StatisticsSnapshot snapshot = entry.getValue();
+         log.trace("Relay {} forwarding {}/{}/{}:{} ({} requests)", address, bucket.phaseId, bucket.stepId, bucket.metric,
+               bucket.sequenceId, snapshot.requestCount);
+         forwarded.add(eb.request(Feeds.STATS, new RequestStatsMessage(address, runId, bucket.phaseId, false, bucket.stepId, bucket.metric, snapshot))
+               .onFailure(cause -> log.warn("Relay {} failed to forward statistics for {}/{}", address, bucket.phaseId, bucket.metric, cause)));
+      }
+      if (!forwarded.isEmpty()) {
+         log.debug("Relay {} forwarded {} snapshots", address, forwarded.size());
+      }
+      if (agentSummaries != null) {
+         for (Iterator<AgentSummaryMessage> it = agentSummaries.values().iterator(); it.hasNext(); ) {
+            AgentSummaryMessage summary = it.next();
+            if (phaseId >= 0 && summary.phaseId != phaseId) {
+               continue;
+            }
+            it.remove();
+            forwarded.add(eb.request(Feeds.STATS, summary)
+                  .onFailure(cause -> log.warn("Relay {} failed to forward summary of {} for {}/{}", address, summary.address, summary.phaseId, summary.metric, cause)));
+         }
+      }
+      return forwarded;
+   }
+
+   /**
+    * Stops accepting statistics and forwards the remaining ones. Agents that send statistics afterwards
+    * get a failure and send these directly to the controller.
+    *
+    * @return Future completed when the controller has received all the forwarded statistics.
+    */
+   Future<Void> stop() {
+      vertx.cancelTimer(timerId);
+      consumer.unregister();
+      return CompositeFuture.join(flush(-1)).<Void>mapEmpty().otherwiseEmpty();
+   }
+
+   private static final class AgentBucket {
+      final String agent;
+      final int phaseId;
+      final int stepId;
+      final String metric;
+
+      AgentBucket(String agent, int phaseId, int stepId, String metric) {
+         this.agent = agent;
+         this.phaseId = phaseId;
+         this.stepId = stepId;
+         this.metric = metric;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (this == o) {
+            return true;
+         } else if (!(o instanceof AgentBucket)) {
+            return false;
+         }
+         AgentBucket bucket = (AgentBucket) o;
+         return phaseId == bucket.phaseId && stepId == bucket.stepId && agent.equals(bucket.agent)
+               && metric.equals(bucket.metric);
+      }
+
+      @Override
+      public int hashCode() {
+         return Objects.hash(agent, phaseId, stepId, metric);
+      }
+   }
+
+   private static final class Bucket {
+      final int phaseId;
+      final int stepId;
+      final String metric;
+      final int sequenceId;
+
+      Bucket(int phaseId, int stepId, String metric, int sequenceId) {
+         this.phaseId = phaseId;
+         this.stepId = stepId;
+         this.metric = metric;
+         this.sequenceId = sequenceId;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (this == o) {
+            return true;
+         } else if (!(o instanceof Bucket)) {
+            return false;
+         }
+         Bucket bucket = (Bucket) o;
+         return phaseId == bucket.phaseId && stepId == bucket.stepId && sequenceId == bucket.sequenceId
+               && metric.equals(bucket.metric);
+      }
+
+      @Override
+      public int hashCode() {
+         return Objects.hash(phaseId, stepId, metric, sequenceId);
+      }
+   }
+}
@@ -0,0 +1,97 @@
+package io.hyperfoil.clustering;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.hyperfoil.controller.StatisticsStore;
+import io.hyperfoil.controller.model.RequestStats;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.Json;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Pushes statistics to subscribers as Server-Sent Events. Each period's summary is computed and encoded once
+ * when the period is closed in {@link StatisticsStore}, and then written to all subscribers that are interested
+ * in given phase and metric.
+ */
+class StatsStream {
+   private static final Logger log = LogManager.getLogger(StatsStream.class);
+
+   private final Run run;
+   private final List<Subscriber> subscribers = new ArrayList<>();
+
+   StatsStream(Run run) {
+      this.run = run;
+   }
+
+   void subscribe(HttpServerResponse response, String phase, String metric) {
+      response.setChunked(true)
+            .putHeader("Content-Type", "text/event-stream")
+            .putHeader("Cache-Control", "no-cache");
+      // Send the headers right away
+      response.write(": " + run.id + "\n\n");
+      Subscriber subscriber = new Subscriber(response, phase, metric);
+      subscribers.add(subscriber);
+      response.closeHandler(nil -> unsubscribe(subscriber));
+      if (subscribers.size() == 1) {
+         run.statisticsStore().setRecentStatsListener(this::publish);
+      }
+   }
+
+   private void unsubscribe(Subscriber subscriber) {
+      if (subscribers.remove(subscriber) && subscribers.isEmpty()) {
+         StatisticsStore store = run.statisticsStore();
+         if (store != null) {
+            store.setRecentStatsListener(null);
+         }
+      }
+   }
+
+   private void publish(RequestStats stats) {
+      Buffer event = null;
+      for (Subscriber subscriber : subscribers) {
+         if (!subscriber.accepts(stats)) {
+            continue;
+         } else if (subscriber.response.writeQueueFull()) {
+            // Rather than buffering the events for a slow client we'll skip this one; next period will follow
+            log.debug("Dropping statistics for {}/{} as the subscriber is too slow", stats.phase, stats.metric);
+            continue;
+         }
+         if (event == null) {
+            event = Buffer.buffer("event: stats\ndata: ").appendString(Json.encode(stats)).appendString("\n\n");
+         }
+         subscriber.response.write(event);
+      }
+   }
+
+   void complete() {
+      List<Subscriber> subscribers = new ArrayList<>(this.subscribers);
+      this.subscribers.clear();
+      StatisticsStore store = run.statisticsStore();
+      if (store != null) {
+         store.setRecentStatsListener(null);
+      }
+      for (Subscriber subscriber : subscribers) {
+         subscriber.response.end("event: terminated\ndata: {}\n\n");
+      }
+   }
+
+   private static class Subscriber {
+      final HttpServerResponse response;
+      final String phase;
+      final String metric;
+
+      Subscriber(HttpServerResponse response, String phase, String metric) {
+         this.response = response;
+         this.phase = phase;
+         this.metric = metric;
+      }
+
+      boolean accepts(RequestStats stats) {
+         return (phase == null || phase.equals(stats.phase)) && (metric == null || metric.equals(stats.metric));
+      }
+   }
+}
@@ -8,6 +8,9 @@ public class AgentControlMessage implements Serializable {
    private Command command;
    private int agentId;
    private Object param;
+   private String statsAddress;
+   private boolean statsRelay;
+   private boolean relayAgentSummaries;
 
    public AgentControlMessage(Command command, int agentId, Object param) {
       this.command = command;
@@ -15,12 +18,31 @@ public class AgentControlMessage implements Serializable {
       this.param = param;
    }
 
+   /**
+    * @param statsAddress Address where the agent should send request statistics.
+    * @param statsRelay True if the agent should aggregate statistics sent to <code>statsAddress</code> by other agents.
+    * @param relayAgentSummaries True if the relay should forward also summaries of the individual agents.
+    */
+   public AgentControlMessage(Command command, int agentId, Object param, String statsAddress, boolean statsRelay, boolean relayAgentSummaries) {
+      this(command, agentId, param);
+      this.statsAddress = statsAddress;
+      this.statsRelay = statsRelay;
+      this.relayAgentSummaries = relayAgentSummaries;
+   }
+
    public Command command() {
       return command;
    }
 
    public Benchmark benchmark() {
-      return (Benchmark) param;
+      return param instanceof Benchmark ? (Benchmark) param : null;
+   }
+
+   /**
+    * @return Manifest of the serialized benchmark when it should be fetched in chunks rather than sent inline.
+    */
+   public BenchmarkManifest manifest() {
+      return param instanceof BenchmarkManifest ? (BenchmarkManifest) param : null;
    }
 
    public boolean includeInactive() {
@@ -31,6 +53,21 @@ public class AgentControlMessage implements Serializable {
       return agentId;
    }
 
+   /**
+    * @return Address for request statistics or <code>null</code> if these should be sent directly to the controller.
+    */
+   public String statsAddress() {
+      return statsAddress;
+   }
+
+   public boolean statsRelay() {
+      return statsRelay;
+   }
+
+   public boolean relayAgentSummaries() {
+      return relayAgentSummaries;
+   }
+
    public enum Command {
       INITIALIZE,
       STOP,
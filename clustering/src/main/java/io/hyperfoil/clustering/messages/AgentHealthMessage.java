@@ -0,0 +1,33 @@
+package io.hyperfoil.clustering.messages;
+
+/**
+ * Periodic report of agent's own health: jitter of the JVM, CPU load and how the agent keeps up with sending
+ * statistics to the controller.
+ */
+public class AgentHealthMessage extends StatsMessage {
+   public final long timestamp;
+   /**
+    * Cumulative counts of jitter watchdog delays, bucket bounds are in
+    * {@link io.hyperfoil.core.impl.SimulationRunner#JITTER_BUCKETS}.
+    */
+   public final long[] jitterCounts;
+   public final long jitterSum;
+   public final long jitterMax;
+   public final double cpuIdleRatio;
+   public final int statsBacklog;
+   public final long statsRoundTripMax;
+
+   public AgentHealthMessage(String address, String runId, long timestamp, long[] jitterCounts, long jitterSum, long jitterMax,
+                             double cpuIdleRatio, int statsBacklog, long statsRoundTripMax) {
+      super(address, runId);
+      this.timestamp = timestamp;
+      this.jitterCounts = jitterCounts;
+      this.jitterSum = jitterSum;
+      this.jitterMax = jitterMax;
+      this.cpuIdleRatio = cpuIdleRatio;
+      this.statsBacklog = statsBacklog;
+      this.statsRoundTripMax = statsRoundTripMax;
+   }
+
+   public static class Codec extends ObjectCodec<AgentHealthMessage> {}
+}
@@ -1,8 +1,27 @@
 package io.hyperfoil.clustering.messages;
 
 public class AgentReadyMessage extends AgentStatusMessage {
-   public AgentReadyMessage(String senderId, String runId) {
+   private final long clockOffset;
+   private final long clockRtt;
+
+   public AgentReadyMessage(String senderId, String runId, long clockOffset, long clockRtt) {
       super(senderId, runId);
+      this.clockOffset = clockOffset;
+      this.clockRtt = clockRtt;
+   }
+
+   /**
+    * @return Milliseconds to add to agent's wall-clock time to get controller's wall-clock time.
+    */
+   public long clockOffset() {
+      return clockOffset;
+   }
+
+   /**
+    * @return Round-trip time of the sample used to estimate the clock offset, in milliseconds.
+    */
+   public long clockRtt() {
+      return clockRtt;
    }
 
    public static class Codec extends ObjectCodec<AgentReadyMessage> {}
@@ -0,0 +1,78 @@
+package io.hyperfoil.clustering.messages;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.hyperfoil.api.statistics.StatisticsSnapshot;
+import io.hyperfoil.api.statistics.StatsExtension;
+
+/**
+ * Counters of an agent whose request statistics are merged by a stats relay. Unlike {@link RequestStatsMessage}
+ * this does not carry the histogram, and summaries are accumulated over the whole flush period rather than
+ * per statistics sequence.
+ */
+public class AgentSummaryMessage extends StatsMessage {
+   public final int phaseId;
+   public final int stepId;
+   public final String metric;
+   public int connectFailureCount;
+   public int requestCount;
+   public int responseCount;
+   public int invalid;
+   public int connectionErrors;
+   public int requestTimeouts;
+   public int internalErrors;
+   public long blockedTime;
+   public final Map<String, StatsExtension> extensions = new HashMap<>();
+
+   /**
+    * @param address Address of the agent that recorded the statistics.
+    */
+   public AgentSummaryMessage(String address, String runId, int phaseId, int stepId, String metric) {
+      super(address, runId);
+      this.phaseId = phaseId;
+      this.stepId = stepId;
+      this.metric = metric;
+   }
+
+   public void add(StatisticsSnapshot snapshot) {
+      connectFailureCount += snapshot.connectFailureCount;
+      requestCount += snapshot.requestCount;
+      responseCount += snapshot.responseCount;
+      invalid += snapshot.invalid;
+      connectionErrors += snapshot.connectionErrors;
+      requestTimeouts += snapshot.requestTimeouts;
+      internalErrors += snapshot.internalErrors;
+      blockedTime += snapshot.blockedTime;
+      addExtensions(extensions, snapshot.extensions);
+   }
+
+   public void addTo(StatisticsSnapshot snapshot) {
+      snapshot.connectFailureCount += connectFailureCount;
+      snapshot.requestCount += requestCount;
+      snapshot.responseCount += responseCount;
+      snapshot.invalid += invalid;
+      snapshot.connectionErrors += connectionErrors;
+      snapshot.requestTimeouts += requestTimeouts;
+      snapshot.internalErrors += internalErrors;
+      snapshot.blockedTime += blockedTime;
+      addExtensions(snapshot.extensions, extensions);
+   }
+
+   private static void addExtensions(Map<String, StatsExtension> to, Map<String, StatsExtension> from) {
+      for (Map.Entry<String, StatsExtension> entry : from.entrySet()) {
+         StatsExtension their = entry.getValue();
+         if (their == null) {
+            continue;
+         }
+         StatsExtension my = to.get(entry.getKey());
+         if (my == null) {
+            to.put(entry.getKey(), their.clone());
+         } else {
+            my.add(their);
+         }
+      }
+   }
+
+   public static class Codec extends ObjectCodec<AgentSummaryMessage> {}
+}
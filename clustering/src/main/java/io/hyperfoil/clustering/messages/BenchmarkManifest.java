@@ -0,0 +1,42 @@
+package io.hyperfoil.clustering.messages;
+
+import java.io.Serializable;
+
+/**
+ * Describes serialized benchmark as a sequence of content-addressed chunks; the agent fetches only those
+ * chunks that are not present in its cache.
+ */
+public class BenchmarkManifest implements Serializable {
+   private final String benchmark;
+   private final String[] chunks;
+   private final int[] sizes;
+
+   public BenchmarkManifest(String benchmark, String[] chunks, int[] sizes) {
+      this.benchmark = benchmark;
+      this.chunks = chunks;
+      this.sizes = sizes;
+   }
+
+   public String benchmark() {
+      return benchmark;
+   }
+
+   /**
+    * @return SHA-256 digests of the chunks, in order.
+    */
+   public String[] chunks() {
+      return chunks;
+   }
+
+   public int[] sizes() {
+      return sizes;
+   }
+
+   public long totalSize() {
+      long size = 0;
+      for (int s : sizes) {
+         size += s;
+      }
+      return size;
+   }
+}
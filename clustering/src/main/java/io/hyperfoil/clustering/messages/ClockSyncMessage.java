@@ -0,0 +1,20 @@
+package io.hyperfoil.clustering.messages;
+
+import java.io.Serializable;
+
+/**
+ * Sent by the agent to the controller, which replies with its current wall-clock time.
+ */
+public class ClockSyncMessage implements Serializable {
+   private final String deploymentId;
+
+   public ClockSyncMessage(String deploymentId) {
+      this.deploymentId = deploymentId;
+   }
+
+   public String deploymentId() {
+      return deploymentId;
+   }
+
+   public static class Codec extends ObjectCodec<ClockSyncMessage> {}
+}
@@ -5,10 +5,22 @@ import java.io.Serializable;
 public class PhaseControlMessage implements Serializable {
    private final Command command;
    private final String phase;
+   private final long startTime;
+   private final double rateMultiplier;
 
    public PhaseControlMessage(Command command, String phase) {
+      this(command, phase, 0);
+   }
+
+   public PhaseControlMessage(Command command, String phase, long startTime) {
+      this(command, phase, startTime, 1);
+   }
+
+   public PhaseControlMessage(Command command, String phase, long startTime, double rateMultiplier) {
       this.command = command;
       this.phase = phase;
+      this.startTime = startTime;
+      this.rateMultiplier = rateMultiplier;
    }
 
    public Command command() {
@@ -19,11 +31,27 @@ public class PhaseControlMessage implements Serializable {
       return phase;
    }
 
+   /**
+    * @return Controller's wall-clock time when the phase should start ({@link Command#RUN}) or when the rate
+    * changes ({@link Command#SET_RATE}), 0 means immediately.
+    */
+   public long startTime() {
+      return startTime;
+   }
+
+   /**
+    * @return Multiplier of the rate in phase definition ({@link Command#SET_RATE} only).
+    */
+   public double rateMultiplier() {
+      return rateMultiplier;
+   }
+
    public enum Command {
       RUN,
       FINISH,
       TRY_TERMINATE,
-      TERMINATE
+      TERMINATE,
+      SET_RATE
    }
 
    public static class Codec extends ObjectCodec<PhaseControlMessage> {}
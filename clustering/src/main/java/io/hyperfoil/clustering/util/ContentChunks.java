@@ -0,0 +1,159 @@
+package io.hyperfoil.clustering.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Splits content into chunks at content-defined boundaries: the boundary is placed where a rolling (gear) hash
+ * of the last bytes matches a pattern, therefore inserting or removing data changes only the chunks around
+ * the modification and the rest can be reused. Chunks are identified by their SHA-256 digest.
+ */
+public final class ContentChunks {
+   public static final int MIN_CHUNK_SIZE = 256 * 1024;
+   public static final int MAX_CHUNK_SIZE = 4 * 1024 * 1024;
+   // Boundary occurs with probability 2^-20, so the average chunk is about MIN_CHUNK_SIZE + 1 MB
+   private static final long BOUNDARY_MASK = 0xFFFFF000_00000000L;
+   private static final long[] GEAR = new long[256];
+
+   static {
+      // The table must be the same on all nodes
+      SplittableRandom random = new SplittableRandom(0x4879706572666F69L);
+      for (int i = 0; i < GEAR.length; ++i) {
+         GEAR[i] = random.nextLong();
+      }
+   }
+
+   private ContentChunks() {}
+
+   /**
+    * @return Offsets where each chunk ends; the last one is equal to the length of the content.
+    */
+   public static int[] boundaries(byte[] content) {
+      int[] boundaries = new int[content.length / MIN_CHUNK_SIZE + 1];
+      int count = 0;
+      int start = 0;
+      while (start < content.length) {
+         int end = nextBoundary(content, start);
+         if (count == boundaries.length) {
+            boundaries = Arrays.copyOf(boundaries, count * 2);
+         }
+         boundaries[count++] = end;
+         start = end;
+      }
+      return Arrays.copyOf(boundaries, count);
+   }
+
+   private static int nextBoundary(byte[] content, int start) {
+      int limit = Math.min(content.length, start + MAX_CHUNK_SIZE);
+      if (limit - start <= MIN_CHUNK_SIZE) {
+         return limit;
+      }
+      long hash = 0;
+      // The hash depends only on the last 64 bytes so we don't need to start from the beginning
+      for (int i = start + MIN_CHUNK_SIZE - 64; i < limit; ++i) {
+         hash = (hash << 1) + GEAR[content[i] & 0xFF];
+         if ((hash & BOUNDARY_MASK) == 0 && i >= start + MIN_CHUNK_SIZE) {
+            return i + 1;
+         }
+      }
+      return limit;
+   }
+
+   public static String digest(byte[] content, int offset, int length) {
+      MessageDigest digest = newDigest();
+      digest.update(content, offset, length);
+      return toHex(digest.digest());
+   }
+
+   public static String digest(Path file) throws IOException {
+      MessageDigest digest = newDigest();
+      byte[] buffer = new byte[64 * 1024];
+      try (InputStream input = Files.newInputStream(file)) {
+         int read;
+         while ((read = input.read(buffer)) >= 0) {
+            digest.update(buffer, 0, read);
+         }
+      }
+      return toHex(digest.digest());
+   }
+
+   private static MessageDigest newDigest() {
+      try {
+         return MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+         throw new IllegalStateException(e);
+      }
+   }
+
+   public static String toHex(byte[] bytes) {
+      StringBuilder sb = new StringBuilder(bytes.length * 2);
+      for (byte b : bytes) {
+         sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return sb.toString();
+   }
+
+   @FunctionalInterface
+   public interface ChunkConsumer {
+      /**
+       * @param digest SHA-256 digest of the chunk.
+       * @param buffer Buffer holding the chunk; its content is overwritten once this method returns.
+       * @param length Length of the chunk.
+       */
+      void accept(String digest, byte[] buffer, int length) throws IOException;
+   }
+
+   /**
+    * Splits the written content into the same chunks as {@link #boundaries(byte[])} without holding more than
+    * one chunk in memory. The last chunk is emitted when the stream is closed.
+    */
+   public static class Splitter extends OutputStream {
+      private final ChunkConsumer consumer;
+      private final byte[] buffer = new byte[MAX_CHUNK_SIZE];
+      private int size;
+      private long hash;
+
+      public Splitter(ChunkConsumer consumer) {
+         this.consumer = consumer;
+      }
+
+      @Override
+      public void write(int b) throws IOException {
+         buffer[size] = (byte) b;
+         if (size >= MIN_CHUNK_SIZE - 64) {
+            hash = (hash << 1) + GEAR[b & 0xFF];
+         }
+         ++size;
+         if (size > MIN_CHUNK_SIZE && (hash & BOUNDARY_MASK) == 0 || size == MAX_CHUNK_SIZE) {
+            emit();
+         }
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+         for (int i = off; i < off + len; ++i) {
+            write(b[i]);
+         }
+      }
+
+      @Override
+      public void close() throws IOException {
+         if (size > 0) {
+            emit();
+         }
+      }
+
+      private void emit() throws IOException {
+         consumer.accept(digest(buffer, 0, size), buffer, size);
+         size = 0;
+         hash = 0;
+      }
+   }
+}
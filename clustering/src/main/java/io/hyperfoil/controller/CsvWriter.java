@@ -1,7 +1,6 @@
 package io.hyperfoil.controller;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
@@ -9,7 +8,7 @@ import java.io.PrintWriter;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Stream;
@@ -68,7 +67,7 @@ public class CsvWriter {
       }
       for (Data data : sorted) {
          String filePrefix = dir + File.separator + sanitize(data.phase) + "." + sanitize(data.metric) + "." + data.stepId;
-         writeHistogramAndSeries(filePrefix, data.total, data.series);
+         writeHistogramsAndSeries(filePrefix, store, data);
       }
       String[] agents = store.data.values().stream()
             .flatMap(m -> m.values().stream())
@@ -111,10 +110,6 @@ public class CsvWriter {
                writer.println();
             }
          }
-         for (Data data : sorted) {
-            String filePrefix = dir + File.separator + sanitize(data.phase) + "." + sanitize(data.metric) + "." + data.stepId + ".agent." + agent;
-            writeHistogramAndSeries(filePrefix, data.perAgent.get(agent), data.agentSeries.get(agent));
-         }
       }
       try (PrintWriter writer = new PrintWriter(dir + File.separator + "failures.csv")) {
          writer.print("Phase,Metric,Message,Start,End,");
@@ -193,29 +188,45 @@ public class CsvWriter {
       return phase.replaceAll(File.separator, "_");
    }
 
-   private static void writeHistogramAndSeries(String filePrefix, StatisticsSnapshot total, List<StatisticsSummary> series) throws FileNotFoundException {
-      if (total != null) {
-         try (PrintStream stream = new PrintStream(new FileOutputStream(filePrefix + ".histogram.csv"))) {
-            total.histogram.outputPercentileDistribution(stream, 5, 1000_000.0, true);
+   private static void writeHistogramsAndSeries(String filePrefix, StatisticsStore store, Data data) throws IOException {
+      Map<String, PrintWriter> writers = new HashMap<>();
+      Map<String, SeriesLog.SeriesConsumer> consumers = new HashMap<>();
+      try {
+         addHistogramAndSeries(filePrefix, null, data.total, writers, consumers);
+         for (Map.Entry<String, StatisticsSnapshot> entry : data.perAgent.entrySet()) {
+            addHistogramAndSeries(filePrefix + ".agent." + entry.getKey(), entry.getKey(), entry.getValue(), writers, consumers);
          }
+         // The series of all agents are read at once (from disk, if stored there)
+         store.forEachSeries(data, consumers);
+      } finally {
+         writers.values().forEach(PrintWriter::close);
       }
-      if (series != null) {
-         String[] extensionHeaders = getHeaders(series.stream().map(ss -> ss.extensions));
-         try (PrintWriter writer = new PrintWriter(filePrefix + ".series.csv")) {
-            writer.print("Start,End,");
-            StatisticsSummary.printHeader(writer, StatisticsStore.PERCENTILES);
-            printExtensionHeaders(writer, extensionHeaders);
-            writer.println();
-            for (StatisticsSummary summary : series) {
-               writer.print(summary.startTime);
-               writer.print(',');
-               writer.print(summary.endTime);
-               writer.print(',');
-               summary.printTo(writer, extensionHeaders);
-               writer.println();
-            }
-         }
+   }
+
+   private static void addHistogramAndSeries(String filePrefix, String agent, StatisticsSnapshot total,
+                                             Map<String, PrintWriter> writers, Map<String, SeriesLog.SeriesConsumer> consumers) throws IOException {
+      if (total == null) {
+         return;
       }
+      try (PrintStream stream = new PrintStream(new FileOutputStream(filePrefix + ".histogram.csv"))) {
+         total.histogram.outputPercentileDistribution(stream, 5, 1000_000.0, true);
+      }
+      // Total merges all the series so it has all the extension headers that appear there
+      String[] extensionHeaders = getHeaders(Stream.of(total.extensions));
+      PrintWriter writer = new PrintWriter(filePrefix + ".series.csv");
+      writers.put(agent, writer);
+      writer.print("Start,End,");
+      StatisticsSummary.printHeader(writer, StatisticsStore.PERCENTILES);
+      printExtensionHeaders(writer, extensionHeaders);
+      writer.println();
+      consumers.put(agent, summary -> {
+         writer.print(summary.startTime);
+         writer.print(',');
+         writer.print(summary.endTime);
+         writer.print(',');
+         summary.printTo(writer, extensionHeaders);
+         writer.println();
+      });
    }
 
    private static void printExtensionHeaders(PrintWriter writer, String[] extensionHeaders) {
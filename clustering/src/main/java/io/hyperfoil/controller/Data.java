@@ -20,6 +20,8 @@ final class Data {
    // When we receive snapshot with order #N we will attempt to compact agent snapshots #(N-60)
    // We are delaying this because the statistics for outlier may come with a significant delay
    private static final int MERGE_DELAY = 60;
+   // Rough size of a summary with its percentiles map
+   private static final int ESTIMATED_SUMMARY_SIZE = 512;
 
    private final StatisticsStore statisticsStore;
    final String phase;
@@ -30,13 +32,19 @@ final class Data {
    final StatisticsSnapshot total = new StatisticsSnapshot();
    final Map<String, StatisticsSnapshot> perAgent = new HashMap<>();
    final Map<String, IntObjectMap<StatisticsSnapshot>> lastStats = new HashMap<>();
+   // series are kept in memory only when the store does not have a log
    final List<StatisticsSummary> series = new ArrayList<>();
    final Map<String, List<StatisticsSummary>> agentSeries = new HashMap<>();
+   private long seriesRequestCount;
+   private long agentSeriesRequestCount;
    // floating statistics for SLAs
    private final Map<SLA, StatisticsStore.Window> windowSlas;
    private final SLA[] totalSlas;
    private int highestSequenceId = 0;
    private boolean completed;
+   // Summary of the last period that is likely complete, computed once and shared by all readers
+   private int recentSequenceId = -1;
+   private StatisticsSummary recentSummary;
 
    Data(StatisticsStore statisticsStore, String phase, boolean isWarmup, int stepId, String metric, Map<SLA, StatisticsStore.Window> periodSlas, SLA[] totalSlas) {
       this.statisticsStore = statisticsStore;
@@ -62,6 +70,11 @@ final class Data {
       } else {
          partialSnapshot.add(stats);
       }
+      if (stats.sequenceId == recentSequenceId) {
+         // Late statistics for the period
+         recentSummary = null;
+      }
+      boolean periodClosed = stats.sequenceId > highestSequenceId;
       while (stats.sequenceId > highestSequenceId) {
          ++highestSequenceId;
          int mergedSequenceId = highestSequenceId - MERGE_DELAY;
@@ -70,19 +83,65 @@ final class Data {
          }
          mergeSnapshots(mergedSequenceId);
       }
+      if (periodClosed) {
+         // We'll use one id before the last one since the last one is likely not completed yet
+         recentSequenceId = highestSequenceId - 1;
+         recentSummary = null;
+         statisticsStore.recentPeriodClosed(this);
+      }
+   }
+
+   void recordAgentSummary(String agentName, StatisticsSnapshot stats) {
+      if (completed) {
+         log.warn("Ignoring summary for completed {}/{}/{} (from {}, {} requests)", phase, stepId, metric, agentName, stats.requestCount);
+         return;
+      }
+      perAgent.computeIfAbsent(agentName, a -> new StatisticsSnapshot()).add(stats);
+   }
+
+   /**
+    * @return Summary of the period preceding the last one or <code>null</code> if there are no statistics.
+    */
+   StatisticsSummary recentSummary() {
+      if (recentSummary == null && recentSequenceId >= 0) {
+         StatisticsSnapshot sum = new StatisticsSnapshot();
+         for (IntObjectMap<StatisticsSnapshot> snapshots : lastStats.values()) {
+            StatisticsSnapshot snapshot = snapshots.get(recentSequenceId);
+            if (snapshot != null) {
+               sum.add(snapshot);
+            }
+         }
+         if (!sum.isEmpty()) {
+            recentSummary = sum.summary(StatisticsStore.PERCENTILES);
+         }
+      }
+      return recentSummary;
    }
 
    private void mergeSnapshots(int sequenceId) {
+      SeriesLog seriesLog = statisticsStore.seriesLog;
       StatisticsSnapshot sum = new StatisticsSnapshot();
       for (Map.Entry<String, IntObjectMap<StatisticsSnapshot>> entry : lastStats.entrySet()) {
          StatisticsSnapshot snapshot = entry.getValue().remove(sequenceId);
          if (snapshot != null) {
             sum.add(snapshot);
-            agentSeries.computeIfAbsent(entry.getKey(), a -> new ArrayList<>()).add(snapshot.summary(StatisticsStore.PERCENTILES));
+            StatisticsSummary summary = snapshot.summary(StatisticsStore.PERCENTILES);
+            if (seriesLog != null) {
+               seriesLog.append(this, entry.getKey(), summary, snapshot);
+            } else {
+               agentSeries.computeIfAbsent(entry.getKey(), a -> new ArrayList<>()).add(summary);
+            }
+            agentSeriesRequestCount += summary.requestCount;
          }
       }
       if (!sum.isEmpty()) {
-         series.add(sum.summary(StatisticsStore.PERCENTILES));
+         StatisticsSummary summary = sum.summary(StatisticsStore.PERCENTILES);
+         if (seriesLog != null) {
+            seriesLog.append(this, null, summary, sum);
+         } else {
+            series.add(summary);
+         }
+         seriesRequestCount += summary.requestCount;
       }
       for (Map.Entry<SLA, StatisticsStore.Window> entry : windowSlas.entrySet()) {
          SLA sla = entry.getKey();
@@ -102,11 +161,16 @@ final class Data {
       for (int i = Math.max(0, highestSequenceId - MERGE_DELAY); i <= highestSequenceId; ++i) {
          mergeSnapshots(i);
       }
+      recentSequenceId = -1;
+      recentSummary = null;
+      if (statisticsStore.seriesLog != null) {
+         statisticsStore.seriesLog.complete(this);
+      }
       // Just sanity checks
-      if (series.stream().mapToLong(ss -> ss.requestCount).sum() != total.requestCount) {
+      if (seriesRequestCount != total.requestCount) {
          log.error("We lost some data (series) in phase {} metric {}", phase, metric);
       }
-      if (agentSeries.values().stream().flatMap(List::stream).mapToLong(ss -> ss.requestCount).sum() != total.requestCount) {
+      if (agentSeriesRequestCount != total.requestCount) {
          log.error("We lost some data (agent series) in phase {} metric {}", phase, metric);
       }
       if (perAgent.values().stream().mapToLong(ss -> ss.requestCount).sum() != total.requestCount) {
@@ -122,6 +186,23 @@ final class Data {
       completed = true;
    }
 
+   long estimatedSize() {
+      long size = total.histogram.getEstimatedFootprintInBytes();
+      for (StatisticsSnapshot snapshot : perAgent.values()) {
+         size += snapshot.histogram.getEstimatedFootprintInBytes();
+      }
+      for (IntObjectMap<StatisticsSnapshot> snapshots : lastStats.values()) {
+         for (StatisticsSnapshot snapshot : snapshots.values()) {
+            size += snapshot.histogram.getEstimatedFootprintInBytes();
+         }
+      }
+      long summaries = series.size();
+      for (List<StatisticsSummary> list : agentSeries.values()) {
+         summaries += list.size();
+      }
+      return size + summaries * ESTIMATED_SUMMARY_SIZE;
+   }
+
    boolean isCompleted() {
       return completed;
    }
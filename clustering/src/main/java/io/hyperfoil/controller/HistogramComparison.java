@@ -0,0 +1,167 @@
+package io.hyperfoil.controller;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+
+import io.hyperfoil.controller.model.MetricComparison;
+import io.hyperfoil.controller.model.RunComparison;
+import io.hyperfoil.controller.model.StatisticComparison;
+
+/**
+ * Compares response times of a run against a baseline formed by several other runs. Rather than comparing
+ * fixed percentiles from the summaries we work with the complete histograms: these are merged from the
+ * per-period histograms in {@link SeriesLog} when available.
+ */
+public class HistogramComparison {
+   private static final double[] PERCENTILES = { 50, 90, 99, 99.9, 99.99 };
+   // Deviation from baseline mean (in standard deviations) considered significant
+   private static final double SIGNIFICANT_Z_SCORE = 3;
+   // Standard deviation cannot be estimated reliably from fewer runs
+   private static final int MIN_BASELINE_RUNS = 3;
+
+   /**
+    * Retrieves histogram of each phase and metric over the whole run. The store must not be modified
+    * concurrently (it should belong to a completed run). This is a blocking operation.
+    *
+    * @return Histograms by phase and metric.
+    */
+   public static Map<String, Map<String, Histogram>> totalHistograms(StatisticsStore store) throws IOException {
+      Map<String, Map<String, Histogram>> histograms = new TreeMap<>();
+      for (Data data : store.getData()) {
+         // Auto-resizing histogram so that we can merge histograms with different ranges
+         Histogram histogram = histograms.computeIfAbsent(data.phase, p -> new TreeMap<>())
+               .computeIfAbsent(data.metric, m -> new Histogram(2));
+         boolean fromLog = false;
+         try (SeriesLog.Reader reader = store.seriesLog == null ? null : store.seriesLog.reader(data)) {
+            if (reader != null) {
+               while (reader.next()) {
+                  if (reader.agent() == null) {
+                     histogram.add(reader.histogram());
+                     fromLog = true;
+                  }
+               }
+            }
+         }
+         if (!fromLog) {
+            // When loaded from JSON the resolution is reduced to the linear buckets
+            histogram.add(data.total.histogram);
+         }
+      }
+      return histograms;
+   }
+
+   /**
+    * @param baselines Histograms of the baseline runs, from the oldest one.
+    */
+   public static RunComparison compare(String runId, Map<String, Map<String, Histogram>> target,
+                                       List<String> baselineIds, List<Map<String, Map<String, Histogram>>> baselines) {
+      List<MetricComparison> metrics = new ArrayList<>();
+      for (var byPhase : target.entrySet()) {
+         for (var byMetric : byPhase.getValue().entrySet()) {
+            Histogram histogram = byMetric.getValue();
+            List<Histogram> baseline = new ArrayList<>();
+            for (Map<String, Map<String, Histogram>> run : baselines) {
+               Histogram h = run.getOrDefault(byPhase.getKey(), Map.of()).get(byMetric.getKey());
+               if (h != null && h.getTotalCount() > 0) {
+                  baseline.add(h);
+               }
+            }
+            List<StatisticComparison> statistics = new ArrayList<>();
+            statistics.add(compare("mean", histogram.getMean(), baseline.stream().mapToDouble(Histogram::getMean).toArray()));
+            for (double p : PERCENTILES) {
+               statistics.add(compare(String.valueOf(p), histogram.getValueAtPercentile(p),
+                     baseline.stream().mapToDouble(h -> h.getValueAtPercentile(p)).toArray()));
+            }
+            metrics.add(new MetricComparison(byPhase.getKey(), byMetric.getKey(), histogram.getTotalCount(), baseline.size(),
+                  ksDistance(histogram, baseline), statistics));
+         }
+      }
+      return new RunComparison(runId, baselineIds, metrics);
+   }
+
+   private static StatisticComparison compare(String name, double value, double[] baseline) {
+      int n = baseline.length;
+      double mean = Double.NaN;
+      double stdDev = Double.NaN;
+      if (n > 0) {
+         double sum = 0;
+         for (double v : baseline) {
+            sum += v;
+         }
+         mean = sum / n;
+      }
+      if (n > 1) {
+         double sumSquares = 0;
+         for (double v : baseline) {
+            sumSquares += (v - mean) * (v - mean);
+         }
+         stdDev = Math.sqrt(sumSquares / (n - 1));
+      }
+      double relativeDelta = mean > 0 ? (value - mean) / mean : Double.NaN;
+      double zScore = stdDev > 0 ? (value - mean) / stdDev : Double.NaN;
+      boolean significant = n >= MIN_BASELINE_RUNS && Math.abs(zScore) >= SIGNIFICANT_Z_SCORE;
+      return new StatisticComparison(name, value, mean, stdDev, relativeDelta, zScore, trend(baseline, value), significant);
+   }
+
+   /**
+    * @return Least-squares slope over the baseline values followed by the value, with the run order as x axis.
+    */
+   private static double trend(double[] baseline, double value) {
+      int n = baseline.length + 1;
+      if (n < 2) {
+         return Double.NaN;
+      }
+      double meanX = (n - 1) / 2.0;
+      double meanY = value;
+      for (double v : baseline) {
+         meanY += v;
+      }
+      meanY /= n;
+      double covariance = 0;
+      double variance = 0;
+      for (int i = 0; i < n; ++i) {
+         double dx = i - meanX;
+         covariance += dx * ((i < baseline.length ? baseline[i] : value) - meanY);
+         variance += dx * dx;
+      }
+      return covariance / variance;
+   }
+
+   /**
+    * @return Maximum difference between the cumulative distributions of the histogram and all baseline histograms merged.
+    */
+   private static double ksDistance(Histogram histogram, List<Histogram> baseline) {
+      if (baseline.isEmpty() || histogram.getTotalCount() == 0) {
+         return Double.NaN;
+      }
+      Histogram pooled = new Histogram(2);
+      for (Histogram h : baseline) {
+         pooled.add(h);
+      }
+      Histogram all = new Histogram(2);
+      all.add(histogram);
+      all.add(pooled);
+      double count = histogram.getTotalCount();
+      double pooledCount = pooled.getTotalCount();
+      long cumulative = 0;
+      long pooledCumulative = 0;
+      double distance = 0;
+      for (HistogramIterationValue value : all.recordedValues()) {
+         cumulative += countAtValue(histogram, value.getValueIteratedTo());
+         pooledCumulative += countAtValue(pooled, value.getValueIteratedTo());
+         distance = Math.max(distance, Math.abs(cumulative / count - pooledCumulative / pooledCount));
+      }
+      return distance;
+   }
+
+   private static long countAtValue(Histogram histogram, long value) {
+      // Values beyond the range would be clamped to the last bucket
+      return value <= histogram.getMaxValue() ? histogram.getCountAtValue(value) : 0;
+   }
+}
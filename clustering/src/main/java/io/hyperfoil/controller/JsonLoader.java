@@ -1,5 +1,7 @@
 package io.hyperfoil.controller;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -10,17 +12,79 @@ import java.util.TreeMap;
 
 import org.HdrHistogram.Histogram;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
 import io.hyperfoil.api.statistics.StatisticsSnapshot;
 import io.hyperfoil.api.statistics.StatisticsSummary;
 import io.hyperfoil.api.statistics.StatsExtension;
+import io.hyperfoil.controller.model.RateChange;
 import io.hyperfoil.core.builders.SLA;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.json.jackson.DatabindCodec;
 
 public class JsonLoader {
 
    public static StatisticsStore read(String text, StatisticsStore store) {
-      JsonObject object = new JsonObject(text);
+      return read(new JsonObject(text), store);
+   }
+
+   /**
+    * Parses the file without loading it into memory as a whole.
+    *
+    * @param skipSeries When set the series are ignored, e.g. because these can be read from {@link SeriesLog}.
+    */
+   public static StatisticsStore read(Path path, StatisticsStore store, boolean skipSeries) throws IOException {
+      try (JsonParser parser = DatabindCodec.mapper().getFactory().createParser(path.toFile())) {
+         if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected JSON object in " + path);
+         }
+         return read((JsonObject) readValue(parser, skipSeries), store);
+      }
+   }
+
+   private static Object readValue(JsonParser parser, boolean skipSeries) throws IOException {
+      switch (parser.currentToken()) {
+         case START_OBJECT:
+            JsonObject object = new JsonObject();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+               String name = parser.getCurrentName();
+               parser.nextToken();
+               if (skipSeries && "series".equals(name)) {
+                  parser.skipChildren();
+               } else {
+                  object.put(name, readValue(parser, skipSeries));
+               }
+            }
+            return object;
+         case START_ARRAY:
+            JsonArray array = new JsonArray();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+               array.add(readValue(parser, skipSeries));
+            }
+            return array;
+         case VALUE_STRING:
+            return parser.getText();
+         case VALUE_NUMBER_INT:
+            return parser.getNumberValue();
+         case VALUE_NUMBER_FLOAT:
+            return parser.getDoubleValue();
+         case VALUE_TRUE:
+         case VALUE_FALSE:
+            return parser.getBooleanValue();
+         case VALUE_NULL:
+            return null;
+         default:
+            throw new IOException("Unexpected token " + parser.currentToken() + " at " + parser.getCurrentLocation());
+      }
+   }
+
+   private static String dataKey(int stepId, String metric) {
+      return stepId + "/" + metric;
+   }
+
+   private static StatisticsStore read(JsonObject object, StatisticsStore store) {
       String schema = object.getString("$schema");
       if (!JsonWriter.RUN_SCHEMA.equals(schema)) {
          throw new IllegalArgumentException("Schema " + schema + " is not recognized.");
@@ -34,12 +98,13 @@ public class JsonLoader {
          store.addFailure(new SLA.Failure(null, failure.getString("phase"), failure.getString("metric"), snapshot, failure.getString("message")));
       }
       int dataCounter = 0;
-      // TODO: there could be multiple Data per phase+metric but stepId is not in JSON
+      // Files written by older versions do not include stepId; all Data share step 0 then
       Map<String, Map<String, Data>> dataMap = new HashMap<>();
       for (Object item : object.getJsonArray("stats")) {
          JsonObject stats = (JsonObject) item;
-         Data data = new Data(store, stats.getString("name"), stats.getBoolean("isWarmup"), 0, stats.getString("metric"), Collections.emptyMap(), new SLA[0]);
-         dataMap.computeIfAbsent(data.phase, p -> new HashMap<>()).putIfAbsent(data.metric, data);
+         Data data = new Data(store, stats.getString("name"), stats.getBoolean("isWarmup"), stats.getInteger("stepId", 0),
+               stats.getString("metric"), Collections.emptyMap(), new SLA[0]);
+         dataMap.computeIfAbsent(data.phase, p -> new HashMap<>()).putIfAbsent(dataKey(data.stepId, data.metric), data);
          store.addData(dataCounter++, data.metric, data);
          loadSnapshot(stats.getJsonObject("total"), data.total);
          // We cannot use percentiles histogram since it always tells only upper bounds on the response time
@@ -71,8 +136,9 @@ public class JsonLoader {
             String phase = stats.getString("name");
             String metric = stats.getString("metric");
             boolean isWarmup = stats.getBoolean("isWarmup");
+            int stepId = stats.getInteger("stepId", 0);
             Data data = dataMap.computeIfAbsent(phase, p -> new HashMap<>())
-                  .computeIfAbsent(metric, m -> new Data(store, phase, isWarmup, 0, metric, Collections.emptyMap(), new SLA[0]));
+                  .computeIfAbsent(dataKey(stepId, metric), k -> new Data(store, phase, isWarmup, stepId, metric, Collections.emptyMap(), new SLA[0]));
             StatisticsSnapshot snapshot = new StatisticsSnapshot();
             loadSnapshot(stats.getJsonObject("total"), snapshot);
             loadHistogram(stats.getJsonObject("histogram").getJsonArray("linear"), snapshot.histogram);
@@ -106,6 +172,14 @@ public class JsonLoader {
          }
       }
 
+      JsonArray rateChanges = object.getJsonArray("rateChanges");
+      if (rateChanges != null) {
+         for (Object item : rateChanges) {
+            JsonObject change = (JsonObject) item;
+            store.rateChanges.add(new RateChange(change.getString("phase"), change.getLong("timestamp"), change.getDouble("multiplier")));
+         }
+      }
+
       return store;
    }
 
@@ -139,6 +213,9 @@ public class JsonLoader {
    }
 
    private static void loadSeries(JsonArray array, List<StatisticsSummary> series) {
+      if (array == null) {
+         return;
+      }
       for (Object item : array) {
          JsonObject object = (JsonObject) item;
          long startTime = object.getLong("startTime");
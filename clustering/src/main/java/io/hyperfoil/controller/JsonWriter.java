@@ -1,10 +1,12 @@
 package io.hyperfoil.controller;
 
+import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 
 import io.hyperfoil.api.Version;
 import io.hyperfoil.api.statistics.StatisticsSnapshot;
-import io.hyperfoil.api.statistics.StatisticsSummary;
+import io.hyperfoil.controller.model.RateChange;
 import io.hyperfoil.core.builders.SLA;
 import io.hyperfoil.core.util.LowHigh;
 
@@ -13,19 +15,35 @@ import io.vertx.core.json.JsonObject;
 import org.HdrHistogram.HistogramIterationValue;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 public class JsonWriter {
    static final String RUN_SCHEMA = "http://hyperfoil.io/run-schema/v3.0";
 
    public static void writeArrayJsons(StatisticsStore store, JsonGenerator jGenerator, JsonObject info) throws IOException {
+      // Agents' series are read together with the total series and spilled to files until the agents section is written
+      Path seriesDir = Files.createTempDirectory("hyperfoil-series");
+      try {
+         writeArrayJsons(store, jGenerator, info, seriesDir);
+      } finally {
+         try (Stream<Path> files = Files.walk(seriesDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+         }
+      }
+   }
+
+   private static void writeArrayJsons(StatisticsStore store, JsonGenerator jGenerator, JsonObject info, Path seriesDir) throws IOException {
       Data[] sorted = store.data.values().stream().flatMap(map -> map.values().stream()).toArray(Data[]::new);
       Arrays.sort(sorted, Comparator.comparing((Data data) -> data.phase).thenComparing(d -> d.metric).thenComparingInt(d -> d.stepId));
 
@@ -56,6 +74,7 @@ public class JsonWriter {
       jGenerator.writeEndArray();
 
 
+      Map<Data, Map<String, Path>> agentSeries = new HashMap<>();
       jGenerator.writeFieldName("stats");
       jGenerator.writeStartArray(); //stats array
       for (Data data : sorted) {
@@ -68,6 +87,7 @@ public class JsonWriter {
          jGenerator.writeStringField("iteration", split[1]);
          jGenerator.writeStringField("fork", split[2]);
          jGenerator.writeStringField("metric", data.metric);
+         jGenerator.writeNumberField("stepId", data.stepId);
          jGenerator.writeBooleanField("isWarmup", data.isWarmup);
 
          jGenerator.writeFieldName("total");
@@ -85,7 +105,7 @@ public class JsonWriter {
          jGenerator.writeEndObject(); //histogram
 
          jGenerator.writeFieldName("series");
-         seriesArray(jGenerator, data.series);
+         agentSeries.put(data, seriesArray(jGenerator, store, data, seriesDir));
 
          jGenerator.writeEndObject(); //entry
       }
@@ -147,6 +167,7 @@ public class JsonWriter {
                jGenerator.writeStringField("iteration", split[1]);
                jGenerator.writeStringField("fork", split[2]);
                jGenerator.writeStringField("metric", data.metric);
+               jGenerator.writeNumberField("stepId", data.stepId);
                jGenerator.writeBooleanField("isWarmup", data.isWarmup);
 
                jGenerator.writeFieldName("total");
@@ -174,7 +195,7 @@ public class JsonWriter {
                jGenerator.writeEndObject(); // histograms
 
                jGenerator.writeFieldName("series");
-               seriesArray(jGenerator, data.agentSeries.get(agent));
+               copySeries(jGenerator, agentSeries.get(data).get(agent));
 
                jGenerator.writeEndObject(); // agent stats entry
             }
@@ -214,6 +235,16 @@ public class JsonWriter {
       }
       jGenerator.writeEndObject(); // agentCpu
 
+      jGenerator.writeArrayFieldStart("rateChanges");
+      for (RateChange change : store.rateChanges) {
+         jGenerator.writeStartObject();
+         jGenerator.writeStringField("phase", change.phase);
+         jGenerator.writeNumberField("timestamp", change.timestamp);
+         jGenerator.writeNumberField("multiplier", change.multiplier);
+         jGenerator.writeEndObject();
+      }
+      jGenerator.writeEndArray(); // rateChanges
+
       jGenerator.writeEndObject(); //root of object
    }
 
@@ -311,14 +342,47 @@ public class JsonWriter {
       jGenerator.writeEndObject();
    }
 
-   private static void seriesArray(JsonGenerator jGenerator, List<StatisticsSummary> series) throws IOException {
-      jGenerator.writeStartArray(); //series
-      if (series != null) {
-         for (StatisticsSummary summary : series) {
-            jGenerator.writeObject(summary);
+   /**
+    * Writes the total series and spills series of individual agents into files in <code>dir</code>.
+    *
+    * @return Files with the series by agent name.
+    */
+   private static Map<String, Path> seriesArray(JsonGenerator jGenerator, StatisticsStore store, Data data, Path dir) throws IOException {
+      Map<String, SeriesLog.SeriesConsumer> consumers = new HashMap<>();
+      Map<String, Path> files = new HashMap<>();
+      List<JsonGenerator> agentGenerators = new ArrayList<>();
+      consumers.put(null, jGenerator::writeObject);
+      try {
+         for (String agent : data.perAgent.keySet()) {
+            Path file = Files.createTempFile(dir, "series", ".json");
+            files.put(agent, file);
+            JsonGenerator agentGenerator = jGenerator.getCodec().getFactory().createGenerator(file.toFile(), JsonEncoding.UTF8);
+            agentGenerator.setCodec(jGenerator.getCodec());
+            agentGenerators.add(agentGenerator);
+            agentGenerator.writeStartArray();
+            consumers.put(agent, agentGenerator::writeObject);
+         }
+         jGenerator.writeStartArray(); //series
+         store.forEachSeries(data, consumers);
+         jGenerator.writeEndArray(); //end series
+         for (JsonGenerator agentGenerator : agentGenerators) {
+            agentGenerator.writeEndArray();
          }
+      } finally {
+         for (JsonGenerator agentGenerator : agentGenerators) {
+            agentGenerator.close();
+         }
+      }
+      jGenerator.flush();
+      return files;
+   }
+
+   private static void copySeries(JsonGenerator jGenerator, Path file) throws IOException {
+      try (JsonParser parser = jGenerator.getCodec().getFactory().createParser(file.toFile())) {
+         parser.nextToken();
+         jGenerator.copyCurrentStructure(parser);
       }
-      jGenerator.writeEndArray(); //end series
+      Files.delete(file);
       jGenerator.flush();
    }
 
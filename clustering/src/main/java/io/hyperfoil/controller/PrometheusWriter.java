@@ -0,0 +1,222 @@
+package io.hyperfoil.controller;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.DoubleStream;
+
+import io.hyperfoil.api.statistics.StatisticsSnapshot;
+import io.hyperfoil.api.statistics.StatisticsSummary;
+import io.hyperfoil.core.util.LowHigh;
+
+/**
+ * Formats metrics in Prometheus text exposition format (version 0.0.4). The buffer is reused between scrapes
+ * and the values are read directly from the statistics store; the only derived values are the recent summaries
+ * that are already cached in {@link Data}.
+ * <p>
+ * All samples of a metric family must be written together, therefore the methods iterate over all runs.
+ */
+public class PrometheusWriter {
+   public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+   private static final String[] QUANTILE_LABELS = DoubleStream.of(StatisticsStore.PERCENTILES)
+         .mapToObj(String::valueOf).toArray(String[]::new);
+
+   private final StringBuilder sb = new StringBuilder(16384);
+   private boolean hasLabels;
+
+   public PrometheusWriter reset() {
+      sb.setLength(0);
+      return this;
+   }
+
+   public CharSequence result() {
+      return sb;
+   }
+
+   public PrometheusWriter family(String name, String type, String help) {
+      sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+      sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+      return this;
+   }
+
+   public PrometheusWriter sample(String name) {
+      sb.append(name);
+      hasLabels = false;
+      return this;
+   }
+
+   public PrometheusWriter label(String key, String value) {
+      sb.append(hasLabels ? ',' : '{').append(key).append("=\"");
+      hasLabels = true;
+      for (int i = 0; i < value.length(); ++i) {
+         char c = value.charAt(i);
+         if (c == '\\' || c == '"') {
+            sb.append('\\').append(c);
+         } else if (c == '\n') {
+            sb.append("\\n");
+         } else {
+            sb.append(c);
+         }
+      }
+      sb.append('"');
+      return this;
+   }
+
+   public void value(long value) {
+      endLabels();
+      sb.append(value).append('\n');
+   }
+
+   public void value(double value) {
+      endLabels();
+      if (value == Double.POSITIVE_INFINITY) {
+         sb.append("+Inf");
+      } else if (value == Double.NEGATIVE_INFINITY) {
+         sb.append("-Inf");
+      } else {
+         sb.append(value);
+      }
+      sb.append('\n');
+   }
+
+   private void endLabels() {
+      if (hasLabels) {
+         sb.append('}');
+      }
+      sb.append(' ');
+   }
+
+   /**
+    * @param stores Statistics of runs in progress, by run ID.
+    */
+   public void requestStats(Map<String, StatisticsStore> stores) {
+      family("hyperfoil_requests_total", "counter", "Number of requests sent.");
+      for (var entry : stores.entrySet()) {
+         for (Map<String, Data> byMetric : entry.getValue().data.values()) {
+            for (Data data : byMetric.values()) {
+               dataSample("hyperfoil_requests_total", entry.getKey(), data).value(data.total.requestCount);
+            }
+         }
+      }
+      family("hyperfoil_responses_total", "counter", "Number of responses received.");
+      for (var entry : stores.entrySet()) {
+         for (Map<String, Data> byMetric : entry.getValue().data.values()) {
+            for (Data data : byMetric.values()) {
+               dataSample("hyperfoil_responses_total", entry.getKey(), data).value(data.total.responseCount);
+            }
+         }
+      }
+      family("hyperfoil_request_errors_total", "counter", "Number of failed requests by the type of error.");
+      for (var entry : stores.entrySet()) {
+         for (Map<String, Data> byMetric : entry.getValue().data.values()) {
+            for (Data data : byMetric.values()) {
+               StatisticsSnapshot total = data.total;
+               dataSample("hyperfoil_request_errors_total", entry.getKey(), data).label("type", "invalid").value(total.invalid);
+               dataSample("hyperfoil_request_errors_total", entry.getKey(), data).label("type", "connection").value(total.connectionErrors);
+               dataSample("hyperfoil_request_errors_total", entry.getKey(), data).label("type", "timeout").value(total.requestTimeouts);
+               dataSample("hyperfoil_request_errors_total", entry.getKey(), data).label("type", "internal").value(total.internalErrors);
+            }
+         }
+      }
+      family("hyperfoil_request_rate", "gauge", "Requests per second in the last complete statistics period.");
+      for (var entry : stores.entrySet()) {
+         for (Map<String, Data> byMetric : entry.getValue().data.values()) {
+            for (Data data : byMetric.values()) {
+               StatisticsSummary recent = data.recentSummary();
+               if (recent != null && recent.endTime > recent.startTime) {
+                  dataSample("hyperfoil_request_rate", entry.getKey(), data)
+                        .value(recent.requestCount * 1000d / (recent.endTime - recent.startTime));
+               }
+            }
+         }
+      }
+      family("hyperfoil_response_time_seconds", "summary",
+            "Response times; quantiles are from the last complete statistics period, sum and count from the whole phase.");
+      for (var entry : stores.entrySet()) {
+         for (Map<String, Data> byMetric : entry.getValue().data.values()) {
+            for (Data data : byMetric.values()) {
+               StatisticsSummary recent = data.recentSummary();
+               if (recent != null) {
+                  for (int i = 0; i < StatisticsStore.PERCENTILES.length; ++i) {
+                     // Summaries use percentiles as keys
+                     Long value = recent.percentileResponseTime.get(StatisticsStore.PERCENTILES[i] * 100);
+                     if (value != null) {
+                        dataSample("hyperfoil_response_time_seconds", entry.getKey(), data)
+                              .label("quantile", QUANTILE_LABELS[i]).value(value / 1e9);
+                     }
+                  }
+               }
+               long count = data.total.histogram.getTotalCount();
+               dataSample("hyperfoil_response_time_seconds_sum", entry.getKey(), data)
+                     .value(count == 0 ? 0 : data.total.histogram.getMean() * count / 1e9);
+               dataSample("hyperfoil_response_time_seconds_count", entry.getKey(), data).value(count);
+            }
+         }
+      }
+   }
+
+   private PrometheusWriter dataSample(String name, String runId, Data data) {
+      return sample(name).label("run", runId).label("phase", data.phase).label("metric", data.metric);
+   }
+
+   public void sessionPools(Map<String, StatisticsStore> stores) {
+      family("hyperfoil_sessions_min", "gauge", "Minimum number of sessions in use during the last period.");
+      for (var entry : stores.entrySet()) {
+         for (var byPhase : entry.getValue().sessionPoolStats.entrySet()) {
+            for (var byAgent : byPhase.getValue().records.entrySet()) {
+               LowHigh last = last(byAgent.getValue());
+               if (last != null) {
+                  sample("hyperfoil_sessions_min").label("run", entry.getKey()).label("phase", byPhase.getKey())
+                        .label("agent", byAgent.getKey()).value(last.low);
+               }
+            }
+         }
+      }
+      family("hyperfoil_sessions_max", "gauge", "Maximum number of sessions in use during the last period.");
+      for (var entry : stores.entrySet()) {
+         for (var byPhase : entry.getValue().sessionPoolStats.entrySet()) {
+            for (var byAgent : byPhase.getValue().records.entrySet()) {
+               LowHigh last = last(byAgent.getValue());
+               if (last != null) {
+                  sample("hyperfoil_sessions_max").label("run", entry.getKey()).label("phase", byPhase.getKey())
+                        .label("agent", byAgent.getKey()).value(last.high);
+               }
+            }
+         }
+      }
+   }
+
+   public void connectionPools(Map<String, StatisticsStore> stores) {
+      family("hyperfoil_connections_min", "gauge", "Minimum number of connections by type during the last period.");
+      for (var entry : stores.entrySet()) {
+         for (var byAuthority : entry.getValue().connectionPoolStats.entrySet()) {
+            for (var byType : byAuthority.getValue().entrySet()) {
+               for (var byAgent : byType.getValue().entrySet()) {
+                  LowHigh last = last(byAgent.getValue());
+                  if (last != null) {
+                     sample("hyperfoil_connections_min").label("run", entry.getKey()).label("authority", byAuthority.getKey())
+                           .label("type", byType.getKey()).label("agent", byAgent.getKey()).value(last.low);
+                  }
+               }
+            }
+         }
+      }
+      family("hyperfoil_connections_max", "gauge", "Maximum number of connections by type during the last period.");
+      for (var entry : stores.entrySet()) {
+         for (var byAuthority : entry.getValue().connectionPoolStats.entrySet()) {
+            for (var byType : byAuthority.getValue().entrySet()) {
+               for (var byAgent : byType.getValue().entrySet()) {
+                  LowHigh last = last(byAgent.getValue());
+                  if (last != null) {
+                     sample("hyperfoil_connections_max").label("run", entry.getKey()).label("authority", byAuthority.getKey())
+                           .label("type", byType.getKey()).label("agent", byAgent.getKey()).value(last.high);
+                  }
+               }
+            }
+         }
+      }
+   }
+
+   private static LowHigh last(List<? extends LowHigh> list) {
+      return list.isEmpty() ? null : list.get(list.size() - 1);
+   }
+}
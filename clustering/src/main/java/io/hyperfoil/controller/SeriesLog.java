@@ -0,0 +1,369 @@
+package io.hyperfoil.controller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+
+import org.HdrHistogram.Histogram;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import io.hyperfoil.api.statistics.StatisticsSnapshot;
+import io.hyperfoil.api.statistics.StatisticsSummary;
+import io.hyperfoil.api.statistics.StatsExtension;
+import io.hyperfoil.core.util.Util;
+import io.vertx.core.json.jackson.DatabindCodec;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Append-only on-disk store of the statistics series. Each {@link Data} has its own file that starts with
+ * a header identifying the phase, step and metric; a record is appended whenever a period is merged, containing
+ * the summary and the (compressed) histogram of that period, either for all agents or a single one.
+ * <p>
+ * Records are encoded and written by a background thread; the files are read sequentially by {@link Reader}
+ * so that neither writing nor reading the series needs to keep them in memory.
+ */
+public class SeriesLog implements Closeable {
+   private static final Logger log = LogManager.getLogger(SeriesLog.class);
+   private static final int MAGIC = 0x48465331; // HFS1
+   private static final byte TOTAL = 1;
+   private static final byte AGENT = 2;
+   private static final String SUFFIX = ".bin";
+   private static final TypeReference<TreeMap<String, StatsExtension>> EXTENSIONS_TYPE = new TypeReference<>() {};
+   private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(Util.daemonThreadFactory("series-log"));
+
+   private final Path dir;
+   private final Map<Data, Path> paths = new ConcurrentHashMap<>();
+   // Index of files written before this instance was opened; lookup by phase, step and metric
+   private final Map<String, Path> index;
+   // Accessed only from the writer thread
+   private final Map<Data, DataOutputStream> outputs = new HashMap<>();
+   private volatile boolean closed;
+
+   private SeriesLog(Path dir, Map<String, Path> index) {
+      this.dir = dir;
+      this.index = index;
+   }
+
+   /**
+    * @param dir Directory where the files will be written; it is created when the first record is appended.
+    * @return Log for a run in progress.
+    */
+   public static SeriesLog create(Path dir) {
+      return new SeriesLog(dir, Collections.emptyMap());
+   }
+
+   /**
+    * @param dir Directory with files of a persisted run.
+    * @return Read-only log or <code>null</code> if the directory does not exist.
+    */
+   public static SeriesLog open(Path dir) throws IOException {
+      if (!Files.isDirectory(dir)) {
+         return null;
+      }
+      Map<String, Path> index = new HashMap<>();
+      try (Stream<Path> files = Files.list(dir)) {
+         for (Path file : (Iterable<Path>) files.filter(f -> f.toString().endsWith(SUFFIX)).sorted()::iterator) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1024))) {
+               Header header = Header.read(input);
+               Path prev = index.putIfAbsent(key(header.phase, header.stepId, header.metric), file);
+               if (prev != null) {
+                  log.warn("Ignoring series file {} for {}/{}/{}: already read from {}", file, header.phase, header.stepId, header.metric, prev);
+               }
+            } catch (IOException e) {
+               log.warn("Ignoring invalid series file {}", file, e);
+            }
+         }
+      }
+      SeriesLog seriesLog = new SeriesLog(dir, index);
+      seriesLog.closed = true;
+      return seriesLog;
+   }
+
+   private static String key(String phase, int stepId, String metric) {
+      return phase + '\0' + stepId + '\0' + metric;
+   }
+
+   /**
+    * Appends the statistics of a single period. Must not be called concurrently for the same data.
+    *
+    * @param data Statistics this record belongs to.
+    * @param agent Agent name or <code>null</code> if these are statistics from all agents.
+    * @param summary Summary of the period.
+    * @param snapshot Statistics of the period; these must not be modified afterwards.
+    */
+   void append(Data data, String agent, StatisticsSummary summary, StatisticsSnapshot snapshot) {
+      if (closed) {
+         log.warn("Ignoring series record for {}/{} as the log is closed", data.phase, data.metric);
+         return;
+      }
+      Path path = paths.computeIfAbsent(data, d -> dir.resolve(paths.size() + SUFFIX));
+      WRITER.execute(() -> {
+         try {
+            DataOutputStream output = outputs.get(data);
+            if (output == null) {
+               Files.createDirectories(dir);
+               output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 65536));
+               new Header(data.phase, data.stepId, data.metric, data.isWarmup).write(output);
+               outputs.put(data, output);
+            }
+            writeRecord(output, agent, summary, snapshot.histogram);
+         } catch (IOException e) {
+            log.error("Cannot write series of {}/{} to {}", data.phase, data.metric, path, e);
+         }
+      });
+   }
+
+   /**
+    * Closes the file for given data; the records already appended remain readable.
+    */
+   void complete(Data data) {
+      WRITER.execute(() -> closeOutput(data, outputs.remove(data)));
+   }
+
+   private void closeOutput(Data data, DataOutputStream output) {
+      if (output != null) {
+         try {
+            output.close();
+         } catch (IOException e) {
+            log.error("Cannot close series of {}/{}", data.phase, data.metric, e);
+         }
+      }
+   }
+
+   /**
+    * Waits until all records are written; no more records can be appended afterwards. This is a blocking
+    * operation.
+    */
+   @Override
+   public void close() {
+      if (closed) {
+         return;
+      }
+      closed = true;
+      try {
+         WRITER.submit(() -> {
+            outputs.forEach(this::closeOutput);
+            outputs.clear();
+         }).get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+         log.error("Failed to close series log in {}", dir, e.getCause());
+      }
+   }
+
+   /**
+    * @return Reader of records for given data or <code>null</code> if there are no records.
+    */
+   Reader reader(Data data) throws IOException {
+      Path path = paths.get(data);
+      if (path == null) {
+         path = index.get(key(data.phase, data.stepId, data.metric));
+      }
+      if (path == null || !path.toFile().exists()) {
+         return null;
+      }
+      return new Reader(path);
+   }
+
+   private static void writeRecord(DataOutputStream output, String agent, StatisticsSummary summary, Histogram histogram) throws IOException {
+      if (agent == null) {
+         output.writeByte(TOTAL);
+      } else {
+         output.writeByte(AGENT);
+         output.writeUTF(agent);
+      }
+      output.writeLong(summary.startTime);
+      output.writeLong(summary.endTime);
+      output.writeLong(summary.minResponseTime);
+      output.writeLong(summary.meanResponseTime);
+      output.writeLong(summary.maxResponseTime);
+      output.writeByte(summary.percentileResponseTime.size());
+      for (var entry : summary.percentileResponseTime.entrySet()) {
+         output.writeDouble(entry.getKey());
+         output.writeLong(entry.getValue());
+      }
+      output.writeInt(summary.requestCount);
+      output.writeInt(summary.responseCount);
+      output.writeInt(summary.invalid);
+      output.writeInt(summary.connectionErrors);
+      output.writeInt(summary.requestTimeouts);
+      output.writeInt(summary.internalErrors);
+      output.writeLong(summary.blockedTime);
+      if (summary.extensions == null || summary.extensions.isEmpty()) {
+         output.writeInt(0);
+      } else {
+         byte[] extensions = DatabindCodec.mapper().writerFor(EXTENSIONS_TYPE).writeValueAsBytes(summary.extensions);
+         output.writeInt(extensions.length);
+         output.write(extensions);
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+      int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+      output.writeInt(length);
+      output.write(buffer.array(), 0, length);
+   }
+
+   private static final class Header {
+      final String phase;
+      final int stepId;
+      final String metric;
+      final boolean isWarmup;
+
+      Header(String phase, int stepId, String metric, boolean isWarmup) {
+         this.phase = phase;
+         this.stepId = stepId;
+         this.metric = metric;
+         this.isWarmup = isWarmup;
+      }
+
+      static Header read(DataInputStream input) throws IOException {
+         int magic = input.readInt();
+         if (magic != MAGIC) {
+            throw new IOException("Unexpected file format: " + Integer.toHexString(magic));
+         }
+         return new Header(input.readUTF(), input.readInt(), input.readUTF(), input.readBoolean());
+      }
+
+      void write(DataOutputStream output) throws IOException {
+         output.writeInt(MAGIC);
+         output.writeUTF(phase);
+         output.writeInt(stepId);
+         output.writeUTF(metric);
+         output.writeBoolean(isWarmup);
+      }
+   }
+
+   /**
+    * Sequential reader of the records. The histogram is decoded only when requested.
+    */
+   public static class Reader implements Closeable {
+      private final DataInputStream input;
+      private String agent;
+      private StatisticsSummary summary;
+      private byte[] histogram;
+      private int histogramLength;
+
+      Reader(Path path) throws IOException {
+         input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 65536));
+         try {
+            Header.read(input);
+         } catch (IOException e) {
+            input.close();
+            throw e;
+         }
+      }
+
+      /**
+       * @return False if there are no more records.
+       */
+      public boolean next() throws IOException {
+         byte type;
+         try {
+            type = input.readByte();
+         } catch (EOFException e) {
+            return false;
+         }
+         try {
+            readRecord(type);
+         } catch (EOFException e) {
+            // The last record was not written completely, e.g. when the controller crashed
+            log.warn("Series record is truncated");
+            return false;
+         }
+         return true;
+      }
+
+      private void readRecord(byte type) throws IOException {
+         if (type == TOTAL) {
+            agent = null;
+         } else if (type == AGENT) {
+            agent = input.readUTF();
+         } else {
+            throw new IOException("Unexpected record type " + type);
+         }
+         long startTime = input.readLong();
+         long endTime = input.readLong();
+         long minResponseTime = input.readLong();
+         long meanResponseTime = input.readLong();
+         long maxResponseTime = input.readLong();
+         int numPercentiles = input.readUnsignedByte();
+         SortedMap<Double, Long> percentiles = new TreeMap<>();
+         for (int i = 0; i < numPercentiles; ++i) {
+            percentiles.put(input.readDouble(), input.readLong());
+         }
+         int requestCount = input.readInt();
+         int responseCount = input.readInt();
+         int invalid = input.readInt();
+         int connectionErrors = input.readInt();
+         int requestTimeouts = input.readInt();
+         int internalErrors = input.readInt();
+         long blockedTime = input.readLong();
+         SortedMap<String, StatsExtension> extensions;
+         int extensionsLength = input.readInt();
+         if (extensionsLength == 0) {
+            extensions = Collections.emptySortedMap();
+         } else {
+            byte[] bytes = new byte[extensionsLength];
+            input.readFully(bytes);
+            extensions = DatabindCodec.mapper().readValue(bytes, EXTENSIONS_TYPE);
+         }
+         summary = new StatisticsSummary(startTime, endTime, minResponseTime, meanResponseTime, maxResponseTime, percentiles,
+               requestCount, responseCount, invalid, connectionErrors, requestTimeouts, internalErrors, blockedTime, extensions);
+         histogramLength = input.readInt();
+         if (histogram == null || histogram.length < histogramLength) {
+            histogram = new byte[histogramLength];
+         }
+         input.readFully(histogram, 0, histogramLength);
+      }
+
+      /**
+       * @return Agent name or <code>null</code> if current record holds statistics from all agents.
+       */
+      public String agent() {
+         return agent;
+      }
+
+      public StatisticsSummary summary() {
+         return summary;
+      }
+
+      public Histogram histogram() throws IOException {
+         try {
+            return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(histogram, 0, histogramLength), 0);
+         } catch (DataFormatException e) {
+            throw new IOException("Cannot decode histogram", e);
+         }
+      }
+
+      @Override
+      public void close() throws IOException {
+         input.close();
+      }
+   }
+
+   @FunctionalInterface
+   interface SeriesConsumer {
+      void accept(StatisticsSummary summary) throws IOException;
+   }
+}
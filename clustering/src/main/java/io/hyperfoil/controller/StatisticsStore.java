@@ -5,10 +5,12 @@ import io.hyperfoil.api.config.Phase;
 import io.hyperfoil.api.statistics.StatisticsSnapshot;
 import io.hyperfoil.api.statistics.StatisticsSummary;
 import io.hyperfoil.controller.model.Histogram;
+import io.hyperfoil.controller.model.RateChange;
 import io.hyperfoil.controller.model.RequestStats;
 import io.hyperfoil.core.builders.SLA;
 import io.hyperfoil.core.util.LowHigh;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -17,8 +19,6 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.OptionalInt;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -39,6 +39,9 @@ public class StatisticsStore {
    final Map<String, SessionPoolStats> sessionPoolStats = new HashMap<>();
    final Map<String, Map<String, Map<String, List<ConnectionPoolStats>>>> connectionPoolStats = new HashMap<>();
    final Map<String, Map<String, String>> cpuUsage = new HashMap<>();
+   final List<RateChange> rateChanges = new ArrayList<>();
+   private Consumer<RequestStats> recentStatsListener;
+   SeriesLog seriesLog;
 
    public StatisticsStore(Benchmark benchmark, Consumer<SLA.Failure> failureHandler) {
       this.benchmark = benchmark;
@@ -54,6 +57,18 @@ public class StatisticsStore {
    }
 
    public void record(String agentName, int phaseId, int stepId, String metric, StatisticsSnapshot stats) {
+      data(phaseId, stepId, metric).record(agentName, stats);
+   }
+
+   /**
+    * Records counters of an agent whose statistics are merged by a stats relay. These are added only
+    * to the statistics of the agent; total and series are recorded from the relay.
+    */
+   public void recordAgentSummary(String agentName, int phaseId, int stepId, String metric, StatisticsSnapshot stats) {
+      data(phaseId, stepId, metric).recordAgentSummary(agentName, stats);
+   }
+
+   private Data data(int phaseId, int stepId, String metric) {
       Map<String, Data> map = this.data.computeIfAbsent((phaseId << 16) + stepId, phaseStep -> new HashMap<>());
       Data data = map.get(metric);
       if (data == null) {
@@ -68,7 +83,7 @@ public class StatisticsStore {
          Phase phase = benchmark.phases().stream().filter(p -> p.id() == phaseId).findFirst().get();
          map.put(metric, data = new Data(this, phase.name, phase.isWarmup, stepId, metric, rings, total));
       }
-      data.record(agentName, stats);
+      return data;
    }
 
    public void addFailure(String phase, String metric, long startTimestamp, long endTimestamp, String cause) {
@@ -110,38 +125,85 @@ public class StatisticsStore {
       ArrayList<RequestStats> result = new ArrayList<>();
       for (Map<String, Data> m : this.data.values()) {
          for (Data data : m.values()) {
-            OptionalInt lastSequenceId = data.lastStats.values().stream()
-                  .flatMapToInt(map -> map.keySet().stream().mapToInt(Integer::intValue)).max();
-            if (lastSequenceId.isEmpty()) {
-               continue;
-            }
-            // We'll use one id before the last one since the last one is likely not completed yet
-            int penultimateId = lastSequenceId.getAsInt() - 1;
-            StatisticsSnapshot sum = new StatisticsSnapshot();
-            data.lastStats.values().stream().map(map -> map.get(penultimateId))
-                  .filter(Objects::nonNull).forEach(sum::add);
-            if (sum.isEmpty() || sum.histogram.getStartTimeStamp() < minValidTimestamp) {
+            StatisticsSummary summary = data.recentSummary();
+            if (summary == null || summary.startTime < minValidTimestamp) {
                continue;
             }
-            List<String> failures = this.failures.stream()
-                  .filter(f -> f.phase().equals(data.phase) && (f.metric() == null || f.metric().equals(data.metric)))
-                  .map(SLA.Failure::message).collect(Collectors.toList());
-            result.add(new RequestStats(data.phase, data.stepId, data.metric, sum.summary(PERCENTILES), failures, data.isWarmup));
+            result.add(new RequestStats(data.phase, data.stepId, data.metric, summary, failures(data), data.isWarmup));
          }
       }
       result.sort(REQUEST_STATS_COMPARATOR);
       return result;
    }
 
+   /**
+    * When the log is set the series are written to disk rather than kept in memory.
+    */
+   public void setSeriesLog(SeriesLog seriesLog) {
+      this.seriesLog = seriesLog;
+   }
+
+   public SeriesLog seriesLog() {
+      return seriesLog;
+   }
+
+   /**
+    * Reads the series only once (from disk, if stored there) and passes each record to the consumer for its agent.
+    *
+    * @param consumers Consumers by agent name; consumer for <code>null</code> receives series from all agents.
+    */
+   void forEachSeries(Data data, Map<String, SeriesLog.SeriesConsumer> consumers) throws IOException {
+      try (SeriesLog.Reader reader = seriesLog == null ? null : seriesLog.reader(data)) {
+         if (reader != null) {
+            while (reader.next()) {
+               SeriesLog.SeriesConsumer consumer = consumers.get(reader.agent());
+               if (consumer != null) {
+                  consumer.accept(reader.summary());
+               }
+            }
+            return;
+         }
+      }
+      for (Map.Entry<String, SeriesLog.SeriesConsumer> entry : consumers.entrySet()) {
+         List<StatisticsSummary> series = entry.getKey() == null ? data.series : data.agentSeries.get(entry.getKey());
+         if (series != null) {
+            for (StatisticsSummary summary : series) {
+               entry.getValue().accept(summary);
+            }
+         }
+      }
+   }
+
+   /**
+    * Registers a listener invoked whenever a period of statistics for some phase and metric is closed.
+    * The summary is computed once and shared with {@link #recentSummary(long)}.
+    */
+   public void setRecentStatsListener(Consumer<RequestStats> recentStatsListener) {
+      this.recentStatsListener = recentStatsListener;
+   }
+
+   void recentPeriodClosed(Data data) {
+      if (recentStatsListener == null) {
+         return;
+      }
+      StatisticsSummary summary = data.recentSummary();
+      if (summary != null) {
+         recentStatsListener.accept(new RequestStats(data.phase, data.stepId, data.metric, summary, failures(data), data.isWarmup));
+      }
+   }
+
+   private List<String> failures(Data data) {
+      return this.failures.stream()
+            .filter(f -> f.phase().equals(data.phase) && (f.metric() == null || f.metric().equals(data.metric)))
+            .map(SLA.Failure::message).collect(Collectors.toList());
+   }
+
    public List<RequestStats> totalSummary() {
       ArrayList<RequestStats> result = new ArrayList<>();
       for (Map<String, Data> m : this.data.values()) {
          for (Data data : m.values()) {
             StatisticsSummary last = data.total.summary(PERCENTILES);
-            List<String> failures = this.failures.stream()
-                  .filter(f -> f.phase().equals(data.phase) && (f.metric() == null || f.metric().equals(data.metric)))
-                  .map(SLA.Failure::message).collect(Collectors.toList());
-            result.add(new RequestStats(data.phase, data.stepId, data.metric, last, failures, data.isWarmup));
+            result.add(new RequestStats(data.phase, data.stepId, data.metric, last, failures(data), data.isWarmup));
          }
       }
       result.sort(REQUEST_STATS_COMPARATOR);
@@ -263,6 +325,17 @@ public class StatisticsStore {
       return cpuUsage;
    }
 
+   public void recordRateChange(RateChange change) {
+      rateChanges.add(change);
+   }
+
+   /**
+    * @return Changes of open-model phase rates made during the run, in the order these were requested.
+    */
+   public List<RateChange> rateChanges() {
+      return rateChanges;
+   }
+
    static final class Window {
       private final StatisticsSnapshot[] ring;
       private final StatisticsSnapshot sum = new StatisticsSnapshot();
@@ -304,6 +377,33 @@ public class StatisticsStore {
       return Arrays.asList(rtrn);
    }
 
+   /**
+    * @return Rough estimate of memory retained by the statistics, in bytes.
+    */
+   public long estimatedSize() {
+      long size = 0;
+      for (Map<String, Data> byMetric : data.values()) {
+         for (Data d : byMetric.values()) {
+            size += d.estimatedSize();
+         }
+      }
+      long records = 0;
+      for (SessionPoolStats sps : sessionPoolStats.values()) {
+         for (List<SessionPoolRecord> list : sps.records.values()) {
+            records += list.size();
+         }
+      }
+      for (var byAuthority : connectionPoolStats.values()) {
+         for (var byType : byAuthority.values()) {
+            for (List<ConnectionPoolStats> list : byType.values()) {
+               records += list.size();
+            }
+         }
+      }
+      // A record is an object with timestamp and two ints plus a reference in the list
+      return size + records * 40;
+   }
+
    void addData(int id, String metric, Data data) {
       this.data.computeIfAbsent(id, i -> new HashMap<>()).put(metric, data);
    }
@@ -11,6 +11,7 @@ import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
@@ -44,6 +45,8 @@ public class SshDeployedAgent implements DeployedAgent {
    private static final String DEBUG_ADDRESS = Properties.get(Properties.AGENT_DEBUG_PORT, null);
    private static final String DEBUG_SUSPEND = Properties.get(Properties.AGENT_DEBUG_SUSPEND, "n");
    private static final String AGENTLIB = "/agentlib";
+   // Classpath does not change during controller's lifetime, no need to run md5sum for each agent and run
+   private static final Map<String, String> LOCAL_MD5_CACHE = new ConcurrentHashMap<>();
 
    final String name;
    final String runId;
@@ -304,6 +307,11 @@ public class SshDeployedAgent implements DeployedAgent {
             // ignore folders etc...
             continue;
          }
+         String cached = LOCAL_MD5_CACHE.get(file);
+         if (cached != null) {
+            md5map.put(file, cached);
+            continue;
+         }
          try {
             Process process = new ProcessBuilder("md5sum", file).start();
             process.waitFor();
@@ -320,6 +328,7 @@ public class SshDeployedAgent implements DeployedAgent {
                }
                String checksum = line.substring(0, space);
                md5map.put(file, checksum);
+               LOCAL_MD5_CACHE.put(file, checksum);
             }
          } catch (IOException e) {
             log.info("Cannot get md5sum for " + file, e);
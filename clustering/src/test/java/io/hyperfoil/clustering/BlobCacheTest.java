@@ -0,0 +1,198 @@
+package io.hyperfoil.clustering;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.hyperfoil.api.config.Benchmark;
+import io.hyperfoil.api.config.BenchmarkBuilder;
+import io.hyperfoil.api.config.BenchmarkData;
+import io.hyperfoil.clustering.messages.BenchmarkManifest;
+import io.hyperfoil.clustering.util.ContentChunks;
+import io.hyperfoil.core.util.Util;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+
+public class BlobCacheTest {
+   private Vertx vertx;
+   private Path dir;
+   private Path storeDir;
+   private BlobStore store;
+   private final List<String> requests = new CopyOnWriteArrayList<>();
+
+   @Before
+   public void before() throws IOException {
+      vertx = Vertx.vertx();
+      dir = Files.createTempDirectory("blob-cache-test");
+      storeDir = Files.createTempDirectory("blob-store-test");
+      store = new BlobStore(storeDir);
+      store.init();
+      vertx.eventBus().<String>consumer(Feeds.BLOBS, message -> {
+         requests.add(message.body());
+         Path chunk = store.get(message.body());
+         if (chunk == null) {
+            message.fail(404, "No chunk " + message.body());
+         } else {
+            message.reply(vertx.fileSystem().readFileBlocking(chunk.toString()));
+         }
+      });
+   }
+
+   @After
+   public void after() throws IOException {
+      vertx.close();
+      delete(dir);
+      delete(storeDir);
+   }
+
+   private static void delete(Path dir) throws IOException {
+      try (Stream<Path> files = Files.walk(dir)) {
+         files.sorted(Collections.reverseOrder()).forEach(file -> file.toFile().delete());
+      }
+   }
+
+   private static byte[] data(int length, long seed) {
+      byte[] data = new byte[length];
+      new Random(seed).nextBytes(data);
+      return data;
+   }
+
+   private BenchmarkManifest publish(String owner, byte[] data) throws IOException {
+      Benchmark benchmark = new BenchmarkBuilder(null, new BenchmarkData() {
+         @Override
+         public InputStream readFile(String file) {
+            throw new UnsupportedOperationException();
+         }
+
+         @Override
+         public Map<String, byte[]> files() {
+            return Collections.singletonMap("data", data);
+         }
+      }).name("test").build();
+      return store.publish(owner, benchmark.name(), output -> output.write(Util.serialize(benchmark)));
+   }
+
+   private byte[] load(BlobCache cache, BenchmarkManifest manifest) throws Exception {
+      Future<Benchmark> future = cache.load(manifest);
+      Benchmark benchmark = future.toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+      return benchmark.files().get("data");
+   }
+
+   private Path chunkPath(String digest) {
+      return dir.resolve(digest.substring(0, 2)).resolve(digest);
+   }
+
+   @Test
+   public void testFetchOnlyMissing() throws Exception {
+      byte[] data = data(6 * 1024 * 1024, 1);
+      BenchmarkManifest manifest = publish("run1", data);
+      assertTrue(manifest.chunks().length > 1);
+      BlobCache cache = new BlobCache(vertx, dir, Long.MAX_VALUE);
+
+      assertArrayEquals(data, load(cache, manifest));
+      assertEquals(manifest.chunks().length, requests.size());
+
+      // Everything is cached now
+      requests.clear();
+      assertArrayEquals(data, load(cache, manifest));
+      assertEquals(0, requests.size());
+
+      // A modified benchmark shares most of the chunks
+      byte[] modified = data.clone();
+      modified[modified.length - 10] ^= 1;
+      BenchmarkManifest modifiedManifest = publish("run2", modified);
+      assertArrayEquals(modified, load(cache, modifiedManifest));
+      assertEquals(1, requests.size());
+      assertEquals(modifiedManifest.chunks()[modifiedManifest.chunks().length - 1], requests.get(0));
+   }
+
+   @Test
+   public void testCorruptedChunk() throws Exception {
+      byte[] data = data(6 * 1024 * 1024, 2);
+      BenchmarkManifest manifest = publish("run", data);
+      BlobCache cache = new BlobCache(vertx, dir, Long.MAX_VALUE);
+      assertArrayEquals(data, load(cache, manifest));
+
+      // Same size but different content must be detected
+      Path corrupted = chunkPath(manifest.chunks()[0]);
+      byte[] bytes = Files.readAllBytes(corrupted);
+      bytes[bytes.length / 2] ^= 1;
+      Files.write(corrupted, bytes);
+      Files.delete(chunkPath(manifest.chunks()[1]));
+
+      requests.clear();
+      assertArrayEquals(data, load(cache, manifest));
+      assertEquals(2, requests.size());
+      assertTrue(requests.contains(manifest.chunks()[0]));
+      assertTrue(requests.contains(manifest.chunks()[1]));
+   }
+
+   @Test
+   public void testPruneKeepsRecentChunks() throws Exception {
+      byte[] data = data(1024, 5);
+      BenchmarkManifest manifest = publish("run", data);
+      Path old = chunkPath("00old");
+      Path recent = chunkPath("00recent");
+      Files.createDirectories(old.getParent());
+      Files.write(old, new byte[100]);
+      Files.setLastModifiedTime(old, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+      // Chunk touched by another agent sharing the directory
+      Files.write(recent, new byte[100]);
+
+      BlobCache cache = new BlobCache(vertx, dir, 0);
+      assertArrayEquals(data, load(cache, manifest));
+      assertFalse(Files.exists(old));
+      assertTrue(Files.exists(recent));
+      assertTrue(Files.exists(chunkPath(manifest.chunks()[0])));
+   }
+
+   @Test
+   public void testRelease() throws IOException {
+      BenchmarkManifest first = publish("run1", data(6 * 1024 * 1024, 3));
+      int chunks = store.size();
+      publish("run2", data(1024, 4));
+      assertTrue(store.size() > chunks);
+      store.release("run2");
+      assertEquals(chunks, store.size());
+      store.release("run1");
+      assertEquals(0, store.size());
+      assertEquals(null, store.get(first.chunks()[0]));
+      // Chunks are spilled to disk and removed when released
+      try (Stream<Path> files = Files.list(storeDir)) {
+         assertEquals(0, files.count());
+      }
+   }
+
+   @Test
+   public void testChunksOnDisk() throws IOException {
+      byte[] data = data(1024, 6);
+      BenchmarkManifest manifest = publish("run", data);
+      Path chunk = store.get(manifest.chunks()[0]);
+      assertEquals(storeDir, chunk.getParent());
+      assertEquals(manifest.chunks()[0], ContentChunks.digest(chunk));
+
+      // A new controller instance does not serve chunks from previous one
+      BlobStore restarted = new BlobStore(storeDir);
+      restarted.init();
+      assertFalse(Files.exists(chunk));
+      assertEquals(null, restarted.get(manifest.chunks()[0]));
+   }
+}
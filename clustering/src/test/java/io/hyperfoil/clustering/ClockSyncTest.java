@@ -0,0 +1,39 @@
+package io.hyperfoil.clustering;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ClockSyncTest {
+   private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+   @Test
+   public void testMinimumRoundTrip() {
+      ClockSync sync = new ClockSync(null, "test");
+      assertEquals(0, sync.rttMillis());
+      // The controller is 100 ms ahead; delayed replies make the estimate worse
+      sync.addSample(1000, 40 * MS, 1000 + 100 + 30);
+      assertEquals(110, sync.offset());
+      assertEquals(40, sync.rttMillis());
+      sync.addSample(2000, 4 * MS, 2000 + 100 + 2);
+      sync.addSample(3000, 20 * MS, 3000 + 100 + 5);
+      assertEquals(100, sync.offset());
+      assertEquals(4, sync.rttMillis());
+      // Equal round-trip does not replace the previous sample
+      assertEquals(4, sync.addSample(4000, 4 * MS, 4000 + 150));
+      assertEquals(100, sync.offset());
+   }
+
+   @Test
+   public void testControllerBehind() {
+      ClockSync sync = new ClockSync(null, "test");
+      sync.addSample(10_000, 10 * MS, 10_000 - 500 + 5);
+      assertEquals(-500, sync.offset());
+      // Round-trip is rounded up to whole milliseconds
+      sync.addSample(20_000, MS / 2, 20_000 - 500);
+      assertEquals(-500, sync.offset());
+      assertEquals(1, sync.rttMillis());
+   }
+}
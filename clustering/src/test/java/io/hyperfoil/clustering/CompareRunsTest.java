@@ -0,0 +1,114 @@
+package io.hyperfoil.clustering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.hyperfoil.api.config.Benchmark;
+import io.hyperfoil.api.config.BenchmarkBuilder;
+import io.hyperfoil.api.statistics.StatisticsSnapshot;
+import io.hyperfoil.controller.JsonWriter;
+import io.hyperfoil.controller.StatisticsStore;
+import io.hyperfoil.controller.model.RunComparison;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Compares runs persisted on disk, as if these were loaded after the controller restart.
+ */
+public class CompareRunsTest {
+   private Path dir;
+   private Vertx vertx;
+   private ControllerVerticle controller;
+   private Benchmark benchmark;
+   private int phaseId;
+
+   @Before
+   public void before() throws IOException {
+      dir = Files.createTempDirectory("compare-runs-test");
+      BenchmarkBuilder builder = BenchmarkBuilder.builder().name("test");
+      builder.addPhase("test").atOnce(1).scenario().initialSequence("test").step(s -> true);
+      benchmark = builder.build();
+      phaseId = benchmark.phases().iterator().next().id();
+      vertx = Vertx.vertx();
+      controller = new ControllerVerticle();
+      controller.init(vertx, vertx.getOrCreateContext());
+   }
+
+   @After
+   public void after() throws Exception {
+      get(vertx.close());
+      try (Stream<Path> files = Files.walk(dir)) {
+         files.sorted(Collections.reverseOrder()).forEach(file -> file.toFile().delete());
+      }
+   }
+
+   private static <T> T get(Future<T> future) throws Exception {
+      return future.toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+   }
+
+   private Run persistedRun(String id, long millis) throws IOException {
+      StatisticsStore store = new StatisticsStore(benchmark, failure -> { });
+      StatisticsSnapshot snapshot = new StatisticsSnapshot();
+      snapshot.histogram.recordValueWithCount(TimeUnit.MILLISECONDS.toNanos(millis), 10);
+      snapshot.requestCount = 10;
+      snapshot.responseCount = 10;
+      store.record("agent", phaseId, 0, "foo", snapshot);
+      Path runDir = Files.createDirectories(dir.resolve(id));
+      try (JsonGenerator generator = new ObjectMapper().getFactory()
+            .createGenerator(runDir.resolve(ControllerVerticle.DEFAULT_STATS_JSON).toFile(), JsonEncoding.UTF8)) {
+         JsonWriter.writeArrayJsons(store, generator, new JsonObject());
+      }
+      return new Run(id, runDir, benchmark);
+   }
+
+   @Test
+   public void testRunsNotKeptLoaded() throws Exception {
+      Run target = persistedRun("0100", 10);
+      List<Run> baseline = new ArrayList<>();
+      for (int i = 0; i < 10; ++i) {
+         baseline.add(persistedRun(String.format("%04X", i), 10 + i));
+      }
+      RunComparison comparison = get(controller.compareRuns(target, baseline));
+      assertEquals("0100", comparison.runId);
+      // Loaded concurrently yet listed in the order of the baseline
+      assertEquals(baseline.stream().map(r -> r.id).collect(Collectors.toList()), comparison.baseline);
+      assertEquals(1, comparison.metrics.size());
+      assertFalse(target.isLoaded());
+      for (Run run : baseline) {
+         assertFalse(run.isLoaded());
+      }
+   }
+
+   @Test
+   public void testMissingStatistics() throws Exception {
+      Run target = persistedRun("0100", 10);
+      List<Run> baseline = List.of(persistedRun("0000", 10), new Run("0001", dir.resolve("0001"), benchmark));
+      try {
+         get(controller.compareRuns(target, baseline));
+         throw new AssertionError("Comparison should fail");
+      } catch (ExecutionException e) {
+         assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("0001"));
+      }
+   }
+}
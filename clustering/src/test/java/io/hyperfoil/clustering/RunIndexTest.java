@@ -0,0 +1,88 @@
+package io.hyperfoil.clustering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.vertx.core.json.JsonObject;
+
+public class RunIndexTest {
+   private Path dir;
+
+   @Before
+   public void before() throws IOException {
+      dir = Files.createTempDirectory("run-index-test");
+   }
+
+   @After
+   public void after() throws IOException {
+      try (Stream<Path> files = Files.walk(dir)) {
+         files.sorted(Collections.reverseOrder()).forEach(file -> file.toFile().delete());
+      }
+   }
+
+   private static JsonObject info(String id, String benchmark, long startTime) {
+      return new JsonObject().put("id", id).put("benchmark", benchmark).put("startTime", startTime)
+            .put("description", "Run \"" + id + "\"\nwith two lines");
+   }
+
+   @Test
+   public void testMissingFile() {
+      assertTrue(new RunIndex(dir).read().isEmpty());
+   }
+
+   @Test
+   public void testRoundTrip() {
+      RunIndex index = new RunIndex(dir);
+      JsonObject first = info("0000", "foo", 1000);
+      JsonObject second = info("0001", "bar", 2000);
+      index.append(first);
+      index.append(second);
+
+      // The controller reads the index on start-up using a new instance
+      Map<String, JsonObject> runs = new RunIndex(dir).read();
+      assertEquals(2, runs.size());
+      assertEquals(first, runs.get("0000"));
+      assertEquals(second, runs.get("0001"));
+   }
+
+   @Test
+   public void testLastLineWins() {
+      RunIndex index = new RunIndex(dir);
+      index.append(info("0000", "foo", 1000));
+      index.append(info("0001", "bar", 2000));
+      JsonObject updated = info("0000", "foo", 1000).put("terminateTime", 3000L);
+      index.append(updated);
+
+      Map<String, JsonObject> runs = index.read();
+      assertEquals(2, runs.size());
+      assertEquals(updated, runs.get("0000"));
+   }
+
+   @Test
+   public void testInvalidLinesIgnored() throws IOException {
+      RunIndex index = new RunIndex(dir);
+      index.append(info("0000", "foo", 1000));
+      // Line without ID, blank line and a line cut short e.g. by a crash of the controller
+      String garbage = "{\"benchmark\":\"nobody\"}\n\n{\"id\":\"0001\",\"bench\n";
+      Files.write(dir.resolve(RunIndex.FILE), garbage.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+      index.append(info("0002", "bar", 2000));
+
+      Map<String, JsonObject> runs = index.read();
+      assertEquals(2, runs.size());
+      assertEquals("foo", runs.get("0000").getString("benchmark"));
+      assertEquals("bar", runs.get("0002").getString("benchmark"));
+   }
+}
@@ -0,0 +1,105 @@
+package io.hyperfoil.clustering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.hyperfoil.api.config.Benchmark;
+import io.hyperfoil.api.config.BenchmarkBuilder;
+import io.hyperfoil.api.statistics.StatisticsSnapshot;
+import io.hyperfoil.controller.StatisticsStore;
+
+public class RunUnloadTest {
+   private Benchmark benchmark;
+   private int phaseId;
+
+   @Before
+   public void before() {
+      BenchmarkBuilder builder = BenchmarkBuilder.builder().name("test");
+      builder.addPhase("test").atOnce(1).scenario().initialSequence("test").step(s -> true);
+      benchmark = builder.build();
+      phaseId = benchmark.phases().iterator().next().id();
+   }
+
+   private Run run(String id, int metrics, boolean persisted) {
+      StatisticsStore store = new StatisticsStore(benchmark, failure -> { });
+      for (int i = 0; i < metrics; ++i) {
+         StatisticsSnapshot snapshot = new StatisticsSnapshot();
+         snapshot.histogram.recordValue(TimeUnit.MILLISECONDS.toNanos(1 + i));
+         snapshot.requestCount = 1;
+         store.record("agent", phaseId, 0, "metric" + i, snapshot);
+      }
+      Run run = new Run(id, Paths.get(id), benchmark);
+      run.initStore(store);
+      run.persisted = persisted;
+      return run;
+   }
+
+   private static long size(Run... runs) {
+      return Arrays.stream(runs).mapToLong(Run::estimatedSize).sum();
+   }
+
+   @Test
+   public void testWithinLimits() {
+      Run a = run("0000", 1, true);
+      Run b = run("0001", 1, true);
+      assertTrue(ControllerVerticle.runsToUnload(List.of(a, b), 0, 2, size(a, b)).isEmpty());
+   }
+
+   @Test
+   public void testLeastRecentlyUsedByCount() {
+      Run a = run("0000", 1, true);
+      Run b = run("0001", 1, true);
+      Run c = run("0002", 1, true);
+      Run d = run("0003", 1, true);
+      a.statisticsStore();
+      c.statisticsStore();
+
+      List<Run> unload = ControllerVerticle.runsToUnload(List.of(a, b, c, d), 1, 3, Long.MAX_VALUE);
+      assertEquals(List.of(b, d), unload);
+   }
+
+   @Test
+   public void testEstimatingSizeIsNotAccess() {
+      Run a = run("0000", 1, true);
+      Run b = run("0001", 1, true);
+      // Called repeatedly with the runs in different order this must not shift the access order
+      assertEquals(List.of(a), ControllerVerticle.runsToUnload(List.of(b, a), 0, 1, Long.MAX_VALUE));
+      assertEquals(List.of(a), ControllerVerticle.runsToUnload(List.of(a, b), 0, 1, Long.MAX_VALUE));
+   }
+
+   @Test
+   public void testLeastRecentlyUsedBySize() {
+      Run a = run("0000", 2, true);
+      Run b = run("0001", 1, true);
+      Run c = run("0002", 4, true);
+      b.statisticsStore();
+      assertTrue(size(a) > 0);
+      long total = size(a, b, c);
+
+      // Unloading the least recently used run is sufficient even though it is not the biggest
+      assertEquals(List.of(a), ControllerVerticle.runsToUnload(List.of(a, b, c), 0, 10, total - size(a)));
+      assertEquals(List.of(a, c), ControllerVerticle.runsToUnload(List.of(a, b, c), 0, 10, total - size(a) - 1));
+      assertEquals(List.of(a, c, b), ControllerVerticle.runsToUnload(List.of(a, b, c), 0, 10, 0));
+   }
+
+   @Test
+   public void testKeepRunsNotPersisted() {
+      Run a = run("0000", 4, false);
+      Run b = run("0001", 1, true);
+      Run c = run("0002", 1, true);
+      Run unloaded = run("0003", 1, true);
+      unloaded.unload();
+
+      assertEquals(List.of(b), ControllerVerticle.runsToUnload(List.of(unloaded, a, b, c), 0, 2, Long.MAX_VALUE));
+      // When even all persisted runs are not enough the run in progress stays loaded
+      assertEquals(List.of(b, c), ControllerVerticle.runsToUnload(List.of(unloaded, a, b, c), 0, 0, 0));
+   }
+}
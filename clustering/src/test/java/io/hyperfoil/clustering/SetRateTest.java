@@ -0,0 +1,150 @@
+package io.hyperfoil.clustering;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.ServerSocket;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.hyperfoil.api.config.Benchmark;
+import io.hyperfoil.api.config.BenchmarkBuilder;
+import io.hyperfoil.api.config.Phase;
+import io.hyperfoil.controller.StatisticsStore;
+import io.hyperfoil.controller.model.RateChange;
+import io.hyperfoil.internal.Properties;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Runs the controller in standalone mode with a run that has phases in different states, as if agents were running it.
+ */
+public class SetRateTest {
+   private static final String RUN_ID = "ffff";
+
+   private Vertx vertx;
+   private HttpClient client;
+   private ControllerVerticle controller;
+   private Run run;
+   private int port;
+
+   @Before
+   public void before() throws Exception {
+      BenchmarkBuilder builder = BenchmarkBuilder.builder().name("test");
+      builder.addPhase("constant").constantRate(100).duration(1000).maxSessions(100)
+            .scenario().initialSequence("test").step(s -> true);
+      builder.addPhase("ramp").rampRate(10, 20).duration(1000).maxSessions(100)
+            .scenario().initialSequence("test").step(s -> true);
+      builder.addPhase("closed").atOnce(1)
+            .scenario().initialSequence("test").step(s -> true);
+      builder.addPhase("waiting").constantRate(100).duration(1000).maxSessions(100).startAfter("constant")
+            .scenario().initialSequence("test").step(s -> true);
+      Benchmark benchmark = builder.build();
+
+      run = new Run(RUN_ID, Paths.get(RUN_ID), benchmark);
+      run.initStore(new StatisticsStore(benchmark, failure -> { }));
+      for (Phase phase : benchmark.phases()) {
+         ControllerPhase controllerPhase = new ControllerPhase(phase);
+         if (!phase.name.equals("waiting")) {
+            controllerPhase.status(RUN_ID, ControllerPhase.Status.RUNNING);
+         }
+         run.phases.put(phase.name, controllerPhase);
+      }
+      controller = new ControllerVerticle();
+      controller.runs.put(RUN_ID, run);
+
+      try (ServerSocket socket = new ServerSocket(0)) {
+         port = socket.getLocalPort();
+      }
+      vertx = Vertx.vertx();
+      Codecs.register(vertx);
+      JsonObject config = new JsonObject().put(Properties.CONTROLLER_HOST, "localhost").put(Properties.CONTROLLER_PORT, port);
+      get(vertx.deployVerticle(controller, new DeploymentOptions().setConfig(config)));
+      client = vertx.createHttpClient();
+   }
+
+   @After
+   public void after() throws Exception {
+      if (vertx != null) {
+         get(vertx.close());
+      }
+   }
+
+   private static <T> T get(Future<T> future) throws Exception {
+      return future.toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+   }
+
+   private Response setRate(String runId, String query) throws Exception {
+      return get(client.request(HttpMethod.GET, port, "localhost", "/run/" + runId + "/rate?" + query)
+            .compose(request -> request.send())
+            .compose(response -> response.body().map(body -> new Response(response.statusCode(), body.toString()))));
+   }
+
+   private void assertStatus(int status, String runId, String query) throws Exception {
+      Response response = setRate(runId, query);
+      assertEquals(response.body, status, response.statusCode);
+   }
+
+   @Test
+   public void testUnknownRunOrPhase() throws Exception {
+      assertStatus(404, "0000", "phase=constant&multiplier=2");
+      assertStatus(404, RUN_ID, "phase=missing&multiplier=2");
+      // Phase name must match up to the iteration or fork separator
+      assertStatus(404, RUN_ID, "phase=const&multiplier=2");
+   }
+
+   @Test
+   public void testInvalidParameters() throws Exception {
+      assertStatus(400, RUN_ID, "multiplier=2");
+      assertStatus(400, RUN_ID, "phase=constant");
+      assertStatus(400, RUN_ID, "phase=constant&multiplier=-1");
+      assertStatus(400, RUN_ID, "phase=constant&multiplier=2&usersPerSec=50");
+      // Closed model has no rate
+      assertStatus(400, RUN_ID, "phase=closed&multiplier=2");
+      // Ramps have two rates so these can be only multiplied
+      assertStatus(400, RUN_ID, "phase=ramp&usersPerSec=50");
+      assertEquals(0, run.statisticsStore().rateChanges().size());
+   }
+
+   @Test
+   public void testPhaseNotRunning() throws Exception {
+      assertStatus(409, RUN_ID, "phase=waiting&multiplier=2");
+      run.phases.get("constant").status(RUN_ID, ControllerPhase.Status.FINISHED);
+      assertStatus(409, RUN_ID, "phase=constant&multiplier=2");
+      assertEquals(0, run.statisticsStore().rateChanges().size());
+   }
+
+   @Test
+   public void testSetRate() throws Exception {
+      Response response = setRate(RUN_ID, "phase=constant&usersPerSec=50");
+      assertEquals(response.body, 200, response.statusCode);
+      JsonArray changes = new JsonArray(response.body);
+      assertEquals(1, changes.size());
+      assertEquals("constant", changes.getJsonObject(0).getString("phase"));
+      assertEquals(0.5, changes.getJsonObject(0).getDouble("multiplier"), 1e-9);
+
+      assertStatus(200, RUN_ID, "phase=ramp&multiplier=3");
+      assertEquals(2, run.statisticsStore().rateChanges().size());
+      RateChange last = run.statisticsStore().rateChanges().get(1);
+      assertEquals("ramp", last.phase);
+      assertEquals(3, last.multiplier, 1e-9);
+   }
+
+   private static class Response {
+      final int statusCode;
+      final String body;
+
+      Response(int statusCode, String body) {
+         this.statusCode = statusCode;
+         this.body = body;
+      }
+   }
+}
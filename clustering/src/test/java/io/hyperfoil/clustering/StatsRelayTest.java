@@ -0,0 +1,274 @@
+package io.hyperfoil.clustering;
+
+import static io.hyperfoil.core.builders.StepCatalog.SC;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.hyperfoil.Hyperfoil;
+import io.hyperfoil.api.config.Benchmark;
+import io.hyperfoil.api.config.BenchmarkBuilder;
+import io.hyperfoil.api.session.Session;
+import io.hyperfoil.api.statistics.SessionStatistics;
+import io.hyperfoil.api.statistics.Statistics;
+import io.hyperfoil.api.statistics.StatisticsSnapshot;
+import io.hyperfoil.clustering.messages.AgentControlMessage;
+import io.hyperfoil.clustering.messages.AgentHello;
+import io.hyperfoil.clustering.messages.AgentReadyMessage;
+import io.hyperfoil.clustering.messages.AgentSummaryMessage;
+import io.hyperfoil.clustering.messages.ClockSyncMessage;
+import io.hyperfoil.clustering.messages.ErrorMessage;
+import io.hyperfoil.clustering.messages.PhaseControlMessage;
+import io.hyperfoil.clustering.messages.RequestStatsMessage;
+import io.hyperfoil.clustering.messages.StatsMessage;
+import io.hyperfoil.core.util.CountDown;
+import io.hyperfoil.internal.Properties;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Runs two agents forming one relay group, each in its own clustered Vert.x instance, against a minimal
+ * controller that only sums up the received request statistics.
+ */
+public class StatsRelayTest {
+   private static final String RUN_ID = "0000";
+   private static final String RELAY_ADDRESS = Feeds.STATS + "/" + RUN_ID + "/0";
+   private static final int REQUESTS = 100;
+
+   private Vertx controller;
+   private final List<Vertx> agents = new ArrayList<>();
+   private final Map<String, CompletableFuture<Void>> ready = new ConcurrentHashMap<>();
+   private final Map<String, CompletableFuture<String>> deploymentIds = new ConcurrentHashMap<>();
+   private final Map<String, AtomicInteger> requestsByAddress = new ConcurrentHashMap<>();
+   private final AtomicInteger requests = new AtomicInteger();
+
+   @Before
+   public void before() throws Exception {
+      System.setProperty(Properties.CONTROLLER_HOST, "localhost");
+      System.setProperty(Properties.CONTROLLER_CLUSTER_IP, "localhost");
+      // Starting three clustered nodes in one JVM causes GC pauses
+      System.setProperty(Properties.JITTER_WATCHDOG_THRESHOLD, "60000");
+      controller = get(Hyperfoil.clusteredVertx(true));
+      EventBus eb = controller.eventBus();
+      eb.consumer(Feeds.DISCOVERY, message -> {
+         if (message.body() instanceof AgentHello) {
+            AgentHello hello = (AgentHello) message.body();
+            deploymentIds.computeIfAbsent(hello.name(), n -> new CompletableFuture<>()).complete(hello.deploymentId());
+            message.reply("OK");
+         } else if (message.body() instanceof ClockSyncMessage) {
+            message.reply(System.currentTimeMillis());
+         }
+      });
+      eb.consumer(Feeds.RESPONSE, message -> {
+         if (message.body() instanceof AgentReadyMessage) {
+            ready.computeIfAbsent(((AgentReadyMessage) message.body()).senderId(), a -> new CompletableFuture<>()).complete(null);
+         } else if (message.body() instanceof ErrorMessage) {
+            ready.values().forEach(f -> f.completeExceptionally(((ErrorMessage) message.body()).error()));
+         }
+      });
+      eb.consumer(Feeds.STATS, message -> {
+         if (message.body() instanceof RequestStatsMessage) {
+            RequestStatsMessage stats = (RequestStatsMessage) message.body();
+            if (stats.statistics != null) {
+               requests.addAndGet(stats.statistics.requestCount);
+               requestsByAddress.computeIfAbsent(stats.address, a -> new AtomicInteger()).addAndGet(stats.statistics.requestCount);
+            }
+         }
+         message.reply("OK");
+      });
+      for (int i = 0; i < 2; ++i) {
+         // Agents would pick a non-loopback address but we run all nodes on localhost
+         Vertx agent = get(Hyperfoil.clusteredVertx(true));
+         agents.add(agent);
+         JsonObject config = new JsonObject().put("name", "agent" + i).put("runId", RUN_ID);
+         get(agent.deployVerticle(AgentVerticle.class, new DeploymentOptions().setConfig(config)));
+      }
+   }
+
+   @After
+   public void after() throws Exception {
+      for (Vertx agent : agents) {
+         // Agents shut down their Vert.x when stopped; closing these again is a no-op
+         get(Hyperfoil.shutdownVertx(agent).otherwiseEmpty());
+      }
+      if (controller != null) {
+         get(Hyperfoil.shutdownVertx(controller));
+      }
+   }
+
+   private static <T> T get(Future<T> future) throws Exception {
+      return future.toCompletionStage().toCompletableFuture().get(60, TimeUnit.SECONDS);
+   }
+
+   private static Benchmark benchmark(long statisticsPeriod) {
+      BenchmarkBuilder builder = BenchmarkBuilder.builder().name("test")
+            .addAgent("agent0", "localhost", null)
+            .addAgent("agent1", "localhost", null)
+            .statisticsCollectionPeriod(statisticsPeriod);
+      builder.addPhase("test").atOnce(2).scenario().initialSequence("test")
+            .step(s -> record(s, REQUESTS))
+            // Statistics of a sampling period are published only after a later period becomes active
+            .step(SC).thinkTime(1500, TimeUnit.MILLISECONDS).endStep()
+            .step(s -> record(s, 1))
+            // Block the session forever so that the phase does not complete and the agents must be stopped
+            .step(s -> false);
+      return builder.build();
+   }
+
+   private static boolean record(Session session, int requests) {
+      Statistics statistics = session.statistics(0, "test");
+      long now = System.currentTimeMillis();
+      for (int i = 0; i < requests; ++i) {
+         statistics.incrementRequests(now);
+         statistics.recordResponse(now, TimeUnit.MILLISECONDS.toNanos(1));
+      }
+      return true;
+   }
+
+   private List<String> startRun(Benchmark benchmark) throws Exception {
+      EventBus eb = controller.eventBus();
+      List<String> ids = new ArrayList<>();
+      for (int i = 0; i < 2; ++i) {
+         String deploymentId = deploymentIds.computeIfAbsent("agent" + i, n -> new CompletableFuture<>()).get(60, TimeUnit.SECONDS);
+         ids.add(deploymentId);
+         // The first agent relays statistics from both
+         AgentControlMessage initialize = new AgentControlMessage(AgentControlMessage.Command.INITIALIZE, i, benchmark, RELAY_ADDRESS, i == 0, false);
+         assertEquals("OK", get(eb.request(deploymentId, initialize)).body());
+      }
+      for (String deploymentId : ids) {
+         ready.computeIfAbsent(deploymentId, a -> new CompletableFuture<>()).get(60, TimeUnit.SECONDS);
+      }
+      eb.publish(Feeds.CONTROL, new PhaseControlMessage(PhaseControlMessage.Command.RUN, "test"));
+      return ids;
+   }
+
+   private void stop(String deploymentId) throws Exception {
+      assertEquals("OK", get(controller.eventBus().request(deploymentId, new AgentControlMessage(AgentControlMessage.Command.STOP, 0, null))).body());
+   }
+
+   @Test(timeout = 120_000)
+   public void testFinalStatisticsAfterRelayStopped() throws Exception {
+      // Nothing is sent until the agents are stopped
+      List<String> ids = startRun(benchmark(600_000));
+      Thread.sleep(2500);
+      assertEquals(0, requests.get());
+
+      // The member sends its final statistics after the relay is gone
+      stop(ids.get(0));
+      stop(ids.get(1));
+      assertEquals(2 * REQUESTS, requests.get());
+   }
+
+   @Test(timeout = 120_000)
+   public void testStatisticsThroughRelay() throws Exception {
+      List<String> ids = startRun(benchmark(500));
+      long deadline = System.currentTimeMillis() + 30_000;
+      while (requests.get() < 2 * REQUESTS && System.currentTimeMillis() < deadline) {
+         Thread.sleep(50);
+      }
+      assertEquals(2 * REQUESTS, requests.get());
+      // Both agents' statistics were merged by the relay
+      assertEquals(1, requestsByAddress.size());
+      assertEquals(2 * REQUESTS, requestsByAddress.get(RELAY_ADDRESS).get());
+
+      stop(ids.get(1));
+      stop(ids.get(0));
+      assertEquals(2 * REQUESTS, requests.get());
+   }
+
+   @Test
+   public void testAgentSummaries() throws Exception {
+      Vertx vertx = Vertx.vertx();
+      try {
+         Codecs.register(vertx);
+         List<StatsMessage> received = new ArrayList<>();
+         vertx.eventBus().consumer(Feeds.STATS, message -> {
+            received.add((StatsMessage) message.body());
+            message.reply("OK");
+         });
+         CompletableFuture<Void> stopped = new CompletableFuture<>();
+         vertx.runOnContext(nil -> {
+            StatsRelay relay = new StatsRelay(vertx, RELAY_ADDRESS, RUN_ID, 600_000, true);
+            List<Future> sent = new ArrayList<>();
+            for (int i = 0; i < 3; ++i) {
+               StatisticsSnapshot snapshot = new StatisticsSnapshot();
+               snapshot.sequenceId = 0;
+               snapshot.histogram.recordValue(TimeUnit.MILLISECONDS.toNanos(1));
+               snapshot.requestCount = 1 + i;
+               snapshot.responseCount = 1 + i;
+               // The first agent sends two snapshots
+               String agent = i == 2 ? "agent1" : "agent0";
+               sent.add(vertx.eventBus().request(RELAY_ADDRESS, new RequestStatsMessage(agent, RUN_ID, 0, false, 0, "test", snapshot)));
+            }
+            CompositeFuture.all(sent).compose(nil2 -> relay.stop()).onComplete(result -> stopped.complete(null));
+         });
+         stopped.get(10, TimeUnit.SECONDS);
+         assertEquals(3, received.size());
+         RequestStatsMessage merged = received.stream().filter(RequestStatsMessage.class::isInstance)
+               .map(RequestStatsMessage.class::cast).findFirst().orElseThrow();
+         assertEquals(RELAY_ADDRESS, merged.address);
+         assertEquals(6, merged.statistics.requestCount);
+         Map<String, Integer> summaries = new HashMap<>();
+         for (StatsMessage message : received) {
+            if (message instanceof AgentSummaryMessage) {
+               summaries.put(message.address, ((AgentSummaryMessage) message).requestCount);
+            }
+         }
+         assertEquals(Map.of("agent0", 3, "agent1", 3), summaries);
+      } finally {
+         vertx.close();
+      }
+   }
+
+   @Test
+   public void testSendDirectlyWithoutRelay() throws Exception {
+      Vertx vertx = Vertx.vertx();
+      try {
+         Codecs.register(vertx);
+         List<RequestStatsMessage> received = new ArrayList<>();
+         vertx.eventBus().consumer(Feeds.STATS, message -> {
+            received.add((RequestStatsMessage) message.body());
+            message.reply("OK");
+         });
+         Benchmark benchmark = benchmark(1000);
+         RequestStatsSender sender = new RequestStatsSender(benchmark, vertx.eventBus(), "agent", RUN_ID, "nobody-listens");
+         CompletableFuture<Void> completion = new CompletableFuture<>();
+         vertx.runOnContext(nil -> {
+            long now = System.currentTimeMillis();
+            SessionStatistics sessionStatistics = new SessionStatistics();
+            Statistics statistics = sessionStatistics.getOrCreate(benchmark.phases().iterator().next(), 0, "test", now);
+            for (int i = 0; i < 3; ++i) {
+               statistics.incrementRequests(now);
+               statistics.recordResponse(now, TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            statistics.end(now + 1);
+            sender.accept(sessionStatistics);
+            CountDown countDown = new CountDown(result -> completion.complete(null), 1);
+            sender.send(countDown);
+            countDown.countDown();
+         });
+         completion.get(10, TimeUnit.SECONDS);
+         assertEquals(1, received.size());
+         assertEquals("agent", received.get(0).address);
+         assertEquals(3, received.get(0).statistics.requestCount);
+         assertEquals(0, sender.pending());
+      } finally {
+         vertx.close();
+      }
+   }
+}
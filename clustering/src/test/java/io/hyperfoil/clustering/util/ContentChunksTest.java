@@ -0,0 +1,97 @@
+package io.hyperfoil.clustering.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ContentChunksTest {
+   private static byte[] randomContent(int length, long seed) {
+      byte[] content = new byte[length];
+      new Random(seed).nextBytes(content);
+      return content;
+   }
+
+   private static List<String> digests(byte[] content) {
+      List<String> digests = new ArrayList<>();
+      int start = 0;
+      for (int end : ContentChunks.boundaries(content)) {
+         digests.add(ContentChunks.digest(content, start, end - start));
+         start = end;
+      }
+      return digests;
+   }
+
+   @Test
+   public void testChunkSizes() {
+      byte[] content = randomContent(16 * 1024 * 1024, 1);
+      int[] boundaries = ContentChunks.boundaries(content);
+      assertEquals(content.length, boundaries[boundaries.length - 1]);
+      int start = 0;
+      for (int i = 0; i < boundaries.length - 1; ++i) {
+         int size = boundaries[i] - start;
+         assertTrue("Chunk " + i + " has " + size + " bytes", size > ContentChunks.MIN_CHUNK_SIZE && size <= ContentChunks.MAX_CHUNK_SIZE);
+         start = boundaries[i];
+      }
+      assertTrue(boundaries.length > 3);
+   }
+
+   @Test
+   public void testSmallContent() {
+      assertArrayEquals(new int[0], ContentChunks.boundaries(new byte[0]));
+      assertArrayEquals(new int[]{ 1000 }, ContentChunks.boundaries(randomContent(1000, 2)));
+   }
+
+   @Test
+   public void testSplitterMatchesBoundaries() throws IOException {
+      byte[] content = randomContent(12 * 1024 * 1024 + 123, 3);
+      List<String> digests = new ArrayList<>();
+      List<Integer> ends = new ArrayList<>();
+      int[] total = new int[1];
+      try (ContentChunks.Splitter splitter = new ContentChunks.Splitter((digest, buffer, length) -> {
+         assertEquals(ContentChunks.digest(buffer, 0, length), digest);
+         digests.add(digest);
+         total[0] += length;
+         ends.add(total[0]);
+      })) {
+         // Write in pieces that do not align with the chunks
+         for (int offset = 0; offset < content.length; offset += 10007) {
+            splitter.write(content, offset, Math.min(10007, content.length - offset));
+         }
+      }
+      assertArrayEquals(ContentChunks.boundaries(content), ends.stream().mapToInt(Integer::intValue).toArray());
+      assertEquals(digests(content), digests);
+   }
+
+   @Test
+   public void testBoundariesStableAfterInsert() {
+      byte[] content = randomContent(16 * 1024 * 1024, 4);
+      int insertAt = 5 * 1024 * 1024;
+      byte[] inserted = randomContent(1000, 5);
+      byte[] modified = new byte[content.length + inserted.length];
+      System.arraycopy(content, 0, modified, 0, insertAt);
+      System.arraycopy(inserted, 0, modified, insertAt, inserted.length);
+      System.arraycopy(content, insertAt, modified, insertAt + inserted.length, content.length - insertAt);
+
+      List<String> original = digests(content);
+      List<String> changed = digests(modified);
+      // Chunks before the modification are the same
+      int[] boundaries = ContentChunks.boundaries(content);
+      for (int i = 0; i < boundaries.length && boundaries[i] <= insertAt; ++i) {
+         assertEquals(original.get(i), changed.get(i));
+      }
+      // Boundaries after the modification resynchronize, only chunks around the modification are new
+      Set<String> newChunks = new HashSet<>(changed);
+      newChunks.removeAll(original);
+      assertTrue("New chunks: " + newChunks.size() + " of " + changed.size(), newChunks.size() <= 2);
+      assertTrue(changed.size() - newChunks.size() >= original.size() - 2);
+   }
+}
@@ -0,0 +1,197 @@
+package io.hyperfoil.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+
+import io.hyperfoil.api.config.BenchmarkBuilder;
+import io.hyperfoil.api.statistics.StatisticsSnapshot;
+import io.hyperfoil.controller.model.MetricComparison;
+import io.hyperfoil.controller.model.RunComparison;
+import io.hyperfoil.controller.model.StatisticComparison;
+import io.hyperfoil.core.builders.SLA;
+
+public class HistogramComparisonTest {
+   private static Histogram constant(long millis, int count) {
+      Histogram histogram = new Histogram(2);
+      histogram.recordValueWithCount(TimeUnit.MILLISECONDS.toNanos(millis), count);
+      return histogram;
+   }
+
+   private static Histogram uniform(long fromMillis, long toMillis) {
+      Histogram histogram = new Histogram(2);
+      for (long i = fromMillis; i <= toMillis; ++i) {
+         histogram.recordValue(TimeUnit.MILLISECONDS.toNanos(i));
+      }
+      return histogram;
+   }
+
+   private static Map<String, Map<String, Histogram>> run(Histogram histogram) {
+      return Map.of("test", Map.of("foo", histogram));
+   }
+
+   private static MetricComparison compare(Histogram target, Histogram... baselines) {
+      List<Map<String, Map<String, Histogram>>> runs = Stream.of(baselines).map(HistogramComparisonTest::run)
+            .collect(Collectors.toList());
+      List<String> ids = Stream.iterate(0, i -> i + 1).limit(baselines.length).map(i -> String.format("%04X", i))
+            .collect(Collectors.toList());
+      RunComparison comparison = HistogramComparison.compare("0100", run(target), ids, runs);
+      assertEquals("0100", comparison.runId);
+      assertEquals(ids, comparison.baseline);
+      assertEquals(1, comparison.metrics.size());
+      MetricComparison metric = comparison.metrics.get(0);
+      assertEquals("test", metric.phase);
+      assertEquals("foo", metric.metric);
+      return metric;
+   }
+
+   private static StatisticComparison statistic(MetricComparison metric, String name) {
+      return metric.statistics.stream().filter(s -> s.name.equals(name)).findFirst().orElseThrow();
+   }
+
+   @Test
+   public void testSameAsBaseline() {
+      MetricComparison metric = compare(uniform(1, 1000), uniform(1, 1000), uniform(1, 1000), uniform(1, 1000));
+      assertEquals(1000, metric.requests);
+      assertEquals(3, metric.baselineRuns);
+      assertEquals(0, metric.ksDistance, 0);
+      // mean and 5 percentiles
+      assertEquals(6, metric.statistics.size());
+      for (StatisticComparison statistic : metric.statistics) {
+         assertEquals(statistic.name, statistic.baselineMean, statistic.value, 0);
+         assertEquals(0, statistic.baselineStdDev, 0);
+         assertEquals(0, statistic.relativeDelta, 0);
+         assertEquals(0, statistic.trend, 0);
+         // Zero deviation in the baseline does not make any difference significant
+         assertTrue(Double.isNaN(statistic.zScore));
+         assertFalse(statistic.significant);
+      }
+   }
+
+   @Test
+   public void testSignificantRegression() {
+      MetricComparison metric = compare(constant(300, 100), constant(100, 100), constant(110, 100), constant(120, 100));
+      assertEquals(3, metric.baselineRuns);
+      // Distributions do not overlap at all
+      assertEquals(1, metric.ksDistance, 0);
+      StatisticComparison mean = statistic(metric, "mean");
+      double ms = TimeUnit.MILLISECONDS.toNanos(1);
+      assertEquals(300, mean.value / ms, 3);
+      assertEquals(110, mean.baselineMean / ms, 2);
+      assertEquals(10, mean.baselineStdDev / ms, 1);
+      assertEquals(190.0 / 110, mean.relativeDelta, 0.05);
+      assertEquals(19, mean.zScore, 2);
+      assertTrue(mean.trend > 0);
+      assertTrue(mean.significant);
+      assertTrue(statistic(metric, "99.0").significant);
+   }
+
+   @Test
+   public void testImprovement() {
+      MetricComparison metric = compare(constant(50, 100), constant(100, 100), constant(110, 100), constant(120, 100));
+      StatisticComparison mean = statistic(metric, "mean");
+      assertTrue(mean.relativeDelta < 0);
+      assertTrue(mean.zScore < -3);
+      assertTrue(mean.significant);
+   }
+
+   @Test
+   public void testWithinNoise() {
+      MetricComparison metric = compare(constant(115, 100), constant(100, 100), constant(130, 100), constant(110, 100));
+      StatisticComparison mean = statistic(metric, "mean");
+      assertTrue(Math.abs(mean.zScore) < 3);
+      assertFalse(mean.significant);
+   }
+
+   @Test
+   public void testTooFewBaselineRuns() {
+      MetricComparison metric = compare(constant(300, 100), constant(100, 100), constant(110, 100));
+      assertEquals(2, metric.baselineRuns);
+      StatisticComparison mean = statistic(metric, "mean");
+      assertTrue(mean.zScore > 3);
+      assertFalse(mean.significant);
+   }
+
+   @Test
+   public void testMetricMissingInBaseline() {
+      // Empty histogram is the same as a missing one
+      MetricComparison metric = compare(constant(100, 10), new Histogram(2));
+      assertEquals(0, metric.baselineRuns);
+      assertTrue(Double.isNaN(metric.ksDistance));
+      StatisticComparison mean = statistic(metric, "mean");
+      assertTrue(Double.isNaN(mean.baselineMean));
+      assertTrue(Double.isNaN(mean.relativeDelta));
+      assertTrue(Double.isNaN(mean.trend));
+      assertFalse(mean.significant);
+   }
+
+   @Test
+   public void testPartialOverlap() {
+      MetricComparison metric = compare(uniform(51, 150), uniform(1, 100));
+      assertEquals(0.5, metric.ksDistance, 0.02);
+   }
+
+   @Test
+   public void testTotalHistograms() throws IOException {
+      BenchmarkBuilder builder = BenchmarkBuilder.builder().name("test");
+      builder.addPhase("test").atOnce(1).scenario().initialSequence("test").step(s -> true);
+      StatisticsStore store = new StatisticsStore(builder.build(), failure -> { });
+      Path dir = Files.createTempDirectory("histogram-comparison-test");
+      try {
+         SeriesLog seriesLog = SeriesLog.create(dir);
+         store.setSeriesLog(seriesLog);
+         // Same metric in two steps is merged
+         Data first = new Data(store, "test", false, 1, "foo", Collections.emptyMap(), new SLA[0]);
+         Data second = new Data(store, "test", false, 2, "foo", Collections.emptyMap(), new SLA[0]);
+         Data other = new Data(store, "test", false, 1, "bar", Collections.emptyMap(), new SLA[0]);
+         store.addData(0, "foo", first);
+         store.addData(1, "foo", second);
+         store.addData(2, "bar", other);
+         // The full-resolution histograms in the series log take precedence over total, agent records are ignored
+         first.total.histogram.add(constant(1, 1000));
+         append(seriesLog, first, null, constant(10, 3));
+         append(seriesLog, first, "agent", constant(20, 5));
+         append(seriesLog, first, null, constant(30, 7));
+         // Without records in the log we use the total
+         second.total.histogram.add(constant(40, 11));
+         other.total.histogram.add(constant(50, 13));
+         seriesLog.close();
+
+         Map<String, Map<String, Histogram>> histograms = HistogramComparison.totalHistograms(store);
+         assertEquals(1, histograms.size());
+         Map<String, Histogram> byMetric = histograms.get("test");
+         assertEquals(2, byMetric.size());
+         Histogram foo = byMetric.get("foo");
+         assertEquals(21, foo.getTotalCount());
+         assertEquals(0, foo.getCountAtValue(TimeUnit.MILLISECONDS.toNanos(1)));
+         assertEquals(0, foo.getCountAtValue(TimeUnit.MILLISECONDS.toNanos(20)));
+         assertEquals(7, foo.getCountAtValue(TimeUnit.MILLISECONDS.toNanos(30)));
+         assertEquals(11, foo.getCountAtValue(TimeUnit.MILLISECONDS.toNanos(40)));
+         assertEquals(13, byMetric.get("bar").getTotalCount());
+      } finally {
+         try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Collections.reverseOrder()).forEach(file -> file.toFile().delete());
+         }
+      }
+   }
+
+   private static void append(SeriesLog seriesLog, Data data, String agent, Histogram histogram) {
+      StatisticsSnapshot snapshot = new StatisticsSnapshot();
+      snapshot.histogram.add(histogram);
+      snapshot.requestCount = (int) histogram.getTotalCount();
+      seriesLog.append(data, agent, snapshot.summary(new double[0]), snapshot);
+   }
+}
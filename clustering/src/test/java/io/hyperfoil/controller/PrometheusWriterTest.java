@@ -0,0 +1,135 @@
+package io.hyperfoil.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.hyperfoil.api.config.Benchmark;
+import io.hyperfoil.api.config.BenchmarkBuilder;
+import io.hyperfoil.api.statistics.StatisticsSnapshot;
+import io.hyperfoil.core.util.LowHigh;
+
+public class PrometheusWriterTest {
+   // metric_name{label="value",...} value
+   private static final Pattern SAMPLE = Pattern.compile(
+         "[a-zA-Z_:][a-zA-Z0-9_:]*(\\{[a-zA-Z_][a-zA-Z0-9_]*=\"([^\"\\\\\\n]|\\\\[\\\\\"n])*\"(,[a-zA-Z_][a-zA-Z0-9_]*=\"([^\"\\\\\\n]|\\\\[\\\\\"n])*\")*})? \\S+");
+
+   private StatisticsStore store;
+   private int phaseId;
+
+   @Before
+   public void before() {
+      BenchmarkBuilder builder = BenchmarkBuilder.builder().name("test");
+      builder.addPhase("test").atOnce(1).scenario().initialSequence("test").step(s -> true);
+      Benchmark benchmark = builder.build();
+      phaseId = benchmark.phases().iterator().next().id();
+      store = new StatisticsStore(benchmark, failure -> { });
+   }
+
+   private static StatisticsSnapshot snapshot(int sequenceId, int requests) {
+      StatisticsSnapshot snapshot = new StatisticsSnapshot();
+      snapshot.sequenceId = sequenceId;
+      long timestamp = 1000 + sequenceId * 1000L;
+      snapshot.histogram.setStartTimeStamp(timestamp);
+      snapshot.histogram.setEndTimeStamp(timestamp + 1000);
+      for (int i = 0; i < requests; ++i) {
+         snapshot.histogram.recordValue(TimeUnit.MILLISECONDS.toNanos(10));
+      }
+      snapshot.requestCount = requests;
+      snapshot.responseCount = requests;
+      return snapshot;
+   }
+
+   private static List<String> lines(PrometheusWriter writer) {
+      return Arrays.asList(writer.result().toString().split("\n"));
+   }
+
+   private static void assertValidFormat(List<String> lines) {
+      for (String line : lines) {
+         if (line.startsWith("# HELP ") || line.startsWith("# TYPE ")) {
+            continue;
+         }
+         assertTrue(line, SAMPLE.matcher(line).matches());
+      }
+   }
+
+   @Test
+   public void testLabelsAndValues() {
+      PrometheusWriter writer = new PrometheusWriter();
+      writer.family("foo", "gauge", "Foo help.");
+      writer.sample("foo").value(1);
+      writer.sample("foo").label("a", "x").label("b", "quote \" backslash \\ newline \n").value(2.5);
+      writer.sample("foo").label("a", "y").value(Double.POSITIVE_INFINITY);
+      assertEquals("# HELP foo Foo help.\n" +
+            "# TYPE foo gauge\n" +
+            "foo 1\n" +
+            "foo{a=\"x\",b=\"quote \\\" backslash \\\\ newline \\n\"} 2.5\n" +
+            "foo{a=\"y\"} +Inf\n", writer.result().toString());
+      assertValidFormat(lines(writer));
+
+      // The buffer is reused
+      writer.reset().sample("bar").value(-1);
+      assertEquals("bar -1\n", writer.result().toString());
+   }
+
+   @Test
+   public void testRequestStats() {
+      store.record("agent", phaseId, 0, "test", snapshot(0, 4));
+      store.record("agent", phaseId, 0, "test", snapshot(1, 6));
+      PrometheusWriter writer = new PrometheusWriter();
+      writer.requestStats(Collections.singletonMap("0001", store));
+      List<String> lines = lines(writer);
+      assertValidFormat(lines);
+
+      String labels = "{run=\"0001\",phase=\"test\",metric=\"test\"}";
+      assertTrue(lines.contains("hyperfoil_requests_total" + labels + " 10"));
+      assertTrue(lines.contains("hyperfoil_responses_total" + labels + " 10"));
+      assertTrue(lines.contains("hyperfoil_request_errors_total{run=\"0001\",phase=\"test\",metric=\"test\",type=\"timeout\"} 0"));
+      // The recent period is the first one: 4 requests in 1 second
+      assertTrue(lines.contains("hyperfoil_request_rate" + labels + " 4.0"));
+      assertTrue(lines.contains("hyperfoil_response_time_seconds_count" + labels + " 10"));
+      List<String> quantiles = lines.stream().filter(l -> l.startsWith("hyperfoil_response_time_seconds{")).collect(Collectors.toList());
+      assertEquals(StatisticsStore.PERCENTILES.length, quantiles.size());
+      assertTrue(quantiles.get(0), quantiles.get(0).startsWith("hyperfoil_response_time_seconds{run=\"0001\",phase=\"test\",metric=\"test\",quantile=\"0.5\"} 0.01"));
+
+      // Each family is declared exactly once, before its samples
+      for (String family : Arrays.asList("hyperfoil_requests_total", "hyperfoil_responses_total", "hyperfoil_request_errors_total",
+            "hyperfoil_request_rate", "hyperfoil_response_time_seconds")) {
+         int type = lines.indexOf("# TYPE " + family + (family.endsWith("_total") ? " counter" : family.endsWith("rate") ? " gauge" : " summary"));
+         assertTrue(family, type > 0);
+         assertTrue(lines.get(type - 1).startsWith("# HELP " + family + " "));
+         assertEquals(1, lines.stream().filter(l -> l.startsWith("# TYPE " + family + " ")).count());
+         assertTrue(lines.get(type + 1).startsWith(family));
+      }
+   }
+
+   @Test
+   public void testPools() {
+      store.recordSessionStats("agent-one", 1000, "test", 1, 5);
+      store.recordSessionStats("agent-one", 2000, "test", 2, 3);
+      Map<String, LowHigh> byType = Collections.singletonMap("HTTP 1.x", new LowHigh(4, 8));
+      store.recordConnectionStats("agent-one", 1000, Collections.singletonMap("localhost:8080", byType));
+
+      PrometheusWriter writer = new PrometheusWriter();
+      Map<String, StatisticsStore> stores = Collections.singletonMap("0002", store);
+      writer.sessionPools(stores);
+      writer.connectionPools(stores);
+      List<String> lines = lines(writer);
+      assertValidFormat(lines);
+      // Only the last record is reported
+      assertTrue(lines.contains("hyperfoil_sessions_min{run=\"0002\",phase=\"test\",agent=\"agent-one\"} 2"));
+      assertTrue(lines.contains("hyperfoil_sessions_max{run=\"0002\",phase=\"test\",agent=\"agent-one\"} 3"));
+      assertTrue(lines.contains("hyperfoil_connections_min{run=\"0002\",authority=\"localhost:8080\",type=\"HTTP 1.x\",agent=\"agent-one\"} 4"));
+      assertTrue(lines.contains("hyperfoil_connections_max{run=\"0002\",authority=\"localhost:8080\",type=\"HTTP 1.x\",agent=\"agent-one\"} 8"));
+   }
+}
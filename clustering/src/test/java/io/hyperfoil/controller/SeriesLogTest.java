@@ -0,0 +1,191 @@
+package io.hyperfoil.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.HdrHistogram.Histogram;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.hyperfoil.api.config.BenchmarkBuilder;
+import io.hyperfoil.api.statistics.Counters;
+import io.hyperfoil.api.statistics.StatisticsSnapshot;
+import io.hyperfoil.api.statistics.StatisticsSummary;
+import io.hyperfoil.api.statistics.StatsExtension;
+import io.hyperfoil.core.builders.SLA;
+
+public class SeriesLogTest {
+   private static final double[] PERCENTILES = { 50, 99.9 };
+
+   private Path dir;
+   private StatisticsStore store;
+
+   @BeforeClass
+   public static void beforeClass() {
+      StatsExtension.registerSubtypes();
+   }
+
+   @Before
+   public void before() throws IOException {
+      dir = Files.createTempDirectory("series-log-test");
+      BenchmarkBuilder builder = BenchmarkBuilder.builder().name("test");
+      builder.addPhase("test").atOnce(1).scenario().initialSequence("test").step(s -> true);
+      store = new StatisticsStore(builder.build(), failure -> { });
+   }
+
+   @After
+   public void after() throws IOException {
+      try (Stream<Path> files = Files.walk(dir)) {
+         files.sorted(Collections.reverseOrder()).forEach(file -> file.toFile().delete());
+      }
+   }
+
+   private Data data(int stepId, String metric) {
+      return new Data(store, "test", false, stepId, metric, Collections.emptyMap(), new SLA[0]);
+   }
+
+   private static StatisticsSnapshot snapshot(long start, int requests) {
+      StatisticsSnapshot snapshot = new StatisticsSnapshot();
+      snapshot.histogram.setStartTimeStamp(start);
+      snapshot.histogram.setEndTimeStamp(start + 1000);
+      for (int i = 0; i < requests; ++i) {
+         snapshot.histogram.recordValue(TimeUnit.MILLISECONDS.toNanos(1 + i));
+      }
+      snapshot.requestCount = requests;
+      snapshot.responseCount = requests;
+      snapshot.invalid = 1;
+      snapshot.blockedTime = 42;
+      return snapshot;
+   }
+
+   private static void append(SeriesLog log, Data data, String agent, StatisticsSnapshot snapshot) {
+      log.append(data, agent, snapshot.summary(PERCENTILES), snapshot);
+   }
+
+   private static void assertRecord(SeriesLog.Reader reader, String agent, StatisticsSnapshot expected) throws IOException {
+      assertTrue(reader.next());
+      assertEquals(agent, reader.agent());
+      StatisticsSummary expectedSummary = expected.summary(PERCENTILES);
+      StatisticsSummary summary = reader.summary();
+      assertEquals(expectedSummary.startTime, summary.startTime);
+      assertEquals(expectedSummary.endTime, summary.endTime);
+      assertEquals(expectedSummary.minResponseTime, summary.minResponseTime);
+      assertEquals(expectedSummary.meanResponseTime, summary.meanResponseTime);
+      assertEquals(expectedSummary.maxResponseTime, summary.maxResponseTime);
+      assertEquals(expectedSummary.percentileResponseTime, summary.percentileResponseTime);
+      assertEquals(expectedSummary.requestCount, summary.requestCount);
+      assertEquals(expectedSummary.responseCount, summary.responseCount);
+      assertEquals(expectedSummary.invalid, summary.invalid);
+      assertEquals(expectedSummary.blockedTime, summary.blockedTime);
+      Histogram histogram = reader.histogram();
+      assertEquals(expected.histogram.getTotalCount(), histogram.getTotalCount());
+      assertEquals(expected.histogram.getMaxValue(), histogram.getMaxValue());
+   }
+
+   @Test
+   public void testRoundTrip() throws IOException {
+      Data data = data(1, "foo");
+      StatisticsSnapshot agent = snapshot(1000, 3);
+      Counters counters = new Counters();
+      counters.increment("2xx");
+      counters.increment("2xx");
+      agent.extensions.put("status", counters);
+      StatisticsSnapshot total = snapshot(1000, 5);
+      StatisticsSnapshot next = snapshot(2000, 7);
+
+      SeriesLog writeLog = SeriesLog.create(dir);
+      append(writeLog, data, "agent1", agent);
+      append(writeLog, data, null, total);
+      append(writeLog, data, null, next);
+      writeLog.complete(data);
+      writeLog.close();
+
+      SeriesLog readLog = SeriesLog.open(dir);
+      assertNotNull(readLog);
+      // Data recreated when the run is loaded from disk
+      try (SeriesLog.Reader reader = readLog.reader(data(1, "foo"))) {
+         assertNotNull(reader);
+         assertRecord(reader, "agent1", agent);
+         Counters readCounters = (Counters) reader.summary().extensions.get("status");
+         assertEquals("2", readCounters.byHeader("2xx"));
+         assertRecord(reader, null, total);
+         assertTrue(reader.summary().extensions.isEmpty());
+         assertRecord(reader, null, next);
+         assertFalse(reader.next());
+      }
+      assertNull(readLog.reader(data(1, "bar")));
+   }
+
+   @Test
+   public void testSameMetricInTwoSteps() throws IOException {
+      Data first = data(1, "foo");
+      Data second = data(2, "foo");
+      StatisticsSnapshot firstSnapshot = snapshot(1000, 3);
+      StatisticsSnapshot secondSnapshot = snapshot(1000, 11);
+
+      SeriesLog writeLog = SeriesLog.create(dir);
+      append(writeLog, first, null, firstSnapshot);
+      append(writeLog, second, null, secondSnapshot);
+      writeLog.close();
+
+      SeriesLog readLog = SeriesLog.open(dir);
+      assertNotNull(readLog);
+      try (SeriesLog.Reader reader = readLog.reader(data(2, "foo"))) {
+         assertRecord(reader, null, secondSnapshot);
+         assertFalse(reader.next());
+      }
+      try (SeriesLog.Reader reader = readLog.reader(data(1, "foo"))) {
+         assertRecord(reader, null, firstSnapshot);
+         assertFalse(reader.next());
+      }
+      assertNull(readLog.reader(data(3, "foo")));
+   }
+
+   @Test
+   public void testForEachSeries() throws IOException {
+      Data data = data(1, "foo");
+      SeriesLog writeLog = SeriesLog.create(dir);
+      append(writeLog, data, "agent1", snapshot(1000, 3));
+      append(writeLog, data, "agent2", snapshot(1000, 2));
+      append(writeLog, data, null, snapshot(1000, 5));
+      append(writeLog, data, "agent1", snapshot(2000, 4));
+      append(writeLog, data, null, snapshot(2000, 4));
+      writeLog.complete(data);
+      writeLog.close();
+
+      store.setSeriesLog(SeriesLog.open(dir));
+      Map<String, List<Integer>> requests = new HashMap<>();
+      Map<String, SeriesLog.SeriesConsumer> consumers = new HashMap<>();
+      for (String agent : Arrays.asList(null, "agent1", "agent2")) {
+         List<Integer> list = new ArrayList<>();
+         requests.put(agent, list);
+         consumers.put(agent, summary -> list.add(summary.requestCount));
+      }
+      store.forEachSeries(data(1, "foo"), consumers);
+      assertEquals(Arrays.asList(5, 4), requests.get(null));
+      assertEquals(Arrays.asList(3, 4), requests.get("agent1"));
+      assertEquals(Collections.singletonList(2), requests.get("agent2"));
+   }
+
+   @Test
+   public void testOpenMissingDirectory() throws IOException {
+      assertNull(SeriesLog.open(dir.resolve("missing")));
+   }
+}
@@ -0,0 +1,121 @@
+package io.hyperfoil.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.hyperfoil.api.config.Benchmark;
+import io.hyperfoil.api.config.BenchmarkBuilder;
+import io.hyperfoil.api.statistics.StatisticsSnapshot;
+import io.hyperfoil.api.statistics.StatisticsSummary;
+import io.hyperfoil.controller.model.RequestStats;
+
+public class StatisticsStoreTest {
+   private StatisticsStore store;
+   private int phaseId;
+   private final List<RequestStats> published = new ArrayList<>();
+
+   @Before
+   public void before() {
+      BenchmarkBuilder builder = BenchmarkBuilder.builder().name("test");
+      builder.addPhase("test").atOnce(1).scenario().initialSequence("test").step(s -> true);
+      Benchmark benchmark = builder.build();
+      phaseId = benchmark.phases().iterator().next().id();
+      store = new StatisticsStore(benchmark, failure -> { });
+      store.setRecentStatsListener(published::add);
+   }
+
+   private static StatisticsSnapshot snapshot(int sequenceId, int requests) {
+      StatisticsSnapshot snapshot = new StatisticsSnapshot();
+      snapshot.sequenceId = sequenceId;
+      long timestamp = 1000 + sequenceId * 1000L;
+      snapshot.histogram.setStartTimeStamp(timestamp);
+      snapshot.histogram.setEndTimeStamp(timestamp + 1000);
+      for (int i = 0; i < requests; ++i) {
+         snapshot.histogram.recordValue(TimeUnit.MILLISECONDS.toNanos(1 + i));
+      }
+      snapshot.requestCount = requests;
+      snapshot.responseCount = requests;
+      return snapshot;
+   }
+
+   private StatisticsSummary recentSummary() {
+      List<RequestStats> recent = store.recentSummary(0);
+      assertEquals(1, recent.size());
+      return recent.get(0).summary;
+   }
+
+   @Test
+   public void testRecentSummaryComputedOnce() {
+      store.record("agent1", phaseId, 0, "test", snapshot(0, 3));
+      // The first period is not considered complete until we receive the next one
+      assertTrue(store.recentSummary(0).isEmpty());
+      assertTrue(published.isEmpty());
+
+      store.record("agent1", phaseId, 0, "test", snapshot(1, 5));
+      assertEquals(1, published.size());
+      StatisticsSummary summary = published.get(0).summary;
+      assertEquals(3, summary.requestCount);
+      // Polling readers share the summary pushed to the listener
+      assertSame(summary, recentSummary());
+      assertSame(summary, recentSummary());
+
+      // Statistics for the last (incomplete) period do not invalidate the summary
+      store.record("agent2", phaseId, 0, "test", snapshot(1, 2));
+      assertSame(summary, recentSummary());
+      assertEquals(1, published.size());
+   }
+
+   @Test
+   public void testLateStatisticsRecomputeSummary() {
+      store.record("agent1", phaseId, 0, "test", snapshot(0, 3));
+      store.record("agent1", phaseId, 0, "test", snapshot(1, 5));
+      StatisticsSummary summary = recentSummary();
+      assertEquals(3, summary.requestCount);
+
+      // Another agent sends statistics for the period late
+      store.record("agent2", phaseId, 0, "test", snapshot(0, 4));
+      StatisticsSummary updated = recentSummary();
+      assertNotSame(summary, updated);
+      assertEquals(7, updated.requestCount);
+      assertSame(updated, recentSummary());
+   }
+
+   @Test
+   public void testNextPeriod() {
+      store.record("agent1", phaseId, 0, "test", snapshot(0, 3));
+      store.record("agent1", phaseId, 0, "test", snapshot(1, 5));
+      store.record("agent1", phaseId, 0, "test", snapshot(2, 1));
+      assertEquals(2, published.size());
+      assertEquals(5, published.get(1).summary.requestCount);
+      assertSame(published.get(1).summary, recentSummary());
+
+      store.setRecentStatsListener(null);
+      store.record("agent1", phaseId, 0, "test", snapshot(3, 1));
+      assertEquals(2, published.size());
+      assertEquals(1, recentSummary().requestCount);
+   }
+
+   @Test
+   public void testAgentSummaryNotInTotal() {
+      store.record("relay-agent1", phaseId, 0, "test", snapshot(0, 5));
+      StatisticsSnapshot summary = new StatisticsSnapshot();
+      summary.requestCount = 3;
+      store.recordAgentSummary("agent1", phaseId, 0, "test", summary);
+      store.recordAgentSummary("agent2", phaseId, 0, "test", summary);
+
+      Data data = store.getData().iterator().next();
+      assertEquals(5, data.total.requestCount);
+      assertEquals(5, data.perAgent.get("relay-agent1").requestCount);
+      assertEquals(3, data.perAgent.get("agent1").requestCount);
+      assertEquals(3, data.perAgent.get("agent2").requestCount);
+   }
+}
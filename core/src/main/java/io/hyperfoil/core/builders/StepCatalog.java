@@ -14,6 +14,7 @@ import io.hyperfoil.core.generators.RandomCsvRowStep;
 import io.hyperfoil.core.generators.RandomIntStep;
 import io.hyperfoil.core.generators.RandomItemStep;
 import io.hyperfoil.core.generators.TemplateStep;
+import io.hyperfoil.core.generators.UniqueCsvRowStep;
 import io.hyperfoil.core.session.SessionFactory;
 import io.hyperfoil.core.steps.AwaitConditionStep;
 import io.hyperfoil.core.steps.AwaitDelayStep;
@@ -220,6 +221,10 @@ public class StepCatalog implements Step.Catalog, ServiceLoadedBuilderProvider.O
       return new RandomCsvRowStep.Builder().addTo(parent);
    }
 
+   public UniqueCsvRowStep.Builder uniqueCsvRow() {
+      return new UniqueCsvRowStep.Builder().addTo(parent);
+   }
+
    @Override
    public ServiceLoadedBuilderProvider<StepBuilder> serviceLoaded() {
       return new ServiceLoadedBuilderProvider<>(StepBuilder.class, parent::stepBuilder, parent);
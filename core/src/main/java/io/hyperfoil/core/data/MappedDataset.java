@@ -0,0 +1,311 @@
+package io.hyperfoil.core.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import io.hyperfoil.api.config.BenchmarkDefinitionException;
+import io.hyperfoil.api.config.Visitor;
+import io.hyperfoil.impl.CollectingVisitor;
+import io.hyperfoil.internal.Properties;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Read-only table of strings stored in a memory-mapped file.
+ * <p>
+ * The file is columnar: for each column there is an index of <code>rows + 1</code> offsets followed by UTF-8 encoded
+ * values of all rows in this column. Values are decoded only when a row is selected so the heap does not hold
+ * any per-row objects.
+ * <p>
+ * When the dataset is serialized (e.g. as a part of the benchmark sent to agents) the file contents are written
+ * to the stream; on deserialization the contents are stored in a new file in {@link Properties#DATASET_DIR}
+ * and mapped again. Such files are removed through {@link #deleteMaterialized(Object)} when the run ends.
+ */
+public class MappedDataset implements Serializable {
+   private static final Logger log = LogManager.getLogger(MappedDataset.class);
+   private static final int MAGIC = 0x48464453; // HFDS
+   private static final int VERSION = 1;
+   private static final int HEADER_SIZE = 16;
+   private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+
+   private String hash;
+   private int rows;
+   private int columns;
+   @Visitor.Ignore
+   private transient Path path;
+   @Visitor.Ignore
+   private transient ByteBuffer[] offsets;
+   @Visitor.Ignore
+   private transient ByteBuffer[] data;
+   @Visitor.Ignore
+   private transient boolean materialized;
+
+   private MappedDataset(String hash, Path path) throws IOException {
+      this.hash = hash;
+      map(path);
+   }
+
+   private void map(Path path) throws IOException {
+      this.path = path;
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+         MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+         if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("File " + path + " is not a dataset");
+         }
+         rows = header.getInt(8);
+         columns = header.getInt(12);
+         MappedByteBuffer lengths = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, 8L * columns);
+         offsets = new ByteBuffer[columns];
+         data = new ByteBuffer[columns];
+         long position = HEADER_SIZE + 8L * columns;
+         for (int i = 0; i < columns; ++i) {
+            long indexSize = 4L * (rows + 1);
+            offsets[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, indexSize);
+            position += indexSize;
+            long dataSize = lengths.getLong(8 * i);
+            data[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, dataSize);
+            position += dataSize;
+         }
+      }
+   }
+
+   public int rows() {
+      return rows;
+   }
+
+   public int columns() {
+      return columns;
+   }
+
+   Path path() {
+      return path;
+   }
+
+   public String get(int row, int column) {
+      ByteBuffer index = offsets[column];
+      int start = index.getInt(4 * row);
+      int length = index.getInt(4 * row + 4) - start;
+      byte[] bytes = SCRATCH.get();
+      if (bytes.length < length) {
+         bytes = new byte[Math.max(length, 2 * bytes.length)];
+         SCRATCH.set(bytes);
+      }
+      ByteBuffer buffer = data[column];
+      for (int i = 0; i < length; ++i) {
+         bytes[i] = buffer.get(start + i);
+      }
+      return new String(bytes, 0, length, StandardCharsets.UTF_8);
+   }
+
+   private void writeObject(ObjectOutputStream out) throws IOException {
+      out.defaultWriteObject();
+      out.writeLong(Files.size(path));
+      byte[] buffer = new byte[8192];
+      try (InputStream input = Files.newInputStream(path)) {
+         int n;
+         while ((n = input.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+         }
+      }
+   }
+
+   private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      long size = in.readLong();
+      // Each copy gets its own file; another agent on this host may delete its copy when its run ends
+      Path target = Files.createTempFile(datasetDir(), hash + ".", ".dataset");
+      byte[] buffer = new byte[8192];
+      try (OutputStream output = Files.newOutputStream(target)) {
+         for (long remaining = size; remaining > 0; ) {
+            int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (n < 0) {
+               throw new IOException("Unexpected end of stream");
+            }
+            output.write(buffer, 0, n);
+            remaining -= n;
+         }
+      } catch (IOException e) {
+         Files.deleteIfExists(target);
+         throw e;
+      }
+      materialized = true;
+      map(target);
+   }
+
+   /**
+    * Remove the file backing this dataset if it was created on deserialization; files created
+    * when the benchmark is built are kept. Existing mappings stay valid until garbage-collected,
+    * though the dataset should not be used after the run ends.
+    */
+   public void delete() {
+      if (!materialized) {
+         return;
+      }
+      materialized = false;
+      try {
+         Files.deleteIfExists(path);
+         log.debug("Deleted dataset {}", path);
+      } catch (IOException e) {
+         log.warn("Cannot delete dataset {}", path, e);
+      }
+   }
+
+   /**
+    * Deletes all datasets materialized when <code>root</code> (usually the benchmark) was deserialized.
+    *
+    * @param root Object referencing the datasets.
+    */
+   public static void deleteMaterialized(Object root) {
+      new CollectingVisitor<>(MappedDataset.class) {
+         @Override
+         protected boolean process(MappedDataset dataset) {
+            dataset.delete();
+            return false;
+         }
+      }.visit(root);
+   }
+
+   private static Path datasetDir() throws IOException {
+      Path dir = Paths.get(Properties.get(Properties.DATASET_DIR,
+            Paths.get(System.getProperty("java.io.tmpdir"), "hyperfoil-datasets").toString()));
+      Files.createDirectories(dir);
+      return dir;
+   }
+
+   /**
+    * Builds the dataset file row by row; column values are spooled to temporary files and the final file
+    * is assembled in {@link #complete()}.
+    */
+   public static class Writer implements AutoCloseable {
+      private final int columns;
+      private final Path[] dataFiles;
+      private final DataOutputStream[] dataStreams;
+      private final Path[] indexFiles;
+      private final DataOutputStream[] indexStreams;
+      private final long[] dataLengths;
+      private int rows;
+
+      public Writer(int columns) {
+         this.columns = columns;
+         this.dataFiles = new Path[columns];
+         this.dataStreams = new DataOutputStream[columns];
+         this.indexFiles = new Path[columns];
+         this.indexStreams = new DataOutputStream[columns];
+         this.dataLengths = new long[columns];
+         try {
+            for (int i = 0; i < columns; ++i) {
+               dataFiles[i] = Files.createTempFile("dataset.", ".data");
+               dataStreams[i] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dataFiles[i])));
+               indexFiles[i] = Files.createTempFile("dataset.", ".index");
+               indexStreams[i] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFiles[i])));
+               indexStreams[i].writeInt(0);
+            }
+         } catch (IOException e) {
+            close();
+            throw new BenchmarkDefinitionException("Cannot create dataset", e);
+         }
+      }
+
+      public void addRow(String[] row) {
+         if (row.length != columns) {
+            throw new IllegalArgumentException("Expected " + columns + " columns, got " + row.length);
+         }
+         try {
+            for (int i = 0; i < columns; ++i) {
+               byte[] bytes = row[i].getBytes(StandardCharsets.UTF_8);
+               dataStreams[i].write(bytes);
+               dataLengths[i] += bytes.length;
+               if (dataLengths[i] > Integer.MAX_VALUE) {
+                  throw new BenchmarkDefinitionException("Dataset column " + i + " exceeds 2 GB");
+               }
+               indexStreams[i].writeInt((int) dataLengths[i]);
+            }
+         } catch (IOException e) {
+            throw new BenchmarkDefinitionException("Cannot write dataset", e);
+         }
+         ++rows;
+      }
+
+      public int rows() {
+         return rows;
+      }
+
+      public MappedDataset complete() {
+         try {
+            for (int i = 0; i < columns; ++i) {
+               dataStreams[i].close();
+               indexStreams[i].close();
+            }
+            Path dir = datasetDir();
+            Path tmp = Files.createTempFile(dir, "dataset.", ".tmp");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                  new DigestOutputStream(Files.newOutputStream(tmp), digest)))) {
+               output.writeInt(MAGIC);
+               output.writeInt(VERSION);
+               output.writeInt(rows);
+               output.writeInt(columns);
+               for (long length : dataLengths) {
+                  output.writeLong(length);
+               }
+               for (int i = 0; i < columns; ++i) {
+                  Files.copy(indexFiles[i], output);
+                  Files.copy(dataFiles[i], output);
+               }
+            }
+            StringBuilder hash = new StringBuilder();
+            for (byte b : digest.digest()) {
+               hash.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            Path target = dir.resolve(hash + ".dataset");
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return new MappedDataset(hash.toString(), target);
+         } catch (IOException | NoSuchAlgorithmException e) {
+            throw new BenchmarkDefinitionException("Cannot create dataset", e);
+         } finally {
+            close();
+         }
+      }
+
+      @Override
+      public void close() {
+         for (int i = 0; i < columns; ++i) {
+            try {
+               if (dataStreams[i] != null) {
+                  dataStreams[i].close();
+               }
+               if (indexStreams[i] != null) {
+                  indexStreams[i].close();
+               }
+               if (dataFiles[i] != null) {
+                  Files.deleteIfExists(dataFiles[i]);
+               }
+               if (indexFiles[i] != null) {
+                  Files.deleteIfExists(indexFiles[i]);
+               }
+            } catch (IOException e) {
+               log.warn("Cannot remove temporary dataset files", e);
+            }
+         }
+      }
+   }
+}
@@ -0,0 +1,56 @@
+package io.hyperfoil.core.data;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * Set of {@link MappedDataset datasets}, one for each agent. The benchmark sent to an agent contains
+ * only the {@link #slice(int) slice} with partition of that agent.
+ */
+public class PartitionedDataset implements Serializable {
+   private transient MappedDataset[] partitions;
+
+   public PartitionedDataset(MappedDataset[] partitions) {
+      this.partitions = partitions;
+   }
+
+   /**
+    * @param agentId Agent ID.
+    * @return Dataset holding only the partition of given agent.
+    */
+   public PartitionedDataset slice(int agentId) {
+      MappedDataset[] slice = new MappedDataset[partitions.length];
+      slice[agentId] = partition(agentId);
+      return new PartitionedDataset(slice);
+   }
+
+   public int partitions() {
+      return partitions.length;
+   }
+
+   public MappedDataset partition(int agentId) {
+      MappedDataset partition = partitions[agentId];
+      if (partition == null) {
+         throw new IllegalStateException("Partition for agent " + agentId + " is not available on this node.");
+      }
+      return partition;
+   }
+
+   private void writeObject(ObjectOutputStream out) throws IOException {
+      out.defaultWriteObject();
+      out.writeInt(partitions.length);
+      for (MappedDataset partition : partitions) {
+         out.writeObject(partition);
+      }
+   }
+
+   private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      partitions = new MappedDataset[in.readInt()];
+      for (int i = 0; i < partitions.length; ++i) {
+         partitions[i] = (MappedDataset) in.readObject();
+      }
+   }
+}
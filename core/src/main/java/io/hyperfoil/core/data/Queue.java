@@ -13,6 +13,11 @@ import io.hyperfoil.core.session.ObjectVar;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
+/**
+ * Starts a sequence for each value pushed, running at most {@code concurrency} sequences at once; further values wait
+ * until a running sequence consumes its value. Values are kept in FIFO order by default; subclasses can change that
+ * by overriding {@link #offer(Session, Object)}, {@link #poll()} and {@link #clear()}.
+ */
 public class Queue implements Session.Resource {
    private static final Logger log = LogManager.getLogger(Queue.class);
    private static final boolean trace = log.isTraceEnabled();
@@ -50,42 +55,79 @@ public class Queue implements Session.Resource {
    public void reset(Session session) {
       // When the session is stopped there might be active sequences
       active = 0;
-      head = 0;
-      tail = 0;
-      size = 0;
       producerComplete = false;
-      Arrays.fill(data, null);
+      clear();
       var.activate(session);
    }
 
-   public void push(Session session, Object value) {
+   /**
+    * @return False if the value was not accepted.
+    */
+   public boolean push(Session session, Object value) {
       log.trace("#{} adding {} to queue -> {}", session.uniqueId(), value, var);
       Objects.requireNonNull(value);
+      if (!offer(session, value)) {
+         return false;
+      }
+      startSequences(session);
+      return true;
+   }
+
+   protected void startSequences(Session session) {
+      while (active < concurrency) {
+         Object queuedValue = poll();
+         if (queuedValue == null) {
+            break;
+         }
+         ++active;
+         SequenceInstance instance = session.startSequence(sequence, false, Session.ConcurrencyPolicy.FAIL);
+         if (trace) {
+            log.trace("#{} starting {} with queued value {} in {}[{}]", session.uniqueId(), sequence, queuedValue, var, instance.index());
+         }
+         ObjectVar[] output = (ObjectVar[]) var.getObject(session);
+         output[instance.index()].set(queuedValue);
+      }
+   }
+
+   /**
+    * @return False if the value was dropped.
+    */
+   protected boolean offer(Session session, Object value) {
       if (size < data.length) {
          data[tail++] = value;
          if (tail >= data.length) {
             tail = 0;
          }
          ++size;
+         return true;
       } else {
          // TODO: add some stats for this? Or fail the session?
          log.error("#{} Exceeded maximum size of queue {} ({}), dropping value {}", session.uniqueId(), var, data.length, value);
+         return false;
       }
-      if (active < concurrency && size > 0) {
-         ++active;
-         --size;
-         Object queuedValue = data[head];
-         data[head++] = null;
-         if (head >= data.length) {
-            head = 0;
-         }
-         SequenceInstance instance = session.startSequence(sequence, false, Session.ConcurrencyPolicy.FAIL);
-         if (trace) {
-            log.trace("#{} starting {} with queued value {} in {}[{}]", session.uniqueId(), sequence, queuedValue, var, instance.index());
-         }
-         ObjectVar[] output = (ObjectVar[]) var.getObject(session);
-         output[instance.index()].set(queuedValue);
+   }
+
+   /**
+    * @return Next value to be consumed or null if there is none.
+    */
+   protected Object poll() {
+      if (size == 0) {
+         return null;
+      }
+      Object value = data[head];
+      data[head++] = null;
+      if (head >= data.length) {
+         head = 0;
       }
+      --size;
+      return value;
+   }
+
+   protected void clear() {
+      head = 0;
+      tail = 0;
+      size = 0;
+      Arrays.fill(data, null);
    }
 
    public void producerComplete(Session session) {
@@ -96,20 +138,21 @@ public class Queue implements Session.Resource {
       }
    }
 
+   /**
+    * This is supposed to be invoked only as the last step of the sequence used in this queue.
+    */
    public void consumed(Session session) {
       SequenceInstance instance = session.currentSequence();
       if (trace) {
-         log.trace("#{} consumed {}[{}], head={}, tail={}", session.uniqueId(), var, instance.index(), head, tail);
+         log.trace("#{} consumed {}[{}]", session.uniqueId(), var, instance.index());
       }
-      if (head < tail) {
-         Object queuedValue = data[head];
-         data[head++] = null;
-         // This is supposed to be invoked only as the last step of the sequence used in this queue
+      Object queuedValue = poll();
+      if (queuedValue != null) {
          assert instance.definition().name().equals(sequence);
          ObjectVar[] output = (ObjectVar[]) var.getObject(session);
          output[instance.index()].set(queuedValue);
          if (trace) {
-            log.trace("#{} restarting sequence {}[{}] with {} -> {}", sequence, instance.index(), queuedValue, var);
+            log.trace("#{} restarting sequence {}[{}] with {} -> {}", session.uniqueId(), sequence, instance.index(), queuedValue, var);
          }
          // We are not starting a new sequence because we'd need the concurrency maximum for given sequence to be
          // +1 (as both this and the new sequence would be running at the same time).
@@ -122,8 +165,7 @@ public class Queue implements Session.Resource {
       }
    }
 
-   private void complete(Session session) {
-      assert head == tail;
+   protected void complete(Session session) {
       log.trace("#{} queue {} completed", session.uniqueId(), var);
       reset(session);
       if (onCompletion != null) {
@@ -131,5 +173,5 @@ public class Queue implements Session.Resource {
       }
    }
 
-   public static class Key implements Session.ResourceKey<Queue> {}
+   public static class Key extends Session.BaseResourceKey<Queue> {}
 }
@@ -8,8 +8,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.stream.Stream;
 
 import org.kohsuke.MetaInfServices;
 
@@ -22,18 +22,21 @@ import io.hyperfoil.api.config.StepBuilder;
 import io.hyperfoil.api.session.ObjectAccess;
 import io.hyperfoil.api.session.Session;
 import io.hyperfoil.core.builders.BaseStepBuilder;
+import io.hyperfoil.core.data.MappedDataset;
 import io.hyperfoil.core.session.SessionFactory;
 
 /**
  * A class that will initialise, build and randomly select a single row of data.
  * The row is exposed as columns.
+ * <p>
+ * Only the selected columns are stored, in a {@link MappedDataset} outside of Java heap.
  */
 public class RandomCsvRowStep implements Step {
-   private String[][] rows;
+   private final MappedDataset dataset;
    private final ObjectAccess[] columnVars;
 
-   public RandomCsvRowStep(String[][] rows, ObjectAccess[] columnVars) {
-      this.rows = rows;
+   public RandomCsvRowStep(MappedDataset dataset, ObjectAccess[] columnVars) {
+      this.dataset = dataset;
       this.columnVars = columnVars;
    }
 
@@ -41,9 +44,9 @@ public class RandomCsvRowStep implements Step {
    public boolean invoke(Session session) {
       // columns provided by csv
       ThreadLocalRandom random = ThreadLocalRandom.current();
-      String[] row = rows[random.nextInt(rows.length)];
-      for (int i = 0, j = 0; i < columnVars.length; i += 1) {
-         columnVars[j++].setObject(session, row[i]);
+      int row = random.nextInt(dataset.rows());
+      for (int i = 0; i < columnVars.length; ++i) {
+         columnVars[i].setObject(session, dataset.get(row, i));
       }
       return true;
    }
@@ -53,15 +56,46 @@ public class RandomCsvRowStep implements Step {
     */
    @MetaInfServices(StepBuilder.class)
    @Name("randomCsvRow")
-   public static class Builder extends BaseStepBuilder<Builder> {
+   public static class Builder extends BaseBuilder<Builder> {
+      @Override
+      public List<Step> build() {
+         try (MappedDataset.Writer writer = new MappedDataset.Writer(numColumns())) {
+            readRows(row -> writer.addRow(row));
+            if (writer.rows() == 0) {
+               throw new BenchmarkDefinitionException("Missing CSV row data. Rows were not detected after initial processing of file.");
+            }
+            return Collections.singletonList(new RandomCsvRowStep(writer.complete(), columnVars()));
+         }
+      }
+   }
+
+   public abstract static class BaseBuilder<S extends BaseBuilder<S>> extends BaseStepBuilder<S> {
       private String file;
       private boolean skipComments;
       private boolean removeQuotes;
       private List<String> builderColumns = new ArrayList<>();
 
-      @Override
-      public List<Step> build() {
-         int[] srcIndex = new int[(int) builderColumns.stream().filter(Objects::nonNull).count()];
+      @SuppressWarnings("unchecked")
+      protected S self() {
+         return (S) this;
+      }
+
+      protected int numColumns() {
+         return (int) builderColumns.stream().filter(Objects::nonNull).count();
+      }
+
+      protected ObjectAccess[] columnVars() {
+         return builderColumns.stream().filter(Objects::nonNull).map(SessionFactory::objectAccess).toArray(ObjectAccess[]::new);
+      }
+
+      /**
+       * Parses the file and passes mapped columns of each row to the consumer. The array passed to the consumer
+       * is reused for subsequent rows.
+       *
+       * @param consumer Row handler.
+       */
+      protected void readRows(Consumer<String[]> consumer) {
+         int[] srcIndex = new int[numColumns()];
          int next = 0;
          for (int i = 0; i < builderColumns.size(); ++i) {
             if (builderColumns.get(i) != null) {
@@ -72,27 +106,21 @@ public class RandomCsvRowStep implements Step {
 
          try (InputStream inputStream = Locator.current().benchmark().data().readFile(file)) {
             BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-            Stream<String> lines = reader.lines();
-            if (skipComments) {
-               lines = lines.filter(line -> !line.trim().startsWith("#"));
-            }
-            String[][] rows = lines.map(line -> {
+            String[] arr = new String[srcIndex.length];
+            String line;
+            while ((line = reader.readLine()) != null) {
+               if (skipComments && line.trim().startsWith("#")) {
+                  continue;
+               }
                if (removeQuotes) {
                   line = line.replaceAll("\"", "");
                }
                String[] cols = line.split(",");
-               String[] arr = new String[srcIndex.length];
                for (int i = 0; i < arr.length; ++i) {
                   arr[i] = cols[srcIndex[i]];
                }
-               return arr;
-            }).toArray(String[][]::new);
-            if (rows.length == 0) {
-               throw new BenchmarkDefinitionException("Missing CSV row data. Rows were not detected after initial processing of file.");
+               consumer.accept(arr);
             }
-
-            ObjectAccess[] columnVars = builderColumns.stream().filter(Objects::nonNull).map(SessionFactory::objectAccess).toArray(ObjectAccess[]::new);
-            return Collections.singletonList(new RandomCsvRowStep(rows, columnVars));
          } catch (IOException ioe) {
             throw new BenchmarkDefinitionException("Failed to read file " + file, ioe);
          }
@@ -113,9 +141,9 @@ public class RandomCsvRowStep implements Step {
        * @param file Path to file.
        * @return Self.
        */
-      public Builder file(String file) {
+      public S file(String file) {
          this.file = file;
-         return this;
+         return self();
       }
 
       /**
@@ -124,9 +152,9 @@ public class RandomCsvRowStep implements Step {
        * @param skipComments Skip?
        * @return Self.
        */
-      public Builder skipComments(boolean skipComments) {
+      public S skipComments(boolean skipComments) {
          this.skipComments = skipComments;
-         return this;
+         return self();
       }
 
       /**
@@ -135,9 +163,9 @@ public class RandomCsvRowStep implements Step {
        * @param removeQuotes Remove?
        * @return Self.
        */
-      public Builder removeQuotes(boolean removeQuotes) {
+      public S removeQuotes(boolean removeQuotes) {
          this.removeQuotes = removeQuotes;
-         return this;
+         return self();
       }
 
       public class ColumnsBuilder extends PairBuilder.OfString {
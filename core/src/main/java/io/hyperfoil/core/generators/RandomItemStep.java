@@ -6,7 +6,6 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.reflect.Array;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
@@ -27,17 +26,24 @@ import io.hyperfoil.api.session.ObjectAccess;
 import io.hyperfoil.api.session.ReadAccess;
 import io.hyperfoil.api.session.Session;
 import io.hyperfoil.core.builders.BaseStepBuilder;
+import io.hyperfoil.core.data.MappedDataset;
 import io.hyperfoil.core.session.ObjectVar;
 import io.hyperfoil.core.session.SessionFactory;
 
 public class RandomItemStep implements Step {
    private final ReadAccess fromVar;
    private final WeightedGenerator generator;
+   private final MappedDataset dataset;
    private final ObjectAccess toVar;
 
    public RandomItemStep(ReadAccess fromVar, WeightedGenerator generator, ObjectAccess toVar) {
+      this(fromVar, generator, null, toVar);
+   }
+
+   public RandomItemStep(ReadAccess fromVar, WeightedGenerator generator, MappedDataset dataset, ObjectAccess toVar) {
       this.fromVar = fromVar;
       this.generator = generator;
+      this.dataset = dataset;
       this.toVar = toVar;
    }
 
@@ -48,6 +54,9 @@ public class RandomItemStep implements Step {
       if (generator != null) {
          assert fromVar == null;
          item = generator.randomItem();
+      } else if (dataset != null) {
+         assert fromVar == null;
+         item = dataset.get(random.nextInt(dataset.rows()), 0);
       } else {
          Object data = fromVar.getObject(session);
          Object element;
@@ -132,32 +141,37 @@ public class RandomItemStep implements Step {
          } else if (usedProperties == 0) {
             throw new BenchmarkDefinitionException("randomItem must define one of: `fromVar`, `list` or `file`");
          }
-         WeightedGenerator generator;
+         WeightedGenerator generator = null;
+         MappedDataset dataset = null;
          if (weighted != null) {
             generator = weighted.build();
          } else if (file != null) {
-            List<String> list = new ArrayList<>();
-            try (InputStream inputStream = Locator.current().benchmark().data().readFile(file)) {
+            try (InputStream inputStream = Locator.current().benchmark().data().readFile(file);
+                 MappedDataset.Writer writer = new MappedDataset.Writer(1)) {
                try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+                  String[] row = new String[1];
                   String line;
                   while ((line = reader.readLine()) != null) {
                      if (!line.isEmpty()) {
-                        list.add(line);
+                        row[0] = line;
+                        writer.addRow(row);
                      }
                   }
                }
+               if (writer.rows() == 0) {
+                  throw new BenchmarkDefinitionException("File `" + file + "` for randomItem is empty.");
+               }
+               dataset = writer.complete();
             } catch (IOException e) {
                throw new BenchmarkDefinitionException("Cannot load file `" + file + "` for randomItem.", e);
             }
-            generator = new WeightedGenerator(null, list.toArray(new String[0]));
          } else {
             if (fromVar.isEmpty()) {
                throw new BenchmarkDefinitionException("fromVar is empty");
             }
-            generator = null;
          }
 
-         return Collections.singletonList(new RandomItemStep(SessionFactory.readAccess(fromVar), generator,
+         return Collections.singletonList(new RandomItemStep(SessionFactory.readAccess(fromVar), generator, dataset,
                SessionFactory.objectAccess(toVar)));
       }
 
@@ -196,7 +210,7 @@ public class RandomItemStep implements Step {
       }
 
       /**
-       * This file will be loaded into memory and the step will choose on line as the item.
+       * This file will be loaded into a memory-mapped dataset and the step will choose one line as the item.
        *
        * @param file Path to the file.
        * @return Self.
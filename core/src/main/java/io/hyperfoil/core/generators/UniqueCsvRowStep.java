@@ -0,0 +1,188 @@
+package io.hyperfoil.core.generators;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.kohsuke.MetaInfServices;
+
+import io.hyperfoil.api.BenchmarkExecutionException;
+import io.hyperfoil.api.config.BenchmarkDefinitionException;
+import io.hyperfoil.api.config.Locator;
+import io.hyperfoil.api.config.Name;
+import io.hyperfoil.api.config.Step;
+import io.hyperfoil.api.config.StepBuilder;
+import io.hyperfoil.api.config.Visitor;
+import io.hyperfoil.api.session.ObjectAccess;
+import io.hyperfoil.api.session.ResourceUtilizer;
+import io.hyperfoil.api.session.Session;
+import io.hyperfoil.core.data.MappedDataset;
+import io.hyperfoil.core.data.PartitionedDataset;
+
+/**
+ * Rows of the CSV file are split between agents (only the agent's partition is sent to each agent)
+ * and then between threads of the agent; each row is used by one session only.
+ */
+public class UniqueCsvRowStep implements Step, ResourceUtilizer {
+   private final PartitionedDataset dataset;
+   private final ObjectAccess[] columnVars;
+   private final boolean random;
+   private final boolean wrap;
+   // Indexed by agent thread ID; each cursor is used only from its own executor.
+   @Visitor.Ignore
+   private transient volatile Cursor[] cursors;
+
+   public UniqueCsvRowStep(PartitionedDataset dataset, ObjectAccess[] columnVars, boolean random, boolean wrap) {
+      this.dataset = dataset;
+      this.columnVars = columnVars;
+      this.random = random;
+      this.wrap = wrap;
+   }
+
+   PartitionedDataset dataset() {
+      return dataset;
+   }
+
+   @Override
+   public boolean invoke(Session session) {
+      int row = cursors[session.agentThreadId()].next(wrap);
+      if (row < 0) {
+         session.fail(new BenchmarkExecutionException("All rows from the dataset were used by thread " + session.agentThreadId()));
+         return false; // never executed - SessionStopException invoked in session.fail()
+      }
+      MappedDataset partition = dataset.partition(session.agentId());
+      for (int i = 0; i < columnVars.length; ++i) {
+         columnVars[i].setObject(session, partition.get(row, i));
+      }
+      return true;
+   }
+
+   @Override
+   public void reserve(Session session) {
+      if (cursors == null) {
+         synchronized (this) {
+            if (cursors == null) {
+               int rows = dataset.partition(session.agentId()).rows();
+               int threads = session.agentThreads();
+               Cursor[] cursors = new Cursor[threads];
+               for (int i = 0; i < threads; ++i) {
+                  cursors[i] = new Cursor(i, threads, rows, random);
+               }
+               this.cursors = cursors;
+            }
+         }
+      }
+   }
+
+   private static class Cursor {
+      private final int thread;
+      private final int threads;
+      private final int count;
+      private final boolean random;
+      private int used;
+      // Random order is generated by a full-period LCG modulo power of two, skipping values >= count
+      private final long mask;
+      private long multiplier;
+      private long increment;
+      private long state;
+
+      Cursor(int thread, int threads, int rows, boolean random) {
+         this.thread = thread;
+         this.threads = threads;
+         this.count = thread < rows ? (rows - thread + threads - 1) / threads : 0;
+         this.random = random;
+         this.mask = count <= 1 ? 0 : Long.highestOneBit((long) count - 1) * 2 - 1;
+         restart();
+      }
+
+      private void restart() {
+         used = 0;
+         if (random) {
+            ThreadLocalRandom rand = ThreadLocalRandom.current();
+            multiplier = (rand.nextLong() << 2) | 1;
+            increment = rand.nextLong() | 1;
+            state = rand.nextLong() & mask;
+         }
+      }
+
+      int next(boolean wrap) {
+         if (used >= count) {
+            if (!wrap || count == 0) {
+               return -1;
+            }
+            restart();
+         }
+         int index;
+         if (random) {
+            do {
+               state = (multiplier * state + increment) & mask;
+            } while (state >= count);
+            index = (int) state;
+         } else {
+            index = used;
+         }
+         ++used;
+         return thread + index * threads;
+      }
+   }
+
+   /**
+    * Stores row from a CSV-formatted file to variables, using each row only once.
+    * The file is split between agents and threads so no two sessions get the same row.
+    */
+   @MetaInfServices(StepBuilder.class)
+   @Name("uniqueCsvRow")
+   public static class Builder extends RandomCsvRowStep.BaseBuilder<Builder> {
+      private boolean random;
+      private boolean wrap;
+
+      /**
+       * Iterate through rows in random order (without repetition). By default the rows are used sequentially.
+       *
+       * @param random Random order?
+       * @return Self.
+       */
+      public Builder random(boolean random) {
+         this.random = random;
+         return this;
+      }
+
+      /**
+       * Start using the rows again when all rows assigned to the thread are used. By default the benchmark fails.
+       *
+       * @param wrap Wrap around?
+       * @return Self.
+       */
+      public Builder wrap(boolean wrap) {
+         this.wrap = wrap;
+         return this;
+      }
+
+      @Override
+      public List<Step> build() {
+         int agents = Math.max(1, Locator.current().benchmark().numAgents());
+         MappedDataset.Writer[] writers = new MappedDataset.Writer[agents];
+         try {
+            for (int i = 0; i < agents; ++i) {
+               writers[i] = new MappedDataset.Writer(numColumns());
+            }
+            int[] counter = new int[1];
+            readRows(row -> writers[counter[0]++ % agents].addRow(row));
+            if (counter[0] == 0) {
+               throw new BenchmarkDefinitionException("Missing CSV row data. Rows were not detected after initial processing of file.");
+            }
+            MappedDataset[] partitions = new MappedDataset[agents];
+            for (int i = 0; i < agents; ++i) {
+               partitions[i] = writers[i].complete();
+            }
+            return Collections.singletonList(new UniqueCsvRowStep(new PartitionedDataset(partitions), columnVars(), random, wrap));
+         } finally {
+            for (MappedDataset.Writer writer : writers) {
+               if (writer != null) {
+                  writer.close();
+               }
+            }
+         }
+      }
+   }
+}
@@ -1,6 +1,14 @@
 package io.hyperfoil.core.handlers;
 
+import org.kohsuke.MetaInfServices;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+
+import io.hyperfoil.api.config.BenchmarkDefinitionException;
+import io.hyperfoil.api.config.Name;
+import io.hyperfoil.api.connection.Request;
 import io.hyperfoil.api.processor.Processor;
+import io.hyperfoil.api.statistics.StatsExtension;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.CompositeByteBuf;
 import io.hyperfoil.api.session.Session;
@@ -9,16 +17,37 @@ import io.hyperfoil.api.session.ResourceUtilizer;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
-public class DefragProcessor extends Processor.BaseDelegating implements ResourceUtilizer, Session.ResourceKey<DefragProcessor.Context> {
+public class DefragProcessor extends Processor.BaseDelegating implements ResourceUtilizer {
    private static final Logger log = LogManager.getLogger(DefragProcessor.class);
+   private static final boolean trace = log.isTraceEnabled();
+   private static final int INITIAL_BUFFER_SIZE = 1024;
+   final Session.BaseResourceKey<Context> key = new Session.BaseResourceKey<>();
+
+   // When maxSize > 0 the data are copied into a buffer taken from the (pooled) allocator
+   // and this buffer is returned right after the last part is processed; otherwise we keep
+   // retained slices in a CompositeByteBuf.
+   private final int maxSize;
+   private final OverflowPolicy overflow;
+   private final String metric;
 
    public DefragProcessor(Processor delegate) {
+      this(delegate, 0, OverflowPolicy.INVALID, null);
+   }
+
+   public DefragProcessor(Processor delegate, int maxSize, OverflowPolicy overflow, String metric) {
       super(delegate);
+      this.maxSize = maxSize;
+      this.overflow = overflow;
+      this.metric = metric;
    }
 
    @Override
    public void process(Session session, ByteBuf data, int offset, int length, boolean isLastPart) {
-      Context ctx = session.getResource(this);
+      Context ctx = session.getResource(key);
+      if (maxSize > 0) {
+         processBounded(session, ctx, data, offset, length, isLastPart);
+         return;
+      }
       if (isLastPart && !ctx.isBuffering()) {
          delegate.process(session, data, offset, length, true);
          return;
@@ -31,16 +60,83 @@ public class DefragProcessor extends Processor.BaseDelegating implements Resourc
       }
    }
 
+   private void processBounded(Session session, Context ctx, ByteBuf data, int offset, int length, boolean isLastPart) {
+      if (ctx.spilled) {
+         if (overflow == OverflowPolicy.STREAM) {
+            delegate.process(session, data, offset, length, isLastPart);
+         }
+         if (isLastPart) {
+            ctx.spilled = false;
+         }
+         return;
+      }
+      int buffered = ctx.bufferedBytes();
+      if (isLastPart && buffered == 0) {
+         delegate.process(session, data, offset, length, true);
+         return;
+      }
+      if (buffered + length > maxSize) {
+         spill(session, ctx, data, offset, length, isLastPart);
+         return;
+      }
+      if (length > 0) {
+         ctx.copy(data, offset, length, maxSize);
+      }
+      if (isLastPart) {
+         recordStats(session, ctx.bufferedBytes(), false);
+         ctx.flushAndRelease(session, delegate);
+      }
+   }
+
+   private void spill(Session session, Context ctx, ByteBuf data, int offset, int length, boolean isLastPart) {
+      recordStats(session, ctx.bufferedBytes(), true);
+      if (overflow == OverflowPolicy.STREAM) {
+         log.debug("#{} Defragmented data exceed {} bytes, streaming the rest", session.uniqueId(), maxSize);
+         if (ctx.bufferedBytes() > 0) {
+            ByteBuf buffer = ctx.buffer;
+            delegate.process(session, buffer, buffer.readerIndex(), buffer.readableBytes(), false);
+         }
+         ctx.release();
+         delegate.process(session, data, offset, length, isLastPart);
+      } else {
+         log.warn("#{} Defragmented data exceed {} bytes, marking response as invalid", session.uniqueId(), maxSize);
+         ctx.release();
+         Request request = session.currentRequest();
+         if (request != null) {
+            request.markInvalid();
+         }
+      }
+      ctx.spilled = !isLastPart;
+   }
+
+   private void recordStats(Session session, int bytes, boolean spill) {
+      if (metric == null) {
+         return;
+      }
+      Request request = session.currentRequest();
+      if (request == null || request.statistics() == null) {
+         return;
+      }
+      long timestamp = request.startTimestampMillis();
+      request.statistics().update(metric, timestamp, Stats::new, Stats::addBytes, bytes);
+      if (spill) {
+         request.statistics().update(metric, timestamp, Stats::new, Stats::addSpills, 1);
+      }
+   }
+
    @Override
    public void reserve(Session session) {
       // Note: contrary to the recommended pattern the Context won't reserve all objects ahead, the CompositeByteBuf
       // will be allocated only if needed (and only once). This is necessary since we don't know the type of allocator
       // that is used for the received buffers ahead.
-      session.declareResource(this, Context::new);
+      session.declareResource(key, Context::new);
    }
 
    static class Context implements Session.Resource {
       CompositeByteBuf composite = null;
+      // Used only in bounded mode; this is held only while a response is being defragmented.
+      ByteBuf buffer = null;
+      boolean spilled;
 
       boolean isBuffering() {
          return composite != null && composite.isReadable();
@@ -62,5 +158,186 @@ public class DefragProcessor extends Processor.BaseDelegating implements Resourc
          composite.readerIndex(composite.writerIndex());
          composite.discardReadComponents();
       }
+
+      int bufferedBytes() {
+         return buffer == null ? 0 : buffer.readableBytes();
+      }
+
+      void copy(ByteBuf data, int offset, int length, int maxSize) {
+         if (trace) {
+            log.trace("Copying {} bytes", length);
+         }
+         if (buffer == null) {
+            // The allocator of received buffers is pooled with thread-local caches, therefore
+            // the accumulation buffer is effectively shared by all sessions in this event loop.
+            buffer = data.alloc().buffer(Math.min(maxSize, Math.max(length, INITIAL_BUFFER_SIZE)), maxSize);
+         }
+         buffer.writeBytes(data, offset, length);
+      }
+
+      void flushAndRelease(Session session, Processor processor) {
+         if (trace) {
+            log.trace("Flushing {} bytes", buffer.readableBytes());
+         }
+         try {
+            processor.process(session, buffer, buffer.readerIndex(), buffer.readableBytes(), true);
+         } finally {
+            release();
+         }
+      }
+
+      void release() {
+         if (buffer != null) {
+            buffer.release();
+            buffer = null;
+         }
+      }
+
+      @Override
+      public void onSessionReset(Session session) {
+         release();
+         spilled = false;
+      }
+   }
+
+   public enum OverflowPolicy {
+      /**
+       * Drop buffered data and mark the response as invalid.
+       */
+      INVALID,
+      /**
+       * Pass already buffered data and any further fragments to the delegated processors as they come.
+       * This should be used only with processors that can handle fragmented data.
+       */
+      STREAM,
+   }
+
+   /**
+    * Accumulates fragmented data into single buffer before passing it to delegated processors.
+    * The buffer is allocated from the event-loop's buffer pool and released once the last part is processed
+    * so there is no memory retained in the session between responses.
+    */
+   @MetaInfServices(Processor.Builder.class)
+   @Name("defrag")
+   public static class Builder extends MultiProcessor.Builder<Builder> {
+      private int maxSize = 1024 * 1024;
+      private OverflowPolicy overflow = OverflowPolicy.INVALID;
+      private String metric;
+
+      /**
+       * Maximum number of bytes that can be buffered. Default is 1 MB.
+       *
+       * @param maxSize Size in bytes.
+       * @return Self.
+       */
+      public Builder maxSize(int maxSize) {
+         this.maxSize = maxSize;
+         return this;
+      }
+
+      /**
+       * What should happen when the data exceed <code>maxSize</code>. Default is <code>INVALID</code>.
+       *
+       * @param overflow Overflow policy.
+       * @return Self.
+       */
+      public Builder overflow(OverflowPolicy overflow) {
+         this.overflow = overflow;
+         return this;
+      }
+
+      /**
+       * Name of the custom metric recording defragmented bytes and spills. By default no statistics are recorded.
+       *
+       * @param metric Name of the custom metric.
+       * @return Self.
+       */
+      public Builder metric(String metric) {
+         this.metric = metric;
+         return this;
+      }
+
+      @Override
+      public Processor build(boolean fragmented) {
+         if (maxSize <= 0) {
+            throw new BenchmarkDefinitionException("Maximum size must be positive.");
+         }
+         Processor delegate = buildSingle(false);
+         return fragmented ? new DefragProcessor(delegate, maxSize, overflow, metric) : delegate;
+      }
+   }
+
+   @MetaInfServices(StatsExtension.class)
+   @JsonTypeName("defrag")
+   public static class Stats implements StatsExtension {
+      private static final String[] HEADERS = { "bytes", "spills" };
+      public long bytes;
+      public long spills;
+
+      static void addBytes(Stats stats, long value) {
+         stats.bytes += value;
+      }
+
+      static void addSpills(Stats stats, long value) {
+         stats.spills += value;
+      }
+
+      @Override
+      public boolean isNull() {
+         return bytes + spills == 0;
+      }
+
+      @Override
+      public void add(StatsExtension other) {
+         if (other instanceof Stats) {
+            Stats o = (Stats) other;
+            bytes += o.bytes;
+            spills += o.spills;
+         } else {
+            throw new IllegalArgumentException(other.toString());
+         }
+      }
+
+      @Override
+      public void subtract(StatsExtension other) {
+         if (other instanceof Stats) {
+            Stats o = (Stats) other;
+            bytes -= o.bytes;
+            spills -= o.spills;
+         } else {
+            throw new IllegalArgumentException(other.toString());
+         }
+      }
+
+      @Override
+      public void reset() {
+         bytes = 0;
+         spills = 0;
+      }
+
+      @Override
+      public StatsExtension clone() {
+         Stats copy = new Stats();
+         copy.bytes = bytes;
+         copy.spills = spills;
+         return copy;
+      }
+
+      @Override
+      public String[] headers() {
+         return HEADERS;
+      }
+
+      @Override
+      public String byHeader(String header) {
+         switch (header) {
+            case "bytes":
+               return String.valueOf(bytes);
+            case "spills":
+               return String.valueOf(spills);
+            default:
+               return "<unknown header: " + header + ">";
+         }
+      }
    }
 }
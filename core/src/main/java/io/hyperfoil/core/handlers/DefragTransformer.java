@@ -9,8 +9,9 @@ import io.netty.buffer.CompositeByteBuf;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
-public class DefragTransformer extends Transformer.BaseDelegating implements ResourceUtilizer, Session.ResourceKey<DefragTransformer.Context> {
+public class DefragTransformer extends Transformer.BaseDelegating implements ResourceUtilizer {
    private static final Logger log = LogManager.getLogger(DefragTransformer.class);
+   private final Session.BaseResourceKey<Context> key = new Session.BaseResourceKey<>();
 
    public DefragTransformer(Transformer delegate) {
       super(delegate);
@@ -18,7 +19,7 @@ public class DefragTransformer extends Transformer.BaseDelegating implements Res
 
    @Override
    public void transform(Session session, ByteBuf in, int offset, int length, boolean lastFragment, ByteBuf out) {
-      Context ctx = session.getResource(this);
+      Context ctx = session.getResource(key);
       if (lastFragment && !ctx.isBuffering()) {
          delegate.transform(session, in, offset, length, true, out);
          return;
@@ -36,7 +37,7 @@ public class DefragTransformer extends Transformer.BaseDelegating implements Res
       // Note: contrary to the recommended pattern the Context won't reserve all objects ahead, the CompositeByteBuf
       // will be allocated only if needed (and only once). This is necessary since we don't know the type of allocator
       // that is used for the received buffers ahead.
-      session.declareResource(this, Context::new);
+      session.declareResource(key, Context::new);
    }
 
    static class Context implements Session.Resource {
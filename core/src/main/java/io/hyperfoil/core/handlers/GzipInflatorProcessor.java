@@ -22,7 +22,7 @@ import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
 // Based on java.util.zip.GZIPInputStream
-public class GzipInflatorProcessor extends MultiProcessor implements ResourceUtilizer, Session.ResourceKey<GzipInflatorProcessor.InflaterResource> {
+public class GzipInflatorProcessor extends MultiProcessor implements ResourceUtilizer {
    private static final Logger log = LogManager.getLogger(GzipInflatorProcessor.class);
    private static final int FHCRC = 2;    // Header CRC
    private static final int FEXTRA = 4;    // Extra field
@@ -30,7 +30,7 @@ public class GzipInflatorProcessor extends MultiProcessor implements ResourceUti
    private static final int FCOMMENT = 16;   // File comment
 
    private final ReadAccess encodingVar;
-
+   private final Session.BaseResourceKey<InflaterResource> key = new Session.BaseResourceKey<>();
    public GzipInflatorProcessor(Processor[] processors, ReadAccess encodingVar) {
       super(processors);
       this.encodingVar = encodingVar;
@@ -39,7 +39,7 @@ public class GzipInflatorProcessor extends MultiProcessor implements ResourceUti
    @Override
    public void process(Session session, ByteBuf data, int offset, int length, boolean isLastPart) {
       Session.Var var = encodingVar.getVar(session);
-      InflaterResource resource = session.getResource(this);
+      InflaterResource resource = session.getResource(key);
       switch (resource.state) {
          case NOT_ENCRYPTED:
             super.process(session, data, offset, length, isLastPart);
@@ -61,7 +61,7 @@ public class GzipInflatorProcessor extends MultiProcessor implements ResourceUti
 
    @Override
    public void reserve(Session session) {
-      session.declareResource(this, InflaterResource::new);
+      session.declareResource(key, InflaterResource::new);
    }
 
    public class InflaterResource implements Session.Resource {
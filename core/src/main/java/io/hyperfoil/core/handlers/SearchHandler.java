@@ -11,12 +11,11 @@ import io.hyperfoil.api.session.ResourceUtilizer;
  * Simple pattern (no regexp) search based on Rabin-Karp algorithm.
  * Does not handle the intricacies of UTF-8 mapping same strings to different bytes.
  */
-public class SearchHandler implements Processor, ResourceUtilizer, Session.ResourceKey<SearchHandler.Context> {
+public class SearchHandler extends Session.BaseResourceKey<SearchHandler.Context> implements Processor, ResourceUtilizer {
    private final byte[] begin, end;
    private final int beginHash, endHash;
    private final int beginCoef, endCoef;
    private Processor processor;
-
    public SearchHandler(String begin, String end, Processor processor) {
       this.begin = begin.getBytes(StandardCharsets.UTF_8);
       this.end = end.getBytes(StandardCharsets.UTF_8);
@@ -13,7 +13,8 @@ import io.hyperfoil.core.builders.ServiceLoadedBuilderProvider;
 import io.netty.buffer.ByteBuf;
 import io.hyperfoil.api.session.Session;
 
-public class JsonHandler extends JsonParser implements Processor, ResourceUtilizer, Session.ResourceKey<JsonHandler.Context> {
+public class JsonHandler extends JsonParser implements Processor, ResourceUtilizer {
+   private final Session.BaseResourceKey<Context> key = new Session.BaseResourceKey<>();
 
    public JsonHandler(String query, boolean delete, Transformer replace, Processor processor) {
       super(query.trim(), delete, replace, processor);
@@ -30,7 +31,7 @@ public class JsonHandler extends JsonParser implements Processor, ResourceUtiliz
 
    @Override
    public void process(Session session, ByteBuf data, int offset, int length, boolean isLast) {
-      Context ctx = session.getResource(this);
+      Context ctx = session.getResource(key);
       ctx.parse(ctx.wrap(data, offset, length), session, isLast);
    }
 
@@ -40,7 +41,7 @@ public class JsonHandler extends JsonParser implements Processor, ResourceUtiliz
          replace.after(session);
       }
       processor.after(session);
-      Context ctx = session.getResource(this);
+      Context ctx = session.getResource(key);
       ctx.reset();
    }
 
@@ -54,7 +55,7 @@ public class JsonHandler extends JsonParser implements Processor, ResourceUtiliz
 
    @Override
    public void reserve(Session session) {
-      session.declareResource(this, Context::new);
+      session.declareResource(key, Context::new);
    }
 
    @Override
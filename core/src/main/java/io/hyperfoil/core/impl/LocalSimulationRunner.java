@@ -1,7 +1,7 @@
 package io.hyperfoil.core.impl;
 
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -37,11 +37,17 @@ public class LocalSimulationRunner extends SimulationRunner {
          throw new BenchmarkDefinitionException("No phases/scenarios have been defined");
       }
 
-      CountDownLatch latch = new CountDownLatch(1);
+      CompletableFuture<Void> initialized = new CompletableFuture<>();
       init();
-      openConnections(result -> latch.countDown());
+      openConnections(result -> {
+         if (result.succeeded()) {
+            initialized.complete(null);
+         } else {
+            initialized.completeExceptionally(result.cause());
+         }
+      });
       try {
-         latch.await();
+         initialized.get();
          // Exec is blocking and therefore must not run on the event-loop thread
          exec();
          for (PhaseInstance phase : instances.values()) {
@@ -51,6 +57,9 @@ public class LocalSimulationRunner extends SimulationRunner {
          }
       } catch (InterruptedException e) {
          throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+         // Sessions could not be reserved or connections could not be opened
+         throw new RuntimeException("Failed to initialize the benchmark", e.getCause());
       } finally {
          shutdown();
       }
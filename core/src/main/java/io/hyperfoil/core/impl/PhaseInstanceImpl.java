@@ -19,6 +19,7 @@ import java.util.Random;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.IntStream;
 
 public abstract class PhaseInstanceImpl implements PhaseInstance {
@@ -86,10 +87,10 @@ public abstract class PhaseInstanceImpl implements PhaseInstance {
    }
 
    @Override
-   public void start(EventExecutorGroup executorGroup) {
+   public void start(EventExecutorGroup executorGroup, long absoluteStartTime) {
       assert status == Status.NOT_STARTED : "Status is " + status;
       status = Status.RUNNING;
-      absoluteStartTime = System.currentTimeMillis();
+      this.absoluteStartTime = absoluteStartTime;
       log.debug("{} changing status to RUNNING", def.name);
       phaseChangeHandler.onChange(def, Status.RUNNING, false, error).thenRun(() -> proceed(executorGroup));
    }
@@ -290,11 +291,22 @@ public abstract class PhaseInstanceImpl implements PhaseInstance {
    }
 
    protected abstract static class OpenModelPhase extends PhaseInstanceImpl {
+      // Pending rate changes are checked at least this often (in milliseconds)
+      private static final long MAX_PROCEED_DELAY = 100;
+
       protected final int maxSessions;
       protected final Random random = new Random();
       protected double nextScheduled;
       protected AtomicLong throttledUsers = new AtomicLong(0);
       protected long startedOrThrottledUsers = 0;
+      // With variance the arrivals are drawn in units of expected users
+      protected double nextArrival = nextInterArrival();
+      private final AtomicReference<RateChange> rateChange = new AtomicReference<>();
+      // Since rebaseDelta the rate is multiplied; by that time we expected rebaseUsers to be started
+      private double rateMultiplier = 1;
+      private long rebaseDelta;
+      private double rebaseUsers;
+      private double rebaseExpectedUsers;
 
       protected OpenModelPhase(Phase def, String runId, int agentId) {
          super(def, runId, agentId);
@@ -308,7 +320,7 @@ public abstract class PhaseInstanceImpl implements PhaseInstance {
          }
          long now = System.currentTimeMillis();
          long delta = now - absoluteStartTime;
-         long nextDelta;
+         applyRateChange(delta);
          Model.OpenModel model = (Model.OpenModel) def.model;
 
          if (model.variance) {
@@ -317,12 +329,11 @@ public abstract class PhaseInstanceImpl implements PhaseInstance {
                   throttledUsers.incrementAndGet();
                }
                startedOrThrottledUsers++;
-               // TODO: after many iterations there will be some skew due to imprecise double calculations
-               // Maybe we could restart from the expected rate every 1000th session?
-               nextScheduled = nextSessionRandomized();
+               nextArrival += nextInterArrival();
+               nextScheduled = scheduledDelta(nextArrival);
             }
          } else {
-            long required = nextSessionMetronome(delta);
+            long required = (long) usersAt(delta);
             for (long i = required - startedOrThrottledUsers; i > 0; --i) {
                if (startNewSession()) {
                   throttledUsers.addAndGet(i);
@@ -330,19 +341,73 @@ public abstract class PhaseInstanceImpl implements PhaseInstance {
                }
             }
             startedOrThrottledUsers = Math.max(required, startedOrThrottledUsers);
+            nextScheduled = scheduledDelta(startedOrThrottledUsers + 1);
          }
-         nextDelta = (long) Math.ceil(nextScheduled);
+         // Double imprecision could make us wake up just before the session is due
+         long nextDelta = Math.max((long) Math.ceil(nextScheduled), delta + 1);
 
          if (trace) {
             log.trace("{}: {} after start, {} started ({} throttled), next user in {} ms", def.name, delta,
                   startedOrThrottledUsers, throttledUsers.get(), nextDelta - delta);
          }
-         executorGroup.schedule(() -> proceed(executorGroup), nextDelta - delta, TimeUnit.MILLISECONDS);
+         executorGroup.schedule(() -> proceed(executorGroup), Math.min(nextDelta - delta, MAX_PROCEED_DELAY), TimeUnit.MILLISECONDS);
+      }
+
+      /**
+       * @return Number of users that should be started since the beginning of the phase, without any rate changes.
+       */
+      protected abstract double expectedUsers(double delta);
+
+      /**
+       * @return Time since the beginning of the phase when <code>users</code> should be started, without any rate
+       * changes, or positive infinity if that never happens.
+       */
+      protected abstract double expectedDelta(double users);
+
+      /**
+       * @return Number of users that should be started since the beginning of the phase, including rate changes.
+       */
+      double usersAt(long delta) {
+         return rebaseUsers + rateMultiplier * (expectedUsers(delta) - rebaseExpectedUsers);
       }
 
-      protected abstract long nextSessionMetronome(long delta);
+      protected double scheduledDelta(double users) {
+         return expectedDelta(rebaseExpectedUsers + (users - rebaseUsers) / rateMultiplier);
+      }
+
+      private double nextInterArrival() {
+         return -Math.log(Math.max(1e-20, random.nextDouble()));
+      }
+
+      /**
+       * Changes the rate of new users relative to the rate in phase definition. The schedule is recalculated
+       * from the time of the change on so that the number of started users does not jump.
+       *
+       * @param multiplier Multiplier of the rate from phase definition.
+       * @param absoluteTime Wall-clock time when the change should take effect.
+       */
+      public void setRateMultiplier(double multiplier, long absoluteTime) {
+         if (multiplier <= 0) {
+            throw new IllegalArgumentException("Rate multiplier must be positive: " + multiplier);
+         }
+         rateChange.set(new RateChange(multiplier, absoluteTime));
+      }
 
-      protected abstract double nextSessionRandomized();
+      void applyRateChange(long delta) {
+         RateChange change = rateChange.get();
+         if (change == null || change.absoluteTime - absoluteStartTime > delta || !rateChange.compareAndSet(change, null)) {
+            return;
+         }
+         long changeDelta = Math.max(rebaseDelta, change.absoluteTime - absoluteStartTime);
+         rebaseUsers = usersAt(changeDelta);
+         rebaseExpectedUsers = expectedUsers(changeDelta);
+         rebaseDelta = changeDelta;
+         rateMultiplier = change.multiplier;
+         log.info("{}: rate multiplier changed to {} at {} ms after start", def.name, rateMultiplier, changeDelta);
+         if (((Model.OpenModel) def.model).variance) {
+            nextScheduled = scheduledDelta(nextArrival);
+         }
+      }
 
       @Override
       public void reserveSessions() {
@@ -368,6 +433,16 @@ public abstract class PhaseInstanceImpl implements PhaseInstance {
          }
          super.notifyFinished(session);
       }
+
+      private static final class RateChange {
+         final double multiplier;
+         final long absoluteTime;
+
+         RateChange(double multiplier, long absoluteTime) {
+            this.multiplier = multiplier;
+            this.absoluteTime = absoluteTime;
+         }
+      }
    }
 
    public static class RampRate extends OpenModelPhase {
@@ -379,30 +454,30 @@ public abstract class PhaseInstanceImpl implements PhaseInstance {
          Model.RampRate model = (Model.RampRate) def.model;
          initialUsersPerSec = def.benchmark().slice(model.initialUsersPerSec, agentId);
          targetUsersPerSec = def.benchmark().slice(model.targetUsersPerSec, agentId);
-         nextScheduled = model.variance ? nextSessionRandomized() : 0;
+         nextScheduled = model.variance ? scheduledDelta(nextArrival) : 0;
       }
 
       @Override
-      protected long nextSessionMetronome(long delta) {
+      protected double expectedUsers(double delta) {
+         // integral of the linearly changing rate
          double progress = (targetUsersPerSec - initialUsersPerSec) / (def.duration * 1000);
-         long required = (long) (((progress * (delta + 1)) / 2 + initialUsersPerSec / 1000) * delta);
-         // Next time is the root of quadratic equation
-         double bCoef = progress + initialUsersPerSec / 500;
-         nextScheduled = Math.ceil((-bCoef + Math.sqrt(bCoef * bCoef + 8 * progress * (startedOrThrottledUsers + 1))) / (2 * progress));
-         return required;
+         return (progress * delta / 2 + initialUsersPerSec / 1000) * delta;
       }
 
       @Override
-      protected double nextSessionRandomized() {
-         // we're solving quadratic equation coming from t = (duration * -log(rand))/(((t + now) * (target - initial)) + initial * duration)
-         double aCoef = (targetUsersPerSec - initialUsersPerSec);
-         if (aCoef < 0.000001) {
-            // prevent division 0f/0f
-            return 1000 * -Math.log(Math.max(1e-20, random.nextDouble())) / initialUsersPerSec;
+      protected double expectedDelta(double users) {
+         // root of the quadratic equation users = expectedUsers(delta)
+         double aCoef = (targetUsersPerSec - initialUsersPerSec) / (def.duration * 2000);
+         double bCoef = initialUsersPerSec / 1000;
+         if (Math.abs(aCoef) < 1e-15) {
+            return bCoef > 0 ? users / bCoef : Double.POSITIVE_INFINITY;
+         }
+         double discriminant = bCoef * bCoef + 4 * aCoef * users;
+         if (discriminant < 0) {
+            // decreasing rate that will never get to this number of users
+            return Double.POSITIVE_INFINITY;
          }
-         double bCoef = nextScheduled * (targetUsersPerSec - initialUsersPerSec) + initialUsersPerSec * def.duration;
-         double cCoef = def.duration * 1000 * Math.log(random.nextDouble());
-         return nextScheduled + (-bCoef + Math.sqrt(bCoef * bCoef - 4 * aCoef * cCoef)) / (2 * aCoef);
+         return (-bCoef + Math.sqrt(discriminant)) / (2 * aCoef);
       }
    }
 
@@ -413,19 +488,17 @@ public abstract class PhaseInstanceImpl implements PhaseInstance {
          super(def, runId, agentId);
          Model.ConstantRate model = (Model.ConstantRate) def.model;
          usersPerSec = def.benchmark().slice(model.usersPerSec, agentId);
-         nextScheduled = model.variance ? nextSessionRandomized() : 0;
+         nextScheduled = model.variance ? scheduledDelta(nextArrival) : 0;
       }
 
       @Override
-      protected long nextSessionMetronome(long delta) {
-         long required = (long) (delta * usersPerSec / 1000);
-         nextScheduled = (1000 * (startedOrThrottledUsers + 1) + usersPerSec) / usersPerSec;
-         return required;
+      protected double expectedUsers(double delta) {
+         return delta * usersPerSec / 1000;
       }
 
       @Override
-      protected double nextSessionRandomized() {
-         return nextScheduled + (1000 * -Math.log(Math.max(1e-20, random.nextDouble())) / usersPerSec);
+      protected double expectedDelta(double users) {
+         return usersPerSec > 0 ? 1000 * users / usersPerSec : Double.POSITIVE_INFINITY;
       }
    }
 
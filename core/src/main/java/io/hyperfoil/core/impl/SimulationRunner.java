@@ -2,7 +2,9 @@ package io.hyperfoil.core.impl;
 
 import java.text.SimpleDateFormat;
 import java.time.Clock;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -11,6 +13,8 @@ import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
@@ -19,6 +23,7 @@ import java.util.stream.StreamSupport;
 import io.hyperfoil.api.BenchmarkExecutionException;
 import io.hyperfoil.api.config.Benchmark;
 import io.hyperfoil.api.config.Phase;
+import io.hyperfoil.api.config.Scenario;
 import io.hyperfoil.api.session.PhaseChangeHandler;
 import io.hyperfoil.api.session.PhaseInstance;
 import io.hyperfoil.api.session.Session;
@@ -38,6 +43,7 @@ import io.vertx.core.AsyncResult;
 import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Promise;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
@@ -50,6 +56,10 @@ public class SimulationRunner {
    protected static final Logger log = LogManager.getLogger(SimulationRunner.class);
 
    private static final Clock DEFAULT_CLOCK = Clock.systemDefaultZone();
+   /**
+    * Upper bounds (in milliseconds) of jitter histogram buckets.
+    */
+   public static final long[] JITTER_BUCKETS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000 };
 
    protected final Benchmark benchmark;
    protected final int agentId;
@@ -65,7 +75,16 @@ public class SimulationRunner {
    private final Consumer<Throwable> errorHandler;
    private boolean isDepletedMessageQuietened;
    private Thread jitterWatchdog;
+   // Cumulative counts of watchdog delays beyond the expected period, the last bucket is for delays above the limits
+   private final AtomicLongArray jitterCounts = new AtomicLongArray(JITTER_BUCKETS.length + 1);
+   private final AtomicLong jitterSum = new AtomicLong();
+   private final AtomicLong jitterMax = new AtomicLong();
    private CpuWatchdog cpuWatchdog;
+   private Future<Void> sessionsReserved;
+   // Duration of initialization stages in nanoseconds
+   private long phasesInitTime;
+   private volatile long sessionsInitTime;
+   private volatile long connectionsInitTime;
 
    public SimulationRunner(Benchmark benchmark, String runId, int agentId, Consumer<Throwable> errorHandler) {
       this.eventLoopGroup = EventLoopFactory.INSTANCE.create(benchmark.threads(agentId));
@@ -84,7 +103,12 @@ public class SimulationRunner {
       this.phaseChangeHandler = phaseChangeHandler;
    }
 
+   /**
+    * Creates phase instances and starts reserving sessions in the background; the reservation completes
+    * before {@link #openConnections(Handler)} reports the runner ready.
+    */
    public void init() {
+      long start = System.nanoTime();
       for (Phase def : benchmark.phases()) {
          SharedResources sharedResources;
          if (def.sharedResources == null) {
@@ -92,30 +116,10 @@ public class SimulationRunner {
             sharedResources = SharedResources.NONE;
          } else if ((sharedResources = this.sharedResources.get(def.sharedResources)) == null) {
             sharedResources = new SharedResources(executors.length);
-            List<Session> phaseSessions = sharedResources.sessions = new ArrayList<>();
-            SessionStatistics[] statistics = sharedResources.statistics;
-            SharedData[] data = sharedResources.data;
-            Supplier<Session> sessionSupplier = () -> {
-               Session session;
-               int executorId;
-               synchronized (this.sessions) {
-                  // We need to set executor based on the id within phase (shared resources) because
-                  // if the connection pool size = number of users we need to match the #sessions in
-                  // each executor to the #connections.
-                  executorId = phaseSessions.size() % executors.length;
-                  session = SessionFactory.create(def.scenario, executorId, this.sessions.size());
-                  this.sessions.add(session);
-                  phaseSessions.add(session);
-               }
-               session.attach(executors[executorId], data[executorId], statistics[executorId]);
-               for (int i = 0; i < runData.length; ++i) {
-                  runData[i].initSession(session, executorId, def.scenario, DEFAULT_CLOCK);
-               }
-               session.reserve(def.scenario);
-               return session;
-            };
+            sharedResources.scenario = def.scenario;
+            sharedResources.sessions = new ArrayList<>();
             SharedResources finalSharedResources = sharedResources;
-            sharedResources.sessionPool = new ElasticPoolImpl<>(sessionSupplier, () -> {
+            sharedResources.sessionPool = new SessionPool(() -> {
                if (!isDepletedMessageQuietened) {
                   log.warn("Pool depleted, throttling execution! Enable trace logging to see subsequent pool depletion messages.");
                   isDepletedMessageQuietened = true;
@@ -130,11 +134,11 @@ public class SimulationRunner {
          PhaseInstance phase = PhaseInstanceImpl.newInstance(def, runId, agentId);
          instances.put(def.name(), phase);
          phase.setComponents(sharedResources.sessionPool, sharedResources.sessions, this::phaseChanged);
+         // this only records the capacity, sessions are created in reserveSessions()
          phase.reserveSessions();
-         // at this point all session resources should be reserved
       }
-      // hint the GC to tenure sessions
-      System.gc();
+      phasesInitTime = System.nanoTime() - start;
+      sessionsReserved = reserveSessions();
 
       jitterWatchdog = new Thread(this::observeJitter, "jitter-watchdog");
       jitterWatchdog.setDaemon(true);
@@ -143,17 +147,95 @@ public class SimulationRunner {
       cpuWatchdog.start();
    }
 
+   /**
+    * Each executor creates and reserves its sessions on its own thread, so that the sessions are allocated
+    * in that thread's TLAB and the work is spread over all cores.
+    */
+   private Future<Void> reserveSessions() {
+      long start = System.nanoTime();
+      int uniqueId = 0;
+      for (SharedResources resources : sharedResources.values()) {
+         resources.firstSessionId = uniqueId;
+         uniqueId += resources.sessionPool.capacity;
+      }
+      @SuppressWarnings("rawtypes") ArrayList<Future> futures = new ArrayList<>();
+      for (int i = 0; i < executors.length; ++i) {
+         int executorId = i;
+         Promise<Void> promise = Promise.promise();
+         futures.add(promise.future());
+         executors[executorId].execute(() -> {
+            try {
+               for (SharedResources resources : sharedResources.values()) {
+                  resources.created[executorId] = createSessions(resources, executorId);
+               }
+               promise.complete();
+            } catch (Throwable t) {
+               promise.fail(t);
+            }
+         });
+      }
+      return CompositeFuture.all(futures).map(nil -> {
+         for (SharedResources resources : sharedResources.values()) {
+            // We need to set executor based on the id within phase (shared resources) because
+            // if the connection pool size = number of users we need to match the #sessions in
+            // each executor to the #connections. The pool should hand them out in round-robin order, too.
+            int capacity = resources.sessionPool.capacity;
+            for (int i = 0; i < capacity; ++i) {
+               resources.sessions.add(resources.created[i % executors.length].get(i / executors.length));
+            }
+            Arrays.fill(resources.created, null);
+            resources.sessionPool.fill(resources.sessions);
+            synchronized (this.sessions) {
+               this.sessions.addAll(resources.sessions);
+            }
+         }
+         sessionsInitTime = System.nanoTime() - start;
+         return null;
+      });
+   }
+
+   private List<Session> createSessions(SharedResources resources, int executorId) {
+      int capacity = resources.sessionPool.capacity;
+      List<Session> sessions = new ArrayList<>(capacity / executors.length + 1);
+      for (int i = executorId; i < capacity; i += executors.length) {
+         Session session = SessionFactory.create(resources.scenario, executorId, resources.firstSessionId + i);
+         session.attach(executors[executorId], resources.data[executorId], resources.statistics[executorId]);
+         for (PluginRunData plugin : runData) {
+            plugin.initSession(session, executorId, resources.scenario, DEFAULT_CLOCK);
+         }
+         session.reserve(resources.scenario);
+         sessions.add(session);
+      }
+      return sessions;
+   }
+
+   /**
+    * Opens connections while the sessions are being reserved; the handler is invoked when both are done.
+    */
    public void openConnections(Handler<AsyncResult<Void>> handler) {
+      long start = System.nanoTime();
       @SuppressWarnings("rawtypes") ArrayList<Future> futures = new ArrayList<>();
       for (PluginRunData plugin : runData) {
          plugin.openConnections(futures::add);
       }
 
-      CompositeFuture composite = CompositeFuture.join(futures);
-      composite.onComplete(result -> {
+      CompositeFuture connections = CompositeFuture.join(futures);
+      connections.onComplete(result -> {
          if (result.failed()) {
             log.error("One of the HTTP client pools failed to start.");
          }
+         connectionsInitTime = System.nanoTime() - start;
+      });
+      sessionsReserved.onFailure(t -> log.error("Failed to reserve sessions.", t));
+      CompositeFuture.join(connections, sessionsReserved).onComplete(result -> {
+         // hint the GC to tenure sessions
+         long gcStart = System.nanoTime();
+         System.gc();
+         long gcTime = System.nanoTime() - gcStart;
+         log.info("Initialized in {} ms: phases {} ms, reserving {} sessions {} ms, opening connections {} ms, GC {} ms",
+               TimeUnit.NANOSECONDS.toMillis(phasesInitTime + System.nanoTime() - start),
+               TimeUnit.NANOSECONDS.toMillis(phasesInitTime), sessions.size(), TimeUnit.NANOSECONDS.toMillis(sessionsInitTime),
+               TimeUnit.NANOSECONDS.toMillis(connectionsInitTime), TimeUnit.NANOSECONDS.toMillis(gcTime));
          handler.handle(result.mapEmpty());
          jitterWatchdog.start();
       });
@@ -172,6 +254,7 @@ public class SimulationRunner {
          }
          long currentTimestamp = System.nanoTime();
          long delay = TimeUnit.NANOSECONDS.toMillis(currentTimestamp - lastTimestamp);
+         recordJitter(Math.max(0, delay - period));
          if (delay > threshold) {
             String message = String.format("%s | Jitter watchdog was not invoked for %d ms (threshold is %d ms); please check your GC settings.",
                   new SimpleDateFormat("HH:mm:ss.SSS").format(new Date()), delay, threshold);
@@ -182,6 +265,40 @@ public class SimulationRunner {
       }
    }
 
+   private void recordJitter(long jitter) {
+      int bucket = 0;
+      while (bucket < JITTER_BUCKETS.length && jitter > JITTER_BUCKETS[bucket]) {
+         ++bucket;
+      }
+      jitterCounts.incrementAndGet(bucket);
+      jitterSum.addAndGet(jitter);
+      jitterMax.accumulateAndGet(jitter, Math::max);
+   }
+
+   /**
+    * Copies cumulative counts of jitter watchdog delays into the array (buckets by {@link #JITTER_BUCKETS}).
+    *
+    * @param counts Array with length <code>JITTER_BUCKETS.length + 1</code>.
+    * @return Sum of all delays in milliseconds.
+    */
+   public long getJitterHistogram(long[] counts) {
+      for (int i = 0; i < counts.length; ++i) {
+         counts[i] = jitterCounts.get(i);
+      }
+      return jitterSum.get();
+   }
+
+   /**
+    * @return Maximum jitter in milliseconds since the previous invocation.
+    */
+   public long resetJitterMax() {
+      return jitterMax.getAndSet(0);
+   }
+
+   public double getCpuIdleRatio() {
+      return cpuWatchdog == null ? Double.NaN : cpuWatchdog.getIdleRatio();
+   }
+
    protected CompletableFuture<Void> phaseChanged(Phase phase, PhaseInstance.Status status, boolean sessionLimitExceeded, Throwable error) {
       if (!phase.isWarmup) {
          if (status == PhaseInstance.Status.RUNNING) {
@@ -327,20 +444,27 @@ public class SimulationRunner {
    }
 
    public void startPhase(String phase) {
+      startPhase(phase, System.currentTimeMillis());
+   }
+
+   /**
+    * Starts the phase as if it was started at given time; this is used when the phase start was scheduled
+    * ahead in order to align the statistics of several agents.
+    */
+   public void startPhase(String phase, long absoluteStartTime) {
       PhaseInstance phaseInstance = instances.get(phase);
       SharedResources sharedResources = this.sharedResources.get(phaseInstance.definition().sharedResources);
       if (sharedResources != null) {
          // Avoid NPE in noop phases
          sharedResources.currentPhase = phaseInstance;
          if (sharedResources.statistics != null) {
-            long now = System.currentTimeMillis();
             for (int i = 0; i < executors.length; ++i) {
                SessionStatistics statistics = sharedResources.statistics[i];
-               executors[i].execute(() -> applyToPhase(statistics, phaseInstance.definition(), now, Statistics::start));
+               executors[i].execute(() -> applyToPhase(statistics, phaseInstance.definition(), absoluteStartTime, Statistics::start));
             }
          }
       }
-      phaseInstance.start(eventLoopGroup);
+      phaseInstance.start(eventLoopGroup, absoluteStartTime);
    }
 
    private void applyToPhase(SessionStatistics statistics, Phase phase, long now, BiConsumer<Statistics, Long> f) {
@@ -365,6 +489,19 @@ public class SimulationRunner {
       instances.get(phase).terminate();
    }
 
+   /**
+    * @param absoluteTime Wall-clock time when the change should take effect.
+    * @return False if the phase does not use an open model.
+    */
+   public boolean setRateMultiplier(String phase, double multiplier, long absoluteTime) {
+      PhaseInstance instance = instances.get(phase);
+      if (instance instanceof PhaseInstanceImpl.OpenModelPhase) {
+         ((PhaseInstanceImpl.OpenModelPhase) instance).setRateMultiplier(multiplier, absoluteTime);
+         return true;
+      }
+      return false;
+   }
+
    public List<String> listConnections() {
       ArrayList<String> list = new ArrayList<>();
       for (PluginRunData plugin : runData) {
@@ -381,12 +518,18 @@ public class SimulationRunner {
       static final SharedResources NONE = new SharedResources(0);
 
       PhaseInstance currentPhase;
-      ElasticPoolImpl<Session> sessionPool;
+      Scenario scenario;
+      SessionPool sessionPool;
       List<Session> sessions;
+      int firstSessionId;
+      // Sessions created by each executor, until these are added to the pool
+      final List<Session>[] created;
       SessionStatistics[] statistics;
       SharedData[] data;
 
+      @SuppressWarnings("unchecked")
       SharedResources(int executorCount) {
+         created = new List[executorCount];
          statistics = new SessionStatistics[executorCount];
          data = new SharedData[executorCount];
          for (int executorId = 0; executorId < executorCount; ++executorId) {
@@ -395,4 +538,34 @@ public class SimulationRunner {
          }
       }
    }
-}
\ No newline at end of file
+
+   /**
+    * Pool that only records the capacity when sessions are reserved; the sessions are created in parallel
+    * and added to the pool later.
+    */
+   private static class SessionPool extends ElasticPoolImpl<Session> {
+      private final Queue<Session> reserved;
+      int capacity;
+
+      SessionPool(Supplier<Session> depletionSupplier) {
+         this(new ArrayDeque<>(), depletionSupplier);
+      }
+
+      private SessionPool(Queue<Session> reserved, Supplier<Session> depletionSupplier) {
+         super(reserved::poll, depletionSupplier);
+         this.reserved = reserved;
+      }
+
+      @Override
+      public void reserve(int capacity) {
+         this.capacity = Math.max(this.capacity, capacity);
+      }
+
+      void fill(List<Session> sessions) {
+         if (capacity > 0) {
+            reserved.addAll(sessions);
+            super.reserve(capacity);
+         }
+      }
+   }
+}
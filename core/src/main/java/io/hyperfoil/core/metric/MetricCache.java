@@ -0,0 +1,75 @@
+package io.hyperfoil.core.metric;
+
+import java.util.Objects;
+
+/**
+ * Bounded map from (authority, path) to metric name. This is a set-associative cache: each key maps to a bucket
+ * of {@link #WAYS} entries and the bucket uses CLOCK (second chance) eviction. The cache is not thread-safe.
+ */
+final class MetricCache {
+   static final String MISS = new String("<miss>");
+   private static final int WAYS = 4;
+
+   private final String[] authorities;
+   private final String[] paths;
+   private final String[] metrics;
+   private final boolean[] referenced;
+   private final byte[] hands;
+   private final int mask;
+
+   MetricCache(int capacity) {
+      int buckets = Integer.highestOneBit(Math.max(1, capacity / WAYS));
+      this.authorities = new String[buckets * WAYS];
+      this.paths = new String[buckets * WAYS];
+      this.metrics = new String[buckets * WAYS];
+      this.referenced = new boolean[buckets * WAYS];
+      this.hands = new byte[buckets];
+      this.mask = buckets - 1;
+   }
+
+   private int bucket(String authority, String path) {
+      int h = 31 * path.hashCode() + (authority == null ? 0 : authority.hashCode());
+      return (h ^ (h >>> 16)) & mask;
+   }
+
+   /**
+    * @param authority Authority, can be <code>null</code>.
+    * @param path Path.
+    * @return Cached metric (possibly <code>null</code>) or {@link #MISS}.
+    */
+   String get(String authority, String path) {
+      int base = bucket(authority, path) * WAYS;
+      for (int i = base; i < base + WAYS; ++i) {
+         if (path.equals(paths[i]) && Objects.equals(authority, authorities[i])) {
+            referenced[i] = true;
+            return metrics[i];
+         }
+      }
+      return MISS;
+   }
+
+   void put(String authority, String path, String metric) {
+      int bucket = bucket(authority, path);
+      int base = bucket * WAYS;
+      int victim = -1;
+      for (int i = base; i < base + WAYS; ++i) {
+         if (paths[i] == null) {
+            victim = i;
+            break;
+         }
+      }
+      if (victim < 0) {
+         int hand = hands[bucket];
+         while (referenced[base + hand]) {
+            referenced[base + hand] = false;
+            hand = (hand + 1) % WAYS;
+         }
+         victim = base + hand;
+         hands[bucket] = (byte) ((hand + 1) % WAYS);
+      }
+      authorities[victim] = authority;
+      paths[victim] = path;
+      metrics[victim] = metric;
+      referenced[victim] = false;
+   }
+}
@@ -1,13 +1,18 @@
 package io.hyperfoil.core.metric;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import io.hyperfoil.api.config.ListBuilder;
 import io.hyperfoil.api.config.Visitor;
+import io.hyperfoil.core.util.Trie;
 import io.hyperfoil.function.SerializableFunction;
+import io.netty.util.concurrent.FastThreadLocal;
 
 /**
  * Allows categorizing request statistics into metrics based on the request path. The expressions are evaluated
@@ -17,9 +22,16 @@ import io.hyperfoil.function.SerializableFunction;
  * <li><code>regexp</code> (don't do any replaces and use the full path), e.g. <code>.*.jpg</code>
  * <li><code>-&gt; name</code> (metric applied if none of the previous expressions match).
  * </ul>
+ * Expressions without replacement that consist of a literal prefix (<code>/foo/.*</code>), suffix (<code>.*.jpg</code>)
+ * or the complete literal are matched using a trie rather than the regular expression.
+ * Results are cached in each executor thread.
  */
 public class PathMetricSelector implements ListBuilder, MetricSelector {
+   private static final int CACHE_SIZE = 1024;
+
    public List<SerializableFunction<String, String>> tests = new ArrayList<>();
+   @Visitor.Ignore
+   private transient volatile Compiled compiled;
 
    @Override
    public void nextItem(String item) {
@@ -40,7 +52,18 @@ public class PathMetricSelector implements ListBuilder, MetricSelector {
 
    @Override
    public String apply(String authority, String path) {
-      String combined = authority != null ? authority + path : path;
+      Compiled compiled = this.compiled;
+      if (compiled == null) {
+         synchronized (this) {
+            if ((compiled = this.compiled) == null) {
+               this.compiled = compiled = new Compiled(tests);
+            }
+         }
+      }
+      return compiled.apply(authority, path);
+   }
+
+   private static String applyInOrder(List<SerializableFunction<String, String>> tests, String combined) {
       for (SerializableFunction<String, String> test : tests) {
          String result = test.apply(combined);
          if (result != null) {
@@ -50,6 +73,155 @@ public class PathMetricSelector implements ListBuilder, MetricSelector {
       return null;
    }
 
+   /**
+    * @return Unescaped literal, or <code>null</code> if the regexp is not a plain ASCII literal.
+    */
+   static String literal(String regexp) {
+      StringBuilder sb = new StringBuilder(regexp.length());
+      for (int i = 0; i < regexp.length(); ++i) {
+         char c = regexp.charAt(i);
+         if (c == '\\') {
+            if (i + 1 >= regexp.length() || Character.isLetterOrDigit(regexp.charAt(i + 1))) {
+               return null;
+            }
+            c = regexp.charAt(++i);
+         } else if (".[]{}()*+?^$|".indexOf(c) >= 0) {
+            return null;
+         }
+         if (c >= 0x80 || c == '\n' || c == '\r') {
+            return null;
+         }
+         sb.append(c);
+      }
+      return sb.toString();
+   }
+
+   private static class Compiled {
+      private final List<SerializableFunction<String, String>> tests;
+      // Terminal index in the trie -> index of the test
+      private final Trie prefixes;
+      private final int[] prefixTests;
+      private final Trie suffixes;
+      private final int[] suffixTests;
+      private final Map<String, Integer> exact = new HashMap<>();
+      // Tests that must be evaluated using regular expressions
+      private final int[] regexpTests;
+      private final int fallbackTest;
+      private final FastThreadLocal<ThreadContext> context = new FastThreadLocal<>() {
+         @Override
+         protected ThreadContext initialValue() {
+            return new ThreadContext(Compiled.this);
+         }
+      };
+
+      Compiled(List<SerializableFunction<String, String>> tests) {
+         this.tests = new ArrayList<>(tests);
+         Map<String, Integer> prefixes = new LinkedHashMap<>();
+         Map<String, Integer> suffixes = new LinkedHashMap<>();
+         List<Integer> regexpTests = new ArrayList<>();
+         int fallbackTest = Integer.MAX_VALUE;
+         for (int i = 0; i < tests.size(); ++i) {
+            SerializableFunction<String, String> test = tests.get(i);
+            if (test instanceof Fallback) {
+               // subsequent tests are never evaluated
+               fallbackTest = i;
+               break;
+            } else if (test instanceof SimpleMatch) {
+               String pattern = ((SimpleMatch) test).pattern();
+               String literal;
+               if (pattern.endsWith(".*") && (literal = literal(pattern.substring(0, pattern.length() - 2))) != null && !literal.isEmpty()) {
+                  prefixes.putIfAbsent(literal, i);
+               } else if (pattern.startsWith(".*") && (literal = literal(pattern.substring(2))) != null && !literal.isEmpty()) {
+                  suffixes.putIfAbsent(new StringBuilder(literal).reverse().toString(), i);
+               } else if ((literal = literal(pattern)) != null) {
+                  exact.putIfAbsent(literal, i);
+               } else {
+                  regexpTests.add(i);
+               }
+            } else {
+               regexpTests.add(i);
+            }
+         }
+         this.prefixes = prefixes.isEmpty() ? null : new Trie(prefixes.keySet().toArray(new String[0]));
+         this.prefixTests = prefixes.values().stream().mapToInt(Integer::intValue).toArray();
+         this.suffixes = suffixes.isEmpty() ? null : new Trie(suffixes.keySet().toArray(new String[0]));
+         this.suffixTests = suffixes.values().stream().mapToInt(Integer::intValue).toArray();
+         this.regexpTests = regexpTests.stream().mapToInt(Integer::intValue).toArray();
+         this.fallbackTest = fallbackTest;
+      }
+
+      String apply(String authority, String path) {
+         ThreadContext ctx = context.get();
+         String metric = ctx.cache.get(authority, path);
+         if (metric == MetricCache.MISS) {
+            String combined = authority != null ? authority + path : path;
+            metric = classify(ctx, combined);
+            ctx.cache.put(authority, path, metric);
+         }
+         return metric;
+      }
+
+      private String classify(ThreadContext ctx, String combined) {
+         int best = fallbackTest;
+         Integer exactTest = exact.isEmpty() ? null : exact.get(combined);
+         if (exactTest != null) {
+            best = exactTest;
+         }
+         int length = combined.length();
+         if (ctx.prefixes != null) {
+            ctx.prefixes.reset();
+            for (int i = 0; i < length; ++i) {
+               char c = combined.charAt(i);
+               if (c >= 0x80 || c == '\n' || c == '\r') {
+                  // The regexps would be evaluated differently
+                  return applyInOrder(tests, combined);
+               }
+               int terminal = ctx.prefixes.next((byte) c);
+               if (terminal >= 0) {
+                  best = Math.min(best, prefixTests[terminal]);
+               }
+            }
+         }
+         if (ctx.suffixes != null) {
+            ctx.suffixes.reset();
+            for (int i = length - 1; i >= 0; --i) {
+               char c = combined.charAt(i);
+               if (c >= 0x80 || c == '\n' || c == '\r') {
+                  return applyInOrder(tests, combined);
+               }
+               int terminal = ctx.suffixes.next((byte) c);
+               if (terminal >= 0) {
+                  best = Math.min(best, suffixTests[terminal]);
+               }
+            }
+         }
+         for (int test : regexpTests) {
+            if (test > best) {
+               break;
+            }
+            String result = tests.get(test).apply(combined);
+            if (result != null) {
+               return result;
+            }
+         }
+         if (best == Integer.MAX_VALUE) {
+            return null;
+         }
+         return tests.get(best).apply(combined);
+      }
+   }
+
+   private static class ThreadContext {
+      final MetricCache cache = new MetricCache(CACHE_SIZE);
+      final Trie.State prefixes;
+      final Trie.State suffixes;
+
+      ThreadContext(Compiled compiled) {
+         prefixes = compiled.prefixes == null ? null : compiled.prefixes.newState();
+         suffixes = compiled.suffixes == null ? null : compiled.suffixes.newState();
+      }
+   }
+
    private static class SimpleMatch implements SerializableFunction<String, String> {
       @Visitor.Invoke(method = "pattern")
       private final Pattern pattern;
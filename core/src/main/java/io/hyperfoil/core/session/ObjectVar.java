@@ -3,6 +3,7 @@ package io.hyperfoil.core.session;
 import io.hyperfoil.api.session.Session;
 
 public class ObjectVar implements Session.Var {
+   private final SessionImpl session;
    boolean set;
    Object value;
 
@@ -13,6 +14,7 @@ public class ObjectVar implements Session.Var {
    }
 
    ObjectVar(SessionImpl session) {
+      this.session = session;
       session.registerVar(this);
    }
 
@@ -34,10 +36,17 @@ public class ObjectVar implements Session.Var {
    @Override
    public void unset() {
       set = false;
+      session.varChanged();
    }
 
    public void set(Object value) {
       this.value = value;
       this.set = true;
+      session.varChanged();
+   }
+
+   void activate() {
+      set = true;
+      session.varChanged();
    }
 }
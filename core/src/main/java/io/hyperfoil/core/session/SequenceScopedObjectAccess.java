@@ -65,7 +65,7 @@ class SequenceScopedObjectAccess extends SequenceScopedReadAccess implements Obj
          if (trace) {
             log.trace("#{} activate {}[{}]", session.uniqueId(), key, session.currentSequence().index());
          }
-         ov.set = true;
+         ov.activate();
          return ov.objectValue(session);
       } else {
          int index = session.currentSequence().index();
@@ -118,7 +118,7 @@ class SequenceScopedReadAccess extends BaseAccess {
       Session.Var var = impl.getVar(index);
       if (var instanceof ObjectVar) {
          ObjectVar ov = (ObjectVar) var;
-         ov.set = true;
+         ov.activate();
          return ov;
       } else {
          throw new IllegalStateException("Variable " + key + " does not hold an object variable (cannot hold array).");
@@ -33,6 +33,10 @@ class SessionImpl implements Session {
    private static final boolean trace = log.isTraceEnabled();
 
    private final Var[] vars;
+   // Resources for keys with slot assigned by the scenario are stored in the array,
+   // other keys (e.g. static keys shared by all scenarios) use the map.
+   private final ResourceKey<?>[] slotKeys;
+   private final Object[] slotResources;
    private final Map<ResourceKey<?>, Object> resources = new HashMap<>();
    private final List<Var> allVars = new ArrayList<>();
    private final List<Resource> allResources = new ArrayList<>();
@@ -46,6 +50,8 @@ class SessionImpl implements Session {
    private Request currentRequest;
    private boolean scheduled;
    private boolean resetting = true;
+   // Incremented on every variable change; sequences waiting for variables remember the value when blocked.
+   private long varVersion;
 
    private EventExecutor executor;
    private SharedData sharedData;
@@ -63,6 +69,8 @@ class SessionImpl implements Session {
       this.usedSequences = new BitSet(scenario.sumConcurrency());
       this.uniqueId = uniqueId;
       this.vars = scenario.createVars(this);
+      this.slotKeys = scenario.resourceKeys();
+      this.slotResources = new Object[slotKeys.length];
    }
 
    @Override
@@ -143,14 +151,37 @@ class SessionImpl implements Session {
       allVars.add(var);
    }
 
+   void varChanged() {
+      ++varVersion;
+   }
+
    @Override
    public <R extends Resource> void declareResource(ResourceKey<R> key, Supplier<R> resourceSupplier) {
       declareResource(key, resourceSupplier, false);
    }
 
+   private int slotOf(ResourceKey<?> key) {
+      int slot = key.slot();
+      return slot >= 0 && slot < slotKeys.length && slotKeys[slot] == key ? slot : -1;
+   }
+
+   private boolean hasResource(ResourceKey<?> key) {
+      int slot = slotOf(key);
+      return slot >= 0 ? slotResources[slot] != null : resources.containsKey(key);
+   }
+
+   private void putResource(ResourceKey<?> key, Object resource) {
+      int slot = slotOf(key);
+      if (slot >= 0) {
+         slotResources[slot] = resource;
+      } else {
+         resources.put(key, resource);
+      }
+   }
+
    @Override
    public <R extends Resource> void declareResource(ResourceKey<R> key, Supplier<R> resourceSupplier, boolean singleton) {
-      if (resources.containsKey(key)) {
+      if (hasResource(key)) {
          return;
       }
       // Current sequence should be null only during unit testing
@@ -162,27 +193,28 @@ class SessionImpl implements Session {
             array[i] = resource;
             allResources.add(resource);
          }
-         resources.put(key, array);
+         putResource(key, array);
       } else {
          R resource = resourceSupplier.get();
-         resources.put(key, resource);
+         putResource(key, resource);
          allResources.add(resource);
       }
    }
 
    @Override
    public <R extends Resource> void declareSingletonResource(ResourceKey<R> key, R resource) {
-      if (resources.containsKey(key)) {
+      if (hasResource(key)) {
          return;
       }
-      resources.put(key, resource);
+      putResource(key, resource);
       allResources.add(resource);
    }
 
    @SuppressWarnings("unchecked")
    @Override
    public <R extends Resource> R getResource(ResourceKey<R> key) {
-      Object res = resources.get(key);
+      int slot = slotOf(key);
+      Object res = slot >= 0 ? slotResources[slot] : resources.get(key);
       if (res == null) {
          return null;
       } else if (res instanceof Resource[]) {
@@ -258,6 +290,9 @@ class SessionImpl implements Session {
                // This may happen when the session.stop() is called
                continue;
             }
+            if (!isReady(sequence)) {
+               continue;
+            }
             if (sequence.progress(this)) {
                progressed = true;
                lastProgressedSequence = i;
@@ -297,6 +332,57 @@ class SessionImpl implements Session {
       }
    }
 
+   private boolean isReady(SequenceInstance sequence) {
+      switch (sequence.waitFor()) {
+         case NOTHING:
+            return true;
+         case VARIABLES:
+            return sequence.waitValue() != varVersion;
+         case TIMESTAMP:
+            return System.currentTimeMillis() >= sequence.waitValue();
+         case SIGNAL:
+            // cleared in signal()
+            return false;
+         default:
+            throw new IllegalStateException(String.valueOf(sequence.waitFor()));
+      }
+   }
+
+   @Override
+   public void awaitVariables() {
+      if (currentSequence != null) {
+         currentSequence.await(SequenceInstance.Wait.VARIABLES, varVersion, null);
+      }
+   }
+
+   @Override
+   public void awaitTimestamp(long timestampMillis) {
+      if (currentSequence != null) {
+         currentSequence.await(SequenceInstance.Wait.TIMESTAMP, timestampMillis, null);
+      }
+   }
+
+   @Override
+   public void awaitSignal(Object key) {
+      if (currentSequence != null) {
+         currentSequence.await(SequenceInstance.Wait.SIGNAL, 0, key);
+      }
+   }
+
+   @Override
+   public void signal(Object key) {
+      for (int i = 0; i <= lastRunningSequence; ++i) {
+         SequenceInstance sequence = runningSequences[i];
+         if (sequence != null && sequence.waitFor() == SequenceInstance.Wait.SIGNAL && sequence.waitKey() == key) {
+            if (trace) {
+               log.trace("#{} Signalled {}({})", uniqueId, sequence, sequence.index());
+            }
+            sequence.clearWait();
+         }
+      }
+      proceed();
+   }
+
    private void releaseSequence(SequenceInstance sequence) {
       usedSequences.clear(sequence.definition().offset() + sequence.index());
       sequencePool.release(sequence);
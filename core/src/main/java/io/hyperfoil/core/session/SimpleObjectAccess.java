@@ -29,15 +29,14 @@ class SimpleObjectAccess extends SimpleReadAccess implements ObjectAccess {
          log.trace("#{} {} <- {}", impl.uniqueId(), key, Util.prettyPrintObject(value));
       }
       ObjectVar var = impl.getVar(index);
-      var.value = value;
-      var.set = true;
+      var.set(value);
    }
 
    @Override
    public Object activate(Session session) {
       SessionImpl impl = (SessionImpl) session;
       ObjectVar var = impl.getVar(index);
-      var.set = true;
+      var.activate();
       return var.objectValue(session);
    }
 
@@ -24,7 +24,11 @@ public class AwaitDelayStep implements Step {
    @Override
    public boolean invoke(Session session) {
       ScheduleDelayStep.Timestamp blockedUntil = (ScheduleDelayStep.Timestamp) key.getObject(session);
-      return System.currentTimeMillis() >= blockedUntil.timestamp;
+      if (System.currentTimeMillis() >= blockedUntil.timestamp) {
+         return true;
+      }
+      session.awaitTimestamp(blockedUntil.timestamp);
+      return false;
    }
 
    /**
@@ -26,9 +26,10 @@ public class AwaitIntStep implements Step {
 
    @Override
    public boolean invoke(Session session) {
-      if (var.isSet(session)) {
-         return predicate == null || predicate.test(var.getInt(session));
+      if (var.isSet(session) && (predicate == null || predicate.test(var.getInt(session)))) {
+         return true;
       }
+      session.awaitVariables();
       return false;
    }
 
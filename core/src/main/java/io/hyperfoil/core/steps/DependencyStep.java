@@ -25,6 +25,7 @@ public abstract class DependencyStep implements Step {
                if (trace) {
                   log.trace("Sequence is blocked by missing var reference {}", ref);
                }
+               session.awaitVariables();
                return false;
             }
          }
@@ -33,6 +33,9 @@ public class CpuWatchdog implements Runnable {
    private final int nCpu;
    private final long[] idleTime;
    private volatile boolean running = true;
+   private volatile double idleRatio = Double.NaN;
+   private double idleRatioSum;
+   private int idleRatioCount;
    private long lastTimestamp;
    private long now;
    private final Map<String, PhaseRecord> phaseStart = new HashMap<>();
@@ -60,10 +63,15 @@ public class CpuWatchdog implements Runnable {
       lastTimestamp = System.nanoTime();
       now = lastTimestamp;
       while (running) {
+         idleRatioSum = 0;
+         idleRatioCount = 0;
          if (!readProcStat(this::processCpuLine)) {
             log.info("CPU watchdog is terminating.");
             return;
          }
+         if (idleRatioCount > 0) {
+            idleRatio = idleRatioSum / idleRatioCount;
+         }
          try {
             Thread.sleep(PERIOD);
          } catch (InterruptedException e) {
@@ -104,6 +112,8 @@ public class CpuWatchdog implements Runnable {
       long prevIdle = idleTime[cpuIndex];
       if (prevIdle != 0 && prevIdle != Long.MAX_VALUE && lastTimestamp != now) {
          double idleRatio = (double) (TICK_NANOS * (idle - prevIdle)) / (now - lastTimestamp);
+         idleRatioSum += Math.min(idleRatio, 1);
+         ++idleRatioCount;
          if (idleRatio < IDLE_THRESHOLD) {
             String message = String.format("%s | CPU %d was used for %.0f%% which is more than the threshold of %.0f%%",
                   new SimpleDateFormat("HH:mm:ss.SSS").format(new Date()), cpuIndex, 100 * (1 - idleRatio), 100 * (1 - IDLE_THRESHOLD));
@@ -133,6 +143,13 @@ public class CpuWatchdog implements Runnable {
       running = false;
    }
 
+   /**
+    * @return Average ratio of idle time of all CPUs over the last watchdog period, or <code>NaN</code> if unknown.
+    */
+   public double getIdleRatio() {
+      return idleRatio;
+   }
+
    public synchronized void notifyPhaseStart(String name) {
       if (nCpu <= 0) return;
       PhaseRecord record = new PhaseRecord(System.nanoTime(), new long[nCpu]);
@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.CharsetEncoder;
@@ -21,6 +22,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import io.hyperfoil.api.config.Benchmark;
 import io.hyperfoil.api.config.BenchmarkDefinitionException;
+import io.hyperfoil.core.data.PartitionedDataset;
 import io.netty.buffer.ByteBuf;
 
 public class Util {
@@ -249,6 +251,25 @@ public class Util {
       return byteArrayOutputStream.toByteArray();
    }
 
+   /**
+    * Serializes the benchmark as sent to given agent: data files are left out as the steps are already built
+    * and {@link PartitionedDataset partitioned datasets} are sliced to the partition of this agent.
+    */
+   public static byte[] serializeForAgent(Benchmark benchmark, int agentId) throws IOException {
+      ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+      serializeForAgent(benchmark, agentId, byteArrayOutputStream);
+      return byteArrayOutputStream.toByteArray();
+   }
+
+   /**
+    * Variant of {@link #serializeForAgent(Benchmark, int)} writing into a stream; the stream is closed afterwards.
+    */
+   public static void serializeForAgent(Benchmark benchmark, int agentId, OutputStream output) throws IOException {
+      try (ObjectOutputStream outputStream = new AgentObjectOutputStream(output, agentId)) {
+         outputStream.writeObject(benchmark);
+      }
+   }
+
    public static Benchmark deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
       try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
          return (Benchmark) input.readObject();
@@ -447,4 +468,25 @@ public class Util {
       assert value >= 0 && value <= 9;
       buf.writeByte('0' + value);
    }
+
+   private static class AgentObjectOutputStream extends ObjectOutputStream {
+      private final int agentId;
+
+      AgentObjectOutputStream(OutputStream output, int agentId) throws IOException {
+         super(output);
+         this.agentId = agentId;
+         enableReplaceObject(true);
+      }
+
+      @Override
+      protected Object replaceObject(Object obj) {
+         // The stream substitutes all references to the original object with the replacement
+         if (obj instanceof Benchmark) {
+            return ((Benchmark) obj).withoutFiles();
+         } else if (obj instanceof PartitionedDataset) {
+            return ((PartitionedDataset) obj).slice(agentId);
+         }
+         return obj;
+      }
+   }
 }
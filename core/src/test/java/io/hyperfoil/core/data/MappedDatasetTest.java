@@ -0,0 +1,77 @@
+package io.hyperfoil.core.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Test;
+
+public class MappedDatasetTest {
+   @Test
+   public void testReadWrite() throws IOException, ClassNotFoundException {
+      MappedDataset dataset;
+      try (MappedDataset.Writer writer = new MappedDataset.Writer(2)) {
+         writer.addRow(new String[]{ "foo", "" });
+         writer.addRow(new String[]{ "příliš žluťoučký", "kůň" });
+         writer.addRow(new String[]{ "x".repeat(1000), "bar" });
+         dataset = writer.complete();
+      }
+      assertDataset(dataset);
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+         output.writeObject(dataset);
+      }
+      try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+         assertDataset((MappedDataset) input.readObject());
+      }
+   }
+
+   @Test
+   public void testDeleteMaterialized() throws IOException, ClassNotFoundException {
+      MappedDataset dataset;
+      try (MappedDataset.Writer writer = new MappedDataset.Writer(1)) {
+         writer.addRow(new String[]{ "foo" });
+         dataset = writer.complete();
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+         output.writeObject(new MappedDataset[]{ dataset });
+      }
+      MappedDataset[] first = deserialize(bytes.toByteArray());
+      MappedDataset[] second = deserialize(bytes.toByteArray());
+      assertThat(first[0].path()).isNotEqualTo(second[0].path()).isNotEqualTo(dataset.path());
+
+      MappedDataset.deleteMaterialized(first);
+      assertThat(first[0].path()).doesNotExist();
+      assertThat(second[0].path()).exists();
+      assertThat(second[0].get(0, 0)).isEqualTo("foo");
+      // Datasets created at build time are kept
+      MappedDataset.deleteMaterialized(dataset);
+      assertThat(dataset.path()).exists();
+
+      MappedDataset.deleteMaterialized(second);
+      assertThat(second[0].path()).doesNotExist();
+   }
+
+   private MappedDataset[] deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+      try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+         return (MappedDataset[]) input.readObject();
+      }
+   }
+
+   private void assertDataset(MappedDataset dataset) {
+      assertThat(dataset.rows()).isEqualTo(3);
+      assertThat(dataset.columns()).isEqualTo(2);
+      assertThat(dataset.get(0, 0)).isEqualTo("foo");
+      assertThat(dataset.get(0, 1)).isEmpty();
+      assertThat(dataset.get(1, 0)).isEqualTo("příliš žluťoučký");
+      assertThat(dataset.get(1, 1)).isEqualTo("kůň");
+      assertThat(dataset.get(2, 0)).hasSize(1000);
+      assertThat(dataset.get(2, 1)).isEqualTo("bar");
+   }
+}
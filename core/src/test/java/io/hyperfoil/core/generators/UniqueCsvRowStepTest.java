@@ -0,0 +1,122 @@
+package io.hyperfoil.core.generators;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.hyperfoil.api.config.Benchmark;
+import io.hyperfoil.api.config.BenchmarkBuilder;
+import io.hyperfoil.api.config.BenchmarkData;
+import io.hyperfoil.api.config.Locator;
+import io.hyperfoil.api.session.ResourceUtilizer;
+import io.hyperfoil.api.session.Session;
+import io.hyperfoil.api.session.WriteAccess;
+import io.hyperfoil.core.builders.StepCatalog;
+import io.hyperfoil.core.data.MappedDataset;
+import io.hyperfoil.core.data.PartitionedDataset;
+import io.hyperfoil.core.session.SessionFactory;
+import io.hyperfoil.core.test.TestUtil;
+import io.hyperfoil.core.util.Util;
+import io.hyperfoil.impl.CollectingVisitor;
+
+public class UniqueCsvRowStepTest {
+   @Test
+   public void testSequential() {
+      assertThat(test(false)).containsExactly("one", "five", "nine", "one", "five", "nine");
+   }
+
+   @Test
+   public void testRandom() {
+      List<String> values = test(true);
+      assertThat(values.subList(0, 3)).containsExactlyInAnyOrder("one", "five", "nine");
+      assertThat(values.subList(3, 6)).containsExactlyInAnyOrder("one", "five", "nine");
+   }
+
+   @Test
+   public void testAgentSlices() throws IOException, ClassNotFoundException {
+      BenchmarkData data = new BenchmarkData() {
+         @Override
+         public InputStream readFile(String file) {
+            return TestUtil.benchmarkData().readFile(file);
+         }
+
+         @Override
+         public Map<String, byte[]> files() {
+            return Collections.singletonMap("data/testdata.csv", new byte[100]);
+         }
+      };
+      BenchmarkBuilder builder = new BenchmarkBuilder(null, data)
+            .addAgent("a1", null, Collections.emptyMap())
+            .addAgent("a2", null, Collections.emptyMap());
+      UniqueCsvRowStep.Builder stepBuilder = builder.addPhase("test").atOnce(1).scenario()
+            .initialSequence("test").step(StepCatalog.SC).uniqueCsvRow()
+            .skipComments(true)
+            .file("data/testdata.csv");
+      stepBuilder.columns().accept("0", "first");
+      Benchmark benchmark = builder.build();
+      assertThat(benchmark.files()).isNotEmpty();
+
+      List<List<String>> slices = new ArrayList<>();
+      for (int agentId = 0; agentId < 2; ++agentId) {
+         Benchmark agentBenchmark = Util.deserialize(Util.serializeForAgent(benchmark, agentId));
+         assertThat(agentBenchmark.version()).isEqualTo(benchmark.version());
+         assertThat(agentBenchmark.files()).isEmpty();
+
+         List<UniqueCsvRowStep> steps = new ArrayList<>();
+         new CollectingVisitor<>(UniqueCsvRowStep.class) {
+            @Override
+            protected boolean process(UniqueCsvRowStep step) {
+               steps.add(step);
+               return false;
+            }
+         }.visit(agentBenchmark);
+         assertThat(steps).hasSize(1);
+         PartitionedDataset dataset = steps.get(0).dataset();
+         assertThat(dataset.partitions()).isEqualTo(2);
+         int otherAgent = 1 - agentId;
+         assertThatThrownBy(() -> dataset.partition(otherAgent)).isInstanceOf(IllegalStateException.class);
+
+         MappedDataset partition = dataset.partition(agentId);
+         List<String> values = new ArrayList<>();
+         for (int row = 0; row < partition.rows(); ++row) {
+            values.add(partition.get(row, 0));
+         }
+         slices.add(values);
+         MappedDataset.deleteMaterialized(agentBenchmark);
+      }
+      assertThat(slices.get(0)).containsExactly("one", "nine");
+      assertThat(slices.get(1)).containsExactly("five");
+   }
+
+   private List<String> test(boolean random) {
+      Locator.push(TestUtil.locator());
+      UniqueCsvRowStep.Builder builder = new UniqueCsvRowStep.Builder()
+            .skipComments(true)
+            .random(random)
+            .wrap(true)
+            .file("data/testdata.csv");
+      builder.columns().accept("0", "first");
+      UniqueCsvRowStep step = (UniqueCsvRowStep) builder.build().get(0);
+      WriteAccess access = SessionFactory.objectAccess("first");
+      Locator.pop();
+
+      Session session = SessionFactory.forTesting(access);
+      TestUtil.resolveAccess(session, step);
+      ResourceUtilizer.reserveForTesting(session, step);
+
+      List<String> values = new ArrayList<>();
+      for (int i = 0; i < 6; ++i) {
+         assertThat(step.invoke(session)).isTrue();
+         values.add((String) access.getObject(session));
+      }
+      return values;
+   }
+}
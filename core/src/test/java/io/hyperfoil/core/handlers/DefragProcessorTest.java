@@ -0,0 +1,91 @@
+package io.hyperfoil.core.handlers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.hyperfoil.api.processor.Processor;
+import io.hyperfoil.api.session.ResourceUtilizer;
+import io.hyperfoil.api.session.Session;
+import io.hyperfoil.core.session.SessionFactory;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+
+public class DefragProcessorTest {
+   @Test
+   public void testBounded() {
+      List<String> strings = new ArrayList<>();
+      DefragProcessor processor = new DefragProcessor(collector(strings), 16, DefragProcessor.OverflowPolicy.INVALID, null);
+      Session session = SessionFactory.forTesting();
+      ResourceUtilizer.reserveForTesting(session, processor);
+
+      ByteBuf first = buffer("Hello ");
+      ByteBuf second = buffer("world!");
+      processor.process(session, first, first.readerIndex(), first.readableBytes(), false);
+      processor.process(session, second, second.readerIndex(), second.readableBytes(), true);
+      assertThat(strings).containsExactly("Hello world!");
+      assertThat(session.getResource(processor.key).buffer).isNull();
+
+      first.release();
+      second.release();
+   }
+
+   @Test
+   public void testOverflowInvalid() {
+      List<String> strings = new ArrayList<>();
+      DefragProcessor processor = new DefragProcessor(collector(strings), 8, DefragProcessor.OverflowPolicy.INVALID, null);
+      Session session = SessionFactory.forTesting();
+      ResourceUtilizer.reserveForTesting(session, processor);
+
+      ByteBuf first = buffer("Hello ");
+      ByteBuf second = buffer("world");
+      ByteBuf third = buffer("!");
+      processor.process(session, first, first.readerIndex(), first.readableBytes(), false);
+      processor.process(session, second, second.readerIndex(), second.readableBytes(), false);
+      processor.process(session, third, third.readerIndex(), third.readableBytes(), true);
+      assertThat(strings).isEmpty();
+      assertThat(session.getResource(processor.key).buffer).isNull();
+
+      // next response should be handled normally
+      processor.process(session, third, third.readerIndex(), third.readableBytes(), true);
+      assertThat(strings).containsExactly("!");
+
+      first.release();
+      second.release();
+      third.release();
+   }
+
+   @Test
+   public void testOverflowStream() {
+      List<String> strings = new ArrayList<>();
+      DefragProcessor processor = new DefragProcessor(collector(strings), 8, DefragProcessor.OverflowPolicy.STREAM, null);
+      Session session = SessionFactory.forTesting();
+      ResourceUtilizer.reserveForTesting(session, processor);
+
+      ByteBuf first = buffer("Hello ");
+      ByteBuf second = buffer("world");
+      ByteBuf third = buffer("!");
+      processor.process(session, first, first.readerIndex(), first.readableBytes(), false);
+      processor.process(session, second, second.readerIndex(), second.readableBytes(), false);
+      processor.process(session, third, third.readerIndex(), third.readableBytes(), true);
+      assertThat(strings).containsExactly("Hello ", "world", "!");
+
+      first.release();
+      second.release();
+      third.release();
+   }
+
+   private static ByteBuf buffer(String str) {
+      ByteBuf buf = PooledByteBufAllocator.DEFAULT.buffer();
+      buf.writeCharSequence(str, StandardCharsets.UTF_8);
+      return buf;
+   }
+
+   private static Processor collector(List<String> strings) {
+      return (session, data, offset, length, isLastPart) -> strings.add(data.toString(offset, length, StandardCharsets.UTF_8));
+   }
+}
@@ -30,6 +30,9 @@ public class ExpectProcessor implements Processor {
       if (invocation.data != null) {
          assertThat(data).withFailMessage(Util.toString(data, offset, length)).matches(invocation.data);
       }
+      if (invocation.content != null) {
+         assertThat(Util.toString(data, offset, length)).as("Invocation #%d", invoked).isEqualTo(invocation.content);
+      }
       if (invocation.offset >= 0) {
          assertThat(offset).as("Invocation #%d", invoked).isEqualTo(invocation.offset);
       }
@@ -61,6 +64,14 @@ public class ExpectProcessor implements Processor {
       return this;
    }
 
+   /**
+    * Expect complete invocation with given content, regardless of the buffer it is passed in.
+    */
+   public ExpectProcessor expectContent(String content) {
+      invocations.add(new Invocation(null, -1, -1, true, content));
+      return this;
+   }
+
    public void validate() {
       assertThat(beforeCalled).isEqualTo(1);
       assertThat(invocations).isEmpty();
@@ -75,12 +86,18 @@ public class ExpectProcessor implements Processor {
       final int offset;
       final int length;
       final boolean isLastPart;
+      final String content;
 
       private Invocation(Predicate<ByteBuf> data, int offset, int length, boolean isLastPart) {
+         this(data, offset, length, isLastPart, null);
+      }
+
+      private Invocation(Predicate<ByteBuf> data, int offset, int length, boolean isLastPart, String content) {
          this.data = data;
          this.offset = offset;
          this.length = length;
          this.isLastPart = isLastPart;
+         this.content = content;
       }
    }
 }
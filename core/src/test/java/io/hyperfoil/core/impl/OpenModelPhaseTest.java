@@ -0,0 +1,159 @@
+package io.hyperfoil.core.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.function.DoubleUnaryOperator;
+
+import org.junit.Test;
+
+import io.hyperfoil.api.config.BenchmarkBuilder;
+import io.hyperfoil.api.config.Phase;
+import io.hyperfoil.api.config.PhaseBuilder;
+
+public class OpenModelPhaseTest {
+   private static final int DURATION = 1000;
+   private static final double EPSILON = 1e-6;
+
+   private static PhaseInstanceImpl.OpenModelPhase constantRate(int usersPerSec) {
+      BenchmarkBuilder builder = BenchmarkBuilder.builder().name("test");
+      PhaseBuilder<?> phase = builder.addPhase("test").constantRate(usersPerSec).variance(false).maxSessions(100).duration(DURATION);
+      phase.scenario().initialSequence("test").step(s -> true);
+      return instance(builder);
+   }
+
+   private static PhaseInstanceImpl.OpenModelPhase rampRate(int initialUsersPerSec, int targetUsersPerSec) {
+      BenchmarkBuilder builder = BenchmarkBuilder.builder().name("test");
+      PhaseBuilder<?> phase = builder.addPhase("test").rampRate(initialUsersPerSec, targetUsersPerSec).variance(false).maxSessions(100).duration(DURATION);
+      phase.scenario().initialSequence("test").step(s -> true);
+      return instance(builder);
+   }
+
+   private static PhaseInstanceImpl.OpenModelPhase instance(BenchmarkBuilder builder) {
+      Phase phase = builder.build().phases().iterator().next();
+      // Absolute start time stays 0 so rate changes are set with time relative to the phase start
+      return (PhaseInstanceImpl.OpenModelPhase) PhaseInstanceImpl.newInstance(phase, "test", 0);
+   }
+
+   /**
+    * Number of started users when the phase proceeds every millisecond, as in metronome mode.
+    */
+   private static long[] startedUsers(PhaseInstanceImpl.OpenModelPhase phase) {
+      long[] started = new long[DURATION + 1];
+      long users = 0;
+      for (int delta = 0; delta <= DURATION; ++delta) {
+         phase.applyRateChange(delta);
+         users = Math.max(users, (long) phase.usersAt(delta));
+         started[delta] = users;
+      }
+      return started;
+   }
+
+   private static void assertStarted(long[] started, DoubleUnaryOperator expected) {
+      for (int delta = 0; delta < started.length; ++delta) {
+         double users = expected.applyAsDouble(delta);
+         assertThat((double) started[delta]).as("users started at %d ms", delta)
+               .isGreaterThan(users - 1 - EPSILON).isLessThanOrEqualTo(users + EPSILON);
+      }
+   }
+
+   private static void assertSchedule(PhaseInstanceImpl.OpenModelPhase phase, long fromUser, long toUser) {
+      double previous = 0;
+      for (long users = fromUser; users <= toUser; ++users) {
+         double delta = phase.scheduledDelta(users);
+         assertThat(delta).as("user %d", users).isGreaterThan(previous).isLessThanOrEqualTo(DURATION + EPSILON);
+         // The scheduler wakes up at the computed time and finds the user due
+         assertThat(phase.usersAt((long) Math.ceil(delta))).as("user %d", users).isGreaterThan(users - EPSILON);
+         assertThat(phase.usersAt((long) Math.ceil(delta) - 1)).as("user %d", users).isLessThan(users + EPSILON);
+         previous = delta;
+      }
+   }
+
+   @Test
+   public void testConstantRate() {
+      PhaseInstanceImpl.OpenModelPhase phase = constantRate(100);
+      long[] started = startedUsers(phase);
+      assertStarted(started, delta -> delta / 10);
+      assertThat(started[DURATION]).isEqualTo(100);
+      for (int users = 1; users <= 100; ++users) {
+         assertThat(phase.scheduledDelta(users)).isCloseTo(10 * users, within(EPSILON));
+      }
+   }
+
+   @Test
+   public void testIncreasingRate() {
+      PhaseInstanceImpl.OpenModelPhase phase = rampRate(10, 190);
+      long[] started = startedUsers(phase);
+      // Rate grows linearly from 0.01 to 0.19 users per millisecond
+      assertStarted(started, delta -> (0.01 + 0.00009 * delta) * delta);
+      assertThat(started[DURATION]).isBetween(99L, 100L);
+      assertThat(started[100]).isLessThan(started[DURATION] - started[DURATION - 100]);
+      assertSchedule(phase, 1, 99);
+   }
+
+   @Test
+   public void testDecreasingRate() {
+      PhaseInstanceImpl.OpenModelPhase phase = rampRate(100, 10);
+      long[] started = startedUsers(phase);
+      // Rate drops linearly from 0.1 to 0.01 users per millisecond
+      assertStarted(started, delta -> (0.1 - 0.000045 * delta) * delta);
+      assertThat(started[DURATION]).isBetween(54L, 55L);
+      assertThat(started[100]).isGreaterThan(started[DURATION] - started[DURATION - 100]);
+      assertSchedule(phase, 1, 54);
+      // Had the rate kept decreasing after the phase, it would drop to zero at 1111 ms with 55.6 users started
+      assertThat(phase.scheduledDelta(55.5)).isBetween((double) DURATION, 1000 * 100 / 90.0);
+      // The quadratic equation has no root: this user would never be started
+      assertThat(phase.scheduledDelta(56)).isEqualTo(Double.POSITIVE_INFINITY);
+   }
+
+   @Test
+   public void testConstantRateChange() {
+      PhaseInstanceImpl.OpenModelPhase phase = constantRate(100);
+      phase.setRateMultiplier(2, 500);
+      long[] started = new long[DURATION + 1];
+      long users = 0;
+      for (int delta = 0; delta <= DURATION; ++delta) {
+         if (delta == 600) {
+            phase.setRateMultiplier(0.5, 800);
+         }
+         phase.applyRateChange(delta);
+         users = Math.max(users, (long) phase.usersAt(delta));
+         started[delta] = users;
+         if (delta > 0) {
+            // Neither rate exceeds one user per millisecond so there's no burst...
+            assertThat(started[delta] - started[delta - 1]).as("users started at %d ms", delta).isLessThanOrEqualTo(1);
+         }
+      }
+      // ... and no gap: the count continues from the moment of the change
+      assertStarted(started, delta -> delta <= 500 ? delta / 10 : delta <= 800 ? 50 + (delta - 500) / 5 : 110 + (delta - 800) / 20);
+      assertThat(started[DURATION]).isEqualTo(120);
+      assertThat(phase.scheduledDelta(121)).isCloseTo(1020, within(EPSILON));
+   }
+
+   @Test
+   public void testRateChangeAppliedLate() {
+      PhaseInstanceImpl.OpenModelPhase phase = constantRate(100);
+      phase.setRateMultiplier(2, 500);
+      // The change is not applied ahead of time
+      phase.applyRateChange(499);
+      assertThat(phase.usersAt(499)).isCloseTo(49.9, within(EPSILON));
+      // The scheduler wakes up after the change was due; the rate changes from the moment of the change
+      phase.applyRateChange(550);
+      assertThat(phase.usersAt(550)).isCloseTo(60, within(EPSILON));
+      assertThat(phase.scheduledDelta(61)).isCloseTo(555, within(EPSILON));
+   }
+
+   @Test
+   public void testRampRateChange() {
+      PhaseInstanceImpl.OpenModelPhase phase = rampRate(10, 190);
+      double usersAtChange = phase.usersAt(500);
+      assertThat(usersAtChange).isCloseTo(27.5, within(EPSILON));
+      phase.setRateMultiplier(2, 500);
+      long[] started = startedUsers(phase);
+      assertThat(phase.usersAt(500)).isCloseTo(usersAtChange, within(EPSILON));
+      assertStarted(started, delta -> delta <= 500 ? (0.01 + 0.00009 * delta) * delta
+            : usersAtChange + 2 * ((0.01 + 0.00009 * delta) * delta - usersAtChange));
+      assertThat(started[DURATION]).isBetween(171L, 172L);
+      assertSchedule(phase, 28, 171);
+   }
+}
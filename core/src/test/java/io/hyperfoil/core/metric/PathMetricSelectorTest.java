@@ -0,0 +1,54 @@
+package io.hyperfoil.core.metric;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class PathMetricSelectorTest {
+   @Test
+   public void testLiteral() {
+      assertThat(PathMetricSelector.literal("/foo/bar")).isEqualTo("/foo/bar");
+      assertThat(PathMetricSelector.literal("\\.jpg")).isEqualTo(".jpg");
+      assertThat(PathMetricSelector.literal(".jpg")).isNull();
+      assertThat(PathMetricSelector.literal("/foo/\\d+")).isNull();
+      assertThat(PathMetricSelector.literal("/foo\\")).isNull();
+   }
+
+   @Test
+   public void testOrder() {
+      PathMetricSelector selector = new PathMetricSelector();
+      selector.nextItem("/static/.*\\.css");
+      selector.nextItem(".*\\.css -> css");
+      selector.nextItem("/static/.*");
+      selector.nextItem(".*\\.jpg");
+      selector.nextItem("/login");
+      selector.nextItem("/api/(\\w+)/.* -> api-$1");
+      selector.nextItem("/api/.*");
+      selector.nextItem("-> other");
+      selector.nextItem("/never/.*");
+
+      for (int i = 0; i < 2; ++i) {
+         // second iteration hits the cache
+         assertThat(selector.apply(null, "/static/main.css")).isEqualTo("/static/main.css");
+         assertThat(selector.apply(null, "/app/main.css")).isEqualTo("css");
+         assertThat(selector.apply(null, "/static/logo.png")).isEqualTo("/static/logo.png");
+         assertThat(selector.apply(null, "/img/logo.jpg")).isEqualTo("/img/logo.jpg");
+         assertThat(selector.apply(null, "/login")).isEqualTo("/login");
+         assertThat(selector.apply(null, "/login/x")).isEqualTo("other");
+         assertThat(selector.apply(null, "/api/users/1")).isEqualTo("api-users");
+         assertThat(selector.apply(null, "/api/1")).isEqualTo("/api/1");
+         assertThat(selector.apply(null, "/never/x")).isEqualTo("other");
+         assertThat(selector.apply(null, "/static/a\nb")).isEqualTo("other");
+         assertThat(selector.apply("localhost:8080", "/static/x")).isEqualTo("other");
+      }
+   }
+
+   @Test
+   public void testNoMatch() {
+      PathMetricSelector selector = new PathMetricSelector();
+      selector.nextItem("localhost:8080/foo.*");
+      assertThat(selector.apply("localhost:8080", "/foo/bar")).isEqualTo("localhost:8080/foo/bar");
+      assertThat(selector.apply("localhost:8080", "/bar")).isNull();
+      assertThat(selector.apply(null, "/bar")).isNull();
+   }
+}
@@ -0,0 +1,69 @@
+package io.hyperfoil.core.session;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import io.hyperfoil.api.config.Scenario;
+import io.hyperfoil.api.config.Sequence;
+import io.hyperfoil.api.config.Step;
+import io.hyperfoil.api.session.ResourceUtilizer;
+import io.hyperfoil.api.session.Session;
+import io.hyperfoil.core.data.LimitedPoolResource;
+
+public class ResourceSlotTest {
+   @Test
+   public void testSlots() {
+      LimitedPoolResource.Key<Object> key1 = new LimitedPoolResource.Key<>();
+      LimitedPoolResource.Key<Object> key2 = new LimitedPoolResource.Key<>();
+      Scenario scenario = scenario(new KeyStep(key1), new KeyStep(key2));
+      assertThat(key1.slot()).isEqualTo(0);
+      assertThat(key2.slot()).isEqualTo(1);
+      assertThat(scenario.resourceKeys()).containsExactly(key1, key2);
+
+      SessionImpl session = new SessionImpl(scenario, 0, 0);
+      session.reserve(scenario);
+      assertThat(session.getResource(key1)).isNotNull();
+      assertThat(session.getResource(key2)).isNotNull().isNotSameAs(session.getResource(key1));
+   }
+
+   @Test
+   public void testSharedKey() {
+      LimitedPoolResource.Key<Object> shared = new LimitedPoolResource.Key<>();
+      LimitedPoolResource.Key<Object> other = new LimitedPoolResource.Key<>();
+      Scenario first = scenario(new KeyStep(shared));
+      Scenario second = scenario(new KeyStep(other), new KeyStep(shared));
+      assertThat(shared.slot()).isEqualTo(0);
+      assertThat(other.slot()).isEqualTo(0);
+      assertThat(second.resourceKeys()).containsExactly(other);
+
+      for (Scenario scenario : new Scenario[]{ first, second }) {
+         SessionImpl session = new SessionImpl(scenario, 0, 0);
+         session.reserve(scenario);
+         assertThat(session.getResource(shared)).isNotNull();
+      }
+   }
+
+   private static Scenario scenario(Step... steps) {
+      Sequence sequence = new Sequence("test", 0, 0, 0, steps);
+      return new Scenario(new Sequence[]{ sequence }, new Sequence[]{ sequence }, 16, 16);
+   }
+
+   private static class KeyStep implements Step, ResourceUtilizer {
+      private final Session.ResourceKey<LimitedPoolResource<Object>> key;
+
+      private KeyStep(Session.ResourceKey<LimitedPoolResource<Object>> key) {
+         this.key = key;
+      }
+
+      @Override
+      public boolean invoke(Session session) {
+         return true;
+      }
+
+      @Override
+      public void reserve(Session session) {
+         session.declareResource(key, () -> LimitedPoolResource.create(1, Object.class, Object::new));
+      }
+   }
+}
@@ -0,0 +1,117 @@
+package io.hyperfoil.core.session;
+
+import static io.hyperfoil.core.builders.StepCatalog.SC;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.hyperfoil.api.config.ScenarioBuilder;
+import io.hyperfoil.api.config.Step;
+import io.hyperfoil.api.session.Session;
+import io.hyperfoil.core.steps.AwaitDelayStep;
+import io.hyperfoil.core.steps.AwaitIntStep;
+import io.hyperfoil.core.steps.SetIntAction;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class SequenceReadinessTest extends BaseScenarioTest {
+   private static final int BUSY_ITERATIONS = 100;
+
+   @Test
+   public void testWaitForVariable() {
+      AtomicInteger invocations = new AtomicInteger();
+      AtomicInteger iterations = new AtomicInteger();
+      ScenarioBuilder scenario = scenario();
+      scenario.initialSequence("waiter")
+            .step(() -> new CountingStep(invocations, new AwaitIntStep(SessionFactory.readAccess("counter"), null)));
+      scenario.initialSequence("setter")
+            .step(s -> busy(s, iterations.incrementAndGet() >= BUSY_ITERATIONS))
+            .step(SC).action(new SetIntAction.Builder().var("counter").value(1));
+
+      runScenario();
+      assertThat(iterations.get()).isEqualTo(BUSY_ITERATIONS);
+      // The waiter is blocked once and then invoked again only after the variable is set
+      assertThat(invocations.get()).isEqualTo(2);
+   }
+
+   @Test
+   public void testWaitForTimestamp() {
+      AtomicInteger invocations = new AtomicInteger();
+      AtomicInteger iterations = new AtomicInteger();
+      AtomicBoolean passed = new AtomicBoolean();
+      ScenarioBuilder scenario = scenario();
+      scenario.initialSequence("waiter")
+            .step(SC).scheduleDelay("delay", 200, TimeUnit.MILLISECONDS).endStep()
+            .step(() -> new CountingStep(invocations, new AwaitDelayStep(SessionFactory.readAccess("delay"))))
+            .step(s -> {
+               passed.set(true);
+               return true;
+            });
+      scenario.initialSequence("busy")
+            .step(s -> {
+               iterations.incrementAndGet();
+               return busy(s, passed.get());
+            });
+
+      long start = System.currentTimeMillis();
+      runScenario();
+      assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(200);
+      assertThat(passed.get()).isTrue();
+      // The session was executed many times while the waiter was blocked but the waiter was not polled
+      assertThat(iterations.get()).isGreaterThan(BUSY_ITERATIONS);
+      assertThat(invocations.get()).isEqualTo(2);
+   }
+
+   @Test
+   public void testSignalNeverArrives() {
+      AtomicInteger invocations = new AtomicInteger();
+      AtomicInteger iterations = new AtomicInteger();
+      Object key = new Object();
+      ScenarioBuilder scenario = benchmarkBuilder.addPhase("test").atOnce(1).maxDuration(500).scenario();
+      scenario.initialSequence("waiter")
+            .step(new CountingStep(invocations, s -> {
+               s.awaitSignal(key);
+               return false;
+            }));
+      scenario.initialSequence("busy")
+            .step(s -> {
+               iterations.incrementAndGet();
+               return busy(s, false);
+            });
+
+      // The phase is terminated after maxDuration with the waiter still blocked
+      runScenario();
+      assertThat(iterations.get()).isGreaterThan(BUSY_ITERATIONS);
+      assertThat(invocations.get()).isEqualTo(1);
+   }
+
+   private static boolean busy(Session session, boolean done) {
+      if (done) {
+         return true;
+      }
+      // Schedule another execution of the session without declaring any wait
+      session.proceed();
+      return false;
+   }
+
+   private static class CountingStep implements Step {
+      private final AtomicInteger invocations;
+      private final Step delegate;
+
+      private CountingStep(AtomicInteger invocations, Step delegate) {
+         this.invocations = invocations;
+         this.delegate = delegate;
+      }
+
+      @Override
+      public boolean invoke(Session session) {
+         invocations.incrementAndGet();
+         return delegate.invoke(session);
+      }
+   }
+}
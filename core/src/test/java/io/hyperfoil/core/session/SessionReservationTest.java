@@ -0,0 +1,95 @@
+package io.hyperfoil.core.session;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.hyperfoil.api.config.Step;
+import io.hyperfoil.api.session.ResourceUtilizer;
+import io.hyperfoil.api.session.Session;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class SessionReservationTest extends BaseScenarioTest {
+   private static final int USERS = 10;
+
+   @Test
+   public void testReserveOnExecutors() {
+      ReservingStep step = new ReservingStep(uniqueId -> false);
+      parallelScenario(USERS).initialSequence("test").step(step);
+
+      runScenario();
+      assertThat(step.failures).isEmpty();
+      assertThat(step.threads.keySet()).containsExactlyInAnyOrderElementsOf(
+            IntStream.range(0, USERS).boxed().collect(Collectors.toList()));
+      // Sessions are reserved in parallel, each one by the executor it runs on
+      Set<String> threads = step.threads.values().stream().collect(Collectors.toSet());
+      assertThat(threads).hasSize(threads());
+      for (int i = 0; i < USERS; ++i) {
+         // Sessions are assigned to executors in round-robin order
+         assertThat(step.executors.get(i)).isEqualTo(i % threads());
+         assertThat(step.threads.get(i)).isEqualTo(step.threads.get(i % threads()));
+      }
+      assertThat(step.invocations.get()).isEqualTo(USERS);
+   }
+
+   @Test(timeout = 30_000)
+   public void testReservationFailure() {
+      ReservingStep step = new ReservingStep(uniqueId -> uniqueId == USERS / 2);
+      parallelScenario(USERS).initialSequence("test").step(step);
+
+      Throwable thrown = catchThrowable(this::runScenario);
+      assertThat(thrown).isInstanceOf(RuntimeException.class);
+      assertThat(thrown.getCause()).isInstanceOf(ReservationException.class);
+      // No session is started when the benchmark could not be initialized
+      assertThat(step.invocations.get()).isZero();
+   }
+
+   private static class ReservingStep implements Step, ResourceUtilizer {
+      private final Map<Integer, String> threads = new ConcurrentHashMap<>();
+      private final Map<Integer, Integer> executors = new ConcurrentHashMap<>();
+      private final Set<String> failures = ConcurrentHashMap.newKeySet();
+      private final AtomicInteger invocations = new AtomicInteger();
+      private final IntPredicate fail;
+
+      private ReservingStep(IntPredicate fail) {
+         this.fail = fail;
+      }
+
+      @Override
+      public void reserve(Session session) {
+         if (!session.executor().inEventLoop()) {
+            failures.add("Session " + session.uniqueId() + " reserved outside of its executor");
+         }
+         executors.put(session.uniqueId(), session.agentThreadId());
+         if (threads.put(session.uniqueId(), Thread.currentThread().getName()) != null) {
+            failures.add("Session " + session.uniqueId() + " reserved twice");
+         }
+         if (fail.test(session.uniqueId())) {
+            throw new ReservationException();
+         }
+      }
+
+      @Override
+      public boolean invoke(Session session) {
+         invocations.incrementAndGet();
+         return true;
+      }
+   }
+
+   private static class ReservationException extends RuntimeException {
+      ReservationException() {
+         super("Expected failure", null, false, false);
+      }
+   }
+}
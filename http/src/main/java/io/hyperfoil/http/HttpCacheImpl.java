@@ -1,12 +1,8 @@
 package io.hyperfoil.http;
 
 import java.time.Clock;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.function.Function;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -24,9 +20,18 @@ import io.netty.util.AsciiString;
 
 /**
  * This represents a browser cache = private one.
+ * <p>
+ * Records are indexed in an open-addressing hash table keyed by authority and path; records with the same key
+ * (e.g. different ETags) are chained from the table slot. The number of records is bounded, the least recently used
+ * record is evicted when the cache is full.
+ * <p>
+ * Evicted and cleared records are kept in a free list and reused for new responses. Requests in flight may still
+ * hold records in {@link CacheControl#matchingCached}; each record counts these references and an evicted record
+ * returns to the free list only after the last request releases it.
  */
 public class HttpCacheImpl implements HttpCache {
    private static final Logger log = LogManager.getLogger(HttpCacheImpl.class);
+   public static final int DEFAULT_CAPACITY = 1024;
 
    // we're ignoring no-transform directive
    private static final Trie REQUEST_CACHE_CONTROL = new Trie("max-age=", "no-cache", "no-store", "max-stale=", "min-fresh=", "only-if-cached");
@@ -41,14 +46,26 @@ public class HttpCacheImpl implements HttpCache {
    private static final int MUST_REVALIDATE = 3;
 
    private final Clock clock;
-   // TODO: optimize this structure
-   private final Map<CharSequence, Map<CharSequence, List<Record>>> records = new HashMap<>();
-   private final List<Record> freeRecords = new ArrayList<>();
-   private final List<List<Record>> freeLists = new ArrayList<>();
-   private final Function<CharSequence, List<Record>> newList = this::newList;
+   private final int capacity;
+   // Heads of record chains; the table is at least twice as big as the capacity so there's always a free slot
+   private final Record[] table;
+   private final int mask;
+   // Least recently used record is lruHead.lruNext, most recently used is lruHead.lruPrev
+   private final Record lruHead = new Record();
+   // Singly-linked through nextInKey
+   private Record freeRecords;
+   private int size;
 
    public HttpCacheImpl(Clock clock) {
+      this(clock, DEFAULT_CAPACITY);
+   }
+
+   public HttpCacheImpl(Clock clock, int capacity) {
       this.clock = clock;
+      this.capacity = capacity;
+      this.table = new Record[Integer.highestOneBit(Math.max(1, capacity) * 2 - 1) * 2];
+      this.mask = table.length - 1;
+      lruHead.lruNext = lruHead.lruPrev = lruHead;
    }
 
    @Override
@@ -66,16 +83,14 @@ public class HttpCacheImpl implements HttpCache {
             // we never cache other queries
             return;
       }
-      Map<CharSequence, List<Record>> authorityRecords = records.get(request.authority);
-      if (authorityRecords == null) {
-         return;
-      }
-      List<Record> pathRecords = authorityRecords.get(request.path);
-      if (pathRecords == null || pathRecords.isEmpty()) {
+      int slot = find(request.authority, request.path, hash(request.authority, request.path));
+      if (slot < 0) {
          return;
       }
-      for (int i = 0; i < pathRecords.size(); ++i) {
-         request.cacheControl.matchingCached.add(pathRecords.get(i));
+      for (Record record = table[slot]; record != null; record = record.nextInKey) {
+         touch(record);
+         record.references++;
+         request.cacheControl.matchingCached.add(record);
       }
    }
 
@@ -105,11 +120,12 @@ public class HttpCacheImpl implements HttpCache {
    // That means that `matchingCached` should contain entries with these tags.
    private void handleIfNoneMatch(HttpRequest request, CharSequence value) {
       // We'll parse the header multiple times to avoid allocating extra colleciton
+      List<HttpCache.Record> matchingCached = request.cacheControl.matchingCached;
       RECORD_LOOP:
-      for (Iterator<HttpCache.Record> iterator = request.cacheControl.matchingCached.iterator(); iterator.hasNext(); ) {
-         Record record = (Record) iterator.next();
+      for (int j = matchingCached.size() - 1; j >= 0; --j) {
+         Record record = (Record) matchingCached.get(j);
          if (record.etag == null) {
-            iterator.remove();
+            request.cacheControl.removeMatching(j);
             continue;
          }
          for (int i = 0; i < value.length(); ++i) {
@@ -142,7 +158,7 @@ public class HttpCacheImpl implements HttpCache {
             }
          }
          // we haven't found a match
-         iterator.remove();
+         request.cacheControl.removeMatching(j);
       }
    }
 
@@ -154,19 +170,18 @@ public class HttpCacheImpl implements HttpCache {
          if (c == ' ') {
             continue;
          } else if (c == '*') {
-            request.cacheControl.matchingCached.clear();
+            request.cacheControl.clearMatching();
             return;
          } else if (c == '"') {
             int start = ++i;
             for (; i < value.length() && value.charAt(i) != '"'; ++i) ;
             int length = i - start;
             List<HttpCache.Record> matchingCached = request.cacheControl.matchingCached;
-            for (Iterator<HttpCache.Record> it = matchingCached.iterator(); it.hasNext(); ) {
-               HttpCache.Record item = it.next();
-               Record record = (Record) item;
+            for (int j = matchingCached.size() - 1; j >= 0; --j) {
+               Record record = (Record) matchingCached.get(j);
                if (record.etag != null && !record.weakETag && length == record.etag.length() &&
                      AsciiString.regionMatches(record.etag, false, 0, value, start, length)) {
-                  it.remove();
+                  request.cacheControl.removeMatching(j);
                }
             }
             while (++i < value.length() && value.charAt(i) == ' ') ;
@@ -230,15 +245,15 @@ public class HttpCacheImpl implements HttpCache {
          }
       }
       long now = clock.millis();
-      Iterator<HttpCache.Record> it = request.cacheControl.matchingCached.iterator();
-      while (it.hasNext()) {
-         Record record = (Record) it.next();
+      List<HttpCache.Record> matchingCached = request.cacheControl.matchingCached;
+      for (int j = matchingCached.size() - 1; j >= 0; --j) {
+         Record record = (Record) matchingCached.get(j);
          if (maxAge > 0 && now - record.date > maxAge * 1000) {
-            it.remove();
+            request.cacheControl.removeMatching(j);
          } else if ((record.mustRevalidate && now >= record.expires) || (maxStale > 0 && now - record.expires > maxStale * 1000)) {
-            it.remove();
+            request.cacheControl.removeMatching(j);
          } else if (minFresh > 0 && record.expires - now < minFresh * 1000) {
-            it.remove();
+            request.cacheControl.removeMatching(j);
          }
       }
       // When we did the filtering here we should not do it any later
@@ -252,10 +267,11 @@ public class HttpCacheImpl implements HttpCache {
    public boolean isCached(HttpRequest request, HttpRequestWriter writer) {
       if (!request.cacheControl.ignoreExpires) {
          long now = clock.millis();
-         for (Iterator<HttpCache.Record> iterator = request.cacheControl.matchingCached.iterator(); iterator.hasNext(); ) {
-            Record record = (Record) iterator.next();
+         List<HttpCache.Record> matchingCached = request.cacheControl.matchingCached;
+         for (int j = matchingCached.size() - 1; j >= 0; --j) {
+            Record record = (Record) matchingCached.get(j);
             if (record.expires != Long.MIN_VALUE && now > record.expires) {
-               iterator.remove();
+               request.cacheControl.removeMatching(j);
             }
          }
       }
@@ -284,8 +300,9 @@ public class HttpCacheImpl implements HttpCache {
 
    private Record findMostRecent(HttpRequest request) {
       Record mostRecent = null;
-      for (HttpCache.Record r : request.cacheControl.matchingCached) {
-         Record record = (Record) r;
+      List<HttpCache.Record> matchingCached = request.cacheControl.matchingCached;
+      for (int i = 0; i < matchingCached.size(); ++i) {
+         Record record = (Record) matchingCached.get(i);
          if (mostRecent == null || record.date < mostRecent.date) {
             mostRecent = record;
          }
@@ -316,49 +333,194 @@ public class HttpCacheImpl implements HttpCache {
       if (cc.responseExpires != Long.MIN_VALUE && cc.responseExpires < cc.responseDate) {
          return;
       }
-      Map<CharSequence, List<Record>> authorityRecords = records.computeIfAbsent(request.authority, a -> new HashMap<>());
-      List<Record> pathRecords = authorityRecords.computeIfAbsent(request.path, newList);
+      if (capacity <= 0) {
+         return;
+      }
+      int hash = hash(request.authority, request.path);
+      int slot = find(request.authority, request.path, hash);
+      Record head = slot < 0 ? null : table[slot];
       if (cc.responseEtag != null) {
          boolean weak = false;
          if (AsciiString.regionMatches(cc.responseEtag, false, 0, "W/", 0, 2)) {
             weak = true;
          }
          // Update existing record (with matching etag) or add new
-         for (Record record : pathRecords) {
-            if (record.etag.length() == cc.responseEtag.length() - (weak ? 4 : 2) &&
-                  AsciiString.regionMatches(record.etag, false, 0, cc.responseEtag, weak ? 1 : 3, record.etag.length())) {
+         for (Record record = head; record != null; record = record.nextInKey) {
+            if (record.etag != null && record.etag.length() == cc.responseEtag.length() - (weak ? 4 : 2) &&
+                  AsciiString.regionMatches(record.etag, false, 0, cc.responseEtag, weak ? 3 : 1, record.etag.length())) {
                record.update(cc);
+               touch(record);
                return;
             }
          }
-         pathRecords.add(newRecord().set(cc));
+         add(request.authority, request.path, hash).set(cc);
       } else if (cc.responseLastModified != Long.MIN_VALUE) {
-         for (Record record : pathRecords) {
+         for (Record record = head; record != null; record = record.nextInKey) {
             if (record.lastModified > cc.responseLastModified) {
                return;
             }
          }
-         Record record = pathRecords.isEmpty() ? newRecord().set(cc) : pathRecords.get(0).update(cc);
-         pathRecords.clear();
-         pathRecords.add(record);
+         if (head == null) {
+            add(request.authority, request.path, hash).set(cc);
+         } else {
+            // keep only the first record
+            while (head.nextInKey != null) {
+               remove(head.nextInKey);
+            }
+            head.update(cc);
+            touch(head);
+         }
       } else {
-         Record record = null;
-         for (Iterator<Record> iterator = pathRecords.iterator(); iterator.hasNext(); ) {
-            record = iterator.next();
+         // Replace records without validators with a single one
+         Record existing = null;
+         for (Record record = head; record != null; ) {
+            Record next = record.nextInKey;
             if (record.lastModified == Long.MIN_VALUE && record.etag == null) {
-               iterator.remove();
+               if (existing == null) {
+                  existing = record;
+               } else {
+                  remove(record);
+               }
             }
+            record = next;
+         }
+         if (existing == null) {
+            add(request.authority, request.path, hash).set(cc);
+         } else {
+            existing.update(cc);
+            touch(existing);
          }
-         pathRecords.add(record == null ? newRecord().set(cc) : record.update(cc));
       }
    }
 
-   private Record newRecord() {
-      return freeRecords.isEmpty() ? new Record() : freeRecords.remove(freeRecords.size() - 1);
+   private static int hash(CharSequence authority, CharSequence path) {
+      int h = 31 * hash(path) + (authority == null ? 0 : hash(authority));
+      return h ^ (h >>> 16);
    }
 
-   private List<Record> newList(CharSequence key) {
-      return freeLists.isEmpty() ? new ArrayList<>() : freeLists.remove(freeLists.size() - 1);
+   // Same as String.hashCode() but works for any CharSequence
+   private static int hash(CharSequence cs) {
+      if (cs instanceof String) {
+         return cs.hashCode();
+      }
+      int h = 0;
+      for (int i = 0; i < cs.length(); ++i) {
+         h = 31 * h + cs.charAt(i);
+      }
+      return h;
+   }
+
+   private static boolean keyEquals(Record record, CharSequence authority, CharSequence path) {
+      return AsciiString.contentEquals(record.path, path) &&
+            (record.authority == null ? authority == null : authority != null && AsciiString.contentEquals(record.authority, authority));
+   }
+
+   /**
+    * @return Slot index with records for this key or negative value if there are no such records.
+    */
+   private int find(CharSequence authority, CharSequence path, int hash) {
+      for (int i = hash & mask; ; i = (i + 1) & mask) {
+         Record record = table[i];
+         if (record == null) {
+            return -1;
+         } else if (record.hash == hash && keyEquals(record, authority, path)) {
+            return i;
+         }
+      }
+   }
+
+   private Record add(CharSequence authority, CharSequence path, int hash) {
+      if (size >= capacity) {
+         remove(lruHead.lruNext);
+      }
+      Record record = freeRecords;
+      if (record == null) {
+         record = new Record();
+      } else {
+         freeRecords = record.nextInKey;
+      }
+      record.authority = authority;
+      record.path = path;
+      record.hash = hash;
+      int i = hash & mask;
+      for (; table[i] != null; i = (i + 1) & mask) {
+         Record head = table[i];
+         if (head.hash == hash && keyEquals(head, authority, path)) {
+            break;
+         }
+      }
+      // Newly added record is the head of the chain
+      record.nextInKey = table[i];
+      table[i] = record;
+      touch(record);
+      ++size;
+      return record;
+   }
+
+   private void touch(Record record) {
+      if (record.lruNext != null) {
+         record.lruPrev.lruNext = record.lruNext;
+         record.lruNext.lruPrev = record.lruPrev;
+      }
+      record.lruPrev = lruHead.lruPrev;
+      record.lruNext = lruHead;
+      lruHead.lruPrev.lruNext = record;
+      lruHead.lruPrev = record;
+   }
+
+   private void remove(Record record) {
+      int slot = find(record.authority, record.path, record.hash);
+      assert slot >= 0;
+      if (table[slot] == record) {
+         if (record.nextInKey == null) {
+            removeSlot(slot);
+         } else {
+            table[slot] = record.nextInKey;
+         }
+      } else {
+         Record prev = table[slot];
+         while (prev.nextInKey != record) {
+            prev = prev.nextInKey;
+         }
+         prev.nextInKey = record.nextInKey;
+      }
+      record.lruPrev.lruNext = record.lruNext;
+      record.lruNext.lruPrev = record.lruPrev;
+      --size;
+      unlink(record);
+   }
+
+   // Backward-shift deletion: move the following entries to keep the probe sequences without gaps
+   private void removeSlot(int slot) {
+      table[slot] = null;
+      int i = slot;
+      for (int j = (slot + 1) & mask; table[j] != null; j = (j + 1) & mask) {
+         int home = table[j].hash & mask;
+         boolean inRange = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+         if (!inRange) {
+            table[i] = table[j];
+            table[j] = null;
+            i = j;
+         }
+      }
+   }
+
+   // The record keeps its data until the last request referencing it releases it
+   private void unlink(Record record) {
+      record.nextInKey = null;
+      record.lruPrev = null;
+      record.lruNext = null;
+      if (record.references == 0) {
+         free(record);
+      }
+   }
+
+   private void free(Record record) {
+      record.authority = null;
+      record.path = null;
+      record.etag = null;
+      record.nextInKey = freeRecords;
+      freeRecords = record;
    }
 
    @Override
@@ -374,19 +536,19 @@ public class HttpCacheImpl implements HttpCache {
          }
          path = path.subSequence(HttpUtil.indexOf(path, HttpUtil.HTTPS_PREFIX.length(), '/'), path.length());
       }
-      Map<CharSequence, List<Record>> authorityRecords = records.get(authority);
-      if (authorityRecords == null) {
-         return;
-      }
-      List<Record> pathRecords = authorityRecords.get(path);
-      if (pathRecords != null) {
-         pathRecords.clear();
+      int hash = hash(authority, path);
+      int slot = find(authority, path, hash);
+      if (slot >= 0) {
+         // removing the last record might shift another key into this slot
+         while (table[slot] != null && table[slot].hash == hash && keyEquals(table[slot], authority, path)) {
+            remove(table[slot]);
+         }
       }
    }
 
    @Override
    public int size() {
-      return records.values().stream().flatMap(map -> map.values().stream()).mapToInt(List::size).sum();
+      return size;
    }
 
    private static int parseIntSaturated(CharSequence value, int begin, int end) {
@@ -459,22 +621,26 @@ public class HttpCacheImpl implements HttpCache {
 
    @Override
    public void clear() {
-      for (Map<CharSequence, List<Record>> authorityRecords : records.values()) {
-         // We must clean up authority records because paths can be request-specific; we can assume
-         // that authority can be cached for extended periods of time
-         for (List<Record> pathRecords : authorityRecords.values()) {
-            for (Record record : pathRecords) {
-               record.reset();
-               freeRecords.add(record);
-            }
-            pathRecords.clear();
-            freeLists.add(pathRecords);
-         }
-         authorityRecords.clear();
+      if (size == 0) {
+         return;
+      }
+      for (Record record = lruHead.lruNext; record != lruHead; ) {
+         Record next = record.lruNext;
+         unlink(record);
+         record = next;
       }
+      lruHead.lruNext = lruHead.lruPrev = lruHead;
+      Arrays.fill(table, null);
+      size = 0;
    }
 
-   private static class Record implements HttpCache.Record {
+   private class Record implements HttpCache.Record {
+      CharSequence authority;
+      CharSequence path;
+      int hash;
+      Record nextInKey;
+      Record lruPrev;
+      Record lruNext;
       long date;
       long expires;
       boolean noCache;
@@ -482,6 +648,17 @@ public class HttpCacheImpl implements HttpCache {
       long lastModified;
       boolean weakETag;
       CharSequence etag;
+      // Number of requests holding this record in matchingCached
+      int references;
+
+      @Override
+      public void release() {
+         assert references > 0;
+         // Records that are still in the cache have lruNext set
+         if (--references == 0 && lruNext == null) {
+            free(this);
+         }
+      }
 
       Record set(CacheControl cc) {
          this.date = cc.responseDate;
@@ -494,11 +671,6 @@ public class HttpCacheImpl implements HttpCache {
          return this;
       }
 
-      void reset() {
-         // other values are scalar
-         etag = null;
-      }
-
       Record update(CacheControl cc) {
          date = Math.max(date, cc.responseDate);
          expires = Math.max(expires, cc.responseExpires);
@@ -103,7 +103,7 @@ public class HttpRunData implements PluginRunData {
                });
       }
       session.declareSingletonResource(HttpDestinationTable.KEY, destinations);
-      session.declareSingletonResource(HttpCache.KEY, new HttpCacheImpl(clock));
+      session.declareSingletonResource(HttpCache.KEY, new HttpCacheImpl(clock, plugin.privateCacheSize()));
       session.declareSingletonResource(HttpRequestPool.KEY, new HttpRequestPool(scenario, session));
    }
 
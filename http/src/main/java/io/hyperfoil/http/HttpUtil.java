@@ -239,7 +239,7 @@ public final class HttpUtil {
       if (!AsciiString.regionMatches(path, true, prefixLength, authority, 0, colonIndex)) {
          return false;
       }
-      if (path.charAt(prefixLength + colonIndex) == ':') {
+      if (path.length() > prefixLength + colonIndex && path.charAt(prefixLength + colonIndex) == ':') {
          // path uses explicit port
          CharSequence port;
          int portOffset, portLength;
@@ -252,7 +252,7 @@ public final class HttpUtil {
             portOffset = colonIndex + 1;
             portLength = authority.length() - colonIndex - 1;
          }
-         return AsciiString.regionMatches(path, false, prefixLength + colonIndex, port, portOffset, portLength);
+         return AsciiString.regionMatches(path, false, prefixLength + colonIndex + 1, port, portOffset, portLength);
       } else {
          return colonIndex == authority.length() ||
                colonIndex == authority.length() - defaultPort.length() - 1 &&
@@ -278,7 +278,7 @@ public final class HttpUtil {
       if (!regionMatches(pathData, pathOffset + prefixLength, pathLength - prefixLength, authority, 0, colonIndex)) {
          return false;
       }
-      if (pathData.getByte(prefixLength + colonIndex) == ':') {
+      if (pathLength > prefixLength + colonIndex && pathData.getByte(pathOffset + prefixLength + colonIndex) == ':') {
          // path uses explicit port
          byte[] port;
          int portOffset, portLength;
@@ -291,7 +291,7 @@ public final class HttpUtil {
             portOffset = colonIndex + 1;
             portLength = authority.length - colonIndex - 1;
          }
-         return regionMatches(pathData, pathOffset + prefixLength + colonIndex, pathLength - prefixLength - colonIndex, port, portOffset, portLength);
+         return regionMatches(pathData, pathOffset + prefixLength + colonIndex + 1, pathLength - prefixLength - colonIndex - 1, port, portOffset, portLength);
       } else {
          return colonIndex == authority.length ||
                colonIndex == authority.length - defaultPort.length - 1 &&
@@ -313,7 +313,7 @@ public final class HttpUtil {
    }
 
    static int indexOf(byte[] bytes, byte b) {
-      for (int i = 0; i <= bytes.length; ++i) {
+      for (int i = 0; i < bytes.length; ++i) {
          if (bytes[i] == b) {
             return i;
          }
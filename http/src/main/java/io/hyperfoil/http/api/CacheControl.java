@@ -8,8 +8,8 @@ public class CacheControl {
    public boolean noStore;
    public boolean onlyIfCached;
    public boolean ignoreExpires;
-   // TODO: We're allocating iterator in this collection for removal
-   // TODO: also optimize more for removal in the middle
+   // Records are removed by index (from the end) to avoid allocating iterators.
+   // Use removeMatching() or clearMatching() to release the removed records.
    public List<HttpCache.Record> matchingCached = new ArrayList<>(4);
 
    public boolean invalidate;
@@ -29,7 +29,7 @@ public class CacheControl {
       noStore = false;
       onlyIfCached = false;
       ignoreExpires = false;
-      matchingCached.clear();
+      clearMatching();
 
       invalidate = false;
       responseNoCache = false;
@@ -43,4 +43,14 @@ public class CacheControl {
 
       wasCached = false;
    }
+
+   public void removeMatching(int index) {
+      matchingCached.remove(index).release();
+   }
+
+   public void clearMatching() {
+      for (int i = matchingCached.size() - 1; i >= 0; --i) {
+         matchingCached.remove(i).release();
+      }
+   }
 }
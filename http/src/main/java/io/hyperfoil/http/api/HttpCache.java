@@ -22,7 +22,12 @@ public interface HttpCache extends Session.Resource {
 
    void clear();
 
-   interface Record {}
+   interface Record {
+      /**
+       * Called when a request stops referencing this record. The record can be reused afterwards.
+       */
+      void release();
+   }
 
    static HttpCache get(Session session) {
       return session.getResource(KEY);
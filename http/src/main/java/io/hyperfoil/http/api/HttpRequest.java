@@ -1,5 +1,7 @@
 package io.hyperfoil.http.api;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 
@@ -10,7 +12,9 @@ import io.hyperfoil.api.session.Session;
 import io.hyperfoil.api.session.SessionStopException;
 import io.hyperfoil.http.statistics.HttpStats;
 import io.hyperfoil.api.statistics.Statistics;
+import io.hyperfoil.core.util.Util;
 import io.hyperfoil.http.HttpRequestPool;
+import io.hyperfoil.http.HttpUtil;
 import io.netty.buffer.ByteBuf;
 
 import org.apache.logging.log4j.Logger;
@@ -26,6 +30,22 @@ public class HttpRequest extends Request {
    public String path;
    public CacheControl cacheControl = new CacheControl();
    private HttpConnectionPool pool;
+   private BiConsumer<Session, HttpRequestWriter>[] headerAppenders;
+   private boolean injectHostHeader;
+   private BiFunction<Session, Connection, ByteBuf> bodyGenerator;
+   // Redirects followed inline: the same request is sent again on the same connection
+   private final RedirectTarget redirectLocation = new RedirectTarget();
+   private int redirectStepId;
+   private String redirectMetric;
+   // Resolved on the first redirect
+   private Statistics redirectStatistics;
+   private int redirectStatus;
+   private int redirects;
+   private boolean redirecting;
+   private long redirectStartMillis;
+   private long redirectStartNanos;
+   // Header names and values of a redirect response received before we know if it can be followed inline
+   private final List<CharSequence> deferredHeaders = new ArrayList<>();
 
    public HttpRequest(Session session) {
       super(session);
@@ -44,6 +64,9 @@ public class HttpRequest extends Request {
       this.handlers = handlers;
       this.pool = pool;
       start(sequence, statistics);
+      this.redirects = 0;
+      this.redirectStartMillis = startTimestampMillis();
+      this.redirectStartNanos = startTimestampNanos();
    }
 
    public void send(HttpConnection connection,
@@ -60,6 +83,9 @@ public class HttpRequest extends Request {
                session.uniqueId(), session.currentRequest(), this));
       }
 
+      this.headerAppenders = headerAppenders;
+      this.injectHostHeader = injectHostHeader;
+      this.bodyGenerator = bodyGenerator;
       attach(connection);
       connection.attach(pool);
       connection.request(this, headerAppenders, injectHostHeader, bodyGenerator);
@@ -78,9 +104,165 @@ public class HttpRequest extends Request {
       this.authority = null;
       this.path = null;
       this.pool = null;
+      this.headerAppenders = null;
+      this.bodyGenerator = null;
+      this.redirectMetric = null;
+      this.redirectStatistics = null;
+      this.redirectStatus = 0;
+      this.redirecting = false;
+      redirectLocation.reset();
+      deferredHeaders.clear();
       cacheControl.reset();
    }
 
+   /**
+    * Metric where responses with redirects followed inline are recorded; the main statistics record
+    * only the final response (with response time including all the redirects). The statistics are looked up
+    * only when a redirect is followed.
+    */
+   public void redirectMetric(int stepId, String metric) {
+      this.redirectStepId = stepId;
+      this.redirectMetric = metric;
+   }
+
+   /**
+    * Called when the status is received; if this returns true the response is not passed to the handlers
+    * until we find out if we can follow the redirect inline.
+    */
+   public boolean startRedirect(int status, int maxRedirects) {
+      if (redirects >= maxRedirects) {
+         return false;
+      }
+      switch (status) {
+         case 301:
+         case 302:
+         case 303:
+         case 307:
+         case 308:
+            redirectStatus = status;
+            return true;
+         default:
+            return false;
+      }
+   }
+
+   /**
+    * @return Status of the redirect response that is being received or 0.
+    */
+   public int redirectStatus() {
+      return redirectStatus;
+   }
+
+   /**
+    * Sets target of the redirect from the <code>location</code> header.
+    *
+    * @param location Header value.
+    * @return False if the target is on a different authority and the redirect cannot be followed inline.
+    */
+   public boolean redirectLocation(CharSequence location) {
+      boolean isHttp = Util.startsWith(location, 0, HttpUtil.HTTP_PREFIX);
+      if (isHttp || Util.startsWith(location, 0, HttpUtil.HTTPS_PREFIX)) {
+         int pathIndex = HttpUtil.indexOf(location, HttpUtil.prefixLength(isHttp), '/');
+         // Locations without path are rare, we won't bother with these
+         if (pathIndex == location.length() || isHttp == pool.clientPool().config().protocol().secure() ||
+               !HttpUtil.authorityMatch(location, authority, isHttp)) {
+            return false;
+         }
+         redirectLocation.path = location.subSequence(pathIndex, location.length());
+      } else if (Util.startsWith(location, 0, "/")) {
+         redirectLocation.path = location;
+      } else {
+         // Relative location is resolved against the path without query
+         int queryIndex = path.indexOf('?');
+         String basePath = queryIndex < 0 ? path : path.substring(0, queryIndex);
+         if (Util.startsWith(location, 0, "?")) {
+            redirectLocation.path = basePath + location;
+         } else {
+            int lastSlash = basePath.lastIndexOf('/');
+            redirectLocation.path = lastSlash < 0 ? "/" + location : basePath.substring(0, lastSlash + 1) + location;
+         }
+      }
+      redirectLocation.authority = authority;
+      return true;
+   }
+
+   public boolean hasRedirectLocation() {
+      return redirectLocation.path != null;
+   }
+
+   public void cancelRedirect() {
+      redirectStatus = 0;
+      redirectLocation.reset();
+   }
+
+   /**
+    * Stores a header of the redirect response; if the redirect is not followed inline these are passed
+    * to the handlers later.
+    */
+   public void deferHeader(CharSequence header, CharSequence value) {
+      deferredHeaders.add(header);
+      deferredHeaders.add(value);
+   }
+
+   /**
+    * @return Alternating header names and values; the caller should clear the list after processing.
+    */
+   public List<CharSequence> deferredHeaders() {
+      return deferredHeaders;
+   }
+
+   /**
+    * Records the redirect response and switches this request to the new location. The connection sends
+    * the request again through {@link #sendRedirect()} after it is done with current response.
+    */
+   public void prepareRedirect(long endTimestampNanos) {
+      if (redirectMetric != null) {
+         if (redirectStatistics == null) {
+            redirectStatistics = session.statistics(redirectStepId, redirectMetric);
+         }
+         HttpStats.addStatus(redirectStatistics, redirectStartMillis, redirectStatus);
+         redirectStatistics.incrementRequests(redirectStartMillis);
+         redirectStatistics.recordResponse(redirectStartMillis, endTimestampNanos - redirectStartNanos);
+      }
+      if (redirectStatus != 307 && redirectStatus != 308) {
+         method = HttpMethod.GET;
+         bodyGenerator = null;
+      }
+      path = redirectLocation.path.toString();
+      cancelRedirect();
+      deferredHeaders.clear();
+      cacheControl.reset();
+      redirects++;
+      redirecting = true;
+      redirectStartMillis = System.currentTimeMillis();
+      redirectStartNanos = endTimestampNanos;
+   }
+
+   public boolean isRedirecting() {
+      return redirecting;
+   }
+
+   /**
+    * Sends the request on the same connection again, reusing the connection's slot of the previous response.
+    *
+    * @return False if the connection cannot be used; in that case the request is cancelled and the slot
+    * should be released as usual.
+    */
+   public boolean sendRedirect() {
+      redirecting = false;
+      HttpConnection connection = connection();
+      if (!connection.isOpen()) {
+         cancel(Connection.CLOSED_EXCEPTION);
+         return false;
+      }
+      if (log.isTraceEnabled()) {
+         log.trace("#{} following redirect #{} to {} {}{} on {}", session.uniqueId(), redirects, method, authority, path, connection);
+      }
+      connection.onAcquire();
+      send(connection, headerAppenders, injectHostHeader, bodyGenerator);
+      return true;
+   }
+
    public HttpResponseHandlers handlers() {
       return handlers;
    }
@@ -6,4 +6,14 @@ public interface HttpRequestWriter {
    HttpRequest request();
 
    void putHeader(CharSequence header, CharSequence value);
+
+   /**
+    * Adds a header with ASCII value held in a reused buffer. The value is copied before this method returns.
+    * Headers added this way are not inspected by the HTTP cache.
+    *
+    * @param header Header name.
+    * @param value Buffer with the header value.
+    * @param length Length of the value.
+    */
+   void putHeader(CharSequence header, byte[] value, int length);
 }
@@ -0,0 +1,14 @@
+package io.hyperfoil.http.api;
+
+/**
+ * Target of a redirect that is followed inline by {@link HttpRequest}.
+ */
+class RedirectTarget {
+   CharSequence authority;
+   CharSequence path;
+
+   void reset() {
+      authority = null;
+      path = null;
+   }
+}
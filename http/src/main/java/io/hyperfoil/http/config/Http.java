@@ -38,6 +38,8 @@ public class Http implements Serializable {
    private final HttpVersion[] versions;
    private final int maxHttp2Streams;
    private final int pipeliningLimit;
+   private final PipeliningStrategy pipeliningStrategy;
+   private final int pipeliningMaxBytes;
    private final ConnectionPoolConfig sharedConnections;
    private final boolean directHttp2;
    private final long requestTimeout;
@@ -45,11 +47,17 @@ public class Http implements Serializable {
    private final KeyManager keyManager;
    private final TrustManager trustManager;
    private final ConnectionStrategy connectionStrategy;
+   private final int maxConnectRate;
+   private final long addressRefreshPeriod;
+   private final Tls tls;
+   private final Http2FlowControl http2FlowControl;
 
    public Http(boolean isDefault, String originalDestination, Protocol protocol, String host, int port, String[] addresses,
-               HttpVersion[] versions, int maxHttp2Streams, int pipeliningLimit, ConnectionPoolConfig sharedConnections,
+               HttpVersion[] versions, int maxHttp2Streams, int pipeliningLimit, PipeliningStrategy pipeliningStrategy,
+               int pipeliningMaxBytes, ConnectionPoolConfig sharedConnections,
                boolean directHttp2, long requestTimeout, boolean rawBytesHandlers,
-               KeyManager keyManager, TrustManager trustManager, ConnectionStrategy connectionStrategy) {
+               KeyManager keyManager, TrustManager trustManager, ConnectionStrategy connectionStrategy,
+               int maxConnectRate, long addressRefreshPeriod, Tls tls, Http2FlowControl http2FlowControl) {
       this.isDefault = isDefault;
       this.originalDestination = originalDestination;
       this.protocol = protocol;
@@ -59,6 +67,8 @@ public class Http implements Serializable {
       this.versions = versions;
       this.maxHttp2Streams = maxHttp2Streams;
       this.pipeliningLimit = pipeliningLimit;
+      this.pipeliningStrategy = pipeliningStrategy;
+      this.pipeliningMaxBytes = pipeliningMaxBytes;
       this.sharedConnections = sharedConnections;
       this.directHttp2 = directHttp2;
       this.requestTimeout = requestTimeout;
@@ -66,6 +76,10 @@ public class Http implements Serializable {
       this.keyManager = keyManager;
       this.trustManager = trustManager;
       this.connectionStrategy = connectionStrategy;
+      this.maxConnectRate = maxConnectRate;
+      this.addressRefreshPeriod = addressRefreshPeriod;
+      this.tls = tls;
+      this.http2FlowControl = http2FlowControl;
    }
 
    /**
@@ -101,6 +115,17 @@ public class Http implements Serializable {
       return pipeliningLimit;
    }
 
+   public PipeliningStrategy pipeliningStrategy() {
+      return pipeliningStrategy;
+   }
+
+   /**
+    * @return Maximum size of requests in flight on one HTTP 1.x connection, in bytes; 0 means unlimited.
+    */
+   public int pipeliningMaxBytes() {
+      return pipeliningMaxBytes;
+   }
+
    public ConnectionPoolConfig sharedConnections() {
       return sharedConnections;
    }
@@ -137,6 +162,28 @@ public class Http implements Serializable {
       return connectionStrategy;
    }
 
+   /**
+    * @return Maximum number of new connections opened per second (in the whole cluster), 0 means unlimited.
+    */
+   public int maxConnectRate() {
+      return maxConnectRate;
+   }
+
+   /**
+    * @return Period in milliseconds after which the target addresses are resolved again, 0 disables the refresh.
+    */
+   public long addressRefreshPeriod() {
+      return addressRefreshPeriod;
+   }
+
+   public Tls tls() {
+      return tls;
+   }
+
+   public Http2FlowControl http2FlowControl() {
+      return http2FlowControl;
+   }
+
    public static class KeyManager implements Serializable {
       private final String storeType;
       private final byte[] storeBytes;
@@ -209,4 +256,87 @@ public class Http implements Serializable {
       }
    }
 
+   public static class Tls implements Serializable {
+      private final TlsResumption resumption;
+      private final String[] protocols;
+      private final String[] ciphers;
+      private final String[] groups;
+
+      public Tls(TlsResumption resumption, String[] protocols, String[] ciphers, String[] groups) {
+         this.resumption = resumption;
+         this.protocols = protocols;
+         this.ciphers = ciphers;
+         this.groups = groups;
+      }
+
+      /**
+       * @return Resumption mode or <code>null</code> to keep the provider defaults.
+       */
+      public TlsResumption resumption() {
+         return resumption;
+      }
+
+      /**
+       * @return Enabled protocols or <code>null</code> to use the provider defaults.
+       */
+      public String[] protocols() {
+         return protocols;
+      }
+
+      /**
+       * @return Enabled cipher suites or <code>null</code> to use the ciphers suitable for HTTP/2.
+       */
+      public String[] ciphers() {
+         return ciphers;
+      }
+
+      /**
+       * @return Key exchange groups (curves) or <code>null</code> to use the provider defaults.
+       */
+      public String[] groups() {
+         return groups;
+      }
+   }
+
+   public static class Http2FlowControl implements Serializable {
+      private final int streamWindow;
+      private final int connectionWindow;
+      private final boolean autoTune;
+      private final int maxStreamWindow;
+
+      public Http2FlowControl(int streamWindow, int connectionWindow, boolean autoTune, int maxStreamWindow) {
+         this.streamWindow = streamWindow;
+         this.connectionWindow = connectionWindow;
+         this.autoTune = autoTune;
+         this.maxStreamWindow = maxStreamWindow;
+      }
+
+      /**
+       * @return Initial receive window for each stream, in bytes.
+       */
+      public int streamWindow() {
+         return streamWindow;
+      }
+
+      /**
+       * @return Initial receive window for the whole connection, in bytes.
+       */
+      public int connectionWindow() {
+         return connectionWindow;
+      }
+
+      /**
+       * @return True if the receive windows should grow when the throughput is limited by flow control.
+       */
+      public boolean autoTune() {
+         return autoTune;
+      }
+
+      /**
+       * @return Upper bound for the stream window when auto-tuning.
+       */
+      public int maxStreamWindow() {
+         return maxStreamWindow;
+      }
+   }
 }
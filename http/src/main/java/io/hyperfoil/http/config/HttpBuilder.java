@@ -31,8 +31,10 @@ import java.util.List;
 
 import io.hyperfoil.api.config.BenchmarkDefinitionException;
 import io.hyperfoil.api.config.BuilderBase;
+import io.hyperfoil.api.config.ListBuilder;
 import io.hyperfoil.core.util.Util;
 import io.hyperfoil.http.api.HttpVersion;
+import io.netty.handler.codec.http2.Http2CodecUtil;
 
 /**
  * @author <a href="mailto:stalep@gmail.com">Ståle Pedersen</a>
@@ -51,12 +53,18 @@ public class HttpBuilder implements BuilderBase<HttpBuilder> {
    private ConnectionPoolConfig.Builder sharedConnections = new ConnectionPoolConfig.Builder(this);
    private int maxHttp2Streams = 100;
    private int pipeliningLimit = 1;
+   private PipeliningStrategy pipeliningStrategy = PipeliningStrategy.SPREAD;
+   private int pipeliningMaxBytes = 0;
    private boolean directHttp2 = false;
    private long requestTimeout = 30000;
    private boolean rawBytesHandlers = true;
    private KeyManagerBuilder keyManager = new KeyManagerBuilder(this);
    private TrustManagerBuilder trustManager = new TrustManagerBuilder(this);
+   private TlsBuilder tls = new TlsBuilder(this);
+   private Http2FlowControlBuilder http2FlowControl = new Http2FlowControlBuilder(this);
    private ConnectionStrategy connectionStrategy = ConnectionStrategy.SHARED_POOL;
+   private int maxConnectRate = 0;
+   private long addressRefreshPeriod = 60000;
 
    public static HttpBuilder forTesting() {
       return new HttpBuilder(null);
@@ -159,6 +167,19 @@ public class HttpBuilder implements BuilderBase<HttpBuilder> {
       return this;
    }
 
+   public HttpBuilder pipeliningStrategy(PipeliningStrategy pipeliningStrategy) {
+      this.pipeliningStrategy = pipeliningStrategy;
+      return this;
+   }
+
+   public HttpBuilder pipeliningMaxBytes(int maxBytes) {
+      if (maxBytes < 0) {
+         throw new BenchmarkDefinitionException("Invalid 'pipeliningMaxBytes': " + maxBytes);
+      }
+      this.pipeliningMaxBytes = maxBytes;
+      return this;
+   }
+
    public HttpBuilder directHttp2(boolean directHttp2) {
       this.directHttp2 = directHttp2;
       return this;
@@ -200,6 +221,14 @@ public class HttpBuilder implements BuilderBase<HttpBuilder> {
       return trustManager;
    }
 
+   public TlsBuilder tls() {
+      return tls;
+   }
+
+   public Http2FlowControlBuilder http2FlowControl() {
+      return http2FlowControl;
+   }
+
    public HttpBuilder connectionStrategy(ConnectionStrategy connectionStrategy) {
       this.connectionStrategy = connectionStrategy;
       return this;
@@ -209,6 +238,28 @@ public class HttpBuilder implements BuilderBase<HttpBuilder> {
       return connectionStrategy;
    }
 
+   public HttpBuilder maxConnectRate(int maxConnectRate) {
+      if (maxConnectRate < 0) {
+         throw new BenchmarkDefinitionException("Invalid 'maxConnectRate': " + maxConnectRate);
+      }
+      this.maxConnectRate = maxConnectRate;
+      return this;
+   }
+
+   public HttpBuilder addressRefreshPeriod(long addressRefreshPeriod) {
+      this.addressRefreshPeriod = addressRefreshPeriod;
+      return this;
+   }
+
+   public HttpBuilder addressRefreshPeriod(String addressRefreshPeriod) {
+      if ("none".equals(addressRefreshPeriod)) {
+         this.addressRefreshPeriod = 0;
+      } else {
+         this.addressRefreshPeriod = Util.parseToMillis(addressRefreshPeriod);
+      }
+      return this;
+   }
+
    public void prepareBuild() {
    }
 
@@ -240,8 +291,8 @@ public class HttpBuilder implements BuilderBase<HttpBuilder> {
       Protocol protocol = this.protocol != null ? this.protocol : Protocol.fromPort(port);
       return http = new Http(isDefault, originalDestination, protocol, host, protocol.portOrDefault(port), addresses.toArray(new String[0]),
             httpVersions.toArray(new HttpVersion[0]), maxHttp2Streams, pipeliningLimit,
-            sharedConnections.build(), directHttp2, requestTimeout, rawBytesHandlers, keyManager.build(), trustManager.build(),
-            connectionStrategy);
+            pipeliningStrategy, pipeliningMaxBytes, sharedConnections.build(), directHttp2, requestTimeout, rawBytesHandlers, keyManager.build(), trustManager.build(),
+            connectionStrategy, maxConnectRate, addressRefreshPeriod, tls.build(), http2FlowControl.build());
    }
 
    public static class KeyManagerBuilder implements BuilderBase<KeyManagerBuilder> {
@@ -381,6 +432,129 @@ public class HttpBuilder implements BuilderBase<HttpBuilder> {
       }
    }
 
+   public static class TlsBuilder implements BuilderBase<TlsBuilder> {
+      private final HttpBuilder parent;
+      // By default the provider's behaviour is kept: OpenSSL does a full handshake on each connection
+      // while the JDK resumes sessions from its client session cache.
+      private TlsResumption resumption;
+      private List<String> protocols = new ArrayList<>();
+      private List<String> ciphers = new ArrayList<>();
+      private List<String> groups = new ArrayList<>();
+
+      public TlsBuilder(HttpBuilder parent) {
+         this.parent = parent;
+      }
+
+      /**
+       * Session resumption on new connections. When not set, OpenSSL performs a full handshake
+       * on every connection and the JDK provider uses its default client session cache.
+       *
+       * @param resumption Resumption mode.
+       * @return Self.
+       */
+      public TlsBuilder resumption(TlsResumption resumption) {
+         this.resumption = resumption;
+         return this;
+      }
+
+      public ListBuilder protocols() {
+         return protocols::add;
+      }
+
+      public ListBuilder ciphers() {
+         return ciphers::add;
+      }
+
+      public ListBuilder groups() {
+         return groups::add;
+      }
+
+      public HttpBuilder end() {
+         return parent;
+      }
+
+      public Http.Tls build() {
+         return new Http.Tls(resumption, toArray(protocols), toArray(ciphers), toArray(groups));
+      }
+
+      private static String[] toArray(List<String> list) {
+         return list.isEmpty() ? null : list.toArray(new String[0]);
+      }
+   }
+
+   public static class Http2FlowControlBuilder implements BuilderBase<Http2FlowControlBuilder> {
+      private final HttpBuilder parent;
+      private int streamWindow = Http2CodecUtil.DEFAULT_WINDOW_SIZE;
+      // Historically we've used very large connection window
+      private int connectionWindow = 1073676288;
+      private boolean autoTune = false;
+      private int maxStreamWindow = 16 * 1024 * 1024;
+
+      public Http2FlowControlBuilder(HttpBuilder parent) {
+         this.parent = parent;
+      }
+
+      /**
+       * Initial receive window for each stream, in bytes. Default is 65535 bytes as defined in the specification.
+       *
+       * @param streamWindow Window size.
+       * @return Self.
+       */
+      public Http2FlowControlBuilder streamWindow(int streamWindow) {
+         this.streamWindow = streamWindow;
+         return this;
+      }
+
+      /**
+       * Initial receive window for the whole connection, in bytes. Default is 1 GB.
+       *
+       * @param connectionWindow Window size.
+       * @return Self.
+       */
+      public Http2FlowControlBuilder connectionWindow(int connectionWindow) {
+         this.connectionWindow = connectionWindow;
+         return this;
+      }
+
+      /**
+       * Measure round-trip time using PING frames and grow the receive windows when the amount of data received
+       * during one round-trip gets close to the window size. Default is <code>false</code>.
+       *
+       * @param autoTune Enable auto-tuning?
+       * @return Self.
+       */
+      public Http2FlowControlBuilder autoTune(boolean autoTune) {
+         this.autoTune = autoTune;
+         return this;
+      }
+
+      /**
+       * Upper bound for the stream window when auto-tuning. Default is 16 MB.
+       *
+       * @param maxStreamWindow Window size.
+       * @return Self.
+       */
+      public Http2FlowControlBuilder maxStreamWindow(int maxStreamWindow) {
+         this.maxStreamWindow = maxStreamWindow;
+         return this;
+      }
+
+      public HttpBuilder end() {
+         return parent;
+      }
+
+      public Http.Http2FlowControl build() {
+         if (streamWindow <= 0) {
+            throw new BenchmarkDefinitionException("Invalid HTTP/2 stream window: " + streamWindow);
+         } else if (connectionWindow < Http2CodecUtil.DEFAULT_WINDOW_SIZE) {
+            throw new BenchmarkDefinitionException("HTTP/2 connection window cannot be lower than " + Http2CodecUtil.DEFAULT_WINDOW_SIZE + ": " + connectionWindow);
+         } else if (maxStreamWindow < streamWindow) {
+            throw new BenchmarkDefinitionException("Maximum HTTP/2 stream window " + maxStreamWindow + " is lower than initial window " + streamWindow);
+         }
+         return new Http.Http2FlowControl(streamWindow, connectionWindow, autoTune, maxStreamWindow);
+      }
+   }
+
    private static byte[] readBytes(String filename) throws IOException {
       try (InputStream stream = Thread.currentThread().getContextClassLoader().getResourceAsStream(filename)) {
          if (stream != null) {
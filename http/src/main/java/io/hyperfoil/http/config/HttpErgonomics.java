@@ -1,6 +1,9 @@
 package io.hyperfoil.http.config;
 
+import io.hyperfoil.api.config.BenchmarkDefinitionException;
+import io.hyperfoil.http.HttpCacheImpl;
 import io.hyperfoil.http.api.FollowRedirect;
+import io.hyperfoil.http.cookie.CookieRecorder;
 
 // Contrary to the builder - immutable instance model we're using for most configuration objects
 // we'll keep only single object for ergonomics as this is used only when the benchmark is being built.
@@ -11,6 +14,9 @@ public class HttpErgonomics {
    private boolean autoRangeCheck = true;
    private boolean stopOnInvalid = true;
    private FollowRedirect followRedirect = FollowRedirect.NEVER;
+   private int maxInlineRedirects = 0;
+   private int privateCacheSize = HttpCacheImpl.DEFAULT_CAPACITY;
+   private int maxCookies = CookieRecorder.DEFAULT_MAX_COOKIES;
 
    public HttpErgonomics(HttpPluginBuilder parent) {
       this.parent = parent;
@@ -67,6 +73,62 @@ public class HttpErgonomics {
       return this;
    }
 
+   public int maxInlineRedirects() {
+      return maxInlineRedirects;
+   }
+
+   /**
+    * Maximum number of redirects to the same authority that are followed directly in the request,
+    * on the same connection. By default redirects are not followed inline.
+    *
+    * @param maxInlineRedirects Number of redirects.
+    * @return Self.
+    */
+   public HttpErgonomics maxInlineRedirects(int maxInlineRedirects) {
+      if (maxInlineRedirects < 0) {
+         throw new BenchmarkDefinitionException("Maximum number of inline redirects must not be negative: " + maxInlineRedirects);
+      }
+      this.maxInlineRedirects = maxInlineRedirects;
+      return this;
+   }
+
+   public int privateCacheSize() {
+      return privateCacheSize;
+   }
+
+   /**
+    * Maximum number of records in the private (per-session) HTTP cache. When the cache is full the least recently used
+    * record is evicted. Setting this to 0 disables caching.
+    *
+    * @param privateCacheSize Number of cached records.
+    * @return Self.
+    */
+   public HttpErgonomics privateCacheSize(int privateCacheSize) {
+      if (privateCacheSize < 0) {
+         throw new BenchmarkDefinitionException("Private cache size must not be negative: " + privateCacheSize);
+      }
+      this.privateCacheSize = privateCacheSize;
+      return this;
+   }
+
+   public int maxCookies() {
+      return maxCookies;
+   }
+
+   /**
+    * Maximum number of cookies stored in each session. Cookies exceeding this limit are dropped.
+    *
+    * @param maxCookies Number of cookies.
+    * @return Self.
+    */
+   public HttpErgonomics maxCookies(int maxCookies) {
+      if (maxCookies <= 0) {
+         throw new BenchmarkDefinitionException("Maximum number of cookies must be positive: " + maxCookies);
+      }
+      this.maxCookies = maxCookies;
+      return this;
+   }
+
    public HttpPluginBuilder endErgonomics() {
       return parent;
    }
@@ -36,6 +36,9 @@ public class HttpPlugin implements Plugin {
       parser.register("autoRangeCheck", HttpPluginBuilder.class, new PropertyParser.Boolean<>(HttpErgonomics::autoRangeCheck));
       parser.register("stopOnInvalid", HttpPluginBuilder.class, new PropertyParser.Boolean<>(HttpErgonomics::stopOnInvalid));
       parser.register("followRedirect", HttpPluginBuilder.class, new PropertyParser.Enum<>(FollowRedirect.values(), HttpErgonomics::followRedirect));
+      parser.register("maxInlineRedirects", HttpPluginBuilder.class, new PropertyParser.Int<>(HttpErgonomics::maxInlineRedirects));
+      parser.register("privateCacheSize", HttpPluginBuilder.class, new PropertyParser.Int<>(HttpErgonomics::privateCacheSize));
+      parser.register("maxCookies", HttpPluginBuilder.class, new PropertyParser.Int<>(HttpErgonomics::maxCookies));
    }
 
    @Override
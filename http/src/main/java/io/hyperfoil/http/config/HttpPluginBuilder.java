@@ -91,7 +91,7 @@ public class HttpPluginBuilder extends PluginBuilder<HttpErgonomics> {
    public PluginConfig build() {
       Map<String, Http> httpMap = httpList.stream()
             .collect(Collectors.toMap(HttpBuilder::authority, http -> http.build(http == defaultHttp)));
-      return new HttpPluginConfig(httpMap);
+      return new HttpPluginConfig(httpMap, ergonomics.privateCacheSize());
    }
 
    public boolean validateAuthority(String authority) {
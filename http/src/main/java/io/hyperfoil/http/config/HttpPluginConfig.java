@@ -9,9 +9,11 @@ public class HttpPluginConfig implements PluginConfig {
    private final Map<String, Http> http;
    @Visitor.Ignore
    private final Http defaultHttp;
+   private final int privateCacheSize;
 
-   public HttpPluginConfig(Map<String, Http> http) {
+   public HttpPluginConfig(Map<String, Http> http, int privateCacheSize) {
       this.http = http;
+      this.privateCacheSize = privateCacheSize;
       this.defaultHttp = http.values().stream().filter(Http::isDefault).findFirst().orElse(null);
    }
 
@@ -22,4 +24,8 @@ public class HttpPluginConfig implements PluginConfig {
    public Http defaultHttp() {
       return defaultHttp;
    }
+
+   public int privateCacheSize() {
+      return privateCacheSize;
+   }
 }
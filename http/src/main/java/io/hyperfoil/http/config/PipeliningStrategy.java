@@ -0,0 +1,14 @@
+package io.hyperfoil.http.config;
+
+public enum PipeliningStrategy {
+   /**
+    * Requests are spread over all available connections: the connection is moved to the back
+    * of the queue after each request, so the pipelines are filled only when all connections are busy.
+    */
+   SPREAD,
+   /**
+    * The pipeline of a connection is filled up to <code>pipeliningLimit</code> (and optionally
+    * <code>pipeliningMaxBytes</code>) before the next connection is used.
+    */
+   FILL
+}
@@ -0,0 +1,17 @@
+package io.hyperfoil.http.config;
+
+public enum TlsResumption {
+   /**
+    * Sessions are invalidated after the handshake; every connection performs a full handshake.
+    */
+   NONE,
+   /**
+    * Sessions are resumed using session IDs; the client does not request session tickets.
+    * Ticket-less resumption is possible only in TLS 1.2 and requires the OpenSSL provider.
+    */
+   SESSION_ID,
+   /**
+    * Sessions are resumed using session tickets when the server issues them, falling back to session IDs.
+    */
+   TICKET
+}
@@ -21,7 +21,7 @@ class ConnectionAllocator extends ConnectionPoolStats implements HttpConnectionP
    private final EventLoop eventLoop;
 
    ConnectionAllocator(HttpClientPoolImpl clientPool, EventLoop eventLoop) {
-      super(clientPool.authority);
+      super(clientPool.authority, clientPool.isSecure(), clientPool.config().pipeliningLimit());
       this.clientPool = clientPool;
       this.eventLoop = eventLoop;
    }
@@ -2,6 +2,13 @@ package io.hyperfoil.http.connection;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import io.hyperfoil.core.impl.ConnectionStatsConsumer;
 import io.hyperfoil.core.util.Watermarks;
@@ -17,9 +24,43 @@ class ConnectionPoolStats {
    protected final Watermarks inFlight = new Watermarks();
    protected final Watermarks blockedSessions = new Watermarks();
    protected final Map<String, Watermarks> typeStats = new HashMap<>();
+   // Counters are reset when the stats are visited
+   protected final AtomicInteger fullHandshakes;
+   protected final AtomicInteger resumedHandshakes;
+   // HTTP/2 connections account the time blocked by flow control separately; connections closed
+   // since the last visit are kept until their last period is reported
+   protected final Set<Http2FlowControlTracker> http2Connections = ConcurrentHashMap.newKeySet();
+   protected final Queue<Http2FlowControlTracker> closedHttp2Connections = new ConcurrentLinkedQueue<>();
+   protected volatile boolean hasHttp2;
+   // Number of HTTP 1.x requests sent with given number of requests in the pipeline (including the sent one)
+   protected final AtomicIntegerArray pipelineDepths;
 
-   public ConnectionPoolStats(String authority) {
+   public ConnectionPoolStats(String authority, boolean secure, int pipeliningLimit) {
       this.authority = authority;
+      this.fullHandshakes = secure ? new AtomicInteger() : null;
+      this.resumedHandshakes = secure ? new AtomicInteger() : null;
+      this.pipelineDepths = pipeliningLimit > 1 ? new AtomicIntegerArray(pipeliningLimit + 1) : null;
+   }
+
+   public void recordHandshake(boolean resumed) {
+      (resumed ? resumedHandshakes : fullHandshakes).incrementAndGet();
+   }
+
+   void http2Opened(Http2FlowControlTracker tracker) {
+      hasHttp2 = true;
+      http2Connections.add(tracker);
+   }
+
+   void http2Closed(Http2FlowControlTracker tracker) {
+      if (http2Connections.remove(tracker)) {
+         closedHttp2Connections.add(tracker);
+      }
+   }
+
+   public void recordPipelineDepth(int depth) {
+      if (pipelineDepths != null) {
+         pipelineDepths.incrementAndGet(Math.min(depth, pipelineDepths.length() - 1));
+      }
    }
 
    public void incrementInFlight() {
@@ -37,6 +78,21 @@ class ConnectionPoolStats {
       usedConnections.resetStats();
       consumer.accept(authority, "blocked sessions", blockedSessions.minUsed(), blockedSessions.maxUsed());
       blockedSessions.resetStats();
+      if (fullHandshakes != null) {
+         int full = fullHandshakes.getAndSet(0);
+         consumer.accept(authority, "full TLS handshakes", full, full);
+         int resumed = resumedHandshakes.getAndSet(0);
+         consumer.accept(authority, "resumed TLS handshakes", resumed, resumed);
+      }
+      if (hasHttp2) {
+         visitFlowControlStats(consumer);
+      }
+      if (pipelineDepths != null) {
+         for (int depth = 1; depth < pipelineDepths.length(); ++depth) {
+            int requests = pipelineDepths.getAndSet(depth, 0);
+            consumer.accept(authority, "pipeline depth " + depth, requests, requests);
+         }
+      }
       for (var entry : typeStats.entrySet()) {
          int min = entry.getValue().minUsed();
          int max = entry.getValue().maxUsed();
@@ -45,6 +101,37 @@ class ConnectionPoolStats {
       }
    }
 
+   // Reports the least and most blocked connection in the period
+   private void visitFlowControlStats(ConnectionStatsConsumer consumer) {
+      // min send, max send, min receive, max receive
+      long[] minMax = { Long.MAX_VALUE, 0, Long.MAX_VALUE, 0 };
+      for (Http2FlowControlTracker tracker : http2Connections) {
+         accumulate(minMax, tracker);
+      }
+      Http2FlowControlTracker closed;
+      while ((closed = closedHttp2Connections.poll()) != null) {
+         accumulate(minMax, closed);
+      }
+      if (minMax[0] == Long.MAX_VALUE) {
+         minMax[0] = minMax[2] = 0;
+      }
+      consumer.accept(authority, "HTTP/2 send window blocked ms", toMillis(minMax[0]), toMillis(minMax[1]));
+      consumer.accept(authority, "HTTP/2 receive window limited ms", toMillis(minMax[2]), toMillis(minMax[3]));
+   }
+
+   private static void accumulate(long[] minMax, Http2FlowControlTracker tracker) {
+      long send = tracker.resetSendBlockedNanos();
+      long receive = tracker.resetReceiveLimitedNanos();
+      minMax[0] = Math.min(minMax[0], send);
+      minMax[1] = Math.max(minMax[1], send);
+      minMax[2] = Math.min(minMax[2], receive);
+      minMax[3] = Math.max(minMax[3], receive);
+   }
+
+   private static int toMillis(long nanos) {
+      return (int) TimeUnit.NANOSECONDS.toMillis(nanos);
+   }
+
    protected String tagConnection(HttpConnection connection) {
       switch (connection.version()) {
          case HTTP_1_0:
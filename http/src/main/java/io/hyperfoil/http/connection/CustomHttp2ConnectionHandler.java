@@ -5,7 +5,6 @@ import static io.netty.handler.codec.http2.Http2CodecUtil.getEmbeddedHttp2Except
 import java.io.IOException;
 import java.util.function.BiConsumer;
 
-import io.hyperfoil.api.connection.Connection;
 import io.hyperfoil.api.session.SessionStopException;
 import io.hyperfoil.http.api.HttpClientPool;
 import io.hyperfoil.http.api.HttpConnection;
@@ -71,8 +70,6 @@ class CustomHttp2ConnectionHandler extends io.netty.handler.codec.http2.Http2Con
    private void checkActivated(ChannelHandlerContext ctx) {
       if (connection == null) {
          connection = new Http2Connection(ctx, connection(), encoder(), decoder(), clientPool);
-         // Use a very large stream window size
-         connection.incrementConnectionWindowSize(1073676288 - 65535);
          if (clientPool.config().rawBytesHandlers()) {
             String customeHandlerName = generateName(CustomHttp2ConnectionHandler.class);
             ctx.pipeline().addBefore(customeHandlerName, null, new Http2RawResponseHandler(connection));
@@ -103,6 +100,6 @@ class CustomHttp2ConnectionHandler extends io.netty.handler.codec.http2.Http2Con
 
    @Override
    public void channelInactive(ChannelHandlerContext ctx) {
-      connection.cancelRequests(Connection.CLOSED_EXCEPTION);
+      connection.channelInactive();
    }
 }
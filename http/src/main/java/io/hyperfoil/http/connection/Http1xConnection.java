@@ -35,12 +35,20 @@ class Http1xConnection extends ChannelDuplexHandler implements HttpConnection {
    private static final boolean trace = log.isTraceEnabled();
    private static final byte[] HTTP1_1 = { ' ', 'H', 'T', 'T', 'P', '/', '1', '.', '1', '\r', '\n' };
 
+   private final HttpClientPoolImpl clientPool;
    private final Deque<HttpRequest> inflights;
    private final BiConsumer<HttpConnection, Throwable> activationHandler;
    private final boolean secure;
    private final int pipeliningLimit;
+   private final int maxInFlightBytes;
+   // Sizes of requests in inflights, tracked only when maxInFlightBytes is set
+   private int[] requestBytes;
+   private int requestBytesHead;
+   private int inFlightBytes;
+   private int releasedBytes;
 
    private HttpConnectionPool pool;
+   private ConnectionPoolStats stats;
    private ChannelHandlerContext ctx;
    private int aboutToSend;
    private boolean activated;
@@ -48,15 +56,24 @@ class Http1xConnection extends ChannelDuplexHandler implements HttpConnection {
    private long lastUsed = System.nanoTime();
 
    Http1xConnection(HttpClientPoolImpl client, BiConsumer<HttpConnection, Throwable> handler) {
+      this.clientPool = client;
       this.activationHandler = handler;
       this.inflights = new ArrayDeque<>(client.config().pipeliningLimit());
       this.secure = client.isSecure();
       this.pipeliningLimit = client.config().pipeliningLimit();
+      this.maxInFlightBytes = client.config().pipeliningMaxBytes();
+      if (maxInFlightBytes > 0) {
+         this.requestBytes = new int[Math.max(1, pipeliningLimit)];
+      }
    }
 
    @Override
    public void handlerAdded(ChannelHandlerContext ctx) {
       this.ctx = ctx;
+      if (pipeliningLimit > 1) {
+         HttpConnectionPool executorPool = clientPool.connectionPool(ctx.executor());
+         this.stats = executorPool instanceof ConnectionPoolStats ? (ConnectionPoolStats) executorPool : null;
+      }
       if (ctx.channel().isActive()) {
          checkActivated(ctx);
       }
@@ -100,6 +117,9 @@ class Http1xConnection extends ChannelDuplexHandler implements HttpConnection {
    private void cancelRequests(Throwable cause) {
       HttpRequest request;
       while ((request = inflights.poll()) != null) {
+         if (requestBytes != null) {
+            pollRequestBytes();
+         }
          pool.release(this, false, true);
          if (request.isRunning()) {
             request.cancel(cause);
@@ -171,15 +191,22 @@ class Http1xConnection extends ChannelDuplexHandler implements HttpConnection {
          if (trace) {
             log.trace("#{} Request is completed from cache", request.session.uniqueId());
          }
+         releasedBytes = 0;
          // prevent adding to available twice
-         if (inFlight() != pipeliningLimit - 1) {
+         if (!wasFull()) {
             pool.afterRequestSent(this);
          }
          request.handleCached();
          releasePoolAndPulse();
          return;
       }
+      if (requestBytes != null) {
+         pushRequestBytes(buf.readableBytes() + body.readableBytes());
+      }
       inflights.add(request);
+      if (stats != null) {
+         stats.recordPipelineDepth(inflights.size());
+      }
       ChannelPromise writePromise = ctx.newPromise();
       writePromise.addListener(request);
       if (body.isReadable()) {
@@ -202,9 +229,42 @@ class Http1xConnection extends ChannelDuplexHandler implements HttpConnection {
       if (pool != null) {
          // Note: the pool might be already released if the completion handler
          // invoked another request which was served from cache.
-         pool.release(this, inFlight() == pipeliningLimit - 1 && !isClosed(), true);
+         pool.release(this, wasFull() && !isFull() && !isClosed(), true);
          pool.pulse();
       }
+      releasedBytes = 0;
+   }
+
+   /**
+    * @return True if the connection was full before the last request was completed (or served from cache).
+    */
+   private boolean wasFull() {
+      return inFlight() + 1 >= pipeliningLimit || (maxInFlightBytes > 0 && inFlightBytes + releasedBytes >= maxInFlightBytes);
+   }
+
+   private boolean isFull() {
+      return inFlight() >= pipeliningLimit || (maxInFlightBytes > 0 && inFlightBytes >= maxInFlightBytes);
+   }
+
+   private void pushRequestBytes(int bytes) {
+      int size = inflights.size();
+      if (size == requestBytes.length) {
+         int[] copy = new int[size * 2];
+         for (int i = 0; i < size; ++i) {
+            copy[i] = requestBytes[(requestBytesHead + i) % size];
+         }
+         requestBytes = copy;
+         requestBytesHead = 0;
+      }
+      requestBytes[(requestBytesHead + size) % requestBytes.length] = bytes;
+      inFlightBytes += bytes;
+   }
+
+   private int pollRequestBytes() {
+      int bytes = requestBytes[requestBytesHead];
+      requestBytesHead = (requestBytesHead + 1) % requestBytes.length;
+      inFlightBytes -= bytes;
+      return bytes;
    }
 
    @Override
@@ -227,6 +287,7 @@ class Http1xConnection extends ChannelDuplexHandler implements HttpConnection {
       } else if (req != request) {
          throw new IllegalStateException();
       }
+      releasedBytes = requestBytes != null ? pollRequestBytes() : 0;
       return true;
    }
 
@@ -284,7 +345,7 @@ class Http1xConnection extends ChannelDuplexHandler implements HttpConnection {
    public boolean isAvailable() {
       // Having pool not attached implies that the connection is not taken out of the pool
       // and therefore it's fully available
-      return pool == null || inFlight() < pipeliningLimit;
+      return pool == null || !isFull();
    }
 
    @Override
@@ -351,5 +412,17 @@ class Http1xConnection extends ChannelDuplexHandler implements HttpConnection {
          buf.writeByte('\r').writeByte('\n');
          HttpCache.get(request.session).requestHeader(request, header, value);
       }
+
+      @Override
+      public void putHeader(CharSequence header, byte[] value, int length) {
+         if (header instanceof AsciiString) {
+            buf.writeBytes(((AsciiString) header).array());
+         } else {
+            Util.string2byteBuf(header, buf);
+         }
+         buf.writeByte(':').writeByte(' ');
+         buf.writeBytes(value, 0, length);
+         buf.writeByte('\r').writeByte('\n');
+      }
    }
 }
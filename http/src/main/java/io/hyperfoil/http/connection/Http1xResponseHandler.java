@@ -517,6 +517,10 @@ public class Http1xResponseHandler extends BaseResponseHandler {
          }
          removed = connection.removeRequest(0, request);
          request.session.proceed();
+         // The redirected request takes over the connection without returning it to the pool
+         if (request.isRedirecting() && request.sendRedirect()) {
+            return;
+         }
       }
       assert request.isCompleted();
       request.release();
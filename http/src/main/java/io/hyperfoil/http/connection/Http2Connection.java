@@ -30,6 +30,8 @@ import io.netty.handler.codec.http2.Http2EventAdapter;
 import io.netty.handler.codec.http2.Http2Exception;
 import io.netty.handler.codec.http2.Http2Headers;
 import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2Stream;
+import io.netty.util.AsciiString;
 import io.netty.util.collection.IntObjectHashMap;
 import io.netty.util.collection.IntObjectMap;
 import io.netty.util.internal.AppendableCharSequence;
@@ -50,6 +52,7 @@ class Http2Connection extends Http2EventAdapter implements HttpConnection {
    private final IntObjectMap<HttpRequest> streams = new IntObjectHashMap<>();
    private final long clientMaxStreams;
    private final boolean secure;
+   private final Http2FlowControlTracker flowControl;
 
    private HttpConnectionPool pool;
    private int aboutToSend;
@@ -68,6 +71,10 @@ class Http2Connection extends Http2EventAdapter implements HttpConnection {
       this.encoder = encoder;
       this.clientMaxStreams = this.maxStreams = clientPool.config().maxHttp2Streams();
       this.secure = clientPool.isSecure();
+      HttpConnectionPool executorPool = clientPool.connectionPool(context.executor());
+      this.flowControl = new Http2FlowControlTracker(context, connection, encoder,
+            executorPool instanceof ConnectionPoolStats ? (ConnectionPoolStats) executorPool : null,
+            clientPool.config().http2FlowControl());
 
       Http2EventAdapter listener = new EventAdapter();
 
@@ -96,15 +103,6 @@ class Http2Connection extends Http2EventAdapter implements HttpConnection {
       return streams.size() + aboutToSend;
    }
 
-   public void incrementConnectionWindowSize(int increment) {
-      try {
-         io.netty.handler.codec.http2.Http2Stream stream = connection.connectionStream();
-         connection.local().flowController().incrementWindowSize(stream, increment);
-      } catch (Http2Exception e) {
-         e.printStackTrace();
-      }
-   }
-
    @Override
    public void close() {
       if (status == Status.OPEN) {
@@ -270,6 +268,11 @@ class Http2Connection extends Http2EventAdapter implements HttpConnection {
             '}';
    }
 
+   void channelInactive() {
+      cancelRequests(Connection.CLOSED_EXCEPTION);
+      flowControl.close();
+   }
+
    void cancelRequests(Throwable cause) {
       for (Iterator<HttpRequest> iterator = streams.values().iterator(); iterator.hasNext(); ) {
          HttpRequest request = iterator.next();
@@ -290,6 +293,16 @@ class Http2Connection extends Http2EventAdapter implements HttpConnection {
          }
       }
 
+      @Override
+      public void onPingAckRead(ChannelHandlerContext ctx, long data) {
+         flowControl.pingAckRead(data);
+      }
+
+      @Override
+      public void onStreamClosed(Http2Stream stream) {
+         flowControl.streamClosed(stream);
+      }
+
       @Override
       public void onHeadersRead(ChannelHandlerContext ctx, int streamId, Http2Headers headers, int streamDependency, short weight, boolean exclusive, int padding, boolean endStream) {
          HttpRequest request = streams.get(streamId);
@@ -322,6 +335,7 @@ class Http2Connection extends Http2EventAdapter implements HttpConnection {
       @Override
       public int onDataRead(ChannelHandlerContext ctx, int streamId, ByteBuf data, int padding, boolean endOfStream) throws Http2Exception {
          int ack = super.onDataRead(ctx, streamId, data, padding, endOfStream);
+         flowControl.dataRead(data.readableBytes() + padding);
          HttpRequest request = streams.get(streamId);
          if (request != null && !request.isCompleted()) {
             HttpResponseHandlers handlers = request.handlers();
@@ -385,6 +399,14 @@ class Http2Connection extends Http2EventAdapter implements HttpConnection {
                   request.exit();
                }
                request.session.proceed();
+               if (request.isRedirecting()) {
+                  // The redirected request takes over the stream slot without returning the connection to the pool
+                  streams.remove(streamId);
+                  if (!request.sendRedirect()) {
+                     tryReleaseToPool();
+                  }
+                  return;
+               }
             }
             request.release();
             if (streams.remove(streamId) == request) {
@@ -428,5 +450,11 @@ class Http2Connection extends Http2EventAdapter implements HttpConnection {
          headers.add(header, value);
          HttpCache.get(request.session).requestHeader(request, header, value);
       }
+
+      @Override
+      public void putHeader(CharSequence header, byte[] value, int length) {
+         // headers are encoded later, the buffer could be modified by then
+         headers.add(header, new AsciiString(value, 0, length, true));
+      }
    }
 }
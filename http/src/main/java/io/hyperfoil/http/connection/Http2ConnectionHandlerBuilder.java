@@ -5,6 +5,7 @@ import java.util.function.BiConsumer;
 import io.hyperfoil.http.api.HttpClientPool;
 import io.hyperfoil.http.api.HttpConnection;
 import io.netty.handler.codec.http2.AbstractHttp2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.Http2CodecUtil;
 import io.netty.handler.codec.http2.Http2ConnectionDecoder;
 import io.netty.handler.codec.http2.Http2ConnectionEncoder;
 import io.netty.handler.codec.http2.Http2EventAdapter;
@@ -20,6 +21,10 @@ class Http2ConnectionHandlerBuilder extends AbstractHttp2ConnectionHandlerBuilde
       this.clientPool = clientPool;
       this.isUpgrade = isUpgrade;
       this.requestHandler = requestHandler;
+      int streamWindow = clientPool.config().http2FlowControl().streamWindow();
+      if (streamWindow != Http2CodecUtil.DEFAULT_WINDOW_SIZE) {
+         initialSettings().initialWindowSize(streamWindow);
+      }
    }
 
    @Override
@@ -0,0 +1,176 @@
+package io.hyperfoil.http.connection;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.hyperfoil.http.config.Http;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.Http2ConnectionEncoder;
+import io.netty.handler.codec.http2.Http2Exception;
+import io.netty.handler.codec.http2.Http2RemoteFlowController;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Tracks the time when HTTP/2 flow control limits the throughput and optionally grows the receive windows.
+ * <p>
+ * On the sending side a stream is blocked when it has more data queued than the remote window allows.
+ * On the receiving side we sample the round-trip time using PING frames (only when auto-tuning is enabled);
+ * when the data received during one round-trip gets close to the window the server had to wait for
+ * WINDOW_UPDATE frames and the whole round-trip is accounted as window-limited.
+ * <p>
+ * The time is accounted per connection; the pool reports the least and most blocked connection
+ * in each statistics period.
+ */
+class Http2FlowControlTracker implements Http2RemoteFlowController.Listener {
+   private static final Logger log = LogManager.getLogger(Http2FlowControlTracker.class);
+
+   private final ChannelHandlerContext context;
+   private final Http2Connection connection;
+   private final Http2ConnectionEncoder encoder;
+   private final ConnectionPoolStats stats;
+   private final Http.Http2FlowControl config;
+   private final Http2Connection.PropertyKey blockedKey;
+   private int streamWindow;
+   private int connectionWindow;
+   private int blockedStreams;
+   private long blockedSince;
+   private boolean pingOutstanding;
+   private long pingSent;
+   private long receivedBytes;
+   // Totals for this connection
+   private long sendBlockedNanos;
+   private long receiveLimitedNanos;
+   // Reset by the pool when the stats are visited
+   private final AtomicLong periodSendBlockedNanos = new AtomicLong();
+   private final AtomicLong periodReceiveLimitedNanos = new AtomicLong();
+
+   Http2FlowControlTracker(ChannelHandlerContext context, Http2Connection connection, Http2ConnectionEncoder encoder,
+                           ConnectionPoolStats stats, Http.Http2FlowControl config) {
+      this.context = context;
+      this.connection = connection;
+      this.encoder = encoder;
+      this.stats = stats;
+      this.config = config;
+      this.streamWindow = config.streamWindow();
+      this.connectionWindow = Http2CodecUtil.DEFAULT_WINDOW_SIZE;
+      this.blockedKey = connection.newKey();
+      if (stats != null) {
+         stats.http2Opened(this);
+      }
+      connection.remote().flowController().listener(this);
+      growConnectionWindow(config.connectionWindow());
+   }
+
+   @Override
+   public void writabilityChanged(Http2Stream stream) {
+      Http2RemoteFlowController flowController = connection.remote().flowController();
+      // Unwritable channel means TCP backpressure, not flow control
+      boolean blocked = flowController.hasFlowControlled(stream) && !flowController.isWritable(stream) && context.channel().isWritable();
+      boolean wasBlocked = stream.getProperty(blockedKey) != null;
+      if (blocked && !wasBlocked) {
+         stream.setProperty(blockedKey, Boolean.TRUE);
+         if (blockedStreams++ == 0) {
+            blockedSince = System.nanoTime();
+         }
+      } else if (!blocked && wasBlocked) {
+         unblock(stream);
+      }
+   }
+
+   void streamClosed(Http2Stream stream) {
+      if (stream.getProperty(blockedKey) != null) {
+         unblock(stream);
+      }
+   }
+
+   private void unblock(Http2Stream stream) {
+      stream.removeProperty(blockedKey);
+      if (--blockedStreams == 0) {
+         long blocked = System.nanoTime() - blockedSince;
+         sendBlockedNanos += blocked;
+         periodSendBlockedNanos.addAndGet(blocked);
+      }
+   }
+
+   void dataRead(int bytes) {
+      if (!config.autoTune()) {
+         return;
+      }
+      receivedBytes += bytes;
+      if (!pingOutstanding) {
+         pingOutstanding = true;
+         pingSent = System.nanoTime();
+         receivedBytes = bytes;
+         // The frame is flushed when the read completes
+         encoder.writePing(context, false, pingSent, context.newPromise());
+      }
+   }
+
+   void pingAckRead(long data) {
+      if (!pingOutstanding || data != pingSent) {
+         return;
+      }
+      pingOutstanding = false;
+      long rtt = System.nanoTime() - pingSent;
+      long perStream = receivedBytes / Math.max(1, connection.numActiveStreams());
+      // The window limits the throughput if we've received close to the full window during one round-trip
+      boolean streamLimited = perStream * 4 >= streamWindow * 3L;
+      boolean connectionLimited = receivedBytes * 4 >= connectionWindow * 3L;
+      if (!streamLimited && !connectionLimited) {
+         return;
+      }
+      receiveLimitedNanos += rtt;
+      periodReceiveLimitedNanos.addAndGet(rtt);
+      if (streamLimited && streamWindow < config.maxStreamWindow()) {
+         streamWindow = (int) Math.min(config.maxStreamWindow(), Math.max(2L * streamWindow, 2 * perStream));
+         log.debug("{} increasing stream window to {} (RTT {} us)", context.channel(), streamWindow, TimeUnit.NANOSECONDS.toMicros(rtt));
+         // New initial window is applied to all streams when the server acknowledges the settings
+         encoder.writeSettings(context, new Http2Settings().initialWindowSize(streamWindow), context.newPromise());
+      }
+      if (connectionLimited) {
+         growConnectionWindow((int) Math.min(Http2CodecUtil.MAX_INITIAL_WINDOW_SIZE, 2 * receivedBytes));
+      }
+   }
+
+   private void growConnectionWindow(int window) {
+      if (window <= connectionWindow) {
+         return;
+      }
+      try {
+         connection.local().flowController().incrementWindowSize(connection.connectionStream(), window - connectionWindow);
+         connectionWindow = window;
+      } catch (Http2Exception e) {
+         log.error("Cannot increment connection window", e);
+      }
+   }
+
+   void close() {
+      if (blockedStreams > 0) {
+         long blocked = System.nanoTime() - blockedSince;
+         sendBlockedNanos += blocked;
+         periodSendBlockedNanos.addAndGet(blocked);
+         blockedStreams = 0;
+      }
+      if (stats != null) {
+         stats.http2Closed(this);
+      }
+      if (sendBlockedNanos > 0 || receiveLimitedNanos > 0) {
+         log.debug("{} was blocked by flow control for {} ms when sending, limited for {} ms when receiving",
+               context.channel(), TimeUnit.NANOSECONDS.toMillis(sendBlockedNanos), TimeUnit.NANOSECONDS.toMillis(receiveLimitedNanos));
+      }
+   }
+
+   long resetSendBlockedNanos() {
+      return periodSendBlockedNanos.getAndSet(0);
+   }
+
+   long resetReceiveLimitedNanos() {
+      return periodReceiveLimitedNanos.getAndSet(0);
+   }
+}
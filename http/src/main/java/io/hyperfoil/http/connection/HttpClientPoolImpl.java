@@ -15,7 +15,13 @@ import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -24,6 +30,7 @@ import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.TrustManagerFactory;
 
@@ -34,21 +41,31 @@ import io.hyperfoil.core.impl.EventLoopFactory;
 import io.hyperfoil.core.util.Util;
 import io.hyperfoil.http.config.ConnectionPoolConfig;
 import io.hyperfoil.http.config.Http;
+import io.hyperfoil.http.config.TlsResumption;
 import io.hyperfoil.http.api.HttpVersion;
 import io.hyperfoil.http.api.HttpClientPool;
 import io.hyperfoil.http.api.HttpConnectionPool;
+import io.hyperfoil.http.statistics.ConnectStats;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
 import io.netty.handler.codec.http2.Http2SecurityUtil;
 import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ReferenceCountedOpenSslContext;
+import io.netty.handler.ssl.ReferenceCountedOpenSslEngine;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
 import io.netty.handler.ssl.SslProvider;
 import io.netty.handler.ssl.SupportedCipherSuiteFilter;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.internal.tcnative.SSL;
+import io.netty.internal.tcnative.SSLContext;
+import io.netty.util.NetUtil;
 import io.netty.util.concurrent.EventExecutor;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
@@ -75,6 +92,9 @@ public class HttpClientPoolImpl implements HttpClientPool {
    private final HttpConnectionPool[] children;
    private final AtomicInteger idx = new AtomicInteger();
    private final Supplier<HttpConnectionPool> nextSupplier;
+   private final Map<EventLoop, Connector> connectors = new HashMap<>();
+   private volatile InetSocketAddress[] resolvedAddresses;
+   private ScheduledExecutorService addressRefresher;
 
    public static HttpClientPoolImpl forTesting(Http http, int threads) throws SSLException {
       EventLoopGroup eventLoopGroup = EventLoopFactory.INSTANCE.create(threads);
@@ -177,17 +197,69 @@ public class HttpClientPoolImpl implements HttpClientPool {
             addressPorts[i] = port;
          }
       }
+      resolvedAddresses = resolveAddresses(null);
+
+      double connectRate = http.maxConnectRate() > 0 ? benchmark.slice((double) http.maxConnectRate(), agentId) / executors.length : 0;
+      for (int i = 0; i < executors.length; ++i) {
+         connectors.put(executors[i], new Connector(executors[i], (ConnectionPoolStats) children[i], connectRate));
+      }
+   }
+
+   private InetSocketAddress[] resolveAddresses(InetSocketAddress[] previous) {
+      if (addressHosts.length == 0) {
+         return new InetSocketAddress[]{ resolve(host, port, previous == null ? null : previous[0]) };
+      }
+      InetSocketAddress[] resolved = new InetSocketAddress[addressHosts.length];
+      for (int i = 0; i < addressHosts.length; ++i) {
+         resolved[i] = resolve(addressHosts[i], addressPorts[i], previous == null ? null : previous[i]);
+      }
+      return resolved;
+   }
+
+   private static InetSocketAddress resolve(String host, int port, InetSocketAddress previous) {
+      InetSocketAddress address = new InetSocketAddress(host, port);
+      if (address.isUnresolved()) {
+         if (previous != null && !previous.isUnresolved()) {
+            log.warn("Cannot resolve {}, keeping previous address {}", host, previous.getAddress());
+            return previous;
+         }
+         // Bootstrap will try to resolve the address again when connecting
+         log.warn("Cannot resolve {}", host);
+      }
+      return address;
+   }
+
+   private boolean needsAddressRefresh() {
+      if (http.addressRefreshPeriod() <= 0) {
+         return false;
+      }
+      if (addressHosts.length == 0) {
+         return !isIpAddress(host);
+      }
+      for (String addressHost : addressHosts) {
+         if (!isIpAddress(addressHost)) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private static boolean isIpAddress(String host) {
+      return NetUtil.isValidIpV4Address(host) || NetUtil.isValidIpV6Address(host);
    }
 
    private SslContext createSslContext() throws SSLException {
       SslProvider provider = SslProvider.isAlpnSupported(SslProvider.OPENSSL) ? SslProvider.OPENSSL : SslProvider.JDK;
       TrustManagerFactory trustManagerFactory = createTrustManagerFactory();
 
+      Http.Tls tls = http.tls();
+
       SslContextBuilder builder = SslContextBuilder.forClient()
             .sslProvider(provider)
             /* NOTE: the cipher filter may not include all ciphers required by the HTTP/2 specification.
              * Please refer to the HTTP/2 specification for cipher requirements. */
-            .ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
+            .ciphers(tls.ciphers() == null ? Http2SecurityUtil.CIPHERS : Arrays.asList(tls.ciphers()), SupportedCipherSuiteFilter.INSTANCE)
+            .protocols(tls.protocols())
             .trustManager(trustManagerFactory)
             .keyManager(createKeyManagerFactory());
       builder.applicationProtocolConfig(new ApplicationProtocolConfig(
@@ -198,7 +270,37 @@ public class HttpClientPoolImpl implements HttpClientPool {
             ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
             Stream.of(http.versions()).map(HttpVersion::protocolName).toArray(String[]::new)
       ));
-      return builder.build();
+      SslContext context = builder.build();
+      if (context instanceof ReferenceCountedOpenSslContext) {
+         ReferenceCountedOpenSslContext openSslContext = (ReferenceCountedOpenSslContext) context;
+         // Netty does not enable client session cache by default; without explicit resumption
+         // we keep it that way and each connection performs a full handshake
+         if (tls.resumption() != null && tls.resumption() != TlsResumption.NONE) {
+            openSslContext.sessionContext().setSessionCacheEnabled(true);
+         }
+         if (tls.resumption() == TlsResumption.SESSION_ID) {
+            SSLContext.setOptions(sslCtxPointer(openSslContext), SSL.SSL_OP_NO_TICKET);
+         }
+         if (tls.groups() != null && !SSLContext.setCurvesList(sslCtxPointer(openSslContext), tls.groups())) {
+            throw new BenchmarkDefinitionException("Cannot set TLS groups " + Arrays.toString(tls.groups()) + " for " + http.host() + ":" + http.port());
+         }
+      } else {
+         if (tls.resumption() == TlsResumption.SESSION_ID) {
+            log.warn("Session tickets cannot be disabled with {} TLS provider; use system property " +
+                  "jdk.tls.client.enableSessionTicketExtension=false", provider);
+         }
+         if (tls.groups() != null) {
+            log.warn("TLS groups cannot be set with {} TLS provider; use system property jdk.tls.namedGroups", provider);
+         }
+      }
+      return context;
+   }
+
+   // Netty 4.1.67 has no (non-deprecated) option for session tickets or groups; these can be set only
+   // through the native context pointer.
+   @SuppressWarnings("deprecation")
+   private static long sslCtxPointer(ReferenceCountedOpenSslContext context) {
+      return context.sslCtxPointer();
    }
 
    private KeyManagerFactory createKeyManagerFactory() {
@@ -300,6 +402,15 @@ public class HttpClientPoolImpl implements HttpClientPool {
 
    @Override
    public void start(Handler<AsyncResult<Void>> completionHandler) {
+      if (needsAddressRefresh()) {
+         addressRefresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "address-refresh-" + authority);
+            thread.setDaemon(true);
+            return thread;
+         });
+         long period = http.addressRefreshPeriod();
+         addressRefresher.scheduleWithFixedDelay(() -> resolvedAddresses = resolveAddresses(resolvedAddresses), period, period, TimeUnit.MILLISECONDS);
+      }
       AtomicInteger countDown = new AtomicInteger(children.length);
       for (HttpConnectionPool child : children) {
          child.start(result -> {
@@ -315,30 +426,17 @@ public class HttpClientPoolImpl implements HttpClientPool {
 
    @Override
    public void shutdown() {
+      if (addressRefresher != null) {
+         addressRefresher.shutdownNow();
+         addressRefresher = null;
+      }
       for (HttpConnectionPool child : children) {
          child.shutdown();
       }
    }
 
    void connect(final HttpConnectionPool pool, ConnectionReceiver handler) {
-      Bootstrap bootstrap = new Bootstrap();
-      bootstrap.channel(EventLoopFactory.INSTANCE.socketChannel());
-      bootstrap.group(pool.executor());
-      bootstrap.option(ChannelOption.SO_KEEPALIVE, true);
-      bootstrap.option(ChannelOption.SO_REUSEADDR, true);
-
-      bootstrap.handler(new HttpChannelInitializer(this, handler));
-
-      String address = this.host;
-      int port = this.port;
-      if (addressHosts.length > 0) {
-         int index = ThreadLocalRandom.current().nextInt(addressHosts.length);
-         address = addressHosts[index];
-         port = addressPorts[index];
-      }
-
-      ChannelFuture fut = bootstrap.connect(new InetSocketAddress(address, port));
-      fut.addListener(handler);
+      connectors.get(pool.executor()).connect(handler);
    }
 
    @Override
@@ -387,4 +485,120 @@ public class HttpClientPoolImpl implements HttpClientPool {
          pool.visitConnectionStats(consumer);
       }
    }
+
+   /**
+    * Connects in one executor: channels are created from a prepared bootstrap and the rate of new connections
+    * is limited by a token bucket (when {@link Http#maxConnectRate()} is set). Connects exceeding the rate
+    * are queued and opened later.
+    */
+   private class Connector implements Runnable {
+      private final EventLoop executor;
+      private final ConnectionPoolStats stats;
+      private final Bootstrap template;
+      // Tokens per nanosecond; 0 means that the rate is not limited
+      private final double rate;
+      private final double burst;
+      private final ArrayDeque<ConnectionReceiver> pending = new ArrayDeque<>();
+      private double tokens;
+      private long lastRefill;
+      private boolean scheduled;
+
+      Connector(EventLoop executor, ConnectionPoolStats stats, double connectsPerSecond) {
+         this.executor = executor;
+         this.stats = stats;
+         this.template = new Bootstrap()
+               .channel(EventLoopFactory.INSTANCE.socketChannel())
+               .group(executor)
+               .option(ChannelOption.SO_KEEPALIVE, true)
+               .option(ChannelOption.SO_REUSEADDR, true);
+         this.rate = connectsPerSecond / TimeUnit.SECONDS.toNanos(1);
+         // Permit bursts of 10 ms worth of connections
+         this.burst = Math.max(1, connectsPerSecond / 100);
+         this.tokens = burst;
+         this.lastRefill = System.nanoTime();
+      }
+
+      void connect(ConnectionReceiver handler) {
+         if (rate <= 0) {
+            open(handler);
+         } else if (!executor.inEventLoop()) {
+            executor.execute(() -> connect(handler));
+         } else if (pending.isEmpty() && acquireToken()) {
+            open(handler);
+         } else {
+            pending.add(handler);
+            schedule();
+         }
+      }
+
+      private boolean acquireToken() {
+         long now = System.nanoTime();
+         tokens = Math.min(burst, tokens + (now - lastRefill) * rate);
+         lastRefill = now;
+         if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+         }
+         return false;
+      }
+
+      private void schedule() {
+         if (!scheduled) {
+            scheduled = true;
+            long delay = (long) Math.ceil((1 - tokens) / rate);
+            executor.schedule(this, Math.max(delay, 1), TimeUnit.NANOSECONDS);
+         }
+      }
+
+      @Override
+      public void run() {
+         scheduled = false;
+         while (!pending.isEmpty() && acquireToken()) {
+            open(pending.poll());
+         }
+         if (!pending.isEmpty()) {
+            schedule();
+         }
+      }
+
+      private void open(ConnectionReceiver handler) {
+         InetSocketAddress[] addresses = resolvedAddresses;
+         InetSocketAddress address = addresses.length == 1 ? addresses[0] : addresses[ThreadLocalRandom.current().nextInt(addresses.length)];
+         long startTime = System.nanoTime();
+         ChannelFuture fut = template.clone().handler(new HttpChannelInitializer(HttpClientPoolImpl.this, handler)).connect(address);
+         fut.addListener(handler);
+         fut.addListener((ChannelFutureListener) f -> {
+            if (f.isSuccess()) {
+               // The listener is invoked before the channel becomes active and the handshake starts
+               long connectedTime = System.nanoTime();
+               long[] timing = new long[]{ connectedTime - startTime, -1 };
+               Channel channel = f.channel();
+               channel.attr(ConnectStats.TIMING).set(timing);
+               SslHandler sslHandler = channel.pipeline().get(SslHandler.class);
+               if (sslHandler != null) {
+                  long connectedTimeMillis = System.currentTimeMillis();
+                  sslHandler.handshakeFuture().addListener(h -> {
+                     if (h.isSuccess()) {
+                        timing[1] = System.nanoTime() - connectedTime;
+                        SSLEngine engine = sslHandler.engine();
+                        stats.recordHandshake(isResumed(engine, connectedTimeMillis));
+                        // OpenSSL client session cache is disabled in the context instead
+                        if (http.tls().resumption() == TlsResumption.NONE && !(engine instanceof ReferenceCountedOpenSslEngine)) {
+                           engine.getSession().invalidate();
+                        }
+                     }
+                  });
+               }
+            }
+         });
+      }
+
+      private boolean isResumed(SSLEngine engine, long handshakeStartMillis) {
+         if (engine instanceof ReferenceCountedOpenSslEngine) {
+            return SSL.isSessionReused(((ReferenceCountedOpenSslEngine) engine).sslPointer());
+         }
+         // JDK provider does not expose this information; resumed session was created before this handshake
+         return engine.getSession().getCreationTime() < handshakeStartMillis;
+      }
+   }
 }
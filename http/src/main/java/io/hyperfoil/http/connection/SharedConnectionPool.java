@@ -12,6 +12,7 @@ import io.hyperfoil.http.api.HttpClientPool;
 import io.hyperfoil.http.api.HttpConnection;
 import io.hyperfoil.http.api.HttpConnectionPool;
 import io.hyperfoil.http.config.ConnectionPoolConfig;
+import io.hyperfoil.http.config.PipeliningStrategy;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.EventLoop;
 import io.netty.util.concurrent.ScheduledFuture;
@@ -41,6 +42,7 @@ class SharedConnectionPool extends ConnectionPoolStats implements HttpConnection
    private final Runnable onConnectFailure = this::onConnectFailure;
    private final ConnectionPoolConfig sizeConfig;
    private final EventLoop eventLoop;
+   private final boolean fillPipelines;
 
    private int connecting; // number of connections being opened
    private int created;
@@ -54,10 +56,11 @@ class SharedConnectionPool extends ConnectionPoolStats implements HttpConnection
    private ScheduledFuture<?> keepAliveFuture;
 
    SharedConnectionPool(HttpClientPoolImpl clientPool, EventLoop eventLoop, ConnectionPoolConfig sizeConfig) {
-      super(clientPool.authority);
+      super(clientPool.authority, clientPool.isSecure(), clientPool.config().pipeliningLimit());
       this.clientPool = clientPool;
       this.sizeConfig = sizeConfig;
       this.eventLoop = eventLoop;
+      this.fillPipelines = clientPool.config().pipeliningStrategy() == PipeliningStrategy.FILL;
       this.available = new ArrayDeque<>(sizeConfig.max());
       this.temporaryInFlight = new ArrayList<>(sizeConfig.max());
    }
@@ -119,9 +122,10 @@ class SharedConnectionPool extends ConnectionPoolStats implements HttpConnection
 
    @Override
    public void afterRequestSent(HttpConnection connection) {
-      // Move it to the back of the queue if it is still available (do not prefer it for subsequent requests)
+      // Move it to the back of the queue if it is still available (do not prefer it for subsequent requests),
+      // unless we are filling the pipeline of this connection first.
       if (connection.isAvailable()) {
-         if (connection.inFlight() == 0) {
+         if (connection.inFlight() == 0 || fillPipelines) {
             // The request was not executed in the end (response was cached)
             available.addFirst(connection);
          } else {
@@ -137,9 +141,10 @@ class SharedConnectionPool extends ConnectionPoolStats implements HttpConnection
       }
       if (becameAvailable) {
          assert !connection.isClosed();
-         if (connection.inFlight() == 0) {
+         if (connection.inFlight() == 0 || fillPipelines) {
             // We are adding to the beginning of the queue to prefer reusing connections rather than cycling
-            // too many often-idle connections
+            // too many often-idle connections. When filling pipelines the connection has just left
+            // the full state so we prefer it over the partially filled connections.
             available.addFirst(connection);
          } else {
             available.addLast(connection);
@@ -7,6 +7,18 @@ import io.hyperfoil.api.session.Session;
 import io.hyperfoil.api.session.ResourceUtilizer;
 
 public class CookieRecorder implements HeaderHandler, ResourceUtilizer {
+   public static final int DEFAULT_MAX_COOKIES = 256;
+
+   private final int maxCookies;
+
+   public CookieRecorder() {
+      this(DEFAULT_MAX_COOKIES);
+   }
+
+   public CookieRecorder(int maxCookies) {
+      this.maxCookies = maxCookies;
+   }
+
    @Override
    public void handleHeader(HttpRequest request, CharSequence header, CharSequence value) {
       if (HttpHeaderNames.SET_COOKIE.regionMatches(true, 0, header, 0, Math.min(header.length(), HttpHeaderNames.SET_COOKIE.length()))) {
@@ -18,7 +30,7 @@ public class CookieRecorder implements HeaderHandler, ResourceUtilizer {
    @Override
    public void reserve(Session session) {
       if (session.getResource(CookieStore.COOKIES) == null) {
-         session.declareResource(CookieStore.COOKIES, CookieStore::new, true);
+         session.declareResource(CookieStore.COOKIES, () -> new CookieStore(maxCookies), true);
       }
    }
 }
@@ -1,6 +1,8 @@
 package io.hyperfoil.http.cookie;
 
-import io.hyperfoil.core.util.Util;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 import io.hyperfoil.http.api.HttpRequestWriter;
 import io.hyperfoil.api.session.Session;
 import io.hyperfoil.http.HttpUtil;
@@ -10,6 +12,15 @@ import io.netty.util.AsciiString;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
+/**
+ * Cookies are grouped by domain; the domains are indexed in an open-addressing hash table. The hash is computed
+ * from the last character to the first one so that hashes of all superdomains of the request host are found
+ * in a single pass over the host name. Cookie objects are pooled and their contents are copied into reusable
+ * byte buffers; the store grows on demand up to the configured limit.
+ * <p>
+ * Set-Cookie values are parsed as bytes: values backed by a byte array (HTTP/2 headers) are parsed in place,
+ * other values are copied into a reusable buffer first. The Cookie header is built in a reusable byte buffer, too.
+ */
 class CookieStore implements Session.Resource {
    private static final Logger log = LogManager.getLogger(CookieRecorder.class);
 
@@ -17,59 +28,93 @@ class CookieStore implements Session.Resource {
    public static final Session.ResourceKey<CookieStore> COOKIES = new Session.ResourceKey<CookieStore>() {};
 
    private static final Attribute[] ATTRIBUTES = Attribute.values();
-   private static final int MAX_SITES = 16;
-   private final Cookie[] cookies = new Cookie[MAX_SITES];
+   private final int maxCookies;
+   private byte[] input = new byte[256];
+   private byte[] host = new byte[64];
+   private byte[] defaultPath = new byte[64];
+   private byte[] header = new byte[256];
+   private int headerLength;
+   private Site[] sites = new Site[16];
+   private int numSites;
+   private int numCookies;
+   private Cookie freeCookies;
 
    public CookieStore() {
-      for (int i = 0; i < cookies.length; ++i) {
-         cookies[i] = new Cookie();
-      }
+      this(CookieRecorder.DEFAULT_MAX_COOKIES);
+   }
+
+   public CookieStore(int maxCookies) {
+      this.maxCookies = maxCookies;
    }
 
    @Override
    public void onSessionReset(Session session) {
-      for (int i = 0; i < cookies.length; ++i) {
-         cookies[i].clear();
+      for (Site site : sites) {
+         if (site != null) {
+            while (site.cookies != null) {
+               Cookie cookie = site.cookies;
+               site.cookies = cookie.next;
+               free(cookie);
+            }
+         }
       }
+      Arrays.fill(sites, null);
+      numSites = 0;
+      numCookies = 0;
    }
 
    public void setCookie(CharSequence requestOrigin, CharSequence requestPath, CharSequence seq) {
-      int nameEnd = HttpUtil.indexOf(seq, 0, '=');
-      if (nameEnd < 0) {
+      if (seq instanceof AsciiString) {
+         AsciiString ascii = (AsciiString) seq;
+         setCookie(requestOrigin, requestPath, seq, ascii.array(), ascii.arrayOffset());
+      } else {
+         input = copy(seq, 0, seq.length(), input);
+         setCookie(requestOrigin, requestPath, seq, input, 0);
+      }
+   }
+
+   // The value occupies bytes[offset] to bytes[offset + seq.length()]; seq is used only for dates and logging
+   private void setCookie(CharSequence requestOrigin, CharSequence requestPath, CharSequence seq, byte[] bytes, int offset) {
+      int end = offset + seq.length();
+      int nameEnd = indexOf(bytes, offset, end, '=');
+      if (nameEnd >= end) {
          log.warn("Invalid cookie value (no name): {}", seq);
          return;
       }
-      CharSequence name = seq.subSequence(0, nameEnd);
-      int valueEnd = HttpUtil.indexOf(seq, nameEnd + 1, ';');
-      CharSequence nameValue = seq.subSequence(0, valueEnd);
-      CharSequence domain = null;
-      CharSequence path = null;
+      int valueEnd = indexOf(bytes, nameEnd + 1, end, ';');
+      boolean emptyValue = valueEnd == nameEnd + 1;
+      int nameValueEnd = valueEnd;
+      int domainBegin = -1, domainEnd = -1;
+      int pathBegin = -1, pathEnd = -1;
       boolean secure = false;
       long maxAge = Long.MAX_VALUE;
       long expires = Long.MAX_VALUE;
       ++valueEnd;
-      while (valueEnd < seq.length()) {
-         for (; valueEnd < seq.length() && seq.charAt(valueEnd) == ' '; ++valueEnd) ;
-         int semIndex = HttpUtil.indexOf(seq, valueEnd, ';');
+      while (valueEnd < end) {
+         for (; valueEnd < end && bytes[valueEnd] == ' '; ++valueEnd) ;
+         int semIndex = indexOf(bytes, valueEnd, end, ';');
          for (int a = 0; a < ATTRIBUTES.length; ++a) {
             Attribute attribute = ATTRIBUTES[a];
-            if (matchPrefix(attribute.text, seq, valueEnd)) {
+            if (matchPrefix(attribute.text, bytes, valueEnd, end)) {
+               int attributeValue = valueEnd + attribute.text.length;
                switch (attribute) {
                   case EXPIRES:
-                     expires = HttpUtil.parseDate(seq, valueEnd + attribute.text.length(), semIndex);
+                     expires = HttpUtil.parseDate(seq, attributeValue - offset, semIndex - offset);
                      break;
                   case MAX_AGE:
-                     maxAge = Util.parseLong(seq, valueEnd + attribute.text.length(), semIndex, Long.MAX_VALUE);
+                     maxAge = parseLong(bytes, attributeValue, semIndex, Long.MAX_VALUE);
                      break;
                   case DOMAIN:
                      // ignore leading dot
-                     if (valueEnd < seq.length() && seq.charAt(valueEnd) == '.') {
-                        ++valueEnd;
+                     if (attributeValue < semIndex && bytes[attributeValue] == '.') {
+                        ++attributeValue;
                      }
-                     domain = seq.subSequence(valueEnd + attribute.text.length(), semIndex);
+                     domainBegin = attributeValue;
+                     domainEnd = semIndex;
                      break;
                   case PATH:
-                     path = seq.subSequence(valueEnd + attribute.text.length(), semIndex);
+                     pathBegin = attributeValue;
+                     pathEnd = semIndex;
                      break;
                   case SECURE:
                      secure = true;
@@ -85,126 +130,350 @@ class CookieStore implements Session.Resource {
          }
          valueEnd = semIndex + 1;
       }
+      host = copy(requestOrigin, 0, requestOrigin.length(), host);
+      int hostLength = requestOrigin.length();
       // omitted Domain attribute means that the cookie should be returned only to origin
       boolean exactDomain = false;
+      byte[] domain = bytes;
       // We can set cookie for domain or superdomain of request origin
-      if (domain == null) {
-         domain = requestOrigin;
+      if (domainBegin < 0) {
+         domain = host;
+         domainBegin = 0;
+         domainEnd = hostLength;
          exactDomain = true;
-      } else if (!isSubdomain(requestOrigin, domain)) {
-         log.trace("Refusing to store cookie for domain {}, origin is {}", domain, requestOrigin);
+      } else if (!isSubdomain(host, 0, hostLength, bytes, domainBegin, domainEnd)) {
+         log.trace("Refusing to store cookie for domain {}, origin is {}", seq.subSequence(domainBegin - offset, domainEnd - offset), requestOrigin);
          return;
       }
       int requestPathLastSlashIndex = HttpUtil.lastIndexOf(requestPath, requestPath.length(), '/');
-      if (path == null) {
-         path = requestPath.subSequence(0, requestPathLastSlashIndex + 1);
-      } else if (!isSubpath(requestPath, requestPathLastSlashIndex + 1, path, path.length())) {
-         log.trace("Refusing to store cookie for path {}, origin is {}", path, requestPath);
+      byte[] path = bytes;
+      if (pathBegin < 0) {
+         defaultPath = copy(requestPath, 0, requestPathLastSlashIndex + 1, defaultPath);
+         path = defaultPath;
+         pathBegin = 0;
+         pathEnd = requestPathLastSlashIndex + 1;
+      } else if (!isSubpath(requestPath, requestPathLastSlashIndex + 1, bytes, pathBegin, pathEnd)) {
+         log.trace("Refusing to store cookie for path {}, origin is {}", seq.subSequence(pathBegin - offset, pathEnd - offset), requestPath);
          return;
       }
       long now = System.currentTimeMillis();
       if (maxAge != Long.MAX_VALUE) {
          expires = now + maxAge * 1000;
       }
-      for (int i = 0; i < cookies.length; ++i) {
-         if (cookies[i].name == null || cookies[i].name.length() == 0 || (
-               AsciiString.contentEquals(cookies[i].name, name) &&
-                     AsciiString.contentEquals(cookies[i].domain, domain) &&
-                     AsciiString.contentEquals(cookies[i].path, path))) {
-            if (nameValue.length() == valueEnd + 1 || expires <= now) {
-               cookies[i].name = ""; // invalidate this entry as it's expired
-            } else {
-               cookies[i].name = name;
-               cookies[i].nameValue = nameValue;
-               cookies[i].domain = domain;
-               cookies[i].exactDomain = exactDomain;
-               cookies[i].path = path;
-               cookies[i].secure = secure;
-               cookies[i].expires = expires;
+      boolean remove = emptyValue || expires <= now;
+
+      int nameLength = nameEnd - offset;
+      int hash = domainHash(domain, domainBegin, domainEnd);
+      int slot = findSite(domain, domainBegin, domainEnd, hash);
+      Site site = sites[slot];
+      if (site != null) {
+         Cookie prev = null;
+         for (Cookie c = site.cookies; c != null; prev = c, c = c.next) {
+            if (c.nameLength == nameLength && Arrays.equals(c.nameValue, 0, nameLength, bytes, offset, nameEnd) &&
+                  Arrays.equals(c.path, 0, c.pathLength, path, pathBegin, pathEnd)) {
+               if (remove) {
+                  unlink(site, prev, c);
+               } else {
+                  c.set(bytes, offset, nameEnd, nameValueEnd, exactDomain, path, pathBegin, pathEnd, expires, secure);
+               }
+               return;
             }
-            return;
          }
       }
-      log.error("Exceeded number of cookies, dropping: {}", seq);
+      if (remove) {
+         return;
+      } else if (numCookies >= maxCookies) {
+         log.error("Exceeded number of cookies ({}), dropping: {}", maxCookies, seq);
+         return;
+      }
+      if (site == null) {
+         site = new Site(lowerCase(domain, domainBegin, domainEnd), hash);
+         sites[slot] = site;
+         if (++numSites * 2 > sites.length) {
+            rehash();
+         }
+      }
+      Cookie cookie = freeCookies;
+      if (cookie == null) {
+         cookie = new Cookie();
+      } else {
+         freeCookies = cookie.next;
+      }
+      cookie.set(bytes, offset, nameEnd, nameValueEnd, exactDomain, path, pathBegin, pathEnd, expires, secure);
+      cookie.next = site.cookies;
+      site.cookies = cookie;
+      ++numCookies;
    }
 
-   private static boolean isSubpath(CharSequence subpath, int subpathLength, CharSequence path, int pathLength) {
+   private void unlink(Site site, Cookie prev, Cookie cookie) {
+      if (prev == null) {
+         site.cookies = cookie.next;
+      } else {
+         prev.next = cookie.next;
+      }
+      --numCookies;
+      free(cookie);
+   }
+
+   private void free(Cookie cookie) {
+      cookie.clear();
+      cookie.next = freeCookies;
+      freeCookies = cookie;
+   }
+
+   // Domains are case-insensitive; the hash is computed starting from the end of the domain
+   private static int domainHash(byte[] domain, int begin, int end) {
+      int h = 0;
+      for (int i = end - 1; i >= begin; --i) {
+         h = 31 * h + toLowerCase(domain[i]);
+      }
+      return h;
+   }
+
+   private static int spread(int hash) {
+      return hash ^ (hash >>> 16);
+   }
+
+   /**
+    * @return Slot with matching site or the empty slot where such site should be inserted.
+    */
+   private int findSite(byte[] domain, int begin, int end, int hash) {
+      int mask = sites.length - 1;
+      for (int i = spread(hash) & mask; ; i = (i + 1) & mask) {
+         Site site = sites[i];
+         if (site == null || (site.hash == hash && site.domain.length == end - begin &&
+               regionMatchesIgnoreCase(site.domain, 0, domain, begin, end - begin))) {
+            return i;
+         }
+      }
+   }
+
+   private void rehash() {
+      Site[] oldSites = sites;
+      sites = new Site[oldSites.length * 2];
+      int mask = sites.length - 1;
+      for (Site site : oldSites) {
+         if (site != null) {
+            int i = spread(site.hash) & mask;
+            while (sites[i] != null) {
+               i = (i + 1) & mask;
+            }
+            sites[i] = site;
+         }
+      }
+   }
+
+   private static boolean isSubpath(CharSequence subpath, int subpathLength, byte[] path, int pathBegin, int pathEnd) {
       // example: subpath = /foo/bar, path = /foo -> true
+      int pathLength = pathEnd - pathBegin;
       if (pathLength > subpathLength) {
          return false;
       }
-      return AsciiString.regionMatches(subpath, false, 0, path, 0, pathLength);
+      for (int i = 0; i < pathLength; ++i) {
+         if (subpath.charAt(i) != path[pathBegin + i]) {
+            return false;
+         }
+      }
+      return true;
    }
 
-   private static boolean isSubdomain(CharSequence subdomain, CharSequence domain) {
-      if (subdomain.length() < domain.length()) {
+   private static boolean isSubdomain(byte[] subdomain, int subBegin, int subEnd, byte[] domain, int begin, int end) {
+      int length = end - begin;
+      int subLength = subEnd - subBegin;
+      if (subLength < length) {
+         return false;
+      } else if (subLength > length && subdomain[subEnd - length - 1] != '.') {
          return false;
       }
-      return AsciiString.regionMatches(subdomain, false, subdomain.length() - domain.length(), domain, 0, domain.length());
+      return regionMatchesIgnoreCase(subdomain, subEnd - length, domain, begin, length);
    }
 
-   private static boolean matchPrefix(CharSequence prefix, CharSequence seq, int begin) {
-      int maxLength = prefix.length();
-      if (maxLength > seq.length() - begin) {
+   private static boolean regionMatchesIgnoreCase(byte[] a, int aBegin, byte[] b, int bBegin, int length) {
+      for (int i = 0; i < length; ++i) {
+         if (toLowerCase(a[aBegin + i]) != toLowerCase(b[bBegin + i])) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private static boolean matchPrefix(byte[] prefix, byte[] bytes, int begin, int end) {
+      if (prefix.length > end - begin) {
          return false;
       }
-      for (int i = 0; i < maxLength; ++i) {
-         if (prefix.charAt(i) != Character.toLowerCase(seq.charAt(begin + i))) {
+      for (int i = 0; i < prefix.length; ++i) {
+         if (prefix[i] != toLowerCase(bytes[begin + i])) {
             return false;
          }
       }
       return true;
    }
 
+   private static byte toLowerCase(byte b) {
+      return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+   }
+
+   private static byte[] lowerCase(byte[] bytes, int begin, int end) {
+      byte[] lower = new byte[end - begin];
+      for (int i = begin; i < end; ++i) {
+         lower[i - begin] = toLowerCase(bytes[i]);
+      }
+      return lower;
+   }
+
+   private static int indexOf(byte[] bytes, int begin, int end, char c) {
+      for (int i = begin; i < end; ++i) {
+         if (bytes[i] == c) {
+            return i;
+         }
+      }
+      return end;
+   }
+
+   private static long parseLong(byte[] bytes, int begin, int end, long defaultValue) {
+      if (begin >= end) {
+         return defaultValue;
+      }
+      long value = 0;
+      int i = begin;
+      byte sign = bytes[begin];
+      if (sign == '-' || sign == '+') ++i;
+      for (; i < end; ++i) {
+         int digit = bytes[i];
+         if (digit < '0' || digit > '9') return defaultValue;
+         value *= 10;
+         value += digit - '0';
+      }
+      return sign == '-' ? -value : value;
+   }
+
+   // Cookies are ASCII-only
+   private static byte[] copy(CharSequence seq, int begin, int end, byte[] target) {
+      int length = end - begin;
+      if (target.length < length) {
+         target = new byte[Math.max(length, 2 * target.length)];
+      }
+      for (int i = 0; i < length; ++i) {
+         target[i] = (byte) seq.charAt(begin + i);
+      }
+      return target;
+   }
+
    public void appendCookies(HttpRequestWriter requestWriter) {
-      CharSequence domain = requestWriter.connection().host();
+      if (numCookies == 0) {
+         return;
+      }
+      CharSequence requestHost = requestWriter.connection().host();
+      int hostLength = requestHost.length();
+      host = copy(requestHost, 0, hostLength, host);
       CharSequence path = requestWriter.request().path;
+      boolean secureConnection = requestWriter.connection().isSecure();
       long now = System.currentTimeMillis();
-      for (int i = 0; i < cookies.length; ++i) {
-         Cookie c = cookies[i];
-         if (c.name == null) {
-            break;
-         } else if (c.name.length() == 0) {
-            // continue
-         } else if (((!c.exactDomain && isSubdomain(domain, c.domain)) || AsciiString.contentEquals(domain, c.domain)) &&
-               isSubpath(path, path.length(), c.path, c.path.length()) &&
-               (!c.secure || requestWriter.connection().isSecure())) {
+      headerLength = 0;
+      // Walk the host from the end, looking up the host and each of its superdomains
+      int hash = 0;
+      for (int i = hostLength - 1; i >= 0; --i) {
+         hash = 31 * hash + toLowerCase(host[i]);
+         if (i != 0 && host[i - 1] != '.') {
+            continue;
+         }
+         Site site = sites[findSite(host, i, hostLength, hash)];
+         if (site == null) {
+            continue;
+         }
+         Cookie prev = null;
+         for (Cookie c = site.cookies; c != null; ) {
+            Cookie next = c.next;
             if (now >= c.expires) {
-               c.name = "";
-            } else {
-               requestWriter.putHeader(HttpHeaderNames.COOKIE, c.nameValue);
+               unlink(site, prev, c);
+               c = next;
+               continue;
+            }
+            if ((!c.exactDomain || i == 0) && isSubpath(path, path.length(), c.path, 0, c.pathLength) &&
+                  (!c.secure || secureConnection)) {
+               appendToHeader(c.nameValue, c.nameValueLength);
             }
+            prev = c;
+            c = next;
          }
       }
+      if (headerLength > 0) {
+         requestWriter.putHeader(HttpHeaderNames.COOKIE, header, headerLength);
+      }
+   }
+
+   private void appendToHeader(byte[] nameValue, int length) {
+      int required = headerLength + 2 + length;
+      if (header.length < required) {
+         header = Arrays.copyOf(header, Math.max(required, 2 * header.length));
+      }
+      if (headerLength > 0) {
+         header[headerLength++] = ';';
+         header[headerLength++] = ' ';
+      }
+      System.arraycopy(nameValue, 0, header, headerLength, length);
+      headerLength += length;
+   }
+
+   private static class Site {
+      // lower-case
+      final byte[] domain;
+      final int hash;
+      Cookie cookies;
+
+      Site(byte[] domain, int hash) {
+         this.domain = domain;
+         this.hash = hash;
+      }
    }
 
    static class Cookie {
-      CharSequence name;
-      CharSequence nameValue;
-      CharSequence domain;
+      byte[] nameValue = new byte[32];
+      int nameValueLength;
+      int nameLength;
       boolean exactDomain;
-      CharSequence path;
+      byte[] path = new byte[16];
+      int pathLength;
       long expires;
       boolean secure;
+      Cookie next;
+
+      void set(byte[] bytes, int begin, int nameEnd, int nameValueEnd, boolean exactDomain,
+               byte[] path, int pathBegin, int pathEnd, long expires, boolean secure) {
+         this.nameValueLength = nameValueEnd - begin;
+         if (this.nameValue.length < nameValueLength) {
+            this.nameValue = new byte[nameValueLength];
+         }
+         System.arraycopy(bytes, begin, this.nameValue, 0, nameValueLength);
+         this.nameLength = nameEnd - begin;
+         this.exactDomain = exactDomain;
+         this.pathLength = pathEnd - pathBegin;
+         if (this.path.length < pathLength) {
+            this.path = new byte[pathLength];
+         }
+         System.arraycopy(path, pathBegin, this.path, 0, pathLength);
+         this.expires = expires;
+         this.secure = secure;
+      }
 
       public void clear() {
-         name = null;
-         nameValue = null;
-         domain = null;
+         nameValueLength = 0;
+         nameLength = 0;
          exactDomain = false;
-         path = null;
+         pathLength = 0;
          expires = 0;
          secure = false;
+         next = null;
       }
    }
 
    private enum Attribute {
       EXPIRES("expires="), MAX_AGE("max-age="), DOMAIN("domain="), PATH("path="), SECURE("secure"), HTTPONLY("httponly"), EXTENSION("");
 
-      final CharSequence text;
+      final byte[] text;
 
-      Attribute(CharSequence text) {
-         this.text = text;
+      Attribute(String text) {
+         this.text = text.getBytes(StandardCharsets.US_ASCII);
       }
    }
 }
@@ -2,8 +2,10 @@ package io.hyperfoil.http.html;
 
 import io.hyperfoil.api.config.BenchmarkDefinitionException;
 import io.hyperfoil.api.processor.Processor;
+import io.hyperfoil.api.session.Session;
 import io.hyperfoil.core.builders.ServiceLoadedBuilderProvider;
 import io.hyperfoil.core.handlers.MultiProcessor;
+import io.netty.buffer.ByteBuf;
 
 /**
  * Handles <code>&lt;img src="..."&gt;</code>, <code>&lt;link href="..."&gt;</code>,
@@ -12,10 +14,15 @@ import io.hyperfoil.core.handlers.MultiProcessor;
  * <p>
  * Does not handle <code>&lt;source src="..."&gt;</code> or <code>&lt;track src="..."&gt;</code> because browser
  * would choose only one of the options.
+ * <p>
+ * When fetching the resources stylesheets and scripts are downloaded before frames and objects, images come last.
  */
 public class EmbeddedResourceHandlerBuilder implements HtmlHandler.TagHandlerBuilder<EmbeddedResourceHandlerBuilder> {
    private static final String[] TAGS = { "img", "link", "embed", "frame", "iframe", "object", "script" };
    private static final String[] ATTRS = { "src", "href", "src", "src", "src", "data", "src" };
+   // Browsers fetch stylesheets and scripts first as these block rendering, images come last
+   private static final int[] PRIORITIES = { FetchQueue.PRIORITY_LOW, FetchQueue.PRIORITY_HIGH, FetchQueue.PRIORITY_MEDIUM,
+         FetchQueue.PRIORITY_MEDIUM, FetchQueue.PRIORITY_MEDIUM, FetchQueue.PRIORITY_MEDIUM, FetchQueue.PRIORITY_HIGH };
 
    private boolean ignoreExternal = true;
    private Processor.Builder processor;
@@ -70,6 +77,20 @@ public class EmbeddedResourceHandlerBuilder implements HtmlHandler.TagHandlerBui
       }
       Processor processor = this.processor != null ? this.processor.build(false) : null;
       FetchResourceHandler fetchResource = this.fetchResource != null ? this.fetchResource.build() : null;
-      return new HtmlHandler.BaseTagAttributeHandler(TAGS, ATTRS, new EmbeddedResourceProcessor(ignoreExternal, processor, fetchResource));
+      return new Handler(new EmbeddedResourceProcessor(ignoreExternal, processor, fetchResource));
+   }
+
+   private static class Handler extends HtmlHandler.BaseTagAttributeHandler {
+      private final EmbeddedResourceProcessor processor;
+
+      Handler(EmbeddedResourceProcessor processor) {
+         super(TAGS, ATTRS, processor);
+         this.processor = processor;
+      }
+
+      @Override
+      protected void handleValue(Session session, int tag, ByteBuf data, int offset, int length) {
+         processor.process(session, data, offset, length, PRIORITIES[tag]);
+      }
    }
 }
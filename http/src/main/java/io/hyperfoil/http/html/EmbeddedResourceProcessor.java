@@ -53,6 +53,10 @@ class EmbeddedResourceProcessor extends Processor.BaseDelegating {
    @Override
    public void process(Session session, ByteBuf data, int offset, int length, boolean isLastPart) {
       assert isLastPart;
+      process(session, data, offset, length, FetchQueue.PRIORITY_MEDIUM);
+   }
+
+   void process(Session session, ByteBuf data, int offset, int length, int priority) {
       // TODO: here we should normalize the URL, remove escapes etc...
 
       HttpRequest request = HttpRequest.ensure(session.currentRequest());
@@ -84,7 +88,7 @@ class EmbeddedResourceProcessor extends Processor.BaseDelegating {
          if (fetchResource != null) {
             int pathStart = data.indexOf(offset + (isHttp ? HTTP_PREFIX.length : HTTPS_PREFIX.length), offset + length, (byte) '/');
             CharSequence path = pathStart < 0 ? "/" : data.toString(pathStart, offset + length - pathStart, StandardCharsets.UTF_8);
-            fetchResource.handle(session, authority, path);
+            fetchResource.handle(session, authority, path, priority);
          }
          if (delegate != null) {
             delegate.process(session, data, offset, length, true);
@@ -95,7 +99,7 @@ class EmbeddedResourceProcessor extends Processor.BaseDelegating {
             log.trace("#{} Matched URL {}", session.uniqueId(), Util.toString(data, offset, length));
          }
          if (fetchResource != null) {
-            fetchResource.handle(session, request.authority, data.toString(offset, length, StandardCharsets.UTF_8));
+            fetchResource.handle(session, request.authority, data.toString(offset, length, StandardCharsets.UTF_8), priority);
          }
          if (delegate != null) {
             delegate.process(session, data, offset, length, true);
@@ -117,7 +121,7 @@ class EmbeddedResourceProcessor extends Processor.BaseDelegating {
             if (trace) {
                log.trace("#{} Rewritten relative URL to {}", session.uniqueId(), newPath);
             }
-            fetchResource.handle(session, request.authority, newPath);
+            fetchResource.handle(session, request.authority, newPath, priority);
          }
          if (delegate != null) {
             ByteBuf buffer = ByteBufAllocator.DEFAULT.buffer(request.path.length() + length);
@@ -0,0 +1,212 @@
+package io.hyperfoil.http.html;
+
+import java.util.Arrays;
+
+import io.hyperfoil.api.session.Action;
+import io.hyperfoil.api.session.ObjectAccess;
+import io.hyperfoil.api.session.Session;
+import io.hyperfoil.api.statistics.Statistics;
+import io.hyperfoil.core.data.Queue;
+import io.hyperfoil.http.api.HttpConnectionPool;
+import io.hyperfoil.http.api.HttpDestinationTable;
+import io.hyperfoil.http.api.HttpVersion;
+import io.hyperfoil.http.config.Http;
+import io.hyperfoil.http.handlers.Location;
+import io.netty.util.AsciiString;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Schedules download of resources embedded in a page similar to what browsers do. Pending resources are kept
+ * in several priority classes (e.g. stylesheets and scripts before images); the number of concurrent downloads
+ * is limited both globally and per authority. Authorities that can multiplex requests over HTTP/2 are limited
+ * only by the global limit. Resources with the same URL are fetched only once per page.
+ * <p>
+ * Starting and restarting the fetch sequences is inherited from {@link Queue}; this class replaces only
+ * the FIFO storage.
+ */
+class FetchQueue extends Queue {
+   private static final Logger log = LogManager.getLogger(FetchQueue.class);
+   private static final boolean trace = log.isTraceEnabled();
+   static final int PRIORITY_HIGH = 0;
+   static final int PRIORITY_MEDIUM = 1;
+   static final int PRIORITY_LOW = 2;
+
+   private final int concurrencyPerAuthority;
+   private final int statisticsId;
+   private final String pageLoadMetric;
+
+   private final Location[][] pending;
+   private final int[] pendingCount = new int[PRIORITY_LOW + 1];
+   // Authorities are kept when the queue is reset, these are limited by the number of destinations
+   private String[] authorities = new String[4];
+   private int[] authorityLimit = new int[4];
+   private int[] authorityActive = new int[4];
+   private int numAuthorities;
+   // URLs requested from current page
+   private final CharSequence[] seenAuthorities;
+   private final CharSequence[] seenPaths;
+   private int seenCount;
+
+   private long pageStartMillis;
+   private long pageStartNanos;
+
+   FetchQueue(ObjectAccess var, int maxResources, int concurrency, int concurrencyPerAuthority, String sequence,
+              Action onCompletion, int statisticsId, String pageLoadMetric) {
+      // Pending locations are not stored in the FIFO buffer
+      super(var, 0, concurrency, sequence, onCompletion);
+      this.concurrencyPerAuthority = concurrencyPerAuthority;
+      this.statisticsId = statisticsId;
+      this.pageLoadMetric = pageLoadMetric;
+      this.pending = new Location[PRIORITY_LOW + 1][maxResources];
+      this.seenAuthorities = new CharSequence[maxResources];
+      this.seenPaths = new CharSequence[maxResources];
+   }
+
+   @Override
+   protected void clear() {
+      for (Location[] locations : pending) {
+         Arrays.fill(locations, null);
+      }
+      Arrays.fill(pendingCount, 0);
+      Arrays.fill(authorityActive, 0);
+      Arrays.fill(seenAuthorities, null);
+      Arrays.fill(seenPaths, null);
+      seenCount = 0;
+   }
+
+   void start(Session session, long startMillis, long startNanos) {
+      reset(session);
+      pageStartMillis = startMillis;
+      pageStartNanos = startNanos;
+   }
+
+   /**
+    * @return True if this URL was not requested from current page yet.
+    */
+   boolean markSeen(CharSequence authority, CharSequence path) {
+      for (int i = 0; i < seenCount; ++i) {
+         if (AsciiString.contentEquals(seenPaths[i], path) &&
+               (seenAuthorities[i] == null ? authority == null : authority != null && AsciiString.contentEquals(seenAuthorities[i], authority))) {
+            return false;
+         }
+      }
+      if (seenCount < seenPaths.length) {
+         seenAuthorities[seenCount] = authority;
+         seenPaths[seenCount] = path;
+         ++seenCount;
+      }
+      return true;
+   }
+
+   /**
+    * @return False if the location was not accepted and should be released.
+    */
+   boolean push(Session session, Location location, int priority) {
+      if (trace) {
+         log.trace("#{} adding {}{} with priority {}", session.uniqueId(), location.authority, location.path, priority);
+      }
+      if (!offer(session, location, priority)) {
+         return false;
+      }
+      startSequences(session);
+      return true;
+   }
+
+   @Override
+   protected boolean offer(Session session, Object value) {
+      return offer(session, (Location) value, PRIORITY_MEDIUM);
+   }
+
+   private boolean offer(Session session, Location location, int priority) {
+      authorityIndex(session, location.authority);
+      if (pendingCount[priority] < pending[priority].length) {
+         pending[priority][pendingCount[priority]++] = location;
+         return true;
+      } else {
+         log.error("#{} Exceeded maximum number of resources ({}), dropping {}{}", session.uniqueId(), pending[priority].length, location.authority, location.path);
+         return false;
+      }
+   }
+
+   @Override
+   protected Object poll() {
+      return pollEligible();
+   }
+
+   /**
+    * This is supposed to be invoked only as the last step of the sequence fetching the resource.
+    */
+   void consumed(Session session, CharSequence authority) {
+      authorityActive[authorityIndex(session, authority)]--;
+      consumed(session);
+   }
+
+   private Location pollEligible() {
+      for (int p = 0; p < pending.length; ++p) {
+         Location[] locations = pending[p];
+         for (int i = 0; i < pendingCount[p]; ++i) {
+            int index = findAuthority(locations[i].authority);
+            if (authorityActive[index] < authorityLimit[index]) {
+               Location location = locations[i];
+               System.arraycopy(locations, i + 1, locations, i, pendingCount[p] - i - 1);
+               locations[--pendingCount[p]] = null;
+               authorityActive[index]++;
+               return location;
+            }
+         }
+      }
+      return null;
+   }
+
+   private int findAuthority(CharSequence authority) {
+      for (int i = 0; i < numAuthorities; ++i) {
+         String a = authorities[i];
+         if (a == null ? authority == null : authority != null && AsciiString.contentEquals(a, authority)) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   private int authorityIndex(Session session, CharSequence authority) {
+      int index = findAuthority(authority);
+      if (index >= 0) {
+         return index;
+      }
+      if (numAuthorities == authorities.length) {
+         authorities = Arrays.copyOf(authorities, numAuthorities * 2);
+         authorityLimit = Arrays.copyOf(authorityLimit, numAuthorities * 2);
+         authorityActive = Arrays.copyOf(authorityActive, numAuthorities * 2);
+      }
+      String authorityString = authority == null ? null : authority.toString();
+      authorities[numAuthorities] = authorityString;
+      authorityLimit[numAuthorities] = supportsMultiplexing(session, authorityString) ? concurrency() : concurrencyPerAuthority;
+      authorityActive[numAuthorities] = 0;
+      return numAuthorities++;
+   }
+
+   private static boolean supportsMultiplexing(Session session, String authority) {
+      HttpConnectionPool pool = HttpDestinationTable.get(session).getConnectionPool(authority);
+      if (pool == null) {
+         return false;
+      }
+      Http http = pool.clientPool().config();
+      // HTTP/2 is negotiated through ALPN on secured connections; plaintext connections use it only when forced
+      return http.versions().length > 0 && http.versions()[0] == HttpVersion.HTTP_2_0 &&
+            (http.protocol().secure() || http.versions().length == 1);
+   }
+
+   @Override
+   protected void complete(Session session) {
+      if (pageLoadMetric != null) {
+         Statistics statistics = session.statistics(statisticsId, pageLoadMetric);
+         statistics.incrementRequests(pageStartMillis);
+         statistics.recordResponse(pageStartMillis, System.nanoTime() - pageStartNanos);
+      }
+      super.complete(session);
+   }
+
+   static class Key extends Session.BaseResourceKey<FetchQueue> {}
+}
@@ -10,58 +10,96 @@ import io.hyperfoil.api.config.BenchmarkDefinitionException;
 import io.hyperfoil.api.config.BuilderBase;
 import io.hyperfoil.api.config.Locator;
 import io.hyperfoil.api.config.SequenceBuilder;
+import io.hyperfoil.api.config.StepBuilder;
 import io.hyperfoil.api.session.ObjectAccess;
 import io.hyperfoil.api.session.Action;
 import io.hyperfoil.api.session.ResourceUtilizer;
 import io.hyperfoil.api.session.Session;
 import io.hyperfoil.core.builders.ServiceLoadedBuilderProvider;
 import io.hyperfoil.core.data.LimitedPoolResource;
-import io.hyperfoil.core.data.Queue;
 import io.hyperfoil.core.metric.AuthorityAndPathMetric;
 import io.hyperfoil.core.metric.MetricSelector;
 import io.hyperfoil.core.metric.PathMetricSelector;
 import io.hyperfoil.core.session.ObjectVar;
 import io.hyperfoil.core.session.SessionFactory;
+import io.hyperfoil.core.steps.StatisticsStep;
 import io.hyperfoil.core.util.Unique;
 import io.hyperfoil.http.api.HttpMethod;
+import io.hyperfoil.http.api.HttpRequest;
 import io.hyperfoil.http.handlers.Location;
 import io.hyperfoil.http.steps.HttpRequestStepBuilder;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
 public class FetchResourceHandler implements Serializable, ResourceUtilizer {
+   private static final Logger log = LogManager.getLogger(FetchResourceHandler.class);
+   private static final boolean trace = log.isTraceEnabled();
+
    private final ObjectAccess var;
    private final int maxResources;
    private final String sequence;
    private final int concurrency;
+   private final int concurrencyPerAuthority;
    private final Action onCompletion;
-   private final Queue.Key queueKey;
+   private final int statisticsId;
+   private final String pageLoadMetric;
+   private final FetchQueue.Key queueKey;
    private final LimitedPoolResource.Key<Location> locationPoolKey;
 
-   public FetchResourceHandler(Queue.Key queueKey, LimitedPoolResource.Key<Location> locationPoolKey, ObjectAccess var, int maxResources, String sequence, int concurrency, Action onCompletion) {
+   public FetchResourceHandler(FetchQueue.Key queueKey, LimitedPoolResource.Key<Location> locationPoolKey, ObjectAccess var,
+                               int maxResources, String sequence, int concurrency, int concurrencyPerAuthority,
+                               Action onCompletion, int statisticsId, String pageLoadMetric) {
       this.queueKey = queueKey;
       this.locationPoolKey = locationPoolKey;
       this.var = var;
       this.maxResources = maxResources;
       this.sequence = sequence;
       this.concurrency = concurrency;
+      this.concurrencyPerAuthority = concurrencyPerAuthority;
       this.onCompletion = onCompletion;
+      this.statisticsId = statisticsId;
+      this.pageLoadMetric = pageLoadMetric;
    }
 
    public void before(Session session) {
-      Queue queue = session.getResource(queueKey);
-      queue.reset(session);
+      FetchQueue queue = session.getResource(queueKey);
+      // Page load starts with the request for the page itself
+      HttpRequest request = HttpRequest.ensure(session.currentRequest());
+      if (request != null) {
+         queue.start(session, request.startTimestampMillis(), request.startTimestampNanos());
+      } else {
+         queue.start(session, System.currentTimeMillis(), System.nanoTime());
+      }
    }
 
    public void handle(Session session, CharSequence authority, CharSequence path) {
-      Queue queue = session.getResource(queueKey);
+      handle(session, authority, path, FetchQueue.PRIORITY_MEDIUM);
+   }
+
+   public void handle(Session session, CharSequence authority, CharSequence path, int priority) {
+      FetchQueue queue = session.getResource(queueKey);
+      if (!queue.markSeen(authority, path)) {
+         if (trace) {
+            log.trace("#{} Ignoring duplicate resource {}{}", session.uniqueId(), authority, path);
+         }
+         return;
+      }
       LimitedPoolResource<Location> locationPool = session.getResource(locationPoolKey);
       Location location = locationPool.acquire();
+      if (location == null) {
+         log.error("#{} Exceeded maximum number of resources ({}), dropping {}{}", session.uniqueId(), maxResources, authority, path);
+         return;
+      }
       location.authority = authority;
       location.path = path;
-      queue.push(session, location);
+      if (!queue.push(session, location, priority)) {
+         locationPool.release(location.reset());
+      }
    }
 
    public void after(Session session) {
-      Queue queue = session.getResource(queueKey);
+      FetchQueue queue = session.getResource(queueKey);
       queue.producerComplete(session);
    }
 
@@ -72,10 +110,41 @@ public class FetchResourceHandler implements Serializable, ResourceUtilizer {
       if (!var.isSet(session)) {
          var.setObject(session, ObjectVar.newArray(session, concurrency));
       }
-      session.declareResource(queueKey, () -> new Queue(var, maxResources, concurrency, sequence, onCompletion), true);
+      session.declareResource(queueKey, () -> new FetchQueue(var, maxResources, concurrency, concurrencyPerAuthority,
+            sequence, onCompletion, statisticsId, pageLoadMetric), true);
       session.declareResource(locationPoolKey, () -> LimitedPoolResource.create(maxResources, Location.class, Location::new), true);
    }
 
+   /**
+    * Releases the location after the request completes and fetches next resource from the queue.
+    */
+   public static class Complete implements Action {
+      private final LimitedPoolResource.Key<Location> poolKey;
+      private final FetchQueue.Key queueKey;
+      private final ObjectAccess locationVar;
+
+      public Complete(LimitedPoolResource.Key<Location> poolKey, FetchQueue.Key queueKey, ObjectAccess locationVar) {
+         this.poolKey = poolKey;
+         this.queueKey = queueKey;
+         this.locationVar = locationVar;
+      }
+
+      @Override
+      public void run(Session session) {
+         LimitedPoolResource<Location> pool = session.getResource(poolKey);
+         ObjectVar var = (ObjectVar) locationVar.getVar(session);
+         Location location = (Location) var.objectValue(session);
+         if (trace) {
+            log.trace("#{} releasing {} from {}[{}]", session.uniqueId(), location, locationVar, session.currentSequence().index());
+         }
+         CharSequence authority = location.authority;
+         pool.release(location.reset());
+         var.set(null);
+         var.unset();
+         session.getResource(queueKey).consumed(session, authority);
+      }
+   }
+
    /**
     * Automates download of embedded resources.
     */
@@ -83,12 +152,15 @@ public class FetchResourceHandler implements Serializable, ResourceUtilizer {
       private MetricSelector metricSelector;
       private int maxResources;
       private int concurrency = 8;
+      private int concurrencyPerAuthority = 6;
+      private String pageLoadMetric;
       private Action.Builder onCompletion;
 
-      private Queue.Key queueKey;
+      private FetchQueue.Key queueKey;
       private LimitedPoolResource.Key<Location> locationPoolKey;
       private ObjectAccess varAccess;
       private String sequenceName;
+      private int statisticsId = -1;
 
       public Builder() {
       }
@@ -115,6 +187,30 @@ public class FetchResourceHandler implements Serializable, ResourceUtilizer {
          return this;
       }
 
+      /**
+       * Maximum number of resources fetched concurrently from single authority. This limit does not apply
+       * to authorities using HTTP/2 as these can multiplex the requests over one connection. Default is 6.
+       *
+       * @param concurrencyPerAuthority Max concurrently fetched resources from one authority.
+       * @return Self.
+       */
+      public Builder concurrencyPerAuthority(int concurrencyPerAuthority) {
+         this.concurrencyPerAuthority = concurrencyPerAuthority;
+         return this;
+      }
+
+      /**
+       * Name of the metric recording time from the start of the page request until all embedded resources
+       * are downloaded. By default this is not recorded.
+       *
+       * @param pageLoadMetric Metric name.
+       * @return Self.
+       */
+      public Builder pageLoadMetric(String pageLoadMetric) {
+         this.pageLoadMetric = pageLoadMetric;
+         return this;
+      }
+
       /**
        * Metrics selector for downloaded resources.
        *
@@ -149,7 +245,8 @@ public class FetchResourceHandler implements Serializable, ResourceUtilizer {
       }
 
       public void prepareBuild() {
-         queueKey = new Queue.Key();
+         queueKey = new FetchQueue.Key();
+         statisticsId = StatisticsStep.nextId();
          locationPoolKey = new LimitedPoolResource.Key<>();
 
          Locator locator = Locator.current();
@@ -172,7 +269,9 @@ public class FetchResourceHandler implements Serializable, ResourceUtilizer {
          sequence.stepBuilder(requestBuilder);
          var myQueueKey = queueKey; // prevent capturing self reference
          var myPoolKey = locationPoolKey;
-         requestBuilder.handler().onCompletion(() -> new Location.Complete<>(myPoolKey, myQueueKey, sequenceScopedObjectAccess(locationVar)));
+         // The sequence might be restarted with next resource and this is safe only from within a step;
+         // completion handlers are invoked outside of the sequence execution.
+         sequence.stepBuilder(new StepBuilder.ActionAdapter(() -> new Complete(myPoolKey, myQueueKey, sequenceScopedObjectAccess(locationVar))));
          // As we're preparing build, the list of sequences-to-be-prepared is already final and we need to prepare
          // this one manually
          sequence.prepareBuild();
@@ -182,8 +281,12 @@ public class FetchResourceHandler implements Serializable, ResourceUtilizer {
          if (maxResources <= 0) {
             throw new BenchmarkDefinitionException("Maximum size for queue must be set!");
          }
+         if (concurrency <= 0 || concurrencyPerAuthority <= 0) {
+            throw new BenchmarkDefinitionException("Concurrency must be positive!");
+         }
          Action onCompletion = this.onCompletion == null ? null : this.onCompletion.build();
-         return new FetchResourceHandler(queueKey, locationPoolKey, varAccess, maxResources, sequenceName, concurrency, onCompletion);
+         return new FetchResourceHandler(queueKey, locationPoolKey, varAccess, maxResources, sequenceName, concurrency,
+               concurrencyPerAuthority, onCompletion, statisticsId, pageLoadMetric);
       }
    }
 }
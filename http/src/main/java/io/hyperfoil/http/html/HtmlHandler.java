@@ -22,11 +22,10 @@ import io.netty.buffer.ByteBufAllocator;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
-public class HtmlHandler implements Processor, ResourceUtilizer, Session.ResourceKey<HtmlHandler.Context> {
+public class HtmlHandler extends Session.BaseResourceKey<HtmlHandler.Context> implements Processor, ResourceUtilizer {
    private static final Logger log = LogManager.getLogger(HtmlHandler.class);
    private static final boolean trace = log.isTraceEnabled();
    private static final byte[] SCRIPT = "script".getBytes(StandardCharsets.UTF_8);
-
    private final TagHandler[] handlers;
 
    private HtmlHandler(TagHandler... handlers) {
@@ -61,15 +60,62 @@ public class HtmlHandler implements Processor, ResourceUtilizer, Session.Resourc
             ctx.valueStart = offset;
             break;
       }
-      while (length > 0) {
-         byte c = data.getByte(offset++);
-         --length;
+      int end = offset + length;
+      while (offset < end) {
+         // Text, script and comment content is skipped in bulk; only the tags are parsed byte by byte
          switch (ctx.tagStatus) {
             case NO_TAG:
-               if (c == '<') {
+               offset = indexOf(data, offset, end, (byte) '<');
+               if (offset < 0) {
+                  offset = end;
+               } else {
+                  ++offset;
                   ctx.tagStatus = TagStatus.ENTERED;
                }
+               continue;
+            case DOCTYPE:
+               offset = indexOf(data, offset, end, (byte) '>');
+               if (offset < 0) {
+                  offset = end;
+               } else {
+                  ++offset;
+                  ctx.endTag(session);
+               }
+               continue;
+            case COMMENT:
+               if (ctx.comment > 1) {
+                  offset = indexOf(data, offset, end, (byte) '-');
+                  if (offset < 0) {
+                     offset = end;
+                  } else {
+                     ++offset;
+                     ctx.comment--;
+                  }
+                  continue;
+               }
                break;
+            case PARSING_VALUE:
+               if (ctx.valueQuoted) {
+                  int quote = indexOf(data, offset, end, (byte) '"');
+                  if (quote < 0) {
+                     ctx.charEscaped = data.getByte(end - 1) == '\\';
+                     offset = end;
+                  } else if (quote > offset ? data.getByte(quote - 1) == '\\' : ctx.charEscaped) {
+                     ctx.charEscaped = false;
+                     offset = quote + 1;
+                  } else {
+                     ctx.charEscaped = false;
+                     ctx.onValue(session, data, quote, true);
+                     ctx.tagStatus = TagStatus.BEFORE_ATTR;
+                     ctx.valueQuoted = false;
+                     offset = quote + 1;
+                  }
+                  continue;
+               }
+               break;
+         }
+         byte c = data.getByte(offset++);
+         switch (ctx.tagStatus) {
             case ENTERED:
                if (c == '!') {
                   ctx.tagStatus = TagStatus.DOCTYPE_START;
@@ -91,23 +137,13 @@ public class HtmlHandler implements Processor, ResourceUtilizer, Session.Resourc
                   ctx.tagStatus = TagStatus.DOCTYPE;
                }
                break;
-            case DOCTYPE:
-               if (c == '>') {
-                  ctx.endTag(session);
-               }
-               break;
             case COMMENT:
-               if (ctx.comment == 1) {
-                  if (c == '>') {
-                     ctx.comment = 0;
-                     ctx.tagStatus = TagStatus.NO_TAG;
-                  } else if (c != '-') {
-                     ctx.comment = 3;
-                  }
-               } else if (ctx.comment > 0) {
-                  if (c == '-') {
-                     ctx.comment--;
-                  }
+               // comment > 1 is handled above
+               if (c == '>') {
+                  ctx.comment = 0;
+                  ctx.tagStatus = TagStatus.NO_TAG;
+               } else if (c != '-') {
+                  ctx.comment = 3;
                }
                break;
             case BEFORE_TAG:
@@ -165,15 +201,18 @@ public class HtmlHandler implements Processor, ResourceUtilizer, Session.Resourc
                }
                break;
             case PARSING_VALUE:
+               // quoted value is handled above
                if (c == '\\') {
                   ctx.charEscaped = true;
                } else if (c == '"' && !ctx.charEscaped) {
                   ctx.onValue(session, data, offset - 1, true);
                   ctx.tagStatus = TagStatus.BEFORE_ATTR;
-                  ctx.valueQuoted = false;
-               } else if (!ctx.valueQuoted && Character.isWhitespace(c)) {
+               } else if (Character.isWhitespace(c)) {
                   ctx.onValue(session, data, offset - 1, true);
                   ctx.tagStatus = TagStatus.BEFORE_ATTR;
+               } else if (c == '>') {
+                  ctx.onValue(session, data, offset - 1, true);
+                  ctx.endTag(session);
                } else {
                   ctx.charEscaped = false;
                }
@@ -195,6 +234,30 @@ public class HtmlHandler implements Processor, ResourceUtilizer, Session.Resourc
       }
    }
 
+   /**
+    * Finds first occurrence of the byte in given range, reading 8 bytes at once.
+    *
+    * @return Index of the byte or -1 if not found.
+    */
+   static int indexOf(ByteBuf data, int from, int to, byte value) {
+      long pattern = (value & 0xFFL) * 0x0101010101010101L;
+      for (; from + Long.BYTES <= to; from += Long.BYTES) {
+         // Little-endian read makes the lowest address least significant; borrows propagate only towards
+         // higher addresses so the lowest set bit always marks the first match
+         long word = data.getLongLE(from) ^ pattern;
+         long matches = (word - 0x0101010101010101L) & ~word & 0x8080808080808080L;
+         if (matches != 0) {
+            return from + (Long.numberOfTrailingZeros(matches) >>> 3);
+         }
+      }
+      for (; from < to; ++from) {
+         if (data.getByte(from) == value) {
+            return from;
+         }
+      }
+      return -1;
+   }
+
    @Override
    public void reserve(Session session) {
       session.declareResource(this, Context::new);
@@ -245,11 +308,17 @@ public class HtmlHandler implements Processor, ResourceUtilizer, Session.Resourc
       void onTag(Session session, ByteBuf data, int tagEnd, boolean isLast) {
          assert tagStart >= 0;
          scriptMatch.shift(data, tagStart, tagEnd - tagStart, isLast, SCRIPT);
-         if (inScript && !(tagClosing && scriptMatch.hasMatch())) {
-            // this is not a tag
-            tagStart = -1;
-            tagStatus = TagStatus.NO_TAG;
-            return;
+         if (inScript) {
+            if (!isLast) {
+               // wait for the complete name before deciding
+               tagStart = -1;
+               return;
+            } else if (!(tagClosing && scriptMatch.hasMatch())) {
+               // this is not a tag
+               tagStart = -1;
+               tagStatus = TagStatus.NO_TAG;
+               return;
+            }
          }
          for (HandlerContext handlerCtx : handlerCtx) {
             handlerCtx.onTag(session, tagClosing, data, tagStart, tagEnd - tagStart, isLast);
@@ -377,20 +446,35 @@ public class HtmlHandler implements Processor, ResourceUtilizer, Session.Resourc
          return new Ctx();
       }
 
+      /**
+       * Invoked with complete value of the matched attribute.
+       *
+       * @param session Current session.
+       * @param tag Index of the matched tag.
+       * @param data Buffer with the value.
+       * @param offset Offset of the value in the buffer.
+       * @param length Length of the value.
+       */
+      protected void handleValue(Session session, int tag, ByteBuf data, int offset, int length) {
+         processor.process(session, data, offset, length, true);
+      }
+
       protected class Ctx implements HandlerContext {
          private final Trie.State trieState = trie.newState();
          private int tagMatched = -1;
+         private int tagTerminal = -1;
          private int attrMatchedIndex = -1;
          private final ByteBuf valueBuffer = ByteBufAllocator.DEFAULT.buffer();
 
          @Override
          public void onTag(Session session, boolean close, ByteBuf data, int offset, int length, boolean isLast) {
             for (int i = 0; i < length; ++i) {
-               int terminal = trieState.next(Util.toLowerCase(data.getByte(offset + i)));
-               if (isLast && terminal >= 0) {
-                  tagMatched = terminal;
-                  attrMatchedIndex = 0;
-               }
+               tagTerminal = trieState.next(Util.toLowerCase(data.getByte(offset + i)));
+            }
+            // The name might end in previous chunk
+            if (isLast && tagTerminal >= 0) {
+               tagMatched = tagTerminal;
+               attrMatchedIndex = 0;
             }
          }
 
@@ -424,10 +508,16 @@ public class HtmlHandler implements Processor, ResourceUtilizer, Session.Resourc
             if (tagMatched < 0 || attrMatchedIndex <= 0) {
                return;
             }
+            if (isLast && !valueBuffer.isReadable()) {
+               // The value is complete in this chunk, no need to copy it
+               handleValue(session, tagMatched, data, offset, length);
+               attrMatchedIndex = 0;
+               return;
+            }
             valueBuffer.ensureWritable(length);
             valueBuffer.writeBytes(data, offset, length);
             if (isLast) {
-               processor().process(session, valueBuffer, valueBuffer.readerIndex(), valueBuffer.readableBytes(), true);
+               handleValue(session, tagMatched, valueBuffer, valueBuffer.readerIndex(), valueBuffer.readableBytes());
                valueBuffer.clear();
                attrMatchedIndex = 0;
             }
@@ -437,6 +527,7 @@ public class HtmlHandler implements Processor, ResourceUtilizer, Session.Resourc
          public void endTag(Session session, boolean closing) {
             trieState.reset();
             tagMatched = -1;
+            tagTerminal = -1;
             attrMatchedIndex = -1;
          }
       }
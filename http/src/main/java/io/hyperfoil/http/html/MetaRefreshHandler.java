@@ -62,6 +62,11 @@ public class MetaRefreshHandler implements HtmlHandler.TagHandler {
                valueBuffer.clear();
             }
          } else if (content.hasMatch()) {
+            if (refresh.hasMatch() && isLast && !valueBuffer.isReadable()) {
+               // The value is complete in this chunk, no need to copy it
+               processor.process(session, data, offset, length, true);
+               return;
+            }
             valueBuffer.writeBytes(data, offset, length);
             if (refresh.hasMatch() && isLast) {
                processor.process(session, valueBuffer, valueBuffer.readerIndex(), valueBuffer.readableBytes(), true);
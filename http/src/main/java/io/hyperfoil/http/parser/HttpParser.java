@@ -7,6 +7,7 @@ import io.hyperfoil.api.config.BenchmarkBuilder;
 import io.hyperfoil.http.config.ConnectionStrategy;
 import io.hyperfoil.http.config.HttpBuilder;
 import io.hyperfoil.http.config.HttpPluginBuilder;
+import io.hyperfoil.http.config.PipeliningStrategy;
 import io.hyperfoil.http.config.Protocol;
 import io.hyperfoil.core.parser.AbstractParser;
 import io.hyperfoil.core.parser.Context;
@@ -27,13 +28,19 @@ public class HttpParser extends AbstractParser<BenchmarkBuilder, HttpBuilder> {
       register("maxHttp2Streams", new PropertyParser.Int<>(HttpBuilder::maxHttp2Streams));
       register("sharedConnections", new ConnectionPoolConfigParser());
       register("pipeliningLimit", new PropertyParser.Int<>(HttpBuilder::pipeliningLimit));
+      register("pipeliningStrategy", new PropertyParser.Enum<>(PipeliningStrategy.values(), HttpBuilder::pipeliningStrategy));
+      register("pipeliningMaxBytes", new PropertyParser.Int<>(HttpBuilder::pipeliningMaxBytes));
       register("directHttp2", new PropertyParser.Boolean<>(HttpBuilder::directHttp2));
       register("requestTimeout", new PropertyParser.String<>(HttpBuilder::requestTimeout));
       register("addresses", HttpParser::parseAddresses);
       register("rawBytesHandlers", new PropertyParser.Boolean<>(HttpBuilder::rawBytesHandlers));
       register("keyManager", new ReflectionParser<>(HttpBuilder::keyManager));
       register("trustManager", new ReflectionParser<>(HttpBuilder::trustManager));
+      register("tls", new ReflectionParser<>(HttpBuilder::tls));
+      register("http2FlowControl", new ReflectionParser<>(HttpBuilder::http2FlowControl));
       register("connectionStrategy", new PropertyParser.Enum<>(ConnectionStrategy.values(), HttpBuilder::connectionStrategy));
+      register("maxConnectRate", new PropertyParser.Int<>(HttpBuilder::maxConnectRate));
+      register("addressRefreshPeriod", new PropertyParser.String<>(HttpBuilder::addressRefreshPeriod));
    }
 
    @Override
@@ -0,0 +1,160 @@
+package io.hyperfoil.http.statistics;
+
+import org.kohsuke.MetaInfServices;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+
+import io.hyperfoil.api.statistics.Statistics;
+import io.hyperfoil.api.statistics.StatisticsSnapshot;
+import io.hyperfoil.api.statistics.StatsExtension;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+/**
+ * Time spent opening new connections (TCP connect and TLS handshake). The times are attributed
+ * to the metric of the first request that used the connection.
+ */
+@MetaInfServices(StatsExtension.class)
+@JsonTypeName("connect")
+public class ConnectStats implements StatsExtension {
+   public static final String CONNECT = "connect";
+   /**
+    * Connect and handshake time (in this order, in nanoseconds) measured when the channel was opened;
+    * the attribute is cleared when the times are recorded. Handshake time is -1 for plaintext connections.
+    */
+   public static final AttributeKey<long[]> TIMING = AttributeKey.valueOf(ConnectStats.class, "timing");
+
+   private static final Statistics.LongUpdater<ConnectStats> ADD_CONNECT = (s, value) -> {
+      s.connections++;
+      s.connectTime += value;
+   };
+   private static final Statistics.LongUpdater<ConnectStats> ADD_HANDSHAKE = (s, value) -> {
+      s.handshakes++;
+      s.handshakeTime += value;
+   };
+   private static final String[] HEADERS = { "Connections", "ConnectMean", "Handshakes", "HandshakeMean" };
+
+   public int connections;
+   public long connectTime;
+   public int handshakes;
+   public long handshakeTime;
+
+   /**
+    * @param statistics Statistics of the request using the connection.
+    * @param timestamp Request start timestamp.
+    * @param connectTime Time to establish TCP connection, in nanoseconds.
+    * @param handshakeTime Time of the TLS handshake in nanoseconds, or negative value for plaintext connections.
+    */
+   public static void record(Statistics statistics, long timestamp, long connectTime, long handshakeTime) {
+      statistics.update(CONNECT, timestamp, ConnectStats::new, ADD_CONNECT, connectTime);
+      if (handshakeTime >= 0) {
+         statistics.update(CONNECT, timestamp, ConnectStats::new, ADD_HANDSHAKE, handshakeTime);
+      }
+   }
+
+   /**
+    * Records connect times stored in the channel, if these were not recorded yet.
+    *
+    * @param statistics Statistics of the request using the connection.
+    * @param timestamp Request start timestamp.
+    * @param channel Connection channel.
+    */
+   public static void recordFirstUse(Statistics statistics, long timestamp, Channel channel) {
+      if (channel.hasAttr(TIMING)) {
+         long[] timing = channel.attr(TIMING).getAndSet(null);
+         if (timing != null) {
+            record(statistics, timestamp, timing[0], timing[1]);
+         }
+      }
+   }
+
+   public static ConnectStats get(StatisticsSnapshot snapshot) {
+      StatsExtension stats = snapshot.extensions.get(CONNECT);
+      if (stats == null) {
+         // return empty to prevent NPEs
+         return new ConnectStats();
+      }
+      return (ConnectStats) stats;
+   }
+
+   /**
+    * @return Mean TCP connect time in nanoseconds.
+    */
+   public long connectMean() {
+      return connections == 0 ? 0 : connectTime / connections;
+   }
+
+   /**
+    * @return Mean TLS handshake time in nanoseconds.
+    */
+   public long handshakeMean() {
+      return handshakes == 0 ? 0 : handshakeTime / handshakes;
+   }
+
+   @Override
+   public boolean isNull() {
+      return connections + handshakes == 0;
+   }
+
+   @Override
+   public void add(StatsExtension other) {
+      if (other instanceof ConnectStats) {
+         ConnectStats o = (ConnectStats) other;
+         connections += o.connections;
+         connectTime += o.connectTime;
+         handshakes += o.handshakes;
+         handshakeTime += o.handshakeTime;
+      } else {
+         throw new IllegalArgumentException(other.toString());
+      }
+   }
+
+   @Override
+   public void subtract(StatsExtension other) {
+      if (other instanceof ConnectStats) {
+         ConnectStats o = (ConnectStats) other;
+         connections -= o.connections;
+         connectTime -= o.connectTime;
+         handshakes -= o.handshakes;
+         handshakeTime -= o.handshakeTime;
+      } else {
+         throw new IllegalArgumentException(other.toString());
+      }
+   }
+
+   @Override
+   public void reset() {
+      connections = 0;
+      connectTime = 0;
+      handshakes = 0;
+      handshakeTime = 0;
+   }
+
+   @Override
+   public ConnectStats clone() {
+      ConnectStats copy = new ConnectStats();
+      copy.add(this);
+      return copy;
+   }
+
+   @Override
+   public String[] headers() {
+      return HEADERS;
+   }
+
+   @Override
+   public String byHeader(String header) {
+      switch (header) {
+         case "Connections":
+            return String.valueOf(connections);
+         case "ConnectMean":
+            return String.valueOf(connectMean());
+         case "Handshakes":
+            return String.valueOf(handshakes);
+         case "HandshakeMean":
+            return String.valueOf(handshakeMean());
+         default:
+            return "<unknown header: " + header + ">";
+      }
+   }
+}
@@ -14,6 +14,10 @@ class AfterSyncRequestStep implements Step {
    @Override
    public boolean invoke(Session session) {
       BitSetResource resource = session.getResource(key);
-      return resource.get(session.currentSequence().index());
+      if (resource.get(session.currentSequence().index())) {
+         return true;
+      }
+      session.awaitSignal(key);
+      return false;
    }
 }
@@ -4,6 +4,7 @@ import io.hyperfoil.api.session.Session;
 import io.hyperfoil.http.api.ConnectionConsumer;
 import io.hyperfoil.http.api.HttpConnection;
 import io.hyperfoil.http.api.HttpRequest;
+import io.hyperfoil.http.statistics.ConnectStats;
 
 /*
  * HttpRequestStep cannot create and obtain connection without blocking and the behaviour is dependent
@@ -37,7 +38,10 @@ class HttpRequestContext implements Session.Resource, ConnectionConsumer {
       assert request.session.executor().inEventLoop();
       this.connection = connection;
       this.ready = true;
-      this.request.session.proceed();
+      if (connection != null) {
+         ConnectStats.recordFirstUse(request.statistics(), request.startTimestampMillis(), connection.context().channel());
+      }
+      this.request.session.signal(this);
    }
 
    public void startWaiting() {
@@ -53,5 +57,5 @@ class HttpRequestContext implements Session.Resource, ConnectionConsumer {
       }
    }
 
-   public static final class Key implements Session.ResourceKey<HttpRequestContext> {}
+   public static final class Key extends Session.BaseResourceKey<HttpRequestContext> {}
 }
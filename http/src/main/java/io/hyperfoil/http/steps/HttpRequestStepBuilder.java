@@ -649,6 +649,7 @@ public class HttpRequestStepBuilder extends BaseStepBuilder<HttpRequestStepBuild
       @Override
       public void run(Session s) {
          s.getResource(beforeSyncRequestStep).set(s.currentSequence().index());
+         s.signal(beforeSyncRequestStep);
       }
    }
 
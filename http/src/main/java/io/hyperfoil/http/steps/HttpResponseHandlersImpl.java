@@ -16,6 +16,7 @@ import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.IntFunction;
 
+import io.hyperfoil.api.config.BenchmarkDefinitionException;
 import io.hyperfoil.api.config.BuilderBase;
 import io.hyperfoil.api.config.Locator;
 import io.hyperfoil.api.config.SequenceBuilder;
@@ -72,17 +73,20 @@ public class HttpResponseHandlersImpl implements HttpResponseHandlers, Serializa
    final Processor[] bodyHandlers;
    final Action[] completionHandlers;
    final RawBytesHandler[] rawBytesHandlers;
+   final int maxInlineRedirects;
 
    private HttpResponseHandlersImpl(StatusHandler[] statusHandlers,
                                     HeaderHandler[] headerHandlers,
                                     Processor[] bodyHandlers,
                                     Action[] completionHandlers,
-                                    RawBytesHandler[] rawBytesHandlers) {
+                                    RawBytesHandler[] rawBytesHandlers,
+                                    int maxInlineRedirects) {
       this.statusHandlers = statusHandlers;
       this.headerHandlers = headerHandlers;
       this.bodyHandlers = bodyHandlers;
       this.completionHandlers = completionHandlers;
       this.rawBytesHandlers = rawBytesHandlers;
+      this.maxInlineRedirects = maxInlineRedirects;
    }
 
    @Override
@@ -121,23 +125,14 @@ public class HttpResponseHandlersImpl implements HttpResponseHandlers, Serializa
                break;
          }
 
-         HttpStats.addStatus(request.statistics(), request.startTimestampMillis(), status);
-         if (statusHandlers != null) {
-            for (StatusHandler handler : statusHandlers) {
-               handler.handleStatus(request, status);
-            }
-         }
-
-         if (headerHandlers != null) {
-            for (HeaderHandler handler : headerHandlers) {
-               handler.beforeHeaders(request);
-            }
-         }
-         if (bodyHandlers != null) {
-            for (Processor handler : bodyHandlers) {
-               handler.before(request.session);
+         if (maxInlineRedirects > 0 && request.startRedirect(status, maxInlineRedirects)) {
+            // Handlers are invoked later if it turns out that we cannot follow the redirect
+            if (trace) {
+               log.trace("#{} Deferring status {} until location is received.", session.uniqueId(), status);
             }
+            return;
          }
+         invokeStatusHandlers(request, status);
       } catch (SessionStopException e) {
          throw e;
       } catch (Throwable t) {
@@ -148,6 +143,47 @@ public class HttpResponseHandlersImpl implements HttpResponseHandlers, Serializa
       }
    }
 
+   /**
+    * Passes the deferred status and headers to the handlers when the redirect cannot be followed inline.
+    */
+   private void cancelRedirect(HttpRequest request) {
+      int status = request.redirectStatus();
+      request.cancelRedirect();
+      invokeStatusHandlers(request, status);
+      List<CharSequence> deferredHeaders = request.deferredHeaders();
+      if (headerHandlers != null) {
+         for (int i = 0; i < deferredHeaders.size(); i += 2) {
+            for (HeaderHandler handler : headerHandlers) {
+               // Cookies have been already recorded
+               if (!(handler instanceof CookieRecorder)) {
+                  handler.handleHeader(request, deferredHeaders.get(i), deferredHeaders.get(i + 1));
+               }
+            }
+         }
+      }
+      deferredHeaders.clear();
+   }
+
+   private void invokeStatusHandlers(HttpRequest request, int status) {
+      HttpStats.addStatus(request.statistics(), request.startTimestampMillis(), status);
+      if (statusHandlers != null) {
+         for (StatusHandler handler : statusHandlers) {
+            handler.handleStatus(request, status);
+         }
+      }
+
+      if (headerHandlers != null) {
+         for (HeaderHandler handler : headerHandlers) {
+            handler.beforeHeaders(request);
+         }
+      }
+      if (bodyHandlers != null) {
+         for (Processor handler : bodyHandlers) {
+            handler.before(request.session);
+         }
+      }
+   }
+
    @Override
    public void handleHeader(HttpRequest request, CharSequence header, CharSequence value) {
       Session session = request.session;
@@ -168,9 +204,28 @@ public class HttpResponseHandlersImpl implements HttpResponseHandlers, Serializa
                httpCache.invalidate(request.authority, value);
             }
          }
+         // Cookies and cache are updated even if the redirect is followed inline, other handlers
+         // receive the headers only when the response is passed to them.
+         boolean deferred = false;
+         if (request.redirectStatus() != 0) {
+            if (!AsciiString.contentEqualsIgnoreCase(header, HttpHeaderNames.LOCATION)) {
+               request.deferHeader(header, value);
+               deferred = true;
+            } else if (request.redirectLocation(value)) {
+               if (trace) {
+                  log.trace("#{} Following redirect to {} inline", session.uniqueId(), value);
+               }
+               deferred = true;
+            } else {
+               // Redirect to another authority
+               cancelRedirect(request);
+            }
+         }
          if (headerHandlers != null) {
             for (HeaderHandler handler : headerHandlers) {
-               handler.handleHeader(request, header, value);
+               if (!deferred || handler instanceof CookieRecorder) {
+                  handler.handleHeader(request, header, value);
+               }
             }
          }
          httpCache.responseHeader(request, header, value);
@@ -231,6 +286,9 @@ public class HttpResponseHandlersImpl implements HttpResponseHandlers, Serializa
             log.trace("#{} Ignoring body part ({} bytes) on a failed request.", session.uniqueId(), data.readableBytes());
          }
          return;
+      } else if (request.redirectStatus() != 0) {
+         // Body of a redirect followed inline
+         return;
       }
 
       if (trace) {
@@ -268,9 +326,19 @@ public class HttpResponseHandlersImpl implements HttpResponseHandlers, Serializa
       if (trace) {
          log.trace("#{} Completed request on {}", session.uniqueId(), request.connection());
       }
+      if (executed && request.hasRedirectLocation() && request.isRunning()) {
+         // The connection will send the request again after releasing this response
+         request.prepareRedirect(System.nanoTime());
+         return;
+      }
 
       try {
          if (request.isRunning()) {
+            if (request.redirectStatus() != 0) {
+               log.error("#{} Location header is missing in response from {} {}{}!", session.uniqueId(), request.method, request.authority, request.path);
+               request.markInvalid();
+               cancelRedirect(request);
+            }
             request.setCompleting();
 
             if (executed) {
@@ -358,6 +426,8 @@ public class HttpResponseHandlersImpl implements HttpResponseHandlers, Serializa
       private Boolean autoRangeCheck;
       private Boolean stopOnInvalid;
       private FollowRedirect followRedirect;
+      private Integer maxInlineRedirects;
+      private int effectiveMaxInlineRedirects;
       private List<StatusHandler.Builder> statusHandlers = new ArrayList<>();
       private List<HeaderHandler.Builder> headerHandlers = new ArrayList<>();
       private List<Processor.Builder> bodyHandlers = new ArrayList<>();
@@ -499,6 +569,25 @@ public class HttpResponseHandlersImpl implements HttpResponseHandlers, Serializa
          return this;
       }
 
+      /**
+       * Follow redirects (status 3xx with <code>location</code> header) to the same authority directly
+       * in the request, sending it again on the same connection. Responses to the redirected requests
+       * are recorded in metric with <code>_redirect</code> suffix. Redirects to other authorities or
+       * redirects exceeding this limit are handled according to <code>followRedirect</code>.
+       * Default value depends on <code>ergonomics.maxInlineRedirects</code>
+       * (see <a href="https://hyperfoil.io/userguide/benchmark/ergonomics.html">User Guide</a>).
+       *
+       * @param maxInlineRedirects Maximum number of redirects followed for single request.
+       * @return Self.
+       */
+      public Builder maxInlineRedirects(int maxInlineRedirects) {
+         if (maxInlineRedirects < 0) {
+            throw new BenchmarkDefinitionException("Maximum number of inline redirects must not be negative: " + maxInlineRedirects);
+         }
+         this.maxInlineRedirects = maxInlineRedirects;
+         return this;
+      }
+
       public HttpRequestStepBuilder endHandler() {
          return parent;
       }
@@ -513,7 +602,7 @@ public class HttpResponseHandlersImpl implements HttpResponseHandlers, Serializa
       public void prepareBuild() {
          HttpErgonomics ergonomics = Locator.current().benchmark().plugin(HttpPluginBuilder.class).ergonomics();
          if (ergonomics.repeatCookies()) {
-            header(new CookieRecorder());
+            header(new CookieRecorder(ergonomics.maxCookies()));
          }
          // TODO: we might need defensive copies here
          statusHandlers.forEach(StatusHandler.Builder::prepareBuild);
@@ -528,6 +617,7 @@ public class HttpResponseHandlersImpl implements HttpResponseHandlers, Serializa
          if (stopOnInvalid != null ? stopOnInvalid : ergonomics.stopOnInvalid()) {
             completionHandlers.add(() -> StopOnInvalidAction.INSTANCE);
          }
+         effectiveMaxInlineRedirects = maxInlineRedirects != null ? maxInlineRedirects : ergonomics.maxInlineRedirects();
          FollowRedirect followRedirect = this.followRedirect != null ? this.followRedirect : ergonomics.followRedirect();
          switch (followRedirect) {
             case LOCATION_ONLY:
@@ -714,7 +804,8 @@ public class HttpResponseHandlersImpl implements HttpResponseHandlers, Serializa
                toArray(headerHandlers, HeaderHandler.Builder::build, HeaderHandler[]::new),
                toArray(bodyHandlers, b -> b.build(true), Processor[]::new),
                toArray(completionHandlers, Action.Builder::build, Action[]::new),
-               toArray(rawBytesHandlers, RawBytesHandler.Builder::build, RawBytesHandler[]::new));
+               toArray(rawBytesHandlers, RawBytesHandler.Builder::build, RawBytesHandler[]::new),
+               effectiveMaxInlineRedirects);
       }
 
       private static <B, T> T[] toArray(List<B> list, Function<B, T> build, IntFunction<T[]> generator) {
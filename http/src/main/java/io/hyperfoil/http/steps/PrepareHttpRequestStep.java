@@ -3,6 +3,7 @@ package io.hyperfoil.http.steps;
 import java.util.Arrays;
 
 import io.hyperfoil.api.BenchmarkExecutionException;
+import io.hyperfoil.api.config.Visitor;
 import io.hyperfoil.api.session.ResourceUtilizer;
 import io.hyperfoil.api.session.SequenceInstance;
 import io.hyperfoil.api.session.Session;
@@ -22,6 +23,7 @@ import org.apache.logging.log4j.LogManager;
 
 public class PrepareHttpRequestStep extends StatisticsStep implements ResourceUtilizer {
    private static final Logger log = LogManager.getLogger(PrepareHttpRequestStep.class);
+   static final String REDIRECT_METRIC_SUFFIX = "_redirect";
 
    final HttpRequestContext.Key contextKey;
    final SerializableFunction<Session, HttpMethod> method;
@@ -29,6 +31,9 @@ public class PrepareHttpRequestStep extends StatisticsStep implements ResourceUt
    final SerializableFunction<Session, String> pathGenerator;
    final MetricSelector metricSelector;
    final HttpResponseHandlersImpl handler;
+   // Most steps use a single metric so we keep the last redirect metric name rather than concatenating on each request
+   @Visitor.Ignore
+   private transient volatile RedirectMetric lastRedirectMetric;
 
    public PrepareHttpRequestStep(int stepId, HttpRequestContext.Key contextKey,
                                  SerializableFunction<Session, HttpMethod> method,
@@ -102,6 +107,9 @@ public class PrepareHttpRequestStep extends StatisticsStep implements ResourceUt
                   metricSelector.apply(null, request.path) : metricSelector.apply(request.authority, request.path);
             Statistics statistics = session.statistics(id(), metric);
             request.start(connectionPool, handler, session.currentSequence(), statistics);
+            if (handler.maxInlineRedirects > 0) {
+               request.redirectMetric(id(), redirectMetric(metric));
+            }
             connectionPool.acquire(false, context);
          }
       } catch (Throwable t) {
@@ -118,8 +126,26 @@ public class PrepareHttpRequestStep extends StatisticsStep implements ResourceUt
       return true;
    }
 
+   private String redirectMetric(String metric) {
+      RedirectMetric last = lastRedirectMetric;
+      if (last == null || !last.metric.equals(metric)) {
+         lastRedirectMetric = last = new RedirectMetric(metric);
+      }
+      return last.name;
+   }
+
    @Override
    public void reserve(Session session) {
       session.declareResource(contextKey, HttpRequestContext::new);
    }
+
+   private static class RedirectMetric {
+      final String metric;
+      final String name;
+
+      RedirectMetric(String metric) {
+         this.metric = metric;
+         this.name = metric + REDIRECT_METRIC_SUFFIX;
+      }
+   }
 }
@@ -49,6 +49,7 @@ public class SendHttpRequestStep extends StatisticsStep implements SLA.Provider
          // TODO: when the phase is finished, max duration is not set and the connection cannot be obtained
          // we'll be waiting here forever. Maybe there should be a (default) timeout to obtain the connection.
          context.startWaiting();
+         session.awaitSignal(context);
          return false;
       }
       if (context.connection == null) {
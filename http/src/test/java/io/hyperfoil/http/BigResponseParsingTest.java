@@ -115,7 +115,8 @@ public class BigResponseParsingTest extends VertxBaseTest {
 
          HttpConnectionPool pool = client.next();
          newRequest.start(pool, handlers, sequence, new Statistics(System.currentTimeMillis()));
-         pool.acquire(false, c -> newRequest.send(c, null, true, null));
+         // the pool might be started before we register the handler; then this is not invoked in the event loop
+         pool.executor().execute(() -> pool.acquire(false, c -> newRequest.send(c, null, true, null)));
       });
    }
 }
@@ -3,6 +3,8 @@ package io.hyperfoil.http;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -25,11 +27,13 @@ import io.vertx.ext.web.RoutingContext;
 public class FollowRedirectTest extends HttpScenarioTest {
    private final AtomicInteger redirects = new AtomicInteger();
    private final AtomicInteger notFound = new AtomicInteger();
+   private final Map<String, Set<Object>> chainConnections = new ConcurrentHashMap<>();
 
    @Before
    public void resetRedirects() {
       redirects.set(0);
       notFound.set(0);
+      chainConnections.clear();
    }
 
    @Override
@@ -57,6 +61,38 @@ public class FollowRedirectTest extends HttpScenarioTest {
       router.route("/redirect/me/elsewhere").handler(ctx ->
             ctx.response().end("<html><head><meta http-equiv=\"refresh\" content=\"0; URL=../theEnd\" /></head></html>"));
       router.route("/redirect/theEnd").handler(ctx -> ctx.response().end("Final destination"));
+      router.route("/chain/:hops").handler(this::redirectChain);
+      router.route("/inline/login").handler(ctx -> ctx.response()
+            .putHeader(HttpHeaders.SET_COOKIE, "auth=secret; Path=/")
+            .putHeader("x-custom", "from redirect")
+            .putHeader(HttpHeaders.LOCATION, ctx.request().getParam("to")).setStatusCode(302).end());
+      router.route("/inline/welcome").handler(ctx -> {
+         String cookie = ctx.request().getHeader(HttpHeaders.COOKIE);
+         if (cookie != null && cookie.contains("auth=secret")) {
+            ctx.response().end("welcome");
+         } else {
+            ctx.response().setStatusCode(403).end();
+         }
+      });
+   }
+
+   private void redirectChain(RoutingContext ctx) {
+      if (!ensureHeaders(ctx)) {
+         return;
+      }
+      String id = ctx.request().getParam("id");
+      chainConnections.computeIfAbsent(id, i -> ConcurrentHashMap.newKeySet()).add(ctx.request().connection());
+      int hops = Integer.parseInt(ctx.pathParam("hops"));
+      if (hops == 0) {
+         ctx.response().end("this is the response");
+      } else {
+         String location = "/chain/" + (hops - 1) + "?id=" + id;
+         // Alternate absolute and relative locations
+         if (hops % 2 == 0) {
+            location = "http://" + ctx.request().host() + location;
+         }
+         ctx.response().putHeader(HttpHeaders.LOCATION, location).setStatusCode(hops % 3 == 0 ? 301 : 302).end();
+      }
    }
 
    private void redirectViaHtml(RoutingContext ctx) {
@@ -205,4 +241,65 @@ public class FollowRedirectTest extends HttpScenarioTest {
             .filter(e -> !e.getKey().equals("test")).map(Map.Entry::getValue).findFirst().orElse(null);
       assertThat(HttpStats.get(otherStats).status_2xx).isEqualTo(2);
    }
+
+   @Test
+   public void testInline() {
+      Benchmark benchmark = loadScenario("scenarios/FollowRedirectTest_inline.hf.yaml");
+      int users = benchmark.phases().stream().filter(p -> "testPhase".equals(p.name()))
+            .mapToInt(p -> ((Model.AtOnce) p.model).users).findFirst().orElse(0);
+      Map<String, StatisticsSnapshot> stats = runScenario(benchmark);
+
+      StatisticsSnapshot chain = stats.get("chain");
+      assertThat(chain.responseCount).isEqualTo(users);
+      assertThat(HttpStats.get(chain).status_2xx).isEqualTo(users);
+      StatisticsSnapshot chainRedirect = stats.get("chain_redirect");
+      assertThat(chainRedirect.requestCount).isEqualTo(4 * users);
+      assertThat(chainRedirect.responseCount).isEqualTo(4 * users);
+      assertThat(HttpStats.get(chainRedirect).status_3xx).isEqualTo(4 * users);
+
+      // Only 5 redirects are followed, the last response is passed to the handlers
+      StatisticsSnapshot tooLong = stats.get("tooLong");
+      assertThat(tooLong.responseCount).isEqualTo(users);
+      assertThat(HttpStats.get(tooLong).status_3xx).isEqualTo(users);
+      assertThat(HttpStats.get(stats.get("tooLong_redirect")).status_3xx).isEqualTo(5 * users);
+
+      assertThat(chainConnections).hasSize(2 * users);
+      assertThat(chainConnections.values()).allSatisfy(connections -> assertThat(connections).hasSize(1));
+   }
+
+   @Test
+   public void testInlineSetCookie() {
+      Set<String> headers = ConcurrentHashMap.newKeySet();
+      // The query contains a slash that must not be used to resolve the relative location
+      scenario().initialSequence("test").step(HttpStepCatalog.SC).httpRequest(HttpMethod.GET)
+            .path("/inline/login?to=welcome&from=a/b")
+            .handler().maxInlineRedirects(1)
+            .header((request, header, value) -> headers.add(header.toString().toLowerCase()))
+            .endHandler();
+
+      Map<String, StatisticsSnapshot> stats = runScenario();
+      StatisticsSnapshot testStats = stats.get("test");
+      assertThat(testStats.responseCount).isEqualTo(1);
+      assertThat(HttpStats.get(testStats).status_2xx).isEqualTo(1);
+      assertThat(HttpStats.get(stats.get("test_redirect")).status_3xx).isEqualTo(1);
+      // Headers of the redirect followed inline are not passed to the handlers
+      assertThat(headers).doesNotContain("x-custom", "set-cookie");
+   }
+
+   @Test
+   public void testSetCookieRedirectElsewhere() {
+      Set<String> headers = ConcurrentHashMap.newKeySet();
+      scenario().initialSequence("test").step(HttpStepCatalog.SC).httpRequest(HttpMethod.GET)
+            .path("/inline/login?to=http://example.com/welcome")
+            .handler().maxInlineRedirects(1)
+            .header((request, header, value) -> headers.add(header.toString().toLowerCase()))
+            .endHandler();
+
+      Map<String, StatisticsSnapshot> stats = runScenario();
+      StatisticsSnapshot testStats = stats.get("test");
+      assertThat(testStats.responseCount).isEqualTo(1);
+      assertThat(HttpStats.get(testStats).status_3xx).isEqualTo(1);
+      // Headers received before the location are passed to the handlers once we know the redirect is not followed
+      assertThat(headers).contains("set-cookie", "x-custom", "location");
+   }
 }
@@ -0,0 +1,151 @@
+package io.hyperfoil.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import io.hyperfoil.core.session.SessionFactory;
+import io.hyperfoil.core.test.TestClock;
+import io.hyperfoil.http.api.HttpCache;
+import io.hyperfoil.http.api.HttpMethod;
+import io.hyperfoil.http.api.HttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+
+public class HttpCacheImplTest {
+   private final HttpRequest request = new HttpRequest(SessionFactory.forTesting());
+
+   @Test
+   public void testEviction() {
+      HttpCacheImpl cache = new HttpCacheImpl(new TestClock(), 4);
+      for (int i = 0; i < 4; ++i) {
+         store(cache, "/" + i, null);
+      }
+      assertThat(cache.size()).isEqualTo(4);
+      // touch /0 so that /1 becomes the least recently used record
+      assertThat(lookup(cache, "/0")).isEqualTo(1);
+      store(cache, "/4", null);
+      assertThat(cache.size()).isEqualTo(4);
+      assertThat(lookup(cache, "/0")).isEqualTo(1);
+      assertThat(lookup(cache, "/1")).isEqualTo(0);
+      assertThat(lookup(cache, "/4")).isEqualTo(1);
+
+      // multiple records for the same key count towards the limit
+      store(cache, "/5", "\"a\"");
+      store(cache, "/5", "\"b\"");
+      store(cache, "/5", "\"a\"");
+      assertThat(cache.size()).isEqualTo(4);
+      assertThat(lookup(cache, "/5")).isEqualTo(2);
+
+      cache.clear();
+      assertThat(cache.size()).isEqualTo(0);
+      assertThat(lookup(cache, "/5")).isEqualTo(0);
+   }
+
+   @Test
+   public void testRecordsWithoutValidators() {
+      HttpCacheImpl cache = new HttpCacheImpl(new TestClock(), 4);
+      store(cache, "/foo", null);
+      store(cache, "/foo", null);
+      assertThat(cache.size()).isEqualTo(1);
+   }
+
+   @Test
+   public void testEvictedRecordHeldByRequest() {
+      HttpCacheImpl cache = new HttpCacheImpl(new TestClock(), 4);
+      store(cache, "/0", "\"a\"");
+      HttpRequest inFlight = new HttpRequest(SessionFactory.forTesting());
+      inFlight.method = HttpMethod.GET;
+      inFlight.path = "/0";
+      cache.beforeRequestHeaders(inFlight);
+      assertThat(inFlight.cacheControl.matchingCached).hasSize(1);
+
+      // evict /0 while the request still holds its record
+      for (int i = 1; i <= 4; ++i) {
+         store(cache, "/" + i, "\"b\"");
+      }
+      assertThat(lookup(cache, "/0")).isEqualTo(0);
+      cache.clear();
+      store(cache, "/5", "\"c\"");
+
+      cache.requestHeader(inFlight, HttpHeaderNames.IF_NONE_MATCH, "\"a\"");
+      assertThat(inFlight.cacheControl.matchingCached).hasSize(1);
+   }
+
+   @Test
+   public void testRecordReusedAfterRelease() {
+      HttpCacheImpl cache = new HttpCacheImpl(new TestClock(), 4);
+      store(cache, "/0", "\"a\"");
+      HttpRequest inFlight = new HttpRequest(SessionFactory.forTesting());
+      inFlight.method = HttpMethod.GET;
+      inFlight.path = "/0";
+      cache.beforeRequestHeaders(inFlight);
+      HttpCache.Record held = inFlight.cacheControl.matchingCached.get(0);
+
+      // the removed record is still held by the request and must not be reused
+      cache.invalidate(null, "/0");
+      store(cache, "/1", "\"b\"");
+      assertThat(lookup(cache, "/1")).isEqualTo(1);
+      assertThat(request.cacheControl.matchingCached.get(0)).isNotSameAs(held);
+
+      // after the request completes the record goes back to the pool
+      inFlight.cacheControl.reset();
+      store(cache, "/2", "\"c\"");
+      assertThat(lookup(cache, "/2")).isEqualTo(1);
+      assertThat(request.cacheControl.matchingCached.get(0)).isSameAs(held);
+   }
+
+   @Test
+   public void testUpdateByETag() {
+      HttpCacheImpl cache = new HttpCacheImpl(new TestClock(), 4);
+      store(cache, "/foo", "W/\"a\"");
+      store(cache, "/foo", "W/\"a\"");
+      assertThat(cache.size()).isEqualTo(1);
+      store(cache, "/foo", "\"a\"");
+      assertThat(cache.size()).isEqualTo(1);
+      store(cache, "/foo", "\"ab\"");
+      assertThat(cache.size()).isEqualTo(2);
+   }
+
+   @Test
+   public void testInvalidateRandom() {
+      HttpCacheImpl cache = new HttpCacheImpl(new TestClock(), 64);
+      Random random = new Random(42);
+      Set<String> stored = new HashSet<>();
+      for (int i = 0; i < 10000; ++i) {
+         String path = "/" + random.nextInt(48);
+         if (random.nextBoolean()) {
+            store(cache, path, null);
+            stored.add(path);
+         } else {
+            cache.invalidate(null, path);
+            stored.remove(path);
+         }
+         assertThat(cache.size()).isEqualTo(stored.size());
+      }
+      for (int i = 0; i < 48; ++i) {
+         String path = "/" + i;
+         assertThat(lookup(cache, path)).as(path).isEqualTo(stored.contains(path) ? 1 : 0);
+      }
+   }
+
+   private void store(HttpCacheImpl cache, String path, String etag) {
+      request.cacheControl.reset();
+      request.method = HttpMethod.GET;
+      request.path = path;
+      request.cacheControl.responseEtag = etag;
+      request.cacheControl.responseMaxAge = 60;
+      cache.tryStore(request);
+   }
+
+   private int lookup(HttpCacheImpl cache, String path) {
+      request.cacheControl.reset();
+      request.method = HttpMethod.GET;
+      request.path = path;
+      cache.beforeRequestHeaders(request);
+      return request.cacheControl.matchingCached.size();
+   }
+}
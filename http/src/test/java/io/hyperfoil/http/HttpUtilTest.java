@@ -0,0 +1,32 @@
+package io.hyperfoil.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+public class HttpUtilTest {
+   @Test
+   public void testAuthorityMatch() {
+      assertMatch("http://example.com:8080/foo", "example.com:8080", true, true);
+      assertMatch("http://example.com:8081/foo", "example.com:8080", true, false);
+      assertMatch("http://example.com/foo", "example.com:80", true, true);
+      assertMatch("http://example.com:80/foo", "example.com", true, true);
+      assertMatch("http://example.com/foo", "example.com:8080", true, false);
+      assertMatch("https://example.com/foo", "example.com:443", false, true);
+      assertMatch("https://example.com:8443/foo", "example.com:443", false, false);
+      assertMatch("http://other.com:8080/foo", "example.com:8080", true, false);
+      assertMatch("http://example.com", "example.com:8080", true, false);
+   }
+
+   private void assertMatch(String url, String authority, boolean isHttp, boolean expected) {
+      assertThat(HttpUtil.authorityMatch(url, authority, isHttp)).as(url).isEqualTo(expected);
+      // Make sure the offset is respected
+      ByteBuf buf = Unpooled.wrappedBuffer(("xx" + url).getBytes(StandardCharsets.UTF_8));
+      assertThat(HttpUtil.authorityMatch(buf, 2, url.length(), authority.getBytes(StandardCharsets.UTF_8), isHttp)).as(url).isEqualTo(expected);
+   }
+}
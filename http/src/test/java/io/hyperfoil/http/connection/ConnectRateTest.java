@@ -0,0 +1,55 @@
+package io.hyperfoil.http.connection;
+
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.hyperfoil.api.statistics.StatisticsSnapshot;
+import io.hyperfoil.http.HttpScenarioTest;
+import io.hyperfoil.http.api.HttpMethod;
+import io.hyperfoil.http.config.ConnectionStrategy;
+import io.hyperfoil.http.config.HttpBuilder;
+import io.hyperfoil.http.statistics.ConnectStats;
+import io.hyperfoil.http.steps.HttpStepCatalog;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class ConnectRateTest extends HttpScenarioTest {
+   @Override
+   protected void initRouter() {
+      router.get("/").handler(ctx -> ctx.response().end());
+   }
+
+   @Override
+   protected int threads() {
+      return 1;
+   }
+
+   @Override
+   protected void initHttp(HttpBuilder http) {
+      http.connectionStrategy(ConnectionStrategy.ALWAYS_NEW).maxConnectRate(20);
+   }
+
+   @Test
+   public void test(TestContext ctx) {
+      //@formatter:off
+      benchmarkBuilder.addPhase("test").always(5).duration(1000).scenario().initialSequence("test")
+            .step(HttpStepCatalog.SC).httpRequest(HttpMethod.GET)
+               .path("/")
+               .metric("test")
+            .endStep();
+      //@formatter:on
+
+      Map<String, StatisticsSnapshot> stats = runScenario();
+      StatisticsSnapshot snapshot = stats.get("test");
+      ConnectStats connectStats = ConnectStats.get(snapshot);
+      ctx.assertEquals(connectStats.connections, snapshot.requestCount);
+      ctx.assertTrue(connectStats.connections > 0);
+      ctx.assertTrue(connectStats.connectTime > 0);
+      ctx.assertEquals(0, connectStats.handshakes);
+      // 1 second at 20 connections per second, with some slack for the phase termination
+      ctx.assertTrue(connectStats.connections <= 25, "Too many connections: " + connectStats.connections);
+   }
+}
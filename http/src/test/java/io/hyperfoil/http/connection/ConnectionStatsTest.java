@@ -21,9 +21,13 @@ import io.hyperfoil.http.api.HttpMethod;
 import io.hyperfoil.http.config.ConnectionStrategy;
 import io.hyperfoil.http.config.HttpBuilder;
 import io.hyperfoil.http.config.HttpPluginBuilder;
+import io.hyperfoil.http.config.PipeliningStrategy;
+import io.hyperfoil.http.config.TlsResumption;
 import io.hyperfoil.http.statistics.HttpStats;
 import io.hyperfoil.http.steps.HttpStepCatalog;
+import io.netty.handler.ssl.SslProvider;
 import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
@@ -36,6 +40,11 @@ public class ConnectionStatsTest extends HttpScenarioTest {
    private static final String BLOCKED_SESSIONS = "blocked sessions";
    private static final String IN_FLIGHT_REQUESTS = "in-flight requests";
    private static final String USED_CONNECTIONS = "used connections";
+   private static final String FULL_HANDSHAKES = "full TLS handshakes";
+   private static final String RESUMED_HANDSHAKES = "resumed TLS handshakes";
+   private static final String SEND_WINDOW_BLOCKED = "HTTP/2 send window blocked ms";
+   private static final String RECEIVE_WINDOW_LIMITED = "HTTP/2 receive window limited ms";
+   private static final String PIPELINE_DEPTH = "pipeline depth ";
 
    @Override
    protected Future<Void> startServer(TestContext ctx, boolean tls, boolean compression) {
@@ -54,6 +63,7 @@ public class ConnectionStatsTest extends HttpScenarioTest {
       router.route("/ok").handler(ctx -> vertx.setTimer(5, id -> ctx.response().end()));
       router.route("/error").handler(ctx -> vertx.setTimer(5, id -> ctx.response().setStatusCode(400).end()));
       router.route("/close").handler(ctx -> ctx.response().close());
+      router.route("/big").handler(ctx -> ctx.response().end(Buffer.buffer(new byte[1024 * 1024])));
    }
 
    @Override
@@ -167,6 +177,42 @@ public class ConnectionStatsTest extends HttpScenarioTest {
       assertThat(stats.get(USED_CONNECTIONS).high).isLessThanOrEqualTo(connections);
    }
 
+   @Test
+   public void testSharedHttp1xPipeliningFill(TestContext ctx) {
+      startServer(ctx, false);
+
+      final int connections = 3;
+      http().connectionStrategy(ConnectionStrategy.SHARED_POOL)
+            .sharedConnections(connections)
+            .pipeliningLimit(5)
+            .pipeliningStrategy(PipeliningStrategy.FILL);
+
+      Map<String, LowHigh> stats = testPipelined(6);
+      assertThat(stats.get(IN_FLIGHT_REQUESTS).high).isLessThanOrEqualTo(connections * 5);
+      // The first connection is filled before using the others
+      assertThat(stats.get(PIPELINE_DEPTH + 5).high).isGreaterThan(0);
+   }
+
+   @Test
+   public void testSharedHttp1xPipeliningMaxBytes(TestContext ctx) {
+      startServer(ctx, false);
+
+      final int connections = 3;
+      http().connectionStrategy(ConnectionStrategy.SHARED_POOL)
+            .sharedConnections(connections)
+            .pipeliningLimit(5)
+            .pipeliningStrategy(PipeliningStrategy.FILL)
+            .pipeliningMaxBytes(1);
+
+      // Any request exceeds the limit so there's at most one request on each connection
+      Map<String, LowHigh> stats = testPipelined(6);
+      assertThat(stats.get(IN_FLIGHT_REQUESTS).high).isLessThanOrEqualTo(connections);
+      assertThat(stats.get(PIPELINE_DEPTH + 1).high).isGreaterThan(0);
+      for (int depth = 2; depth <= 5; ++depth) {
+         assertThat(stats.get(PIPELINE_DEPTH + depth).high).isEqualTo(0);
+      }
+   }
+
    @Test
    public void testSessionPoolsHttp1x(TestContext ctx) {
       startServer(ctx, false);
@@ -297,6 +343,68 @@ public class ConnectionStatsTest extends HttpScenarioTest {
 //      assertThat(stats.get(IN_FLIGHT_REQUESTS).high).isEqualTo(stats.get(USED_CONNECTIONS).high);
    }
 
+   @Test
+   public void testNewHttp2Resumption(TestContext ctx) {
+      startServer(ctx, true);
+
+      http().connectionStrategy(ConnectionStrategy.ALWAYS_NEW)
+            .tls().resumption(TlsResumption.TICKET);
+
+      Map<String, LowHigh> stats = testHandshakes();
+      assertThat(stats.get(FULL_HANDSHAKES).high).isGreaterThan(0);
+      assertThat(stats.get(RESUMED_HANDSHAKES).high).isGreaterThan(0);
+   }
+
+   @Test
+   public void testNewHttp2DefaultResumption(TestContext ctx) {
+      startServer(ctx, true);
+
+      http().connectionStrategy(ConnectionStrategy.ALWAYS_NEW);
+
+      Map<String, LowHigh> stats = testHandshakes();
+      assertThat(stats.get(FULL_HANDSHAKES).high).isGreaterThan(0);
+      if (SslProvider.isAlpnSupported(SslProvider.OPENSSL)) {
+         // OpenSSL client does not cache sessions unless resumption is configured
+         assertThat(stats.get(RESUMED_HANDSHAKES).high).isEqualTo(0);
+      }
+   }
+
+   @Test
+   public void testNewHttp2NoResumption(TestContext ctx) {
+      startServer(ctx, true);
+
+      http().connectionStrategy(ConnectionStrategy.ALWAYS_NEW)
+            .tls().resumption(TlsResumption.NONE);
+
+      Map<String, LowHigh> stats = testHandshakes();
+      assertThat(stats.get(FULL_HANDSHAKES).high).isGreaterThan(1);
+      assertThat(stats.get(RESUMED_HANDSHAKES).high).isEqualTo(0);
+   }
+
+   @Test
+   public void testHttp2FlowControl(TestContext ctx) {
+      startServer(ctx, true);
+
+      http().sharedConnections(1).http2FlowControl().streamWindow(16384).autoTune(true);
+
+      benchmarkBuilder.addPhase("test").always(4).duration(1000).scenario()
+            .initialSequence("test")
+            .step(HttpStepCatalog.SC).httpRequest(HttpMethod.GET).path("/big").endStep();
+
+      TestStatistics requestStats = new TestStatistics();
+      TestConnectionStats connectionStats = new TestConnectionStats();
+      LocalSimulationRunner runner = new LocalSimulationRunner(benchmarkBuilder.build(), requestStats, null, connectionStats);
+      runner.run();
+
+      StatisticsSnapshot snapshot = requestStats.stats().get("test");
+      assertThat(snapshot.responseCount).isGreaterThan(0);
+      assertThat(snapshot.connectionErrors).isEqualTo(0);
+      LowHigh sendBlocked = connectionStats.stats.get(SEND_WINDOW_BLOCKED);
+      assertThat(sendBlocked.low).isGreaterThanOrEqualTo(0).isLessThanOrEqualTo(sendBlocked.high);
+      LowHigh receiveLimited = connectionStats.stats.get(RECEIVE_WINDOW_LIMITED);
+      assertThat(receiveLimited.low).isGreaterThanOrEqualTo(0).isLessThanOrEqualTo(receiveLimited.high);
+   }
+
    private ConnectionPoolStats testSingle(String path, boolean response) {
       AtomicReference<HttpConnectionPool> connectionPoolRef = new AtomicReference<>();
       benchmarkBuilder.addPhase("test").atOnce(1).duration(10).scenario()
@@ -379,6 +487,38 @@ public class ConnectionStatsTest extends HttpScenarioTest {
       return connectionStats.stats;
    }
 
+   private Map<String, LowHigh> testPipelined(int sessions) {
+      benchmarkBuilder.addPhase("test").always(sessions).duration(1000).scenario()
+            .initialSequence("test")
+            .step(HttpStepCatalog.SC).httpRequest(HttpMethod.GET).path("/ok").endStep();
+
+      TestStatistics requestStats = new TestStatistics();
+      TestConnectionStats connectionStats = new TestConnectionStats();
+      LocalSimulationRunner runner = new LocalSimulationRunner(benchmarkBuilder.build(), requestStats, null, connectionStats);
+      runner.run();
+
+      StatisticsSnapshot snapshot = requestStats.stats().get("test");
+      assertThat(snapshot.responseCount).isGreaterThan(sessions);
+      assertThat(snapshot.connectionErrors).isEqualTo(0);
+      return connectionStats.stats;
+   }
+
+   private Map<String, LowHigh> testHandshakes() {
+      // one session at a time, so that the previous connection can provide session for resumption
+      benchmarkBuilder.addPhase("test").always(1).duration(2000).scenario()
+            .initialSequence("test")
+            .step(HttpStepCatalog.SC).httpRequest(HttpMethod.GET).path("/ok").endStep();
+
+      TestStatistics requestStats = new TestStatistics();
+      TestConnectionStats connectionStats = new TestConnectionStats();
+      LocalSimulationRunner runner = new LocalSimulationRunner(benchmarkBuilder.build(), requestStats, null, connectionStats);
+      runner.run();
+
+      StatisticsSnapshot snapshot = requestStats.stats().get("test");
+      assertThat(snapshot.responseCount).isGreaterThan(1);
+      return connectionStats.stats;
+   }
+
    private static class TestConnectionStats implements ConnectionStatsConsumer {
       Map<String, LowHigh> stats = new HashMap<>();
 
@@ -2,6 +2,7 @@ package io.hyperfoil.http.cookie;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 
 import org.junit.Test;
@@ -10,6 +11,7 @@ import io.hyperfoil.http.api.HttpConnection;
 import io.hyperfoil.http.api.HttpRequest;
 import io.hyperfoil.http.api.HttpRequestWriter;
 import io.hyperfoil.http.BaseMockConnection;
+import io.netty.util.AsciiString;
 
 public class CookieStoreTest {
    @Test
@@ -146,6 +148,65 @@ public class CookieStoreTest {
       }
    }
 
+   @Test
+   public void testManyCookies() {
+      CookieStore store = new CookieStore();
+      for (int i = 0; i < 100; ++i) {
+         store.setCookie("hyperfoil.io", "/", "c" + i + "=v" + i);
+      }
+      store.setCookie("foo.hyperfoil.io", "/", "sub=x; domain=hyperfoil.io");
+      store.setCookie("other.io", "/", "other=y");
+
+      MockWriter writer = new MockWriter("hyperfoil.io", "/");
+      store.appendCookies(writer);
+      // all cookies are sent in a single header
+      assertThat(writer.values.size()).isEqualTo(1);
+      String[] cookies = writer.values.get(0).toString().split("; ");
+      assertThat(cookies).hasSize(101).contains("c0=v0", "c99=v99", "sub=x").doesNotContain("other=y");
+   }
+
+   @Test
+   public void testMaxCookies() {
+      CookieStore store = new CookieStore(2);
+      store.setCookie("hyperfoil.io", "/", "a=1");
+      store.setCookie("hyperfoil.io", "/", "b=2");
+      store.setCookie("hyperfoil.io", "/", "c=3");
+      // replacing existing cookie is still possible
+      store.setCookie("hyperfoil.io", "/", "a=4");
+
+      MockWriter writer = new MockWriter("hyperfoil.io", "/");
+      store.appendCookies(writer);
+      assertThat(writer.values.size()).isEqualTo(1);
+      assertThat(writer.values.get(0).toString().split("; ")).containsExactlyInAnyOrder("a=4", "b=2");
+   }
+
+   @Test
+   public void testDomainBoundary() {
+      CookieStore store = new CookieStore();
+      store.setCookie("hyperfoil.io", "/", "foo=bar; domain=.hyperfoil.io");
+
+      MockWriter writer1 = new MockWriter("xhyperfoil.io", "/");
+      store.appendCookies(writer1);
+      assertThat(writer1.values.size()).isEqualTo(0);
+
+      MockWriter writer2 = new MockWriter("www.HyperFoil.io", "/");
+      store.appendCookies(writer2);
+      assertThat(writer2.values.size()).isEqualTo(1);
+   }
+
+   @Test
+   public void testByteBackedValue() {
+      CookieStore store = new CookieStore();
+      // HTTP/2 header values are views into a larger byte array
+      byte[] bytes = "xxfoo=bar; Domain=HyperFoil.io; Max-Age=60yy".getBytes(StandardCharsets.US_ASCII);
+      store.setCookie("www.hyperfoil.io", "/", new AsciiString(bytes, 2, bytes.length - 4, false));
+
+      MockWriter writer = new MockWriter("hyperfoil.io", "/");
+      store.appendCookies(writer);
+      assertThat(writer.values.size()).isEqualTo(1);
+      assertThat(writer.values.get(0)).isEqualTo("foo=bar");
+   }
+
    private static class MockWriter implements HttpRequestWriter {
       final String host;
       final String path;
@@ -177,6 +238,11 @@ public class CookieStoreTest {
       public void putHeader(CharSequence header, CharSequence value) {
          values.add(value);
       }
+
+      @Override
+      public void putHeader(CharSequence header, byte[] value, int length) {
+         values.add(new String(value, 0, length, StandardCharsets.US_ASCII));
+      }
    }
 
 }
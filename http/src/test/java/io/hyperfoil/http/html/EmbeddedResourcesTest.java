@@ -4,7 +4,9 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -19,6 +21,8 @@ import io.vertx.ext.unit.junit.VertxUnitRunner;
 
 @RunWith(VertxUnitRunner.class)
 public class EmbeddedResourcesTest extends HttpScenarioTest {
+   private final List<String> fetched = new CopyOnWriteArrayList<>();
+
    @Override
    protected void initRouter() {
       router.route().handler(ctx -> {
@@ -43,6 +47,13 @@ public class EmbeddedResourcesTest extends HttpScenarioTest {
       router.route("/styles/style.css").handler(ctx -> ctx.response().end("You've got style!"));
       router.route("/foobar/stuff.js").handler(ctx -> ctx.response().end("alert('Hello world!')"));
       router.route("/generate.php").handler(ctx -> ctx.response().end());
+      router.route("/priority/index.html").handler(ctx -> ctx.response().end("<html><head></head><body>" +
+            "<img src=\"a.png\"/><img src=\"b.png\"/><iframe src=\"frame.html\"></iframe>" +
+            "<script src=\"/priority/c.js\"></script><link href=\"d.css\"/><img src=\"a.png\"/></body></html>"));
+      router.route("/priority/*").handler(ctx -> {
+         fetched.add(ctx.request().path());
+         ctx.response().end();
+      });
    }
 
    @Test
@@ -64,4 +75,18 @@ public class EmbeddedResourcesTest extends HttpScenarioTest {
          assertThat(HttpStats.get(snapshot).status_2xx).as(name).isEqualTo(hits);
       }
    }
+
+   @Test
+   public void testPriority() {
+      Benchmark benchmark = loadScenario("scenarios/EmbeddedResourcesTest_priority.hf.yaml");
+      Map<String, StatisticsSnapshot> stats = runScenario(benchmark);
+      // The first image is requested right away as the queue is empty, duplicate image is not fetched again
+      assertThat(fetched).containsExactly("/priority/a.png", "/priority/c.js", "/priority/d.css",
+            "/priority/frame.html", "/priority/b.png");
+      StatisticsSnapshot pageLoad = stats.get("page-load");
+      assertThat(pageLoad).isNotNull();
+      assertThat(pageLoad.requestCount).isEqualTo(1);
+      assertThat(pageLoad.responseCount).isEqualTo(1);
+      assertThat(pageLoad.histogram.getMaxValue()).isGreaterThanOrEqualTo(stats.get("page").histogram.getMaxValue());
+   }
 }
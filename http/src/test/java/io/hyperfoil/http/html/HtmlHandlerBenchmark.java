@@ -0,0 +1,181 @@
+package io.hyperfoil.http.html;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.hyperfoil.api.processor.Processor;
+import io.hyperfoil.api.session.ResourceUtilizer;
+import io.hyperfoil.api.session.Session;
+import io.hyperfoil.core.session.SessionFactory;
+import io.hyperfoil.http.HttpRunData;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * Measures parsing of a large page with the structure typical for real-world sites: heavy head with stylesheets
+ * and inline scripts, navigation, articles with images and comments.
+ * <p>
+ * Build the test classpath with <code>mvn -pl http dependency:build-classpath -Dmdep.includeScope=test
+ * -Dmdep.outputFile=/tmp/cp.txt</code> and run
+ * <code>java -cp http/target/test-classes:http/target/classes:$(cat /tmp/cp.txt) org.openjdk.jmh.Main HtmlHandlerBenchmark</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HtmlHandlerBenchmark {
+   /**
+    * Size of chunks the page is delivered in; 1460 bytes is the usual TCP segment payload.
+    */
+   @Param({ "1460", "16384", "0" })
+   int chunkSize;
+
+   @Param({ "500" })
+   int pageSizeKB;
+
+   private ByteBuf page;
+   private Session session;
+   private HtmlHandler handler;
+   private Blackhole blackhole;
+
+   @Setup(Level.Trial)
+   public void setup(Blackhole blackhole) {
+      this.blackhole = blackhole;
+      page = ByteBufAllocator.DEFAULT.directBuffer();
+      page.writeCharSequence(generatePage(pageSizeKB * 1024), StandardCharsets.UTF_8);
+
+      HtmlHandler.Builder builder = new HtmlHandler.Builder();
+      // Embedded resource processor would require a request, we're interested only in the parsing
+      builder.handler(new ResourceBuilder(this));
+      builder.handler(new MetaRefreshBuilder(this));
+      handler = builder.build(true);
+      session = SessionFactory.forTesting();
+      HttpRunData.initForTesting(session);
+      ResourceUtilizer.reserveForTesting(session, handler);
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      page.release();
+   }
+
+   @Benchmark
+   public void parse() {
+      int size = page.writerIndex();
+      int chunk = chunkSize <= 0 ? size : chunkSize;
+      for (int offset = 0; offset < size; offset += chunk) {
+         int length = Math.min(chunk, size - offset);
+         handler.process(session, page, offset, length, offset + length == size);
+      }
+   }
+
+   private static String generatePage(int size) {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      StringBuilder sb = new StringBuilder(size + 4096);
+      sb.append("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n")
+            .append("<meta charset=\"utf-8\">\n<meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">\n")
+            .append("<meta http-equiv=\"refresh\" content=\"300; url=/index.html\">\n")
+            .append("<title>Daily News - Front page</title>\n");
+      for (int i = 0; i < 12; ++i) {
+         sb.append("<link rel=\"stylesheet\" href=\"/static/css/bundle-").append(i).append(".css?v=1a2b3c\" media=\"all\">\n");
+      }
+      for (int i = 0; i < 8; ++i) {
+         sb.append("<script async src=\"https://cdn.example.com/js/lib-").append(i).append(".min.js\"></script>\n");
+      }
+      sb.append("<script>\nwindow.dataLayer = window.dataLayer || [];\n")
+            .append("function gtag(){ for (var i = 0; i < arguments.length; ++i) { if (arguments[i] <= 0) return; } ")
+            .append("dataLayer.push(arguments); }\n")
+            .append("document.write('<div class=\"ad\"><img src=\"/ads/banner.gif\"></div>');\n</script>\n")
+            .append("<style>\nbody { font-family: sans-serif; } .nav > li { display: inline-block; }\n</style>\n")
+            .append("</head>\n<body class=\"home page-template\">\n<header id=\"top\">\n<nav><ul class=\"nav\">\n");
+      for (int i = 0; i < 30; ++i) {
+         sb.append("<li class=\"nav-item\"><a href=\"/section/").append(i).append("/\" title=\"Section ").append(i)
+               .append("\">Section ").append(i).append("</a></li>\n");
+      }
+      sb.append("</ul></nav>\n</header>\n<main>\n");
+      int article = 0;
+      while (sb.length() < size) {
+         sb.append("<!-- article ").append(article).append(" - generated by cms -->\n")
+               .append("<article class=\"post post-").append(article).append("\" data-id=\"").append(random.nextInt(1000000)).append("\">\n")
+               .append("<h2><a href=\"/articles/").append(article).append("/some-long-slug-of-the-article-title\">Headline number ")
+               .append(article).append("</a></h2>\n")
+               .append("<img src=\"/images/2021/").append(article).append("/thumbnail.jpg\" alt=\"Thumbnail for &quot;article&quot;\" ")
+               .append("width=\"300\" height=\"200\" loading=\"lazy\">\n");
+         for (int p = 0; p < 4; ++p) {
+            sb.append("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore ")
+                  .append("et dolore magna aliqua. Ut enim ad minim veniam, quis nostrud exercitation ullamco laboris nisi ut ")
+                  .append("aliquip ex ea commodo consequat. <strong>Duis aute irure</strong> dolor in reprehenderit in ")
+                  .append("voluptate velit esse cillum dolore eu fugiat nulla pariatur. <em>Excepteur</em> sint occaecat ")
+                  .append("cupidatat non proident, sunt in culpa qui officia deserunt mollit anim id est laborum.</p>\n");
+         }
+         if (article % 5 == 0) {
+            sb.append("<iframe src=\"https://www.youtube.com/embed/").append(article).append("\" width=\"560\" height=\"315\" ")
+                  .append("allowfullscreen></iframe>\n")
+                  .append("<script>(function() { var x = ").append(article).append("; if (x < 10 && x > 0) { console.log('<b>'); } })();</script>\n");
+         }
+         sb.append("</article>\n");
+         ++article;
+      }
+      sb.append("</main>\n<footer><p>&copy; 2021 Daily News</p></footer>\n</body>\n</html>\n");
+      return sb.toString();
+   }
+
+   private static class Consumer implements Processor {
+      private final transient HtmlHandlerBenchmark benchmark;
+
+      Consumer(HtmlHandlerBenchmark benchmark) {
+         this.benchmark = benchmark;
+      }
+
+      @Override
+      public void process(Session session, ByteBuf data, int offset, int length, boolean isLastPart) {
+         benchmark.blackhole.consume(data.getByte(offset + length - 1));
+      }
+   }
+
+   private static class ResourceBuilder implements HtmlHandler.TagHandlerBuilder<ResourceBuilder> {
+      private final HtmlHandlerBenchmark benchmark;
+
+      ResourceBuilder(HtmlHandlerBenchmark benchmark) {
+         this.benchmark = benchmark;
+      }
+
+      @Override
+      public HtmlHandler.TagHandler build() {
+         return new HtmlHandler.BaseTagAttributeHandler(
+               new String[]{ "img", "link", "embed", "frame", "iframe", "object", "script" },
+               new String[]{ "src", "href", "src", "src", "src", "data", "src" }, new Consumer(benchmark));
+      }
+   }
+
+   private static class MetaRefreshBuilder implements HtmlHandler.TagHandlerBuilder<MetaRefreshBuilder> {
+      private final HtmlHandlerBenchmark benchmark;
+
+      MetaRefreshBuilder(HtmlHandlerBenchmark benchmark) {
+         this.benchmark = benchmark;
+      }
+
+      @Override
+      public HtmlHandler.TagHandler build() {
+         return new MetaRefreshHandler(new Consumer(benchmark));
+      }
+   }
+}
@@ -0,0 +1,89 @@
+package io.hyperfoil.http.html;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.hyperfoil.api.processor.Processor;
+import io.hyperfoil.api.session.ResourceUtilizer;
+import io.hyperfoil.api.session.Session;
+import io.hyperfoil.core.session.SessionFactory;
+import io.hyperfoil.core.util.Util;
+import io.hyperfoil.http.HttpRunData;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+public class HtmlHandlerTest {
+   private static final String HTML = "<!DOCTYPE html>\n" +
+         "<html><head>\n" +
+         "<!-- <img src=\"commented.png\"> a-b -->\n" +
+         "<link rel=\"stylesheet\" href=\"style.css\">\n" +
+         "<script>if (a < b) { document.write(\"<img src=\\\"script.png\\\">\"); }</script>\n" +
+         "<script src=\"app.js\"></script>\n" +
+         "</head><body>\n" +
+         "<p>Some text with > and - characters</p>\n" +
+         "<img alt=\"say \\\"hi\\\"\" src=\"a.png\"/>\n" +
+         "<img src=b.png alt=x>\n" +
+         "<IMG src=\"c.png\">\n" +
+         "</body></html>\n";
+
+   @Test
+   public void testChunked() {
+      for (int chunkSize = 1; chunkSize <= HTML.length(); ++chunkSize) {
+         List<String> values = new ArrayList<>();
+         HtmlHandler.Builder html = new HtmlHandler.Builder();
+         html.handler(new HandlerBuilder((session, data, offset, length, isLastPart) -> values.add(Util.toString(data, offset, length))));
+         HtmlHandler handler = html.build(true);
+         Session session = SessionFactory.forTesting();
+         HttpRunData.initForTesting(session);
+         ResourceUtilizer.reserveForTesting(session, handler);
+
+         ByteBuf buf = Util.string2byteBuf(HTML, ByteBufAllocator.DEFAULT.buffer());
+         try {
+            handler.before(session);
+            for (int offset = 0; offset < buf.writerIndex(); offset += chunkSize) {
+               int length = Math.min(chunkSize, buf.writerIndex() - offset);
+               handler.process(session, buf, offset, length, offset + length == buf.writerIndex());
+            }
+            handler.after(session);
+         } finally {
+            buf.release();
+         }
+         assertThat(values).as("chunk size %d", chunkSize).containsExactly("style.css", "app.js", "a.png", "b.png", "c.png");
+      }
+   }
+
+   @Test
+   public void testIndexOf() {
+      ByteBuf buf = Util.string2byteBuf("0123456789abcdef<<\u0001\u0080x", ByteBufAllocator.DEFAULT.buffer());
+      try {
+         for (int from = 0; from < buf.writerIndex(); ++from) {
+            for (int to = from; to <= buf.writerIndex(); ++to) {
+               for (byte b : new byte[]{ '0', '7', '8', 'f', '<', 1, (byte) 0x80, 'x', 'z' }) {
+                  int expected = buf.indexOf(from, to, b);
+                  assertThat(HtmlHandler.indexOf(buf, from, to, b)).as("%d-%d: %d", from, to, b).isEqualTo(expected);
+               }
+            }
+         }
+      } finally {
+         buf.release();
+      }
+   }
+
+   private static class HandlerBuilder implements HtmlHandler.TagHandlerBuilder<HandlerBuilder> {
+      private final Processor processor;
+
+      HandlerBuilder(Processor processor) {
+         this.processor = processor;
+      }
+
+      @Override
+      public HtmlHandler.TagHandler build() {
+         return new HtmlHandler.BaseTagAttributeHandler(new String[]{ "img", "link", "script" },
+               new String[]{ "src", "href", "src" }, processor);
+      }
+   }
+}
@@ -23,35 +23,26 @@ public class MetaRefreshHandlerTest {
       ResourceUtilizer.reserveForTesting(session, handler);
       handler.before(session);
 
-      ByteBuf content1 = buf("content1");
-      ByteBuf content2 = buf("content2");
-      ByteBuf content5 = buf("content5");
+      // Values are compared by content as these might be passed without copying
+      expect.expectContent("content1");
+      sendChunk(handler, session, "<html><head><me");
+      sendChunk(handler, session, "ta Http-equiv=\"refresh");
+      sendChunk(handler, session, "\" content=\"");
+      sendChunk(handler, session, "content1\" /><META");
+      expect.expectContent("content2");
+      sendChunk(handler, session, " content=\"content2\" foo=\"bar\" http-equiv=");
+      sendChunk(handler, session, "\"Ref");
+      sendChunk(handler, session, "resh\"></meta>");
+      sendChunk(handler, session, "  <meta");
+      sendChunk(handler, session, "META http-equiv=\"refresh\" content=\"content3\"/>");
+      sendChunk(handler, session, "<!-- --><mETA http-equiv=\"whatever\" content=\"content4\" />");
+      sendChunk(handler, session, "<mETA http-equiv=\"whatever\" content=\"content4\" />");
+      expect.expectContent("content5");
+      sendChunk(handler, session, "<meta content=\"content5\" http-equiv=\"refresh\" /></head></html>");
+      handler.process(session, ByteBufAllocator.DEFAULT.buffer(0, 0), 0, 0, true);
 
-      try {
-         expect.expect(content1);
-         sendChunk(handler, session, "<html><head><me");
-         sendChunk(handler, session, "ta Http-equiv=\"refresh");
-         sendChunk(handler, session, "\" content=\"");
-         sendChunk(handler, session, "content1\" /><META");
-         expect.expect(content2);
-         sendChunk(handler, session, " content=\"content2\" foo=\"bar\" http-equiv=");
-         sendChunk(handler, session, "\"Ref");
-         sendChunk(handler, session, "resh\"></meta>");
-         sendChunk(handler, session, "  <meta");
-         sendChunk(handler, session, "META http-equiv=\"refresh\" content=\"content3\"/>");
-         sendChunk(handler, session, "<!-- --><mETA http-equiv=\"whatever\" content=\"content4\" />");
-         sendChunk(handler, session, "<mETA http-equiv=\"whatever\" content=\"content4\" />");
-         expect.expect(content5);
-         sendChunk(handler, session, "<meta content=\"content5\" http-equiv=\"refresh\" /></head></html>");
-         handler.process(session, ByteBufAllocator.DEFAULT.buffer(0, 0), 0, 0, true);
-
-         handler.after(session);
-         expect.validate();
-      } finally {
-         content1.release();
-         content2.release();
-         content5.release();
-      }
+      handler.after(session);
+      expect.validate();
    }
 
    protected void sendChunk(HtmlHandler handler, Session session, String string) {